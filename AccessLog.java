@@ -0,0 +1,336 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An asynchronous, sampled access log for WebApp. Request threads claim a
+ * slot in a fixed size ring buffer with a single compare-and-set and copy
+ * the structured fields of their request into it; they never block and never
+ * touch the file. A background writer thread drains published slots in
+ * batches, formats each one as a JSON line and appends the batch to the log
+ * file through a FileChannel.
+ *
+ * When the ring is full a record is dropped (and counted) rather than making
+ * the request thread wait. Successful requests are kept with probability
+ * sampleRate, while failed requests (status 500 and above) are always kept.
+ *
+ * If a write fails the writer reopens the file and tries again, backing off
+ * from 10 ms up to 5 s between attempts, and resumes where it stopped once
+ * the file can be written. Failed attempts are counted, and a gauge shows
+ * whether the writer is currently failing; records that arrive while it is
+ * fill the ring and are then dropped.
+ */
+public class AccessLog implements AutoCloseable {
+
+    private final int mask;
+    private final double sampleRate;
+    private final Path file;
+    private FileChannel channel; // reopened by the writer after a failure
+
+    // structured fields of each slot, stored in parallel arrays
+    private final long[] timestamps;
+    private final String[] endpoints;
+    private final String[] queries;
+    private final int[] statuses;
+    private final long[] latencies;
+    private final int[] pathLengths;
+    private final String[] errors;
+    // the sequence number most recently published into each slot
+    private final AtomicLongArray published;
+
+    // next sequence to claim (producers) and next sequence to write (writer)
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head = 0;
+
+    private final Thread writer;
+    private volatile boolean running = true;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+    // true while buffer holds flipped bytes that a failed write left unwritten
+    private boolean flushing = false;
+    private volatile boolean failing = false;
+    private final AtomicLong writeFailures = new AtomicLong();
+    private final StringBuilder line = new StringBuilder(256);
+
+    private static final Metrics.Counter DROPPED = Metrics.counter(
+            "campus_access_log_dropped_total", "",
+            "Access log records dropped because the ring buffer was full.");
+    private static final Metrics.Counter WRITE_FAILURES = Metrics.counter(
+            "campus_access_log_write_failures_total", "",
+            "Access log writes that failed and were retried.");
+    private static final Metrics.Gauge WRITER_FAILING = Metrics.gauge(
+            "campus_access_log_writer_failing", "",
+            "1 while the access log writer cannot write its file, else 0.");
+
+    // bounds of the writer's wait between attempts after a failed write
+    private static final long MIN_BACKOFF_NANOS = 10_000_000L;
+    private static final long MAX_BACKOFF_NANOS = 5_000_000_000L;
+
+    /**
+     * Opens (or creates) the log file and starts the background writer.
+     *
+     * @param file       the file to append log lines to
+     * @param capacity   the number of ring buffer slots, rounded up to a power
+     *                   of two
+     * @param sampleRate the fraction of successful requests to log, in [0,1]
+     * @throws IOException if the log file cannot be opened for appending
+     */
+    public AccessLog(Path file, int capacity, double sampleRate) throws IOException {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be greater than 0.");
+        if (sampleRate < 0.0 || sampleRate > 1.0)
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1.");
+        int slots = Integer.highestOneBit(capacity - 1) << 1;
+        if (slots <= 0)
+            slots = 1;
+        this.mask = slots - 1;
+        this.sampleRate = sampleRate;
+        this.file = file;
+        this.channel = open(file);
+        this.timestamps = new long[slots];
+        this.endpoints = new String[slots];
+        this.queries = new String[slots];
+        this.statuses = new int[slots];
+        this.latencies = new long[slots];
+        this.pathLengths = new int[slots];
+        this.errors = new String[slots];
+        this.published = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++)
+            published.set(i, -1);
+
+        writer = new Thread(this::drainLoop, "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Creates an access log configured by the campus.accesslog (file name,
+     * default access.log), campus.accesslog.sample (default 1.0) and
+     * campus.accesslog.capacity (default 8192) system properties.
+     *
+     * @return the configured access log
+     * @throws IOException if the log file cannot be opened for appending
+     */
+    public static AccessLog fromSystemProperties() throws IOException {
+        return new AccessLog(Paths.get(System.getProperty("campus.accesslog", "access.log")),
+                Integer.parseInt(System.getProperty("campus.accesslog.capacity", "8192")),
+                Double.parseDouble(System.getProperty("campus.accesslog.sample", "1.0")));
+    }
+
+    /**
+     * Records one request. This never blocks: the record is either placed in
+     * the ring buffer or dropped.
+     *
+     * @param endpoint   the kind of request, e.g. route or closest
+     * @param query      the raw query string of the request, may be null
+     * @param status     the http status sent back to the client
+     * @param latency    the time spent handling the request, in nanoseconds
+     * @param pathLength the number of locations on the returned path, or -1
+     *                   when the request did not produce a path
+     * @param error      a description of the failure, or null on success
+     * @return true if the record was accepted, false if it was sampled out or
+     *         dropped
+     */
+    public boolean log(String endpoint, String query, int status, long latency,
+            int pathLength, String error) {
+        if (status < 500 && sampleRate < 1.0
+                && ThreadLocalRandom.current().nextDouble() >= sampleRate)
+            return false;
+
+        // claim a sequence number, unless that would overwrite unwritten slots
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head > mask) {
+                if (Metrics.ENABLED)
+                    DROPPED.increment();
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & mask;
+        timestamps[slot] = System.currentTimeMillis();
+        endpoints[slot] = endpoint;
+        queries[slot] = query;
+        statuses[slot] = status;
+        latencies[slot] = latency;
+        pathLengths[slot] = pathLength;
+        errors[slot] = error;
+        // the volatile write publishes the fields above to the writer thread
+        published.set(slot, sequence);
+        return true;
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // background writer: drain whatever has been published, then back off
+    private void drainLoop() {
+        long backoff = 0;
+        while (running) {
+            try {
+                int written = drain();
+                if (failing)
+                    setFailing(false);
+                backoff = 0;
+                if (written == 0)
+                    LockSupport.parkNanos(5_000_000L);
+            } catch (IOException e) {
+                // keep the unwritten records and try again on a fresh channel
+                writeFailures.incrementAndGet();
+                if (Metrics.ENABLED)
+                    WRITE_FAILURES.increment();
+                if (!failing)
+                    setFailing(true);
+                backoff = Math.min(MAX_BACKOFF_NANOS, Math.max(MIN_BACKOFF_NANOS, backoff * 2));
+                LockSupport.parkNanos(backoff);
+                reopen();
+            }
+        }
+    }
+
+    private void setFailing(boolean failing) {
+        this.failing = failing;
+        if (Metrics.ENABLED)
+            WRITER_FAILING.set(failing ? 1 : 0);
+    }
+
+    // replaces the channel; if the file cannot be opened yet, the next write
+    // fails on the closed channel and the writer tries again
+    private synchronized void reopen() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // it is being replaced anyway
+        }
+        try {
+            channel = open(file);
+        } catch (IOException e) {
+            // still failing, retried after the next backoff
+        }
+    }
+
+    /**
+     * @return the number of writes to the log file that have failed
+     */
+    public long getWriteFailures() {
+        return writeFailures.get();
+    }
+
+    /**
+     * @return true if the last attempt to write the log file failed
+     */
+    public boolean isWriterFailing() {
+        return failing;
+    }
+
+    // writes every published record to the channel, returns how many it wrote
+    private synchronized int drain() throws IOException {
+        if (flushing)
+            flush(); // first the bytes a failed write left behind
+        int written = 0;
+        long next = head;
+        while (published.get((int) next & mask) == next) {
+            int slot = (int) next & mask;
+            format(slot);
+            byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > buffer.remaining())
+                flush();
+            if (bytes.length > buffer.remaining())
+                writeFully(ByteBuffer.wrap(bytes));
+            else
+                buffer.put(bytes);
+
+            // only a record that is buffered or written frees its slot, so a
+            // failed write leaves it to be formatted again on the next attempt
+            endpoints[slot] = null;
+            queries[slot] = null;
+            errors[slot] = null;
+            next++;
+            head = next;
+            written++;
+        }
+        flush();
+        return written;
+    }
+
+    private void flush() throws IOException {
+        if (!flushing) {
+            buffer.flip();
+            flushing = true;
+        }
+        writeFully(buffer);
+        buffer.clear();
+        flushing = false;
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining())
+            channel.write(bytes);
+    }
+
+    // formats the record in this slot as a single JSON line
+    private void format(int slot) {
+        line.setLength(0);
+        line.append("{\"time\":\"").append(Instant.ofEpochMilli(timestamps[slot]))
+                .append("\",\"endpoint\":");
+        appendJsonString(endpoints[slot]);
+        line.append(",\"query\":");
+        appendJsonString(queries[slot]);
+        line.append(",\"status\":").append(statuses[slot])
+                .append(",\"latency_us\":").append(latencies[slot] / 1000);
+        if (pathLengths[slot] >= 0)
+            line.append(",\"path_length\":").append(pathLengths[slot]);
+        if (errors[slot] != null) {
+            line.append(",\"error\":");
+            appendJsonString(errors[slot]);
+        }
+        line.append("}\n");
+    }
+
+    private void appendJsonString(String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                line.append('\\').append(c);
+            else if (c < 0x20)
+                line.append(String.format("\\u%04x", (int) c));
+            else
+                line.append(c);
+        }
+        line.append('"');
+    }
+
+    /**
+     * Stops the background writer, writes any remaining records and closes
+     * the log file.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(1000);
+            drain();
+            channel.force(false);
+            channel.close();
+        } catch (IOException | InterruptedException e) {
+            // nothing more can be done for a best effort log while closing
+        }
+    }
+}
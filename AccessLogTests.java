@@ -0,0 +1,99 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the AccessLog class.
+ * These tests verify that records logged from request threads reach the log
+ * file intact, and that sampling applies only to successful requests.
+ */
+public class AccessLogTests {
+
+    @Test
+    /**
+     * Logs from several threads and checks that every accepted record ends up
+     * in the file as one well formed line.
+     */
+    public void testConcurrentLogging() throws Exception {
+        Path file = Files.createTempFile("access", ".log");
+        AccessLog log = new AccessLog(file, 1 << 14, 1.0);
+        Thread[] threads = new Thread[4];
+        AtomicInteger accepted = new AtomicInteger();
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++)
+                    if (log.log("route", "start=a&end=\"b\"", 200, 1500, 3, null))
+                        accepted.incrementAndGet();
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        log.close();
+
+        List<String> lines = Files.readAllLines(file);
+        Files.delete(file);
+        Assertions.assertEquals(accepted.get(), lines.size());
+        Assertions.assertTrue(accepted.get() > 0);
+        Assertions.assertTrue(lines.get(0).endsWith(
+                "\"query\":\"start=a&end=\\\"b\\\"\",\"status\":200,\"latency_us\":1,\"path_length\":3}"));
+    }
+
+    @Test
+    /**
+     * Checks that sampling drops successful requests but keeps failures.
+     */
+    public void testSamplingKeepsErrors() throws Exception {
+        Path file = Files.createTempFile("access", ".log");
+        AccessLog log = new AccessLog(file, 64, 0.0);
+        Assertions.assertFalse(log.log("route", "start=a&end=b", 200, 10, 2, null));
+        Assertions.assertTrue(log.log("route", "start=a&end=b", 500, 10, -1, "boom"));
+        log.close();
+        List<String> lines = Files.readAllLines(file);
+        Files.delete(file);
+        Assertions.assertEquals(1, lines.size());
+        Assertions.assertTrue(lines.get(0).contains("\"error\":\"boom\""));
+    }
+
+    @Test
+    /**
+     * Checks that the writer survives a failed write: it reopens the file,
+     * reports the failure, and writes the records logged meanwhile.
+     */
+    public void testWriterRecoversFromFailure() throws Exception {
+        Path file = Files.createTempFile("access", ".log");
+        AccessLog log = new AccessLog(file, 64, 1.0);
+        Assertions.assertTrue(log.log("route", "before", 200, 10, 2, null));
+        waitForLines(file, 1);
+
+        // break the writer's channel, as a failing disk or a rotated file would
+        Field field = AccessLog.class.getDeclaredField("channel");
+        field.setAccessible(true);
+        ((FileChannel) field.get(log)).close();
+        for (int i = 0; i < 5; i++)
+            Assertions.assertTrue(log.log("route", "after " + i, 200, 10, 2, null));
+        waitForLines(file, 6);
+        Assertions.assertTrue(log.getWriteFailures() >= 1);
+        // the writer clears the flag right after the write that succeeded
+        for (int tries = 0; tries < 500 && log.isWriterFailing(); tries++)
+            Thread.sleep(10);
+        Assertions.assertFalse(log.isWriterFailing());
+        log.close();
+
+        List<String> lines = Files.readAllLines(file);
+        Files.delete(file);
+        Assertions.assertEquals(6, lines.size());
+        for (int i = 0; i < 5; i++)
+            Assertions.assertTrue(lines.get(i + 1).contains("\"query\":\"after " + i + "\""));
+    }
+
+    private static void waitForLines(Path file, int count) throws Exception {
+        for (int tries = 0; tries < 500 && Files.readAllLines(file).size() < count; tries++)
+            Thread.sleep(10);
+    }
+}
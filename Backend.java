@@ -1,8 +1,18 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
 
@@ -15,6 +25,32 @@ import java.util.Scanner;
 public class Backend implements BackendInterface {
     
     private GraphADT<String, Double> graph;
+
+    // one MeetingPoint for every query, or null if it cannot search the
+    // graph; its per-query state is kept per thread
+    private final MeetingPoint meetingPoint;
+
+    // route queries in flight, keyed by (start, end), so that a burst of
+    // identical queries, and the locations and times of one route page,
+    // run one search
+    private final SingleFlight<List<String>, Route> routeFlights = new SingleFlight<>("route");
+
+    // the locations along a shortest path and the walking time of each step,
+    // both empty if there is no path
+    private static final class Route {
+	final List<String> locations;
+	final List<Double> times;
+
+	Route(List<String> locations, List<Double> times) {
+	    this.locations = locations;
+	    this.times = times;
+	}
+    }
+
+    private static final Route NO_ROUTE = new Route(new ArrayList<>(), new ArrayList<>());
+
+    // first int of a binary travel time profile file ("TTP1")
+    private static final int PROFILE_FILE_MAGIC = 0x54545031;
     
     /**
 	 * Constructor initializes the graph with the provided GraphADT instance.
@@ -23,17 +59,24 @@ public class Backend implements BackendInterface {
 	 */
     public Backend(GraphADT<String, Double> graph) {
 	this.graph = graph;
+	this.meetingPoint = meetingPointOver(graph);
     }
     
     /**
      * Loads graph data from a .dot file. Clears the existing graph before loading
-     * new data.
+     * new data. Each edge's weight is read from its seconds attribute, and an
+     * optional profile attribute such as profile="0:105.8 28800:140" attaches
+     * a time-dependent TravelTimeProfile to the edge when the graph is a
+     * DijkstraGraph. Every numeric attribute (including seconds, and flags
+     * such as indoor=true) is also kept as an edge attribute of a
+     * DijkstraGraph, for use by MultiCriteriaRouting.
      *
      * @param filename the path to a dot file to read graph data from
      * @throws IOException if there is an issue reading from the file
      */
     @Override
     public void loadGraphData(String filename) throws IOException {
+	long loadStart = System.nanoTime();
 	
 	// Clear existing graph data
 	for (String node : graph.getAllNodes()) {
@@ -50,25 +93,182 @@ public class Backend implements BackendInterface {
 		    String[] parts = line.split("->|\\[|\\]");
 		    String pred = parts[0].trim();
 		    String succ = parts[1].trim();
-		    double weight = Double.parseDouble(parts[2].replaceAll("[^0-9.]", ""));
+		    Map<String, String> attributes = parseAttributes(parts[2]);
+		    double weight = attributes.containsKey("seconds")
+			? Double.parseDouble(attributes.get("seconds"))
+			: Double.parseDouble(parts[2].replaceAll("[^0-9.]", ""));
 		    
 		    // Insert predecessor node only if it does not already exist in the graph
-		    if (!graph.getAllNodes().contains(pred)) {
+		    if (!graph.containsNode(pred)) {
 			graph.insertNode(pred);
 		    }
 		    
 		    // Insert successor node only if it does not already exist in the graph
-		    if (!graph.getAllNodes().contains(succ)) {
+		    if (!graph.containsNode(succ)) {
 			graph.insertNode(succ);
 		    }
 		    
 		    // Insert the edge between the predecessor and successor nodes
 		    graph.insertEdge(pred, succ, weight);
+		    
+		    // Keep every numeric attribute (distance, indoor=true, ...) so it
+		    // can be used as a routing criterion
+		    if (graph instanceof DijkstraGraph) {
+			for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+			    double value = EdgeAttributes.parseValue(attribute.getValue());
+			    if (!Double.isNaN(value))
+				dijkstraGraph().setEdgeAttribute(pred, succ, attribute.getKey(), value);
+			}
+		    }
+		    
+		    // Attach a time-dependent travel time profile when one is given
+		    if (attributes.containsKey("profile") && graph instanceof DijkstraGraph) {
+			try {
+			    dijkstraGraph().setEdgeProfile(pred, succ,
+				TravelTimeProfile.parse(attributes.get("profile")));
+			} catch (IllegalArgumentException e) {
+			    throw new IOException("Invalid profile for " + pred + " -> " + succ + ": "
+				+ e.getMessage());
+			}
+		    }
 		}
 	    }
 	} catch (FileNotFoundException e) {
 	    throw new IOException("File not found: " + filename);
 	}
+	
+	// Node names are fixed from here on, so look them up by perfect hash
+	if (graph instanceof DijkstraGraph)
+	    dijkstraGraph().freezeNodeIds();
+	
+	// Record how long this load took and the size of the resulting graph
+	if (Metrics.ENABLED) {
+	    Metrics.GRAPH_LOAD.record(System.nanoTime() - loadStart);
+	    Metrics.GRAPH_NODES.set(graph.getNodeCount());
+	    Metrics.GRAPH_EDGES.set(graph.getEdgeCount());
+	}
+    }
+    
+    /**
+     * Splits the attribute list of a dot edge, such as
+     * seconds=105.8, profile="0:105.8 28800:140", into its key value pairs.
+     * Quoted values may contain spaces and commas.
+     *
+     * @param text the text between the edge's square brackets
+     * @return a map from each attribute name to its (unquoted) value
+     */
+    static Map<String, String> parseAttributes(String text) {
+	Map<String, String> attributes = new HashMap<>();
+	int i = 0;
+	while (i < text.length()) {
+	    // skip separators between attributes
+	    char c = text.charAt(i);
+	    if (c == ',' || c == ';' || Character.isWhitespace(c)) {
+		i++;
+		continue;
+	    }
+	    int equals = text.indexOf('=', i);
+	    if (equals < 0)
+		break;
+	    String key = text.substring(i, equals).trim();
+	    i = equals + 1;
+	    while (i < text.length() && Character.isWhitespace(text.charAt(i)))
+		i++;
+	    String value;
+	    if (i < text.length() && text.charAt(i) == '"') {
+		int close = text.indexOf('"', i + 1);
+		if (close < 0)
+		    close = text.length();
+		value = text.substring(i + 1, close);
+		i = close + 1;
+	    } else {
+		int start = i;
+		while (i < text.length() && text.charAt(i) != ',' && text.charAt(i) != ';'
+		       && !Character.isWhitespace(text.charAt(i)))
+		    i++;
+		value = text.substring(start, i);
+	    }
+	    attributes.put(key, value);
+	}
+	return attributes;
+    }
+    
+    /**
+     * Loads time-dependent travel time profiles from a binary file written by
+     * saveTravelTimeProfiles, attaching each to its edge in the current graph.
+     * Profiles for edges that are not in the graph are skipped.
+     *
+     * @param filename the path to a binary travel time profile file
+     * @return the number of profiles attached to edges
+     * @throws IOException if the file cannot be read or is not a profile file
+     * @throws UnsupportedOperationException if the graph is not a DijkstraGraph
+     */
+    public int loadTravelTimeProfiles(String filename) throws IOException {
+	DijkstraGraph<String, Double> dijkstraGraph = dijkstraGraph();
+	try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+		new FileInputStream(filename)))) {
+	    if (in.readInt() != PROFILE_FILE_MAGIC)
+		throw new IOException("Not a travel time profile file: " + filename);
+	    int count = in.readInt();
+	    int attached = 0;
+	    for (int i = 0; i < count; i++) {
+		String pred = in.readUTF();
+		String succ = in.readUTF();
+		TravelTimeProfile profile = TravelTimeProfile.readFrom(in);
+		if (graph.containsNode(pred) && dijkstraGraph.setEdgeProfile(pred, succ, profile))
+		    attached++;
+	    }
+	    return attached;
+	} catch (FileNotFoundException e) {
+	    throw new IOException("File not found: " + filename);
+	}
+    }
+    
+    /**
+     * Saves the travel time profiles of every edge in the current graph that
+     * has one to a compact binary file.
+     *
+     * @param filename the path of the binary file to write
+     * @return the number of profiles written
+     * @throws IOException if the file cannot be written
+     * @throws UnsupportedOperationException if the graph is not a DijkstraGraph
+     */
+    public int saveTravelTimeProfiles(String filename) throws IOException {
+	DijkstraGraph<String, Double> dijkstraGraph = dijkstraGraph();
+	List<String[]> edges = new ArrayList<>();
+	for (String pred : graph.getAllNodes())
+	    for (String succ : dijkstraGraph.getSuccessors(pred))
+		if (dijkstraGraph.getEdgeProfile(pred, succ) != null)
+		    edges.add(new String[] { pred, succ });
+	try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+		new FileOutputStream(filename)))) {
+	    out.writeInt(PROFILE_FILE_MAGIC);
+	    out.writeInt(edges.size());
+	    for (String[] edge : edges) {
+		out.writeUTF(edge[0]);
+		out.writeUTF(edge[1]);
+		dijkstraGraph.getEdgeProfile(edge[0], edge[1]).writeTo(out);
+	    }
+	}
+	return edges.size();
+    }
+    
+    // a MeetingPoint over graph, or null if it cannot search the graph
+    @SuppressWarnings("unchecked")
+    private static MeetingPoint meetingPointOver(GraphADT<String, Double> graph) {
+	if (graph instanceof DijkstraGraph)
+	    return new MeetingPoint((DijkstraGraph<String, Double>) graph);
+	if (graph instanceof FrozenGraph)
+	    return new MeetingPoint((FrozenGraph) graph);
+	return null;
+    }
+    
+    // the graph as a DijkstraGraph, for operations beyond GraphADT
+    @SuppressWarnings("unchecked")
+    private DijkstraGraph<String, Double> dijkstraGraph() {
+	if (!(graph instanceof DijkstraGraph))
+	    throw new UnsupportedOperationException("This operation needs a DijkstraGraph");
+	return (DijkstraGraph<String, Double>) graph;
     }
     
     /**
@@ -91,11 +291,7 @@ public class Backend implements BackendInterface {
      */
     @Override
     public List<String> findLocationsOnShortestPath(String startLocation, String endLocation) {
-	try {
-	    return graph.shortestPathData(startLocation, endLocation);
-	} catch (NoSuchElementException e) {
-	    return new ArrayList<>(); // Return empty list if no path exists
-	}
+	return new ArrayList<>(route(startLocation, endLocation).locations); // each caller gets a list of its own
     }
     
     /**
@@ -109,23 +305,47 @@ public class Backend implements BackendInterface {
      */
     @Override
     public List<Double> findTimesOnShortestPath(String startLocation, String endLocation) {
-	List<String> path = findLocationsOnShortestPath(startLocation, endLocation);
+	return new ArrayList<>(route(startLocation, endLocation).times);
+    }
+    
+    // the shortest route from start to end; identical queries that arrive
+    // while one is searching wait for its route
+    private Route route(String startLocation, String endLocation) {
+	return routeFlights.run(Arrays.asList(startLocation, endLocation), () -> {
+	    try {
+		return searchRoute(startLocation, endLocation);
+	    } catch (NoSuchElementException e) {
+		return NO_ROUTE; // no such locations, or no path between them
+	    }
+	});
+    }
+    
+    // finds a route's locations and the times between them with one search
+    private Route searchRoute(String startLocation, String endLocation) {
+	List<String> locations = new ArrayList<>();
 	List<Double> times = new ArrayList<>();
-	// If no path exists, return an empty list
-	if (path.isEmpty()) {
-	    return times;
+	// With a DijkstraGraph, follow the path by node id rather than by name
+	if (graph instanceof DijkstraGraph) {
+	    DijkstraGraph<String, Double> dijkstraGraph = dijkstraGraph();
+	    int[] path = dijkstraGraph.shortestPathIds(dijkstraGraph.getNodeId(startLocation),
+		dijkstraGraph.getNodeId(endLocation));
+	    for (int i = 0; i < path.length; i++) {
+		locations.add(dijkstraGraph.nodesById.get(path[i]).data);
+		if (i > 0)
+		    times.add(dijkstraGraph.getEdgeById(path[i - 1], path[i]));
+	    }
+	    return new Route(locations, times);
 	}
 	
-	for (int i = 0; i < path.size() - 1; i++) {
-	    String from = path.get(i);
-	    String to = path.get(i + 1);
+	locations.addAll(graph.shortestPathData(startLocation, endLocation));
+	for (int i = 0; i < locations.size() - 1; i++) {
 	    try {
-		times.add(graph.getEdge(from, to)); // Get the edge weight between nodes
+		times.add(graph.getEdge(locations.get(i), locations.get(i + 1))); // Get the edge weight between nodes
 	    } catch (NoSuchElementException e) {
-		return new ArrayList<>(); // Return empty if any edge is missing
+		return new Route(locations, new ArrayList<>()); // Return no times if any edge is missing
 	    }
 	}
-	return times;
+	return new Route(locations, times);
     }
     
     /**
@@ -139,6 +359,10 @@ public class Backend implements BackendInterface {
      */
     @Override
     public String getClosestDestinationFromAll(List<String> startLocations) throws NoSuchElementException {
+	// Grow one search from each start rather than searching per node
+	if (meetingPoint != null)
+	    return meetingPoint.find(startLocations).getDestination();
+	
 	double minTime = Double.MAX_VALUE; // Initialize the minimum total travel time to the maximum possible value
 	String closestDestination = null; // Variable to store the closest destination node
 	
@@ -175,4 +399,28 @@ public class Backend implements BackendInterface {
 	
 	return closestDestination; // Return the node with the shortest total travel time from all start locations
     }
+
+    /**
+     * Finds the destination that best serves multiple start locations by the
+     * given objective, such as the fairest meeting point (the least travel
+     * time from the farthest start), optionally choosing only among some
+     * candidate destinations.
+     *
+     * @param startLocations the list of locations to minimize travel time from
+     * @param weights        the weight of each start location's travel time,
+     *                       or null to weigh each the same
+     * @param objective      how the weighted travel times combine
+     * @param candidates     the destinations to choose from, or null for all
+     * @return the best destination
+     * @throws NoSuchElementException if no candidate is reachable from all start
+     *                                locations
+     * @throws UnsupportedOperationException if the graph is not a DijkstraGraph
+     *                                       or FrozenGraph
+     */
+    public String getClosestDestinationFromAll(List<String> startLocations, double[] weights,
+	    MeetingPoint.Objective objective, Collection<String> candidates) throws NoSuchElementException {
+	if (meetingPoint == null)
+	    throw new UnsupportedOperationException("This operation needs a DijkstraGraph or FrozenGraph");
+	return meetingPoint.find(startLocations, weights, objective, candidates).getDestination();
+    }
 }
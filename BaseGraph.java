@@ -1,6 +1,9 @@
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
 
 /**
  * This BaseGraph class contains stores a set of nodes, along with a set of
@@ -10,11 +13,13 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
 
     // Each node contains unique data along with two lists of directed edges
     protected class Node {
+        public final int id; // dense id, shared by every node with equal data
         public NodeType data;
         public List<Edge> edgesLeaving = new LinkedList<>();
         public List<Edge> edgesEntering = new LinkedList<>();
 
         public Node(NodeType data) {
+            this.id = nodeIds.intern(data);
             this.data = data;
         }
     }
@@ -24,7 +29,9 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
 
     // Each edge contains data/weight, and two nodes that it connects
     protected class Edge {
+        public final int id = edgeIdBound++; // dense id, never reused
         public EdgeType data; // the weight or cost of this edge
+        public TravelTimeProfile profile; // time-dependent travel times, or null
         public Node predecessor;
         public Node successor;
 
@@ -38,6 +45,64 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     protected int edgeCount = 0;
     // Edges can be retrieved through the edge lists in either connected node
 
+    // Nodes and edges get dense ids, so per-query state (such as RouteFilter
+    // masks) can be kept in arrays and bitsets indexed by id rather than in
+    // maps keyed by node or edge objects. Node ids come from interning the
+    // node's data, so a node removed and inserted again keeps its id; each
+    // new edge gets the next edge id.
+    protected NodeDictionary<NodeType> nodeIds = new NodeDictionary<>();
+    protected int nodeIdBound = 0;
+    protected int edgeIdBound = 0;
+    // Each node by its id, or null while no node has that id
+    protected List<Node> nodesById = new ArrayList<>();
+
+    // Every edge, keyed by edgeKey(predecessor id, successor id), so that
+    // finding the edge between two nodes does not scan either's edge list
+    protected LongObjectMap<Edge> edgeIndex = new LongObjectMap<>();
+
+    // Numeric attributes of each edge beyond its weight, by edge id
+    protected EdgeAttributes edgeAttributes = new EdgeAttributes();
+
+    /**
+     * Notified after every change to the graph's edges, so that structures
+     * derived from the graph (such as cached shortest path trees) can be
+     * repaired rather than rebuilt from scratch.
+     */
+    protected interface EdgeListener<N, E extends Number> {
+        // edge was newly inserted into the graph
+        void edgeInserted(BaseGraph<N, E>.Edge edge);
+
+        // the weight of edge was changed in place from oldWeight
+        void edgeWeightChanged(BaseGraph<N, E>.Edge edge, double oldWeight);
+
+        // edge was removed from the edge lists of both of its nodes
+        void edgeRemoved(BaseGraph<N, E>.Edge edge);
+
+        // node and all of its adjacent edges were removed from the graph
+        void nodeRemoved(BaseGraph<N, E>.Node node);
+    }
+
+    protected List<EdgeListener<NodeType, EdgeType>> edgeListeners = new LinkedList<>();
+
+    /**
+     * Registers a listener to be notified after every edge insertion, weight
+     * change, edge removal and node removal.
+     *
+     * @param listener the listener to notify
+     */
+    protected void addEdgeListener(EdgeListener<NodeType, EdgeType> listener) {
+        edgeListeners.add(listener);
+    }
+
+    /**
+     * Stops notifying a previously registered listener.
+     *
+     * @param listener the listener to remove
+     */
+    protected void removeEdgeListener(EdgeListener<NodeType, EdgeType> listener) {
+        edgeListeners.remove(listener);
+    }
+
     /**
      * Constructor for BaseGraph that provides the map the graph uses.
      * 
@@ -59,7 +124,12 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     public boolean insertNode(NodeType data) {
         if (nodes.containsKey(data))
             return false; // throws NPE when data's null
-        nodes.put(data, new Node(data));
+        Node node = new Node(data);
+        nodes.put(data, node);
+        while (nodesById.size() <= node.id)
+            nodesById.add(null);
+        nodesById.set(node.id, node);
+        nodeIdBound = nodeIds.size();
         return true;
     }
 
@@ -77,12 +147,21 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         if (!nodes.containsKey(data))
             return false; // throws NPE when data==null
         Node oldNode = nodes.remove(data);
+        nodesById.set(oldNode.id, null);
         // remove all edges entering neighboring nodes from this one
-        for (Edge edge : oldNode.edgesLeaving)
+        for (Edge edge : oldNode.edgesLeaving) {
             edge.successor.edgesEntering.remove(edge);
+            edgeIndex.remove(LongObjectMap.edgeKey(oldNode.id, edge.successor.id));
+            edgeAttributes.clear(edge.id);
+        }
         // remove all edges leaving neighboring nodes toward this one
-        for (Edge edge : oldNode.edgesEntering)
+        for (Edge edge : oldNode.edgesEntering) {
             edge.predecessor.edgesLeaving.remove(edge);
+            edgeIndex.remove(LongObjectMap.edgeKey(edge.predecessor.id, oldNode.id));
+            edgeAttributes.clear(edge.id);
+        }
+        for (EdgeListener<NodeType, EdgeType> listener : edgeListeners)
+            listener.nodeRemoved(oldNode);
         return true;
     }
 
@@ -98,7 +177,9 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     }
 
     /**
-     * Retrieves a list of all node data from this graph.
+     * Retrieves a list of all node data from this graph. With a HashtableMap
+     * the list is a read-only snapshot shared until nodes are inserted or
+     * removed, so it is safe to remove nodes while looping over it.
      *
      * @return list of all node data
      */
@@ -106,6 +187,29 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         return nodes.getKeys();
     }
 
+    /**
+     * Returns a read-only iterator over the node data of this graph that
+     * does not copy it. Nodes must not be inserted or removed while it is in
+     * use.
+     *
+     * @return an iterator over all node data
+     */
+    public Iterator<NodeType> nodeIterator() {
+        return nodes.keyIterator();
+    }
+
+    /**
+     * Returns a spliterator over the node data of this graph that does not
+     * copy it, e.g. for StreamSupport.stream(graph.nodeSpliterator(), true)
+     * to run a per-node computation in parallel. Nodes must not be inserted
+     * or removed while it is in use.
+     *
+     * @return a spliterator over all node data
+     */
+    public Spliterator<NodeType> nodeSpliterator() {
+        return nodes.keySpliterator();
+    }
+
     /**
      * Return the number of nodes in the graph
      * 
@@ -132,17 +236,30 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         Node succNode = nodes.get(succ);
         if (predNode == null || succNode == null)
             return false;
-        try {
+        long key = LongObjectMap.edgeKey(predNode.id, succNode.id);
+        Edge changedEdge = edgeIndex.getOrDefault(key, null);
+        double oldWeight = 0;
+        boolean inserted = false;
+        if (changedEdge != null) {
             // when an edge alread exists within the graph, update its weight
-            Edge existingEdge = getEdgeHelper(pred, succ);
-            existingEdge.data = weight;
-        } catch (NoSuchElementException e) {
+            oldWeight = changedEdge.data.doubleValue();
+            changedEdge.data = weight;
+        } else {
             // otherwise create a new edges
-            Edge newEdge = new Edge(weight, predNode, succNode);
+            changedEdge = new Edge(weight, predNode, succNode);
+            inserted = true;
             this.edgeCount++;
             // and insert it into each of its adjacent nodes' respective lists
-            predNode.edgesLeaving.add(newEdge);
-            succNode.edgesEntering.add(newEdge);
+            predNode.edgesLeaving.add(changedEdge);
+            succNode.edgesEntering.add(changedEdge);
+            edgeIndex.put(key, changedEdge);
+        }
+        // let listeners repair anything derived from the old edge data
+        for (EdgeListener<NodeType, EdgeType> listener : edgeListeners) {
+            if (inserted)
+                listener.edgeInserted(changedEdge);
+            else
+                listener.edgeWeightChanged(changedEdge, oldWeight);
         }
         return true;
     }
@@ -156,19 +273,24 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      *         false if such an edge is not found in the graph
      */
     public boolean removeEdge(NodeType pred, NodeType succ) {
+        Edge oldEdge;
         try {
             // when an edge exists
-            Edge oldEdge = getEdgeHelper(pred, succ);
-            // remove it from the edge lists of each adjacent node
-            oldEdge.predecessor.edgesLeaving.remove(oldEdge);
-            oldEdge.successor.edgesEntering.remove(oldEdge);
-            // and decrement the edge count before removing
-            this.edgeCount--;
-            return true;
+            oldEdge = getEdgeHelper(pred, succ);
         } catch (NoSuchElementException e) {
             // when no such edge exists, return false instead
             return false;
         }
+        // remove it from the edge lists of each adjacent node
+        oldEdge.predecessor.edgesLeaving.remove(oldEdge);
+        oldEdge.successor.edgesEntering.remove(oldEdge);
+        edgeIndex.remove(LongObjectMap.edgeKey(oldEdge.predecessor.id, oldEdge.successor.id));
+        edgeAttributes.clear(oldEdge.id);
+        // and decrement the edge count before removing
+        this.edgeCount--;
+        for (EdgeListener<NodeType, EdgeType> listener : edgeListeners)
+            listener.edgeRemoved(oldEdge);
+        return true;
     }
 
     /**
@@ -202,16 +324,127 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
 
     protected Edge getEdgeHelper(NodeType pred, NodeType succ) {
         Node predNode = nodes.get(pred);
-        // search for edge through the predecessor's list of leaving edges
-        for (Edge edge : predNode.edgesLeaving)
-            // compare succ to the data in each leaving edge's successor
-            if (edge.successor.data.equals(succ))
+        // look the edge up by its nodes' ids in the edge index
+        if (nodes.containsKey(succ)) {
+            Edge edge = edgeIndex.getOrDefault(LongObjectMap.edgeKey(predNode.id, nodes.get(succ).id), null);
+            if (edge != null)
                 return edge;
+        }
         // when no such edge can be found, throw NSE
         throw new NoSuchElementException("No edge from " + pred.toString() + " to " +
                 succ.toString());
     }
 
+    /**
+     * Returns the dense int id of the node containing data. Ids stay the same
+     * while the graph changes, and are small enough to index arrays by.
+     *
+     * @param data the data item contained in the node
+     * @return the id of that node
+     * @throws NoSuchElementException if no node contains data
+     */
+    public int getNodeId(NodeType data) {
+        int id = nodeIds.idOf(data);
+        if (id < 0 || nodesById.get(id) == null)
+            throw new NoSuchElementException("Node not in graph: " + data);
+        return id;
+    }
+
+    /**
+     * Returns the data contained in the node with an id.
+     *
+     * @param id the id of the node
+     * @return the node's data
+     * @throws NoSuchElementException if no node has that id
+     */
+    public NodeType getNodeData(int id) {
+        return nodeById(id).data;
+    }
+
+    /**
+     * Builds a minimal perfect hash over the data of every node inserted so
+     * far, which speeds up getNodeId. Call it once the graph is loaded;
+     * inserting a node with new data undoes it.
+     */
+    public void freezeNodeIds() {
+        nodeIds.freeze();
+    }
+
+    /**
+     * Check if an edge connects the nodes with the provided ids.
+     *
+     * @param predId the id of the source node for the edge
+     * @param succId the id of the target node for the edge
+     * @return true if the edge is found in the graph, or false otherwise
+     */
+    public boolean containsEdgeById(int predId, int succId) {
+        try {
+            getEdgeHelper(predId, succId);
+            return true;
+        } catch (NoSuchElementException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Return the data associated with the edge between the nodes with the
+     * provided ids.
+     *
+     * @param predId the id of the source node for the edge
+     * @param succId the id of the target node for the edge
+     * @return the non-negative data from the edge between those nodes
+     * @throws NoSuchElementException if either node or the edge between them
+     *                                are not found within this graph
+     */
+    public EdgeType getEdgeById(int predId, int succId) {
+        return getEdgeHelper(predId, succId).data;
+    }
+
+    protected Node nodeById(int id) {
+        Node node = id >= 0 && id < nodesById.size() ? nodesById.get(id) : null;
+        if (node == null)
+            throw new NoSuchElementException("No node with id " + id);
+        return node;
+    }
+
+    protected Edge getEdgeHelper(int predId, int succId) {
+        Edge edge = edgeIndex.getOrDefault(LongObjectMap.edgeKey(predId, succId), null);
+        if (edge != null)
+            return edge;
+        throw new NoSuchElementException("No edge from node " + predId + " to node " + succId);
+    }
+
+    /**
+     * Stores a numeric attribute, such as distance or an indoor flag, on an
+     * existing edge. The attribute stays with the edge while its weight is
+     * updated, and is dropped when the edge (or either of its nodes) is
+     * removed.
+     *
+     * @param pred  the data item contained in the source node for the edge
+     * @param succ  the data item contained in the target node for the edge
+     * @param name  the attribute name
+     * @param value the attribute value
+     * @throws NoSuchElementException if either node or the edge between them
+     *                                are not found within this graph
+     */
+    public void setEdgeAttribute(NodeType pred, NodeType succ, String name, double value) {
+        edgeAttributes.set(getEdgeHelper(pred, succ).id, name, value);
+    }
+
+    /**
+     * Returns a numeric attribute of an edge.
+     *
+     * @param pred the data item contained in the source node for the edge
+     * @param succ the data item contained in the target node for the edge
+     * @param name the attribute name
+     * @return the attribute value, or 0 if the edge does not have it
+     * @throws NoSuchElementException if either node or the edge between them
+     *                                are not found within this graph
+     */
+    public double getEdgeAttribute(NodeType pred, NodeType succ, String name) {
+        return edgeAttributes.get(getEdgeHelper(pred, succ).id, name);
+    }
+
     /**
      * Return the number of edges in the graph.
      * 
@@ -0,0 +1,796 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Micro-benchmarks for the routing code, run from the command line:
+ *
+ *   java Benchmarks [name ...]
+ *
+ * With no arguments every benchmark runs. Each benchmark warms up before it
+ * is timed and prints one line per configuration, so results from different
+ * commits can be compared directly.
+ */
+public class Benchmarks {
+
+    private static final String CAMPUS_FILE = "campus.dot";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        List<String> names = List.of(args);
+        if (names.isEmpty() || names.contains("maps"))
+            benchmarkMaps();
+        if (names.isEmpty() || names.contains("concurrent"))
+            benchmarkConcurrentMaps();
+        if (names.isEmpty() || names.contains("load"))
+            benchmarkLoad();
+        if (names.isEmpty() || names.contains("tiles"))
+            benchmarkTiledGraph();
+        if (names.isEmpty() || names.contains("offheap"))
+            benchmarkOffHeapGraph();
+        if (names.isEmpty() || names.contains("compressed"))
+            benchmarkCompressedGraph();
+        if (names.isEmpty() || names.contains("reorder"))
+            benchmarkReordering();
+        if (names.isEmpty() || names.contains("labels"))
+            benchmarkHubLabels();
+        if (names.isEmpty() || names.contains("meeting"))
+            benchmarkMeetingPoint();
+        if (names.isEmpty() || names.contains("deltastep"))
+            benchmarkDeltaStepping();
+        if (names.isEmpty() || names.contains("coalesce"))
+            benchmarkCoalescing();
+        if (names.isEmpty() || names.contains("edges"))
+            benchmarkEdgeLookup();
+        if (names.isEmpty() || names.contains("dijkstra"))
+            benchmarkDijkstra();
+        if (names.isEmpty() || names.contains("kshortest"))
+            benchmarkKShortestPaths();
+        if (names.isEmpty() || names.contains("pareto"))
+            benchmarkParetoPaths();
+    }
+
+    /**
+     * Compares the primitive maps with HashtableMap holding the same int
+     * keys: heap bytes per entry once filled, and time per put and per get.
+     */
+    static void benchmarkMaps() {
+        System.out.println("== maps with 1,000,000 int keys ==");
+        int n = 1_000_000;
+        int[] keys = new int[n];
+        Random random = new Random(5);
+        for (int i = 0; i < n; i++)
+            keys[i] = random.nextInt();
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            boolean print = round == 1;
+            timeMap("HashtableMap<Integer,Integer>", print, keys, () -> new HashtableMap<Integer, Integer>(),
+                    (map, key) -> {
+                        if (!map.containsKey(key))
+                            map.put(key, key);
+                    }, (map, key) -> map.get(key));
+            timeMap("IntIntMap", print, keys, IntIntMap::new, (map, key) -> map.set(key, key),
+                    (map, key) -> map.get(key));
+            timeMap("HashtableMap<Long,Double>", print, keys, () -> new HashtableMap<Long, Double>(),
+                    (map, key) -> {
+                        if (!map.containsKey((long) key))
+                            map.put((long) key, 1.0);
+                    }, (map, key) -> (int) (double) map.get((long) key));
+            timeMap("LongDoubleMap", print, keys, LongDoubleMap::new, (map, key) -> map.set(key, 1.0),
+                    (map, key) -> (int) map.get(key));
+            timeMap("IntObjectMap<String>", print, keys, () -> new IntObjectMap<String>(),
+                    (map, key) -> map.set(key, ""), (map, key) -> map.get(key).length());
+        }
+    }
+
+    /**
+     * Measures the throughput of a read-heavy mix (90% get, 5% put, 5%
+     * remove) over a shared map at 1 to 64 threads, for ConcurrentHashtableMap
+     * and for a HashtableMap behind a single lock.
+     */
+    static void benchmarkConcurrentMaps() throws InterruptedException {
+        System.out.println("== shared map, 90% get / 5% put / 5% remove ==");
+        int keyRange = 1 << 16;
+        int opsPerThread = 400_000;
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            for (int threads = 1; threads <= 64; threads *= 2) {
+                ConcurrentHashtableMap<Integer, Integer> concurrent = new ConcurrentHashtableMap<>();
+                HashtableMap<Integer, Integer> locked = new HashtableMap<>();
+                for (int key = 0; key < keyRange; key += 2) {
+                    concurrent.put(key, key);
+                    locked.put(key, key);
+                }
+                double concurrentRate = mapThroughput(concurrent, threads, opsPerThread, keyRange, false);
+                double lockedRate = mapThroughput(locked, threads, opsPerThread, keyRange, true);
+                if (round == 1)
+                    System.out.printf("%2d threads  ConcurrentHashtableMap %8.2f Mops/s  "
+                            + "locked HashtableMap %8.2f Mops/s%n", threads, concurrentRate, lockedRate);
+            }
+        }
+    }
+
+    // runs the mix on threads threads at once, holding the map's monitor
+    // around every operation if lock is true, and returns million ops/second
+    private static double mapThroughput(MapADT<Integer, Integer> map, int threads, int opsPerThread,
+            int keyRange, boolean lock) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        java.util.concurrent.CountDownLatch ready = new java.util.concurrent.CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            long seed = t;
+            workers[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    ready.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < opsPerThread; i++) {
+                    int key = random.nextInt(keyRange);
+                    int action = random.nextInt(20);
+                    if (lock) {
+                        synchronized (map) {
+                            mixedOperation(map, key, action);
+                        }
+                    } else {
+                        mixedOperation(map, key, action);
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        long start = System.nanoTime();
+        ready.countDown();
+        for (Thread worker : workers)
+            worker.join();
+        return (double) threads * opsPerThread / ((System.nanoTime() - start) / 1e3);
+    }
+
+    private static void mixedOperation(MapADT<Integer, Integer> map, int key, int action) {
+        try {
+            if (action == 0)
+                map.put(key, key);
+            else if (action == 1)
+                map.remove(key);
+            else if (map.containsKey(key))
+                map.get(key);
+        } catch (IllegalArgumentException | NoSuchElementException e) {
+            // another thread got there first
+        }
+    }
+
+    private interface MapPut<M> {
+        void put(M map, int key);
+    }
+
+    private interface MapGet<M> {
+        int get(M map, int key);
+    }
+
+    private static <M> void timeMap(String label, boolean print, int[] keys,
+            java.util.function.Supplier<M> create, MapPut<M> put, MapGet<M> get) {
+        long before = usedHeap();
+        long start = System.nanoTime();
+        M map = create.get();
+        for (int key : keys)
+            put.put(map, key);
+        long filled = System.nanoTime();
+        long checksum = 0;
+        for (int key : keys)
+            checksum += get.get(map, key);
+        long looked = System.nanoTime();
+        long bytes = usedHeap() - before;
+        if (print)
+            System.out.printf("%-30s %6.1f bytes/entry  put %6.1f ns  get %6.1f ns  (checksum %d)%n",
+                    label, (double) bytes / keys.length, (filled - start) / (double) keys.length,
+                    (looked - filled) / (double) keys.length, checksum);
+        if (map.hashCode() == 0)
+            System.out.println(); // keep the map reachable until it is measured
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Times loading a synthetic 400x400 grid dot file (about 640,000 edge
+     * lines) with Backend.loadGraphData and with ParallelDotLoader at 1 to
+     * 8 threads.
+     */
+    static void benchmarkLoad() throws IOException {
+        System.out.println("== loading a 400x400 grid dot file ==");
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("grid", ".dot");
+        try {
+            writeGridDot(400, 400, new Random(4), file);
+            for (int round = 0; round < 2; round++) { // the first round warms up
+                long start = System.nanoTime();
+                DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+                new Backend(graph).loadGraphData(file.toString());
+                long elapsed = System.nanoTime() - start;
+                if (round == 1)
+                    System.out.printf("%-24s %8.1f ms  (%d edges)%n", "Backend.loadGraphData",
+                            elapsed / 1e6, graph.getEdgeCount());
+                for (int threads = 1; threads <= 8; threads *= 2) {
+                    start = System.nanoTime();
+                    CsrGraph csr = ParallelDotLoader.load(file.toString(), threads);
+                    elapsed = System.nanoTime() - start;
+                    if (round == 1)
+                        System.out.printf("ParallelDotLoader x%-5d %8.1f ms  (%d edges)%n", threads,
+                                elapsed / 1e6, csr.getEdgeCount());
+                }
+            }
+        } finally {
+            java.nio.file.Files.delete(file);
+        }
+    }
+
+    /**
+     * Times shortest path queries on a 200x200 grid held as a CsrGraph and
+     * as a TiledGraph of 1,000-node tiles with different resident limits,
+     * and counts the tiles read in per query.
+     */
+    static void benchmarkTiledGraph() throws IOException {
+        System.out.println("== tiled graph, 200x200 grid in 1000-node tiles ==");
+        java.nio.file.Path dot = java.nio.file.Files.createTempFile("grid", ".dot");
+        java.nio.file.Path tiles = java.nio.file.Files.createTempFile("grid", ".tiles");
+        try {
+            writeGridDot(200, 200, new Random(3), dot);
+            CsrGraph csr = ParallelDotLoader.load(dot.toString());
+            TiledGraph.write(csr, tiles.toString(), 1000);
+            int queries = 200;
+            Random random = new Random(7);
+            int[][] pairs = new int[queries][];
+            for (int i = 0; i < queries; i++)
+                pairs[i] = new int[] { random.nextInt(csr.getNodeCount()), random.nextInt(csr.getNodeCount()) };
+            timeFrozenGraph("CsrGraph", csr, pairs);
+            for (int resident : new int[] { 4, 16, 40 }) {
+                try (TiledGraph graph = new TiledGraph(tiles.toString(), resident)) {
+                    timeFrozenGraph("TiledGraph resident=" + resident, graph, pairs);
+                    System.out.printf("%-24s %8.1f tile faults/query%n", "",
+                            (double) graph.getTileFaults() / (2 * queries));
+                }
+            }
+        } finally {
+            java.nio.file.Files.delete(dot);
+            java.nio.file.Files.delete(tiles);
+        }
+    }
+
+    /**
+     * Compares a 300x300 grid held as a DijkstraGraph, a CsrGraph and an
+     * OffHeapGraph: heap bytes per edge, the time of a full collection with
+     * the graph live, and time per shortest path query.
+     */
+    static void benchmarkOffHeapGraph() {
+        System.out.println("== 300x300 grid on and off the heap ==");
+        // each figure counts only the structure named, names included
+        long baseline = usedHeap();
+        DijkstraGraph<String, Double> graph = gridGraph(300, 300, new Random(3));
+        int edges = graph.getEdgeCount();
+        System.out.printf("%-16s %7.1f heap bytes/edge  full GC %6.1f ms%n", "DijkstraGraph",
+                (double) (usedHeap() - baseline) / edges, fullGcMillis());
+        CsrGraph csr = CsrGraph.copyOf(graph);
+        graph = null;
+        System.out.printf("%-16s %7.1f heap bytes/edge  full GC %6.1f ms%n", "CsrGraph",
+                (double) (usedHeap() - baseline) / edges, fullGcMillis());
+        OffHeapGraph offHeap = OffHeapGraph.copyOf(csr, false);
+        csr = null;
+        System.out.printf("%-16s %7.1f heap bytes/edge  full GC %6.1f ms  (%.1f off-heap bytes/edge)%n",
+                "OffHeapGraph", (double) (usedHeap() - baseline) / edges, fullGcMillis(),
+                (double) offHeap.getOffHeapBytes() / edges);
+        csr = CsrGraph.copyOf(gridGraph(300, 300, new Random(3)));
+
+        int queries = 100;
+        Random random = new Random(7);
+        int[][] pairs = new int[queries][];
+        for (int i = 0; i < queries; i++)
+            pairs[i] = new int[] { random.nextInt(csr.getNodeCount()), random.nextInt(csr.getNodeCount()) };
+        timeFrozenGraph("CsrGraph", csr, pairs);
+        timeFrozenGraph("OffHeapGraph", offHeap, pairs);
+    }
+
+    /**
+     * Compares CsrGraph with CompressedGraph on the campus graph and a
+     * 300x300 grid: bytes per edge of the edge arrays or encoding, and time
+     * per shortest path query.
+     */
+    static void benchmarkCompressedGraph() throws IOException {
+        System.out.println("== compressed graphs ==");
+        compareCompressed("campus", ParallelDotLoader.load(CAMPUS_FILE));
+        compareCompressed("300x300 grid", CsrGraph.copyOf(gridGraph(300, 300, new Random(3))));
+    }
+
+    private static void compareCompressed(String label, CsrGraph csr) {
+        CompressedGraph compressed = CompressedGraph.copyOf(csr);
+        int edges = csr.getEdgeCount();
+        long csrBytes = (csr.getNodeCount() + 1L) * Integer.BYTES + (long) edges * (Integer.BYTES + Double.BYTES);
+        System.out.printf("%s: CsrGraph %.1f bytes/edge, CompressedGraph %.1f bytes/edge, max weight error %.2g%n",
+                label, (double) csrBytes / edges, (double) compressed.getEncodedBytes() / edges,
+                compressed.getMaxWeightError());
+        int queries = 200;
+        Random random = new Random(7);
+        int[][] pairs = new int[queries][];
+        for (int i = 0; i < queries; i++) {
+            // campus has nodes that cannot reach each other, so draw until connected
+            do
+                pairs[i] = new int[] { random.nextInt(csr.getNodeCount()), random.nextInt(csr.getNodeCount()) };
+            while (!connected(csr, pairs[i]));
+        }
+        timeFrozenGraph("CsrGraph", csr, pairs);
+        timeFrozenGraph("CompressedGraph", compressed, renumberPairs(csr, compressed, pairs));
+    }
+
+    private static boolean connected(FrozenGraph graph, int[] pair) {
+        try {
+            graph.shortestPathCostById(pair[0], pair[1]);
+            return true;
+        } catch (NoSuchElementException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Times shortest path queries on the same graph under different node
+     * orders: campus in file order, and a 600x600 grid with its ids shuffled
+     * (as insertion order can leave them), each then renumbered breadth-first
+     * and in reverse Cuthill-McKee order.
+     */
+    static void benchmarkReordering() throws IOException {
+        System.out.println("== node orders ==");
+        compareOrders("campus, file order", ParallelDotLoader.load(CAMPUS_FILE), 400);
+        CsrGraph grid = CsrGraph.copyOf(gridGraph(600, 600, new Random(3)));
+        int[] shuffle = new int[grid.getNodeCount()];
+        for (int i = 0; i < shuffle.length; i++)
+            shuffle[i] = i;
+        Random random = new Random(11);
+        for (int i = shuffle.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = shuffle[i];
+            shuffle[i] = shuffle[j];
+            shuffle[j] = swap;
+        }
+        compareOrders("600x600 grid, shuffled", grid.renumber(shuffle), 20);
+    }
+
+    private static void compareOrders(String label, CsrGraph graph, int queries) {
+        CsrGraph breadthFirst = graph.renumber(NodeOrder.breadthFirst(graph));
+        CsrGraph reverseCuthillMcKee = graph.renumber(NodeOrder.reverseCuthillMcKee(graph));
+        Random random = new Random(7);
+        int[][] pairs = new int[queries][];
+        for (int i = 0; i < queries; i++) {
+            do
+                pairs[i] = new int[] { random.nextInt(graph.getNodeCount()), random.nextInt(graph.getNodeCount()) };
+            while (!connected(graph, pairs[i]));
+        }
+        timeFrozenGraph(label, graph, pairs);
+        timeFrozenGraph("  breadth-first", breadthFirst, renumberPairs(graph, breadthFirst, pairs));
+        timeFrozenGraph("  reverse Cuthill-McKee", reverseCuthillMcKee, renumberPairs(graph, reverseCuthillMcKee, pairs));
+    }
+
+    // the same node pairs, by their ids in another numbering of the graph
+    private static int[][] renumberPairs(FrozenGraph from, FrozenGraph to, int[][] pairs) {
+        int[][] renumbered = new int[pairs.length][];
+        for (int i = 0; i < pairs.length; i++)
+            renumbered[i] = new int[] { to.getNodeId(from.getNodeName(pairs[i][0])),
+                    to.getNodeId(from.getNodeName(pairs[i][1])) };
+        return renumbered;
+    }
+
+    /**
+     * Builds hub labels for campus and a 100x100 grid with one thread and
+     * with every core, and compares label lookups with Dijkstra searches.
+     */
+    static void benchmarkHubLabels() throws IOException {
+        System.out.println("== hub labels ==");
+        compareHubLabels("campus", ParallelDotLoader.load(CAMPUS_FILE));
+        CsrGraph grid = CsrGraph.copyOf(gridGraph(100, 100, new Random(3)));
+        compareHubLabels("100x100 grid", grid.renumber(NodeOrder.reverseCuthillMcKee(grid)));
+    }
+
+    private static void compareHubLabels(String label, CsrGraph graph) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long start = System.nanoTime();
+        HubLabels.build(graph, 1);
+        double sequential = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        HubLabels labels = HubLabels.build(graph, threads);
+        double parallel = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%s: built in %.0f ms (1 thread), %.0f ms (%d threads); %.1f hubs/node%n",
+                label, sequential, parallel, threads, labels.getAverageLabelSize());
+        int queries = 400;
+        Random random = new Random(7);
+        int[][] pairs = new int[queries][];
+        for (int i = 0; i < queries; i++) {
+            do
+                pairs[i] = new int[] { random.nextInt(graph.getNodeCount()), random.nextInt(graph.getNodeCount()) };
+            while (!connected(graph, pairs[i]));
+        }
+        timeFrozenGraph("  Dijkstra", graph, pairs);
+        graph.setHubLabels(labels);
+        timeFrozenGraph("  hub labels", graph, pairs);
+        graph.setHubLabels(null);
+    }
+
+    /**
+     * Times finding the best meeting point for three starts: on campus by
+     * one search per start and node, as Backend did, and with MeetingPoint;
+     * and on a 300x300 grid with MeetingPoint over every node and over 200
+     * candidates, counting the nodes settled against three full searches.
+     */
+    static void benchmarkMeetingPoint() throws IOException {
+        System.out.println("== meeting points, 3 starts ==");
+        CsrGraph campus = ParallelDotLoader.load(CAMPUS_FILE);
+        List<String> nodes = campus.getAllNodes();
+        Random random = new Random(7);
+        int rounds = 20;
+        List<List<String>> startSets = new ArrayList<>();
+        for (int r = 0; r < rounds; r++)
+            startSets.add(List.of(nodes.get(random.nextInt(nodes.size())), nodes.get(random.nextInt(nodes.size())),
+                    nodes.get(random.nextInt(nodes.size()))));
+        long start = System.nanoTime();
+        for (List<String> starts : startSets) {
+            double best = Double.MAX_VALUE;
+            for (String node : nodes) {
+                double total = 0;
+                try {
+                    for (String from : starts)
+                        total += campus.shortestPathCost(from, node);
+                } catch (NoSuchElementException e) {
+                    continue;
+                }
+                best = Math.min(best, total);
+            }
+        }
+        System.out.printf("%-32s %9.3f ms/query%n", "campus, search per node",
+                (System.nanoTime() - start) / 1e6 / rounds);
+        MeetingPoint campusPoints = new MeetingPoint(campus);
+        timeMeetingPoint("campus, MeetingPoint", campusPoints, startSets, null, campus.getNodeCount());
+
+        CsrGraph grid = CsrGraph.copyOf(gridGraph(300, 300, new Random(3)));
+        List<String> gridNodes = grid.getAllNodes();
+        startSets.clear();
+        for (int r = 0; r < rounds; r++)
+            startSets.add(List.of(gridNodes.get(random.nextInt(gridNodes.size())),
+                    gridNodes.get(random.nextInt(gridNodes.size())), gridNodes.get(random.nextInt(gridNodes.size()))));
+        List<String> halls = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+            halls.add(gridNodes.get(random.nextInt(gridNodes.size())));
+        MeetingPoint gridPoints = new MeetingPoint(grid);
+        timeMeetingPoint("grid, every node", gridPoints, startSets, null, grid.getNodeCount());
+        timeMeetingPoint("grid, 200 candidates", gridPoints, startSets, halls, grid.getNodeCount());
+    }
+
+    private static void timeMeetingPoint(String label, MeetingPoint meetingPoint, List<List<String>> startSets,
+            List<String> candidates, int nodeCount) {
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            long settled = meetingPoint.getSettledCount();
+            long start = System.nanoTime();
+            for (List<String> starts : startSets) {
+                try {
+                    meetingPoint.find(starts, null, MeetingPoint.Objective.SUM, candidates);
+                } catch (NoSuchElementException e) {
+                    // no candidate reachable from these starts
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            if (round == 1)
+                System.out.printf("%-32s %9.3f ms/query  %5.1f%% of 3 full searches settled%n", label,
+                        elapsed / 1e6 / startSets.size(),
+                        100.0 * (meetingPoint.getSettledCount() - settled) / startSets.size() / (3.0 * nodeCount));
+        }
+    }
+
+    /**
+     * Times computing the cost from one node to every node of a 600x600
+     * grid: a sequential Dijkstra search, then delta-stepping with several
+     * deltas and pool sizes.
+     */
+    static void benchmarkDeltaStepping() {
+        System.out.println("== single-source costs, 600x600 grid ==");
+        CsrGraph grid = CsrGraph.copyOf(gridGraph(600, 600, new Random(3)));
+        grid = grid.renumber(NodeOrder.reverseCuthillMcKee(grid));
+        int[] sources = { 0, grid.getNodeCount() / 2, grid.getNodeCount() - 1 };
+        double checksum = 0;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int source : sources) {
+                SearchArena arena = SearchArena.forCurrentThread();
+                arena.begin(grid.getNodeCount());
+                arena.relax(source, 0, -1);
+                while (!arena.isEmpty()) {
+                    int node = arena.poll();
+                    checksum += arena.getCost(node);
+                    grid.relaxEdges(arena, node, arena.getCost(node));
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-32s %8.1f ms/source  (checksum %.0f)%n", "Dijkstra", best / 1e6 / sources.length,
+                checksum / 3);
+        int cores = Runtime.getRuntime().availableProcessors();
+        int[] poolSizes = cores > 4 ? new int[] { 1, 2, 4, cores } : new int[] { 1, 2, 4 };
+        for (double delta : new double[] { 25, 100, 400 }) {
+            for (int threads : poolSizes) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                DeltaStepping search = new DeltaStepping(grid, delta, pool);
+                checksum = 0;
+                best = Long.MAX_VALUE;
+                for (int round = 0; round < 3; round++) {
+                    long start = System.nanoTime();
+                    for (int source : sources)
+                        for (double cost : search.costsFrom(source))
+                            checksum += cost;
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                pool.shutdown();
+                System.out.printf("%-32s %8.1f ms/source  (checksum %.0f, %d phases)%n",
+                        "delta=" + delta + " threads=" + threads, best / 1e6 / sources.length, checksum / 3,
+                        search.getPhaseCount());
+            }
+        }
+    }
+
+    /**
+     * Sends a burst of identical route queries across a 300x300 grid from
+     * 32 threads at once, straight to the graph and through Backend's
+     * single-flight layer, counting the searches each runs.
+     */
+    static void benchmarkCoalescing() throws InterruptedException {
+        System.out.println("== burst of 256 identical route queries, 32 threads ==");
+        DijkstraGraph<String, Double> graph = gridGraph(300, 300, new Random(3));
+        Backend backend = new Backend(graph);
+        timeBurst("DijkstraGraph", () -> graph.shortestPathData("0,0", "299,299"));
+        timeBurst("Backend, coalesced", () -> backend.findLocationsOnShortestPath("0,0", "299,299"));
+    }
+
+    private static void timeBurst(String label, Runnable query) throws InterruptedException {
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            long searches = Metrics.SEARCHES.get();
+            java.util.concurrent.CountDownLatch start = new java.util.concurrent.CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 32; t++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 8; i++)
+                        query.run();
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Thread thread : threads)
+                thread.join();
+            long elapsed = System.nanoTime() - begin;
+            if (round == 1)
+                System.out.printf("%-24s %8.1f ms for the burst  %4d searches%n", label, elapsed / 1e6,
+                        Metrics.SEARCHES.get() - searches);
+        }
+    }
+
+    // the shortest of three full collections, in milliseconds
+    private static double fullGcMillis() {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            System.gc();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6;
+    }
+
+    private static void timeFrozenGraph(String label, FrozenGraph graph, int[][] pairs) {
+        double checksum = 0;
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            long start = System.nanoTime();
+            for (int[] pair : pairs)
+                checksum += graph.shortestPathCostById(pair[0], pair[1]);
+            long elapsed = System.nanoTime() - start;
+            if (round == 1)
+                System.out.printf("%-24s %8.3f ms/query  (checksum %.0f)%n", label,
+                        elapsed / 1e6 / pairs.length, checksum);
+        }
+    }
+
+    // writes the graph gridGraph would build as a dot file
+    private static void writeGridDot(int rows, int columns, Random random, java.nio.file.Path file)
+            throws IOException {
+        try (java.io.PrintWriter out = new java.io.PrintWriter(java.nio.file.Files.newBufferedWriter(file))) {
+            out.println("digraph grid {");
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < columns; c++) {
+                    if (c + 1 < columns) {
+                        out.printf("\t\"%d,%d\" -> \"%d,%d\" [seconds=%s];%n", r, c, r, c + 1, 10 + 90 * random.nextDouble());
+                        out.printf("\t\"%d,%d\" -> \"%d,%d\" [seconds=%s];%n", r, c + 1, r, c, 10 + 90 * random.nextDouble());
+                    }
+                    if (r + 1 < rows) {
+                        out.printf("\t\"%d,%d\" -> \"%d,%d\" [seconds=%s];%n", r, c, r + 1, c, 10 + 90 * random.nextDouble());
+                        out.printf("\t\"%d,%d\" -> \"%d,%d\" [seconds=%s];%n", r + 1, c, r, c, 10 + 90 * random.nextDouble());
+                    }
+                }
+            }
+            out.println("}");
+        }
+    }
+
+    /**
+     * Times building a graph around a hub node with thousands of edges, and
+     * looking every one of those edges up again with getEdge.
+     */
+    static void benchmarkEdgeLookup() {
+        System.out.println("== edge insert and lookup at a hub ==");
+        for (int degree : new int[] { 1000, 10000 }) {
+            for (int round = 0; round < 2; round++) { // the first round warms up
+                long start = System.nanoTime();
+                DijkstraGraph<Integer, Double> graph = new DijkstraGraph<>();
+                for (int i = 0; i <= degree; i++)
+                    graph.insertNode(i);
+                for (int i = 1; i <= degree; i++)
+                    graph.insertEdge(0, i, (double) i);
+                long built = System.nanoTime();
+                double sum = 0;
+                for (int i = 1; i <= degree; i++)
+                    sum += graph.getEdge(0, i);
+                long looked = System.nanoTime();
+                if (round == 1)
+                    System.out.printf("degree %-6d insert %8.3f us/edge  getEdge %8.3f us/edge  (sum %.0f)%n",
+                            degree, (built - start) / 1e3 / degree, (looked - built) / 1e3 / degree, sum);
+            }
+        }
+    }
+
+    /**
+     * Times single shortest path cost queries between random pairs on the
+     * campus graph and on a 200x200 grid.
+     */
+    static void benchmarkDijkstra() throws IOException {
+        System.out.println("== shortest path cost (Dijkstra) ==");
+        runDijkstra("campus", loadCampusGraph(), 2000);
+        runDijkstra("grid 200x200", gridGraph(200, 200, new Random(3)), 200);
+    }
+
+    private static void runDijkstra(String label, DijkstraGraph<String, Double> graph, int queries) {
+        List<String> nodes = new ArrayList<>(graph.getAllNodes());
+        Random random = new Random(7);
+        String[][] pairs = new String[queries][];
+        for (int i = 0; i < queries; i++)
+            pairs[i] = new String[] { nodes.get(random.nextInt(nodes.size())),
+                    nodes.get(random.nextInt(nodes.size())) };
+        double checksum = 0;
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            long start = System.nanoTime();
+            for (String[] pair : pairs) {
+                try {
+                    checksum += graph.shortestPathCost(pair[0], pair[1]);
+                } catch (NoSuchElementException e) {
+                    // unreachable pair
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            if (round == 1)
+                System.out.printf("%-12s %8.3f ms/query  (checksum %.0f)%n", label,
+                        elapsed / 1e6 / queries, checksum);
+        }
+    }
+
+    /**
+     * Times bicriteria Pareto queries (edge weight and a random distance
+     * attribute) on a grid about the size of the campus graph and on a
+     * larger one.
+     */
+    static void benchmarkParetoPaths() {
+        System.out.println("== Pareto paths (weight, distance) ==");
+        for (int side : new int[] { 12, 40 }) {
+            Random random = new Random(2);
+            DijkstraGraph<String, Double> graph = gridGraph(side, side, random);
+            for (String node : graph.getAllNodes())
+                for (String next : graph.getSuccessors(node))
+                    graph.setEdgeAttribute(node, next, "distance", 10 + 90 * random.nextDouble());
+            MultiCriteriaRouting<String, Double> routing = new MultiCriteriaRouting<>(graph);
+            String start = "0,0";
+            String end = (side - 1) + "," + (side - 1);
+            for (int maxLabels : new int[] { 4, 16, 64 }) {
+                int queries = 20;
+                int routes = 0;
+                for (int i = 0; i < queries; i++) // warm up
+                    routing.paretoPaths(start, end, MultiCriteriaRouting.WEIGHT, "distance", maxLabels);
+                long startTime = System.nanoTime();
+                for (int i = 0; i < queries; i++)
+                    routes += routing.paretoPaths(start, end, MultiCriteriaRouting.WEIGHT, "distance",
+                            maxLabels).size();
+                long elapsed = System.nanoTime() - startTime;
+                System.out.printf("grid %dx%-4d maxLabels=%-3d %8.3f ms/query  %5.1f routes/query%n",
+                        side, side, maxLabels, elapsed / 1e6 / queries, (double) routes / queries);
+            }
+        }
+    }
+
+    /**
+     * Times KShortestPaths at k = 3, 5 and 10 on the campus graph and on a
+     * synthetic grid graph, over the same random start/end pairs for each k.
+     */
+    static void benchmarkKShortestPaths() throws IOException {
+        System.out.println("== k shortest paths (Yen) ==");
+        runKShortestPaths("campus", loadCampusGraph(), 200);
+        runKShortestPaths("grid 40x40", gridGraph(40, 40, new Random(1)), 50);
+    }
+
+    private static void runKShortestPaths(String label, DijkstraGraph<String, Double> graph,
+            int queries) {
+        List<String> nodes = new ArrayList<>(graph.getAllNodes());
+        Random random = new Random(42);
+        List<String[]> pairs = new ArrayList<>();
+        while (pairs.size() < queries) {
+            String start = nodes.get(random.nextInt(nodes.size()));
+            String end = nodes.get(random.nextInt(nodes.size()));
+            try {
+                graph.shortestPathCost(start, end);
+                if (!start.equals(end))
+                    pairs.add(new String[] { start, end });
+            } catch (NoSuchElementException e) {
+                // unreachable pair, pick another
+            }
+        }
+        KShortestPaths<String, Double> paths = new KShortestPaths<>(graph);
+        for (int k : new int[] { 3, 5, 10 }) {
+            for (String[] pair : pairs) // warm up
+                paths.computeShortestPaths(pair[0], pair[1], k);
+            long found = 0;
+            long start = System.nanoTime();
+            for (String[] pair : pairs)
+                found += paths.computeShortestPaths(pair[0], pair[1], k).size();
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%-12s k=%-3d %8.3f ms/query  %5.2f paths/query%n", label, k,
+                    elapsed / 1e6 / pairs.size(), (double) found / pairs.size());
+        }
+    }
+
+    /**
+     * Loads the campus map through the Backend, as the web app does.
+     *
+     * @return the campus graph
+     * @throws IOException if campus.dot cannot be read
+     */
+    static DijkstraGraph<String, Double> loadCampusGraph() throws IOException {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        new Backend(graph).loadGraphData(CAMPUS_FILE);
+        return graph;
+    }
+
+    /**
+     * Builds a rows x columns grid with edges in both directions between
+     * neighboring cells, weighted randomly between 10 and 100 seconds.
+     *
+     * @param rows    number of grid rows
+     * @param columns number of grid columns
+     * @param random  source of edge weights
+     * @return the grid graph, with nodes named "r,c"
+     */
+    static DijkstraGraph<String, Double> gridGraph(int rows, int columns, Random random) {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        for (int r = 0; r < rows; r++)
+            for (int c = 0; c < columns; c++)
+                graph.insertNode(r + "," + c);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                if (c + 1 < columns) {
+                    graph.insertEdge(r + "," + c, r + "," + (c + 1), 10 + 90 * random.nextDouble());
+                    graph.insertEdge(r + "," + (c + 1), r + "," + c, 10 + 90 * random.nextDouble());
+                }
+                if (r + 1 < rows) {
+                    graph.insertEdge(r + "," + c, (r + 1) + "," + c, 10 + 90 * random.nextDouble());
+                    graph.insertEdge((r + 1) + "," + c, r + "," + c, 10 + 90 * random.nextDouble());
+                }
+            }
+        }
+        return graph;
+    }
+}
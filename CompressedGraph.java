@@ -0,0 +1,169 @@
+import java.util.Arrays;
+
+/**
+ * A compact read-only graph for memory-constrained machines such as
+ * kiosks. Nodes are renumbered in breadth-first order so that neighbors get
+ * nearby ids, and each node's edges are packed into one byte array:
+ *
+ *   varint degree, then for each edge (sorted by target):
+ *     varint target gap: the first target as a zigzag difference from the
+ *       node's own id, later targets as the distance past the previous one
+ *     2-byte weight: the edge weight quantized to 16 bits
+ *
+ * Weights are stored as multiples of one step, the largest weight divided
+ * by 65535, so each weight is off by at most half a step
+ * (getMaxWeightError) and a path's cost by at most that much per edge.
+ * Searches decode edges on the fly as they settle each node.
+ */
+public class CompressedGraph extends FrozenGraph {
+
+    private static final int LEVELS = 65535;
+
+    private final int[] offsets; // where each node's edges start in bytes
+    private final byte[] bytes;
+    private final int edgeCount;
+    private final double step;
+
+    private CompressedGraph(CsrGraph graph) {
+        super(graph.names);
+        int n = graph.getNodeCount();
+        edgeCount = graph.getEdgeCount();
+        double largest = 0;
+        for (int edge = 0; edge < edgeCount; edge++)
+            largest = Math.max(largest, graph.edgeWeight(edge));
+        step = largest > 0 ? largest / LEVELS : 1;
+
+        offsets = new int[n + 1];
+        byte[] out = new byte[Math.max(16, edgeCount * 4)];
+        int position = 0;
+        for (int id = 0; id < n; id++) {
+            offsets[id] = position;
+            // room for the degree and the worst case of every edge
+            int degree = graph.endEdge(id) - graph.firstEdge(id);
+            int needed = position + 5 + degree * 7;
+            if (needed > out.length)
+                out = Arrays.copyOf(out, Math.max(needed, out.length * 2));
+            position = writeVarint(out, position, degree);
+            int previous = id;
+            for (int edge = graph.firstEdge(id); edge < graph.endEdge(id); edge++) {
+                int target = graph.edgeTarget(edge);
+                int gap = edge == graph.firstEdge(id)
+                        ? (target - id) << 1 ^ (target - id) >> 31 // zigzag
+                        : target - previous - 1;
+                position = writeVarint(out, position, gap);
+                previous = target;
+                long level = Math.round(graph.edgeWeight(edge) / step);
+                out[position++] = (byte) (level >>> 8);
+                out[position++] = (byte) level;
+            }
+        }
+        offsets[n] = position;
+        bytes = Arrays.copyOf(out, position);
+    }
+
+    /**
+     * Compresses a graph, first renumbering its nodes in breadth-first
+     * order. Node names are unchanged, but node ids are not those of graph.
+     *
+     * @param graph the graph to compress
+     * @return the compressed graph
+     */
+    public static CompressedGraph copyOf(CsrGraph graph) {
+        return new CompressedGraph(graph.renumber(NodeOrder.breadthFirst(graph)));
+    }
+
+    /**
+     * @return the bytes held by the edge encoding and the per-node offsets
+     */
+    public long getEncodedBytes() {
+        return bytes.length + (long) offsets.length * Integer.BYTES;
+    }
+
+    /**
+     * @return the most that any stored edge weight differs from the original
+     */
+    public double getMaxWeightError() {
+        return step / 2;
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    @Override
+    public void forEachEdge(int id, EdgeVisitor visitor) {
+        byte[] bytes = this.bytes;
+        int position = offsets[id];
+        int degree = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = bytes[position++];
+            degree |= (b & 0x7F) << shift;
+            if (b >= 0)
+                break;
+        }
+        int target = id;
+        for (int k = 0; k < degree; k++) {
+            int gap = 0;
+            for (int shift = 0;; shift += 7) {
+                byte b = bytes[position++];
+                gap |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    break;
+            }
+            target = k == 0 ? id + (gap >>> 1 ^ -(gap & 1)) : target + gap + 1;
+            int level = (bytes[position] & 0xFF) << 8 | bytes[position + 1] & 0xFF;
+            position += 2;
+            visitor.visit(target, level * step);
+        }
+    }
+
+    @Override
+    protected int relaxEdges(SearchArena arena, int id, double cost) {
+        // forEachEdge, inlined so that the search loop allocates nothing
+        byte[] bytes = this.bytes;
+        int position = offsets[id];
+        int degree = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = bytes[position++];
+            degree |= (b & 0x7F) << shift;
+            if (b >= 0)
+                break;
+        }
+        int target = id;
+        for (int k = 0; k < degree; k++) {
+            int gap = 0;
+            for (int shift = 0;; shift += 7) {
+                byte b = bytes[position++];
+                gap |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    break;
+            }
+            target = k == 0 ? id + (gap >>> 1 ^ -(gap & 1)) : target + gap + 1;
+            int level = (bytes[position] & 0xFF) << 8 | bytes[position + 1] & 0xFF;
+            position += 2;
+            arena.relax(target, cost + level * step, id);
+        }
+        return degree;
+    }
+
+    @Override
+    protected double edgeWeight(int from, int to) {
+        checkId(from);
+        double[] weight = { Double.NaN };
+        forEachEdge(from, (target, w) -> {
+            if (target == to)
+                weight[0] = w;
+        });
+        return weight[0];
+    }
+
+    private static int writeVarint(byte[] out, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[position++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+}
@@ -0,0 +1,182 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Unit tests for the CompressedGraph and NodeOrder classes.
+ */
+public class CompressedGraphTests {
+
+    /**
+     * Test matchesCsrGraph: the compressed campus graph has the same edges,
+     * with weights within the stated error, and shortest path costs within
+     * that error per edge of the uncompressed graph's, in fewer bytes.
+     */
+    @Test
+    public void matchesCsrGraph() throws IOException {
+        CsrGraph expected = ParallelDotLoader.load("campus.dot", 1);
+        CompressedGraph graph = CompressedGraph.copyOf(expected);
+        double error = graph.getMaxWeightError();
+        Assertions.assertTrue(error > 0 && error < 0.01);
+        Assertions.assertEquals(expected.getEdgeCount(), graph.getEdgeCount());
+        Assertions.assertTrue(graph.getEncodedBytes() < expected.getEdgeCount() * 5L);
+
+        List<String> nodes = expected.getAllNodes();
+        Assertions.assertEquals(new HashSet<>(nodes), new HashSet<>(graph.getAllNodes()));
+        for (String pred : nodes) {
+            int id = expected.getNodeId(pred);
+            Set<String> successors = new HashSet<>();
+            graph.forEachEdge(graph.getNodeId(pred), (target, weight) -> successors.add(graph.getNodeName(target)));
+            Assertions.assertEquals(expected.endEdge(id) - expected.firstEdge(id), successors.size());
+            for (int edge = expected.firstEdge(id); edge < expected.endEdge(id); edge++) {
+                String succ = expected.getNodeName(expected.edgeTarget(edge));
+                Assertions.assertTrue(successors.contains(succ));
+                Assertions.assertEquals(expected.edgeWeight(edge), graph.getEdge(pred, succ), error);
+            }
+        }
+        for (int i = 0; i < nodes.size(); i += 3) {
+            String start = nodes.get(i);
+            String end = nodes.get((i * 11 + 2) % nodes.size());
+            try {
+                double cost = expected.shortestPathCost(start, end);
+                int edges = graph.shortestPathData(start, end).size() - 1;
+                Assertions.assertEquals(cost, graph.shortestPathCost(start, end),
+                        error * Math.max(edges, expected.shortestPathData(start, end).size() - 1) + 1e-9);
+            } catch (NoSuchElementException e) {
+                Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathCost(start, end));
+            }
+        }
+    }
+
+    /**
+     * Test breadthFirstRenumbering: breadth-first order is a permutation
+     * that numbers a chain written backwards from its head, renumber keeps
+     * every edge, and renumber rejects ids that are not a permutation.
+     */
+    @Test
+    public void breadthFirstRenumbering() throws IOException {
+        DijkstraGraph<String, Double> chain = new DijkstraGraph<>();
+        for (int i = 5; i >= 0; i--)
+            chain.insertNode("n" + i);
+        for (int i = 0; i < 5; i++)
+            chain.insertEdge("n" + i, "n" + (i + 1), 1.0 + i);
+        CsrGraph graph = CsrGraph.copyOf(chain);
+        Assertions.assertEquals(5, graph.getNodeId("n0"));
+        int[] order = NodeOrder.breadthFirst(graph);
+        CsrGraph renumbered = graph.renumber(order);
+        // the chain was inserted backwards, so its head n0 has the highest id
+        Assertions.assertEquals(List.of("n5", "n4", "n3", "n2", "n1", "n0"), graph.getAllNodes());
+        Assertions.assertEquals(graph.getEdgeCount(), renumbered.getEdgeCount());
+        Assertions.assertEquals(15.0, renumbered.shortestPathCost("n0", "n5"), 1e-9);
+        Assertions.assertEquals(3.0, renumbered.getEdge("n2", "n3"), 1e-9);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> graph.renumber(new int[] { 0, 0, 1, 2, 3, 4 }));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> graph.renumber(new int[] { 0 }));
+    }
+
+    /**
+     * Test reverseCuthillMcKee: on a grid whose node ids have been shuffled,
+     * reverse Cuthill-McKee order brings every edge's endpoints back within
+     * a couple of rows' ids of each other, and loading campus in that order
+     * keeps its edges and path costs.
+     */
+    @Test
+    public void reverseCuthillMcKeeNarrowsBandwidth() throws IOException {
+        DijkstraGraph<String, Double> grid = new DijkstraGraph<>();
+        int size = 30;
+        for (int r = 0; r < size; r++)
+            for (int c = 0; c < size; c++)
+                grid.insertNode(r + "," + c);
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                if (c + 1 < size) {
+                    grid.insertEdge(r + "," + c, r + "," + (c + 1), 1.0);
+                    grid.insertEdge(r + "," + (c + 1), r + "," + c, 1.0);
+                }
+                if (r + 1 < size) {
+                    grid.insertEdge(r + "," + c, (r + 1) + "," + c, 1.0);
+                    grid.insertEdge((r + 1) + "," + c, r + "," + c, 1.0);
+                }
+            }
+        }
+        int[] shuffle = new int[size * size];
+        for (int i = 0; i < shuffle.length; i++)
+            shuffle[i] = i;
+        Random random = new Random(5);
+        for (int i = shuffle.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = shuffle[i];
+            shuffle[i] = shuffle[j];
+            shuffle[j] = swap;
+        }
+        CsrGraph shuffled = CsrGraph.copyOf(grid).renumber(shuffle);
+        Assertions.assertTrue(bandwidth(shuffled) > 4 * size);
+        int[] order = NodeOrder.reverseCuthillMcKee(shuffled);
+        Assertions.assertEquals(size * size, Arrays.stream(order).distinct().count());
+        CsrGraph ordered = shuffled.renumber(order);
+        Assertions.assertTrue(bandwidth(ordered) <= 2 * size, "bandwidth " + bandwidth(ordered));
+        Assertions.assertEquals(2.0 * (size - 1), ordered.shortestPathCost("0,0", (size - 1) + "," + (size - 1)), 1e-9);
+
+        CsrGraph campus = ParallelDotLoader.load("campus.dot", 1);
+        CsrGraph reordered = ParallelDotLoader.load("campus.dot", 1, NodeOrder::reverseCuthillMcKee);
+        Assertions.assertEquals(campus.getEdgeCount(), reordered.getEdgeCount());
+        List<String> nodes = campus.getAllNodes();
+        for (int i = 0; i < nodes.size(); i += 7) {
+            String start = nodes.get(i);
+            String end = nodes.get((i * 5 + 3) % nodes.size());
+            try {
+                Assertions.assertEquals(campus.shortestPathCost(start, end), reordered.shortestPathCost(start, end), 1e-9);
+            } catch (NoSuchElementException e) {
+                Assertions.assertThrows(NoSuchElementException.class, () -> reordered.shortestPathCost(start, end));
+            }
+        }
+    }
+
+    /**
+     * Test reverseCuthillMcKeeOneWay: nodes reached only by one-way edges,
+     * or only able to reach others by them, are still numbered exactly once,
+     * and such graphs can be copied in that order.
+     */
+    @Test
+    public void reverseCuthillMcKeeOneWay() {
+        DijkstraGraph<String, Double> chain = new DijkstraGraph<>();
+        for (String node : new String[] { "A", "B", "C" })
+            chain.insertNode(node);
+        chain.insertEdge("A", "B", 1.0);
+        chain.insertEdge("B", "C", 2.0);
+        chain.insertEdge("C", "B", 2.0);
+        int[] order = NodeOrder.reverseCuthillMcKee(CsrGraph.copyOf(chain));
+        Assertions.assertEquals(3, Arrays.stream(order).distinct().count());
+        CsrGraph ordered = CsrGraph.copyOf(chain, NodeOrder::reverseCuthillMcKee);
+        Assertions.assertEquals(3.0, ordered.shortestPathCost("A", "C"), 1e-9);
+        Assertions.assertThrows(NoSuchElementException.class, () -> ordered.shortestPathCost("C", "A"));
+
+        // random one-way edges, with some nodes left without any
+        DijkstraGraph<String, Double> random = new DijkstraGraph<>();
+        Random seeded = new Random(11);
+        for (int i = 0; i < 300; i++)
+            random.insertNode("n" + i);
+        for (int k = 0; k < 250; k++)
+            random.insertEdge("n" + seeded.nextInt(300), "n" + seeded.nextInt(300), 1.0 + seeded.nextInt(9));
+        order = NodeOrder.reverseCuthillMcKee(CsrGraph.copyOf(random));
+        Assertions.assertEquals(300, Arrays.stream(order).distinct().count());
+        Assertions.assertEquals(0, Arrays.stream(order).min().getAsInt());
+        Assertions.assertEquals(299, Arrays.stream(order).max().getAsInt());
+        Assertions.assertEquals(CsrGraph.copyOf(random).getEdgeCount(),
+                CsrGraph.copyOf(random, NodeOrder::reverseCuthillMcKee).getEdgeCount());
+    }
+
+    // the largest difference between the ids at either end of an edge
+    private static int bandwidth(CsrGraph graph) {
+        int widest = 0;
+        for (int id = 0; id < graph.getNodeCount(); id++)
+            for (int edge = graph.firstEdge(id); edge < graph.endEdge(id); edge++)
+                widest = Math.max(widest, Math.abs(graph.edgeTarget(edge) - id));
+        return widest;
+    }
+}
@@ -0,0 +1,783 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A thread-safe graph for serving shortest path queries while edges are
+ * being opened and closed (construction, events). Its contents are held in
+ * immutable, versioned snapshots published through a volatile reference:
+ * readers grab the current snapshot once and run their whole query against
+ * it, so they never block and never observe a half applied update.
+ *
+ * Writers are batched. Each update is queued, and whichever writer holds the
+ * write lock applies every queued update to one copy-on-write working copy
+ * and publishes a single new snapshot for the whole batch. The working copy
+ * shares the previous snapshot's node table, which is split by hash into
+ * shards: only the shards holding touched nodes, and the adjacency of those
+ * nodes, are copied. Larger edits can be grouped explicitly with
+ * applyBatch().
+ */
+public class ConcurrentDijkstraGraph<NodeType, EdgeType extends Number>
+        implements GraphADT<NodeType, EdgeType> {
+
+    // the immutable adjacency of a single node within a snapshot
+    private static final class Adjacency {
+        static final Adjacency EMPTY = new Adjacency(new Object[0], new Number[0], new Object[0]);
+
+        final Object[] successors; // data of the successor of each leaving edge
+        final Number[] weights; // weight of each leaving edge
+        final double[] costs; // weights[i].doubleValue(), read by searches
+        final Object[] predecessors; // data of the source of each entering edge
+
+        Adjacency(Object[] successors, Number[] weights, Object[] predecessors) {
+            this.successors = successors;
+            this.weights = weights;
+            this.predecessors = predecessors;
+            this.costs = new double[weights.length];
+            for (int i = 0; i < weights.length; i++)
+                costs[i] = weights[i].doubleValue();
+        }
+
+        int indexOf(Object successor) {
+            for (int i = 0; i < successors.length; i++)
+                if (successors[i].equals(successor))
+                    return i;
+            return -1;
+        }
+    }
+
+    // the adjacency of every node, split by hash into shards that are shared
+    // with the table this one was copied from until they are first written
+    private static final class NodeTable {
+        static final int SHARDS = 256;
+
+        final Map<Object, Adjacency>[] shards; // null for an empty shard
+        final boolean[] copied; // shards that belong to this table alone
+        int size;
+
+        @SuppressWarnings("unchecked")
+        NodeTable() {
+            shards = (Map<Object, Adjacency>[]) new Map<?, ?>[SHARDS];
+            copied = new boolean[SHARDS];
+        }
+
+        NodeTable(NodeTable base) {
+            shards = base.shards.clone();
+            copied = new boolean[SHARDS];
+            size = base.size;
+        }
+
+        static int shardOf(Object node) {
+            int hash = node.hashCode();
+            return (hash ^ (hash >>> 16)) & (SHARDS - 1);
+        }
+
+        Adjacency get(Object node) {
+            Map<Object, Adjacency> shard = shards[shardOf(node)];
+            return shard == null ? null : shard.get(node);
+        }
+
+        boolean containsKey(Object node) {
+            return get(node) != null;
+        }
+
+        int size() {
+            return size;
+        }
+
+        List<Object> keys() {
+            List<Object> keys = new ArrayList<>(size);
+            for (Map<Object, Adjacency> shard : shards)
+                if (shard != null)
+                    keys.addAll(shard.keySet());
+            return keys;
+        }
+
+        List<Adjacency> values() {
+            List<Adjacency> values = new ArrayList<>(size);
+            for (Map<Object, Adjacency> shard : shards)
+                if (shard != null)
+                    values.addAll(shard.values());
+            return values;
+        }
+
+        // returns the shard holding node, copying it first if it is shared
+        private Map<Object, Adjacency> edit(Object node) {
+            int index = shardOf(node);
+            if (!copied[index]) {
+                shards[index] = shards[index] == null ? new HashMap<>() : new HashMap<>(shards[index]);
+                copied[index] = true;
+            }
+            return shards[index];
+        }
+
+        void put(Object node, Adjacency adjacency) {
+            if (edit(node).put(node, adjacency) == null)
+                size++;
+        }
+
+        void remove(Object node) {
+            if (edit(node).remove(node) != null)
+                size--;
+        }
+    }
+
+    // an immutable, versioned view of the whole graph
+    private static final class Snapshot {
+        final long version;
+        final NodeTable nodes; // never modified once published
+        final int edgeCount;
+
+        Snapshot(long version, NodeTable nodes, int edgeCount) {
+            this.version = version;
+            this.nodes = nodes;
+            this.edgeCount = edgeCount;
+        }
+    }
+
+    // a mutable adjacency, used for nodes touched by the batch being applied
+    private static final class WorkingAdjacency {
+        final ArrayList<Object> successors;
+        final ArrayList<Number> weights;
+        final ArrayList<Object> predecessors;
+
+        WorkingAdjacency(Adjacency from) {
+            successors = new ArrayList<>(Arrays.asList(from.successors));
+            weights = new ArrayList<>(Arrays.asList(from.weights));
+            predecessors = new ArrayList<>(Arrays.asList(from.predecessors));
+        }
+
+        Adjacency freeze() {
+            return new Adjacency(successors.toArray(), weights.toArray(new Number[0]),
+                    predecessors.toArray());
+        }
+    }
+
+    // the working copy that a batch of updates is applied to
+    private static final class Working {
+        final NodeTable nodes;
+        final Map<Object, WorkingAdjacency> touched = new HashMap<>();
+        int edgeCount;
+
+        Working(Snapshot base) {
+            nodes = new NodeTable(base.nodes);
+            edgeCount = base.edgeCount;
+        }
+
+        // returns a mutable copy of node's adjacency, copying it at most once
+        WorkingAdjacency edit(Object node) {
+            WorkingAdjacency adjacency = touched.get(node);
+            if (adjacency == null) {
+                adjacency = new WorkingAdjacency(nodes.get(node));
+                touched.put(node, adjacency);
+            }
+            return adjacency;
+        }
+
+        Snapshot publish(long version) {
+            for (Map.Entry<Object, WorkingAdjacency> entry : touched.entrySet())
+                if (nodes.containsKey(entry.getKey()))
+                    nodes.put(entry.getKey(), entry.getValue().freeze());
+            return new Snapshot(version, nodes, edgeCount);
+        }
+    }
+
+    // a queued write, completed by whichever writer applies its batch
+    private static final class Update {
+        final Function<Working, Boolean> operation;
+        boolean result;
+        boolean done;
+
+        Update(Function<Working, Boolean> operation) {
+            this.operation = operation;
+        }
+    }
+
+    private volatile Snapshot current = new Snapshot(0, new NodeTable(), 0);
+    private final ConcurrentLinkedQueue<Update> pending = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * Returns the version of the currently published snapshot. The version
+     * increases by one every time a batch of updates is published, so it can
+     * be used to tag anything derived from the graph's contents.
+     *
+     * @return the current graph version
+     */
+    public long getVersion() {
+        return current.version;
+    }
+
+    // queues an update, applying it (and any others queued) if no one else is
+    private boolean submit(Function<Working, Boolean> operation) {
+        Update update = new Update(operation);
+        pending.add(update);
+        writeLock.lock();
+        try {
+            // another writer may have applied this update while we waited
+            if (!update.done)
+                applyPending(null);
+        } finally {
+            writeLock.unlock();
+        }
+        return update.result;
+    }
+
+    // applies every queued update (and an optional batch) as one snapshot
+    private void applyPending(Consumer<Working> batch) {
+        Snapshot base = current;
+        Working working = new Working(base);
+        if (batch != null)
+            batch.accept(working);
+        Update update;
+        while ((update = pending.poll()) != null) {
+            update.result = update.operation.apply(working);
+            update.done = true;
+        }
+        current = working.publish(base.version + 1);
+    }
+
+    /**
+     * Applies a group of edits and publishes them as a single new snapshot,
+     * so that readers see either none or all of them. The view passed to
+     * edits supports every GraphADT operation except the shortest path
+     * queries, which throw UnsupportedOperationException.
+     *
+     * @param edits the edits to apply, using the provided view of the graph
+     */
+    public void applyBatch(Consumer<GraphADT<NodeType, EdgeType>> edits) {
+        writeLock.lock();
+        try {
+            applyPending(working -> edits.accept(new BatchView(working)));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static boolean insertNode(Working working, Object data) {
+        if (working.nodes.containsKey(data))
+            return false;
+        working.nodes.put(data, Adjacency.EMPTY);
+        return true;
+    }
+
+    private static boolean removeNode(Working working, Object data) {
+        if (!working.nodes.containsKey(data))
+            return false;
+        WorkingAdjacency old = working.edit(data);
+        // remove edges entering neighbors from this node, and leaving toward it
+        for (Object successor : old.successors)
+            if (!successor.equals(data))
+                working.edit(successor).predecessors.remove(data);
+        for (Object predecessor : old.predecessors) {
+            if (predecessor.equals(data))
+                continue;
+            WorkingAdjacency pred = working.edit(predecessor);
+            int index = pred.successors.indexOf(data);
+            pred.successors.remove(index);
+            pred.weights.remove(index);
+        }
+        working.edgeCount -= old.successors.size() + old.predecessors.size();
+        if (old.successors.contains(data))
+            working.edgeCount++; // a self loop was counted twice above
+        working.nodes.remove(data);
+        working.touched.remove(data);
+        return true;
+    }
+
+    private static boolean insertEdge(Working working, Object pred, Object succ, Number weight) {
+        if (!working.nodes.containsKey(pred) || !working.nodes.containsKey(succ))
+            return false;
+        WorkingAdjacency from = working.edit(pred);
+        int index = from.successors.indexOf(succ);
+        if (index >= 0) {
+            // when an edge already exists within the graph, update its weight
+            from.weights.set(index, weight);
+        } else {
+            from.successors.add(succ);
+            from.weights.add(weight);
+            working.edit(succ).predecessors.add(pred);
+            working.edgeCount++;
+        }
+        return true;
+    }
+
+    private static boolean removeEdge(Working working, Object pred, Object succ) {
+        if (!working.nodes.containsKey(pred) || !working.nodes.containsKey(succ))
+            return false;
+        if (working.nodes.get(pred).indexOf(succ) < 0 && !working.touched.containsKey(pred))
+            return false;
+        WorkingAdjacency from = working.edit(pred);
+        int index = from.successors.indexOf(succ);
+        if (index < 0)
+            return false;
+        from.successors.remove(index);
+        from.weights.remove(index);
+        working.edit(succ).predecessors.remove(pred);
+        working.edgeCount--;
+        return true;
+    }
+
+    // reads the adjacency of a node from a working copy, including edits
+    private static Object[] successorsOf(Working working, Object node) {
+        WorkingAdjacency touched = working.touched.get(node);
+        return touched != null ? touched.successors.toArray() : working.nodes.get(node).successors;
+    }
+
+    /**
+     * Insert a new node into the graph.
+     *
+     * @param data is the data item stored in the new node
+     * @return true if the data is unique and can be inserted into a new node,
+     *         or false if this data is already in the graph
+     * @throws NullPointerException if data is null
+     */
+    @Override
+    public boolean insertNode(NodeType data) {
+        if (data == null)
+            throw new NullPointerException("Node data cannot be null.");
+        return submit(working -> insertNode(working, data));
+    }
+
+    /**
+     * Remove a node from the graph, along with all edges adjacent to it.
+     *
+     * @param data is the data item stored in the node to be removed
+     * @return true if a vertex with data is found and removed, or false if
+     *         that data value is not found in the graph
+     * @throws NullPointerException if data is null
+     */
+    @Override
+    public boolean removeNode(NodeType data) {
+        if (data == null)
+            throw new NullPointerException("Node data cannot be null.");
+        return submit(working -> removeNode(working, data));
+    }
+
+    /**
+     * Check whether the graph contains a node with the provided data.
+     *
+     * @param data the node contents to check for
+     * @return true if data item is stored in a node within the graph
+     */
+    @Override
+    public boolean containsNode(NodeType data) {
+        return current.nodes.containsKey(data);
+    }
+
+    /**
+     * Retrieves a list of all node data from the current snapshot.
+     *
+     * @return list of all node data
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<NodeType> getAllNodes() {
+        return (List<NodeType>) (List<?>) current.nodes.keys();
+    }
+
+    @Override
+    public int getNodeCount() {
+        return current.nodes.size();
+    }
+
+    /**
+     * Insert a new directed edge with positive weight into the graph, or
+     * update the weight of the edge between pred and succ if one exists.
+     *
+     * @param pred   is the data item contained in the new edge's predecesor node
+     * @param succ   is the data item contained in the new edge's successor node
+     * @param weight is the positive valued data item stored in the new edge
+     * @return true if the edge could be inserted or updated, or false if the
+     *         pred or succ data are not found in any graph nodes
+     */
+    @Override
+    public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
+        return submit(working -> insertEdge(working, pred, succ, weight));
+    }
+
+    /**
+     * Remove an edge from the graph.
+     *
+     * @param pred the data item contained in the source node for the edge
+     * @param succ the data item contained in the target node for the edge
+     * @return true if the edge could be removed, or false if such an edge is
+     *         not found in the graph
+     */
+    @Override
+    public boolean removeEdge(NodeType pred, NodeType succ) {
+        return submit(working -> removeEdge(working, pred, succ));
+    }
+
+    @Override
+    public boolean containsEdge(NodeType pred, NodeType succ) {
+        Adjacency adjacency = current.nodes.get(pred);
+        return adjacency != null && adjacency.indexOf(succ) >= 0;
+    }
+
+    /**
+     * Return the data associated with a specific edge.
+     *
+     * @param pred the data item contained in the source node for the edge
+     * @param succ the data item contained in the target node for the edge
+     * @return the non-negative data from the edge between those nodes
+     * @throws NoSuchElementException if either node or the edge between them
+     *                                are not found within this graph
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public EdgeType getEdge(NodeType pred, NodeType succ) {
+        Adjacency adjacency = current.nodes.get(pred);
+        int index = adjacency == null ? -1 : adjacency.indexOf(succ);
+        if (index < 0)
+            throw new NoSuchElementException("No edge from " + pred + " to " + succ);
+        return (EdgeType) adjacency.weights[index];
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return current.edgeCount;
+    }
+
+    // the end of a shortest path found within one snapshot
+    private static final class SearchNode implements Comparable<SearchNode> {
+        final Object node;
+        final double cost;
+        final SearchNode predecessor;
+
+        SearchNode(Object node, double cost, SearchNode predecessor) {
+            this.node = node;
+            this.cost = cost;
+            this.predecessor = predecessor;
+        }
+
+        public int compareTo(SearchNode other) {
+            return Double.compare(cost, other.cost);
+        }
+    }
+
+    // runs Dijkstra's algorithm from start to end within a single snapshot
+    private static SearchNode computeShortestPath(Snapshot snapshot, Object start, Object end) {
+        if (!snapshot.nodes.containsKey(start) || !snapshot.nodes.containsKey(end))
+            throw new NoSuchElementException("Start or end node not in graph.");
+        PriorityQueue<SearchNode> queue = new PriorityQueue<>();
+        Set<Object> visited = new HashSet<>();
+        queue.add(new SearchNode(start, 0, null));
+        int settled = 0;
+        int relaxed = 0;
+        int pushes = 1;
+        while (!queue.isEmpty()) {
+            SearchNode current = queue.poll();
+            if (!visited.add(current.node))
+                continue;
+            settled++;
+            if (current.node.equals(end)) {
+                if (Metrics.ENABLED)
+                    Metrics.recordSearch(settled, relaxed, pushes);
+                return current;
+            }
+            Adjacency adjacency = snapshot.nodes.get(current.node);
+            for (int i = 0; i < adjacency.successors.length; i++) {
+                relaxed++;
+                if (!visited.contains(adjacency.successors[i])) {
+                    queue.add(new SearchNode(adjacency.successors[i],
+                            current.cost + adjacency.costs[i], current));
+                    pushes++;
+                }
+            }
+        }
+        if (Metrics.ENABLED)
+            Metrics.recordSearch(settled, relaxed, pushes);
+        throw new NoSuchElementException("error: there is no path from start to end node.");
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<NodeType> pathTo(SearchNode endNode) {
+        LinkedList<NodeType> path = new LinkedList<>();
+        for (SearchNode node = endNode; node != null; node = node.predecessor)
+            path.addFirst((NodeType) node.node);
+        return path;
+    }
+
+    /**
+     * Returns the list of data values from nodes along the shortest path
+     * from start to end, computed against a single consistent snapshot.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return list of data item from node along this shortest path
+     * @throws NoSuchElementException if either node is missing, or if there
+     *                                is no path from start to end
+     */
+    @Override
+    public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+        return pathTo(computeShortestPath(current, start, end));
+    }
+
+    /**
+     * Returns the cost of the shortest path from start to end, computed
+     * against a single consistent snapshot.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return the cost of the shortest path between these nodes
+     * @throws NoSuchElementException if either node is missing, or if there
+     *                                is no path from start to end
+     */
+    @Override
+    public double shortestPathCost(NodeType start, NodeType end) {
+        return computeShortestPath(current, start, end).cost;
+    }
+
+    // the view of a working copy handed to applyBatch callers
+    private class BatchView implements GraphADT<NodeType, EdgeType> {
+        private final Working working;
+
+        BatchView(Working working) {
+            this.working = working;
+        }
+
+        public boolean insertNode(NodeType data) {
+            if (data == null)
+                throw new NullPointerException("Node data cannot be null.");
+            return ConcurrentDijkstraGraph.insertNode(working, data);
+        }
+
+        public boolean removeNode(NodeType data) {
+            if (data == null)
+                throw new NullPointerException("Node data cannot be null.");
+            return ConcurrentDijkstraGraph.removeNode(working, data);
+        }
+
+        public boolean containsNode(NodeType data) {
+            return working.nodes.containsKey(data);
+        }
+
+        @SuppressWarnings("unchecked")
+        public List<NodeType> getAllNodes() {
+            return (List<NodeType>) (List<?>) working.nodes.keys();
+        }
+
+        public int getNodeCount() {
+            return working.nodes.size();
+        }
+
+        public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
+            return ConcurrentDijkstraGraph.insertEdge(working, pred, succ, weight);
+        }
+
+        public boolean removeEdge(NodeType pred, NodeType succ) {
+            return ConcurrentDijkstraGraph.removeEdge(working, pred, succ);
+        }
+
+        public boolean containsEdge(NodeType pred, NodeType succ) {
+            return working.nodes.containsKey(pred)
+                    && Arrays.asList(successorsOf(working, pred)).contains(succ);
+        }
+
+        @SuppressWarnings("unchecked")
+        public EdgeType getEdge(NodeType pred, NodeType succ) {
+            if (working.nodes.containsKey(pred)) {
+                WorkingAdjacency touched = working.touched.get(pred);
+                if (touched != null) {
+                    int index = touched.successors.indexOf(succ);
+                    if (index >= 0)
+                        return (EdgeType) touched.weights.get(index);
+                } else {
+                    Adjacency adjacency = working.nodes.get(pred);
+                    int index = adjacency.indexOf(succ);
+                    if (index >= 0)
+                        return (EdgeType) adjacency.weights[index];
+                }
+            }
+            throw new NoSuchElementException("No edge from " + pred + " to " + succ);
+        }
+
+        public int getEdgeCount() {
+            return working.edgeCount;
+        }
+
+        public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+            throw new UnsupportedOperationException("Shortest paths are not available within a batch.");
+        }
+
+        public double shortestPathCost(NodeType start, NodeType end) {
+            throw new UnsupportedOperationException("Shortest paths are not available within a batch.");
+        }
+    }
+
+    @Test
+    /**
+     * Checks shortest paths, edge updates and node removal against the
+     * example graph traced in lecture.
+     */
+    public void testSnapshotUpdates() {
+        ConcurrentDijkstraGraph<String, Double> graph = new ConcurrentDijkstraGraph<>();
+        graph.applyBatch(g -> {
+            for (String node : List.of("A", "B", "C", "D", "E", "F", "H"))
+                g.insertNode(node);
+            g.insertEdge("A", "B", 4.0);
+            g.insertEdge("A", "C", 2.0);
+            g.insertEdge("A", "E", 15.0);
+            g.insertEdge("B", "E", 10.0);
+            g.insertEdge("B", "D", 1.0);
+            g.insertEdge("C", "D", 5.0);
+            g.insertEdge("D", "E", 3.0);
+            g.insertEdge("D", "F", 0.0);
+            g.insertEdge("F", "D", 2.0);
+            g.insertEdge("F", "H", 4.0);
+        });
+        Assertions.assertEquals(1, graph.getVersion());
+        Assertions.assertEquals(10, graph.getEdgeCount());
+        Assertions.assertEquals(List.of("A", "B", "D", "E"), graph.shortestPathData("A", "E"));
+        Assertions.assertEquals(8.0, graph.shortestPathCost("A", "E"), 0.01);
+
+        // close B->D, then remove D entirely
+        Assertions.assertTrue(graph.removeEdge("B", "D"));
+        Assertions.assertFalse(graph.removeEdge("B", "D"));
+        Assertions.assertEquals(10.0, graph.shortestPathCost("A", "E"), 0.01);
+        Assertions.assertTrue(graph.removeNode("D"));
+        Assertions.assertEquals(List.of("A", "B", "E"), graph.shortestPathData("A", "E"));
+        Assertions.assertEquals(5, graph.getEdgeCount());
+        Assertions.assertFalse(graph.containsEdge("C", "D"));
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathCost("A", "H"));
+    }
+
+    @Test
+    /**
+     * Checks that publishing an edge update shares every shard of the node
+     * table that the update did not touch with the previous snapshot.
+     */
+    public void testUpdateCopiesTouchedShards() {
+        ConcurrentDijkstraGraph<Integer, Double> graph = new ConcurrentDijkstraGraph<>();
+        graph.applyBatch(g -> {
+            for (int i = 0; i < 5000; i++)
+                g.insertNode(i);
+        });
+        Snapshot before = graph.current;
+        Assertions.assertTrue(graph.insertEdge(17, 4242, 3.0));
+        Snapshot after = graph.current;
+        int copied = 0;
+        for (int i = 0; i < NodeTable.SHARDS; i++)
+            if (before.nodes.shards[i] != after.nodes.shards[i])
+                copied++;
+        Assertions.assertTrue(copied >= 1 && copied <= 2, copied + " shards copied");
+        Assertions.assertEquals(0, before.nodes.get(17).successors.length);
+        Assertions.assertEquals(3.0, graph.getEdge(17, 4242), 0);
+        Assertions.assertEquals(5000, graph.getNodeCount());
+        Assertions.assertEquals(5000, graph.getAllNodes().size());
+    }
+
+    @Test
+    /**
+     * Stress test: many reader threads run shortest path queries while
+     * writer threads open and close edges. Every query must see a consistent
+     * snapshot: its path only uses edges present in that snapshot, and the
+     * path's cost matches the sum of those edges' weights.
+     */
+    public void testConcurrentUpdatesAndQueries() throws Exception {
+        final int side = 12;
+        ConcurrentDijkstraGraph<Integer, Double> graph = new ConcurrentDijkstraGraph<>();
+        graph.applyBatch(g -> {
+            for (int i = 0; i < side * side; i++)
+                g.insertNode(i);
+            for (int i = 0; i < side * side; i++) {
+                // a backbone of edges that is never closed, so paths always exist
+                if ((i + 1) % side != 0)
+                    g.insertEdge(i, i + 1, 10.0);
+                if (i + side < side * side)
+                    g.insertEdge(i, i + side, 10.0);
+            }
+        });
+
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger queries = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            final int seed = w;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                while (!stop.get()) {
+                    int from = random.nextInt(side * side);
+                    int to = random.nextInt(side * side);
+                    if (from == to)
+                        continue;
+                    if (random.nextBoolean())
+                        graph.insertEdge(from, to, 1.0 + random.nextInt(50));
+                    else if (!(to == from + 1 && from % side != side - 1) && to != from + side)
+                        graph.removeEdge(from, to);
+                }
+            }));
+        }
+        for (int r = 0; r < 8; r++) {
+            final int seed = 100 + r;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    while (!stop.get()) {
+                        Snapshot snapshot = graph.current;
+                        // the backbone only leads right and down from start
+                        int start = random.nextInt(side * side - 1);
+                        int row = start / side + random.nextInt(side - start / side);
+                        int column = start % side + random.nextInt(side - start % side);
+                        int end = row * side + column;
+                        SearchNode found = computeShortestPath(snapshot, start, end);
+                        double total = 0;
+                        for (SearchNode n = found; n.predecessor != null; n = n.predecessor) {
+                            Adjacency from = snapshot.nodes.get(n.predecessor.node);
+                            int index = from.indexOf(n.node);
+                            Assertions.assertTrue(index >= 0, "path uses an edge missing from its snapshot");
+                            total += from.costs[index];
+                        }
+                        Assertions.assertEquals(found.cost, total, 1e-9);
+                        List<Integer> path = graph.shortestPathData(start, end);
+                        Assertions.assertEquals(start, path.get(0));
+                        Assertions.assertEquals(end, path.get(path.size() - 1));
+                        queries.incrementAndGet();
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }));
+        }
+        for (Thread thread : threads)
+            thread.start();
+        Thread.sleep(1500);
+        stop.set(true);
+        for (Thread thread : threads)
+            thread.join();
+        if (failure.get() != null)
+            Assertions.fail("reader failed: " + failure.get());
+        Assertions.assertTrue(queries.get() > 0);
+
+        // the edge count must agree with the adjacency of the final snapshot
+        Snapshot last = graph.current;
+        int leaving = 0;
+        int entering = 0;
+        for (Adjacency adjacency : last.nodes.values()) {
+            leaving += adjacency.successors.length;
+            entering += adjacency.predecessors.length;
+        }
+        Assertions.assertEquals(last.edgeCount, leaving);
+        Assertions.assertEquals(last.edgeCount, entering);
+    }
+}
@@ -0,0 +1,347 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe MapADT for maps that many threads read at once, such as the
+ * node index of a graph shared by request threads or a cache of query
+ * results. It follows HashtableMap's contract (put rejects duplicate keys,
+ * get and remove throw for missing keys) with these guarantees:
+ *
+ * - reads never lock, block or write: each bucket holds an immutable chain,
+ *   so a reader sees either the chain before or after any write;
+ * - writes replace a bucket's chain with a single compare-and-set, so
+ *   writers to different buckets never wait on each other;
+ * - growing the table is incremental: the new table is filled a stride of
+ *   buckets at a time by whichever writers arrive while it is in progress,
+ *   and moved buckets forward readers and writers to the new table, so no
+ *   operation ever waits for a whole rehash.
+ *
+ * getSize, getKeys and clear are weakly consistent while other threads are
+ * writing: they reflect each bucket as it was when they reached it.
+ */
+public class ConcurrentHashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+    // the number of buckets one writer moves to the new table per visit
+    private static final int STRIDE = 16;
+
+    // an immutable link in a bucket's chain
+    private static class Entry {
+        final int hash;
+        final Object key;
+        final Object value;
+        final Entry next;
+
+        Entry(int hash, Object key, Object value, Entry next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    // stands in for a bucket that has been moved to a larger table
+    private static final class Forward extends Entry {
+        final AtomicReferenceArray<Entry> table;
+
+        Forward(AtomicReferenceArray<Entry> table) {
+            super(0, null, null, null);
+            this.table = table;
+        }
+    }
+
+    // a resize in progress from one table to a table twice its size
+    private static final class Resize {
+        final AtomicReferenceArray<Entry> from;
+        final AtomicReferenceArray<Entry> to;
+        final Forward forward;
+        final AtomicInteger nextBucket = new AtomicInteger(0); // next stride to claim
+        final AtomicInteger movedBuckets = new AtomicInteger(0);
+
+        Resize(AtomicReferenceArray<Entry> from) {
+            this.from = from;
+            this.to = new AtomicReferenceArray<>(from.length() * 2);
+            this.forward = new Forward(to);
+        }
+    }
+
+    // the current table and the resize out of it, if one is in progress;
+    // both change together so that no thread helps a finished resize
+    private static final class State {
+        final AtomicReferenceArray<Entry> table;
+        final Resize resize;
+
+        State(AtomicReferenceArray<Entry> table, Resize resize) {
+            this.table = table;
+            this.resize = resize;
+        }
+    }
+
+    private final AtomicReference<State> state;
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * Creates an empty map with room for about capacity keys before growing.
+     *
+     * @param capacity the initial capacity
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public ConcurrentHashtableMap(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be greater than 0.");
+        int length = Integer.highestOneBit(Math.max(2, capacity * 4 / 3) * 2 - 1);
+        state = new AtomicReference<>(new State(new AtomicReferenceArray<>(length), null));
+    }
+
+    /**
+     * Creates an empty map with a default capacity.
+     */
+    public ConcurrentHashtableMap() {
+        this(64);
+    }
+
+    /**
+     * Adds a new key,value pair/mapping to this collection.
+     *
+     * @param key   the key of the key,value pair
+     * @param value the value that key maps to
+     * @throws IllegalArgumentException if key already maps to a value
+     * @throws NullPointerException     if key is null
+     */
+    @Override
+    public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+        if (key == null)
+            throw new NullPointerException("Key cannot be null.");
+        int hash = hash(key);
+        AtomicReferenceArray<Entry> buckets = state.get().table;
+        while (true) {
+            int index = hash & (buckets.length() - 1);
+            Entry head = buckets.get(index);
+            if (head instanceof Forward) {
+                helpResize();
+                buckets = ((Forward) head).table;
+                continue;
+            }
+            if (find(head, hash, key) != null)
+                throw new IllegalArgumentException("Duplicate key. Key already exists.");
+            if (buckets.compareAndSet(index, head, new Entry(hash, key, value, head))) {
+                size.increment();
+                // only check the load after a collision; a table that never
+                // collides has no reason to grow
+                if (head != null && size.sum() * 4 > buckets.length() * 3L)
+                    startResize(buckets);
+                helpResize();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks whether a key maps to a value in this collection.
+     *
+     * @param key the key to check
+     * @return true if the key maps to a value, false otherwise
+     */
+    @Override
+    public boolean containsKey(KeyType key) {
+        return key != null && lookup(key) != null;
+    }
+
+    /**
+     * Retrieves the specific value that a key maps to.
+     *
+     * @param key the key to look up
+     * @return the value that key maps to
+     * @throws NoSuchElementException when key is not stored in this collection
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ValueType get(KeyType key) throws NoSuchElementException {
+        Entry entry = key == null ? null : lookup(key);
+        if (entry == null)
+            throw new NoSuchElementException("Key not found in the map.");
+        return (ValueType) entry.value;
+    }
+
+    /**
+     * Remove the mapping for a key from this collection.
+     *
+     * @param key the key whose mapping to remove
+     * @return the value that the removed key mapped to
+     * @throws NoSuchElementException when key is not stored in this collection
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ValueType remove(KeyType key) throws NoSuchElementException {
+        if (key == null)
+            throw new NoSuchElementException("Key not found in the map.");
+        int hash = hash(key);
+        AtomicReferenceArray<Entry> buckets = state.get().table;
+        while (true) {
+            int index = hash & (buckets.length() - 1);
+            Entry head = buckets.get(index);
+            if (head instanceof Forward) {
+                helpResize();
+                buckets = ((Forward) head).table;
+                continue;
+            }
+            Entry found = find(head, hash, key);
+            if (found == null)
+                throw new NoSuchElementException("Key not found in the map.");
+            // copy the links ahead of the removed one, and share the rest
+            Entry chain = found.next;
+            for (Entry e = head; e != found; e = e.next)
+                chain = new Entry(e.hash, e.key, e.value, chain);
+            if (buckets.compareAndSet(index, head, chain)) {
+                size.decrement();
+                helpResize();
+                return (ValueType) found.value;
+            }
+        }
+    }
+
+    /**
+     * Removes all key,value pairs from this collection. Keys that other
+     * threads put while this runs may or may not be removed.
+     */
+    @Override
+    public void clear() {
+        AtomicReferenceArray<Entry> buckets = state.get().table;
+        for (int index = 0; index < buckets.length(); index++) {
+            Entry head = buckets.get(index);
+            if (head instanceof Forward) {
+                // finish moving this table's buckets and start over on the new one
+                while (state.get().resize != null) {
+                    helpResize();
+                    Thread.onSpinWait(); // other threads may still hold strides
+                }
+                buckets = state.get().table;
+                index = -1;
+            } else if (head != null && buckets.compareAndSet(index, head, null)) {
+                for (Entry e = head; e != null; e = e.next)
+                    size.decrement();
+            } else if (head != null) {
+                index--; // the bucket changed under us, so look at it again
+            }
+        }
+    }
+
+    /**
+     * @return the number of keys stored in this collection
+     */
+    @Override
+    public int getSize() {
+        return (int) Math.max(0, size.sum());
+    }
+
+    /**
+     * @return the number of buckets in the underlying table
+     */
+    @Override
+    public int getCapacity() {
+        return state.get().table.length();
+    }
+
+    /**
+     * Retrieves this collection's keys, in no particular order.
+     *
+     * @return a list of the keys in this collection
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<KeyType> getKeys() {
+        List<KeyType> keys = new ArrayList<>(getSize());
+        AtomicReferenceArray<Entry> buckets = state.get().table;
+        for (int index = 0; index < buckets.length(); index++)
+            collectKeys(buckets, index, (List<Object>) keys);
+        return keys;
+    }
+
+    // adds the keys of one bucket, following it to larger tables if it moved
+    private static void collectKeys(AtomicReferenceArray<Entry> buckets, int index, List<Object> keys) {
+        Entry head = buckets.get(index);
+        if (head instanceof Forward) {
+            AtomicReferenceArray<Entry> to = ((Forward) head).table;
+            collectKeys(to, index, keys);
+            collectKeys(to, index + buckets.length(), keys);
+            return;
+        }
+        for (Entry e = head; e != null; e = e.next)
+            keys.add(e.key);
+    }
+
+    // the entry for key, without taking part in any resize
+    private Entry lookup(Object key) {
+        int hash = hash(key);
+        AtomicReferenceArray<Entry> buckets = state.get().table;
+        while (true) {
+            Entry head = buckets.get(hash & (buckets.length() - 1));
+            if (!(head instanceof Forward))
+                return find(head, hash, key);
+            buckets = ((Forward) head).table;
+        }
+    }
+
+    private static Entry find(Entry head, int hash, Object key) {
+        for (Entry e = head; e != null; e = e.next)
+            if (e.hash == hash && e.key.equals(key))
+                return e;
+        return null;
+    }
+
+    // begins moving buckets into a table twice the size, unless that has
+    // already begun or buckets is no longer the current table
+    private void startResize(AtomicReferenceArray<Entry> buckets) {
+        State current = state.get();
+        if (current.table == buckets && current.resize == null)
+            state.compareAndSet(current, new State(buckets, new Resize(buckets)));
+    }
+
+    // moves one stride of buckets for the resize in progress, if any
+    private void helpResize() {
+        Resize current = state.get().resize;
+        if (current == null)
+            return;
+        int length = current.from.length();
+        int first = current.nextBucket.getAndAdd(STRIDE);
+        if (first >= length)
+            return;
+        int last = Math.min(first + STRIDE, length);
+        for (int index = first; index < last; index++)
+            moveBucket(current, index);
+        if (current.movedBuckets.addAndGet(last - first) == length)
+            state.set(new State(current.to, null)); // only one thread gets here
+    }
+
+    // splits bucket index of the old table between buckets index and
+    // index + length of the new one; only the thread that claimed the
+    // bucket moves it, and nobody writes those new buckets until it is
+    // forwarded
+    private static void moveBucket(Resize current, int index) {
+        int length = current.from.length();
+        while (true) {
+            Entry head = current.from.get(index);
+            Entry low = null;
+            Entry high = null;
+            for (Entry e = head; e != null; e = e.next) {
+                if ((e.hash & length) == 0)
+                    low = new Entry(e.hash, e.key, e.value, low);
+                else
+                    high = new Entry(e.hash, e.key, e.value, high);
+            }
+            current.to.set(index, low);
+            current.to.set(index + length, high);
+            if (current.from.compareAndSet(index, head, current.forward))
+                return;
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,128 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the ConcurrentHashtableMap class.
+ */
+public class ConcurrentHashtableMapTests {
+
+    /**
+     * Test matchesHashMap: on one thread, a long random mix of puts, gets and
+     * removes, through many resizes, gives the same answers as
+     * java.util.HashMap and follows MapADT's exceptions.
+     */
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(39);
+        ConcurrentHashtableMap<Integer, String> map = new ConcurrentHashtableMap<>(2);
+        Map<Integer, String> expected = new HashMap<>();
+        for (int step = 0; step < 100000; step++) {
+            int key = random.nextInt(5000);
+            if (random.nextInt(3) > 0) {
+                if (expected.containsKey(key)) {
+                    Assertions.assertThrows(IllegalArgumentException.class, () -> map.put(key, "again"));
+                } else {
+                    map.put(key, "v" + step);
+                    expected.put(key, "v" + step);
+                }
+            } else if (expected.containsKey(key)) {
+                Assertions.assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                Assertions.assertThrows(NoSuchElementException.class, () -> map.remove(key));
+                Assertions.assertThrows(NoSuchElementException.class, () -> map.get(key));
+            }
+            Assertions.assertEquals(expected.size(), map.getSize());
+        }
+        Assertions.assertTrue(map.getCapacity() * 3 >= map.getSize() * 2);
+        List<Integer> keys = map.getKeys();
+        Assertions.assertEquals(expected.size(), keys.size());
+        for (int key : keys)
+            Assertions.assertEquals(expected.get(key), map.get(key));
+        Assertions.assertThrows(NullPointerException.class, () -> map.put(null, "null"));
+        Assertions.assertFalse(map.containsKey(null));
+        map.clear();
+        Assertions.assertEquals(0, map.getSize());
+        Assertions.assertTrue(map.getKeys().isEmpty());
+    }
+
+    /**
+     * Test concurrentWriters: threads inserting disjoint key ranges while
+     * others read keep every key through the resizes they cause, racing puts
+     * of one key let exactly one thread win, and concurrent removals leave
+     * the map empty.
+     */
+    @Test
+    public void concurrentWriters() throws InterruptedException {
+        ConcurrentHashtableMap<Integer, Integer> map = new ConcurrentHashtableMap<>(4);
+        int threads = 8;
+        int perThread = 20000;
+        AtomicInteger wrongReads = new AtomicInteger();
+        runThreads(threads, t -> {
+            for (int i = 0; i < perThread; i++) {
+                int key = t * perThread + i;
+                map.put(key, -key);
+                // an earlier key of this thread must stay visible throughout
+                int earlier = t * perThread + i / 2;
+                if (!map.containsKey(earlier) || map.get(earlier) != -earlier)
+                    wrongReads.incrementAndGet();
+            }
+        });
+        Assertions.assertEquals(0, wrongReads.get());
+        Assertions.assertEquals(threads * perThread, map.getSize());
+        Assertions.assertEquals(threads * perThread, map.getKeys().size());
+        for (int key = 0; key < threads * perThread; key++)
+            Assertions.assertEquals(-key, map.get(key));
+
+        AtomicInteger wins = new AtomicInteger();
+        runThreads(threads, t -> {
+            try {
+                map.put(-1, t);
+                wins.incrementAndGet();
+            } catch (IllegalArgumentException e) {
+                // another thread put it first
+            }
+        });
+        Assertions.assertEquals(1, wins.get());
+
+        runThreads(threads, t -> {
+            for (int i = 0; i < perThread; i++)
+                map.remove(t * perThread + i);
+        });
+        map.remove(-1);
+        Assertions.assertEquals(0, map.getSize());
+        Assertions.assertTrue(map.getKeys().isEmpty());
+    }
+
+    private interface Task {
+        void run(int thread);
+    }
+
+    // runs task on threads threads at once, and rethrows the first failure
+    private static void runThreads(int threads, Task task) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread worker = new Thread(() -> task.run(thread));
+            worker.setUncaughtExceptionHandler((w, e) -> {
+                synchronized (failures) {
+                    failures.add(e);
+                }
+            });
+            workers.add(worker);
+        }
+        for (Thread worker : workers)
+            worker.start();
+        for (Thread worker : workers)
+            worker.join();
+        if (!failures.isEmpty())
+            Assertions.fail("worker thread failed: " + failures.get(0));
+    }
+}
@@ -0,0 +1,228 @@
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * A read-only graph in compressed sparse row form: node ids are dense ints,
+ * the edges leaving node u are entries offsets[u] through offsets[u + 1] - 1
+ * of the targets and weights arrays, and each node's edges are sorted by
+ * target id. The whole graph is three arrays plus the node names, so it
+ * costs a few bytes per edge instead of a Node and Edge object graph, and a
+ * search scans each node's edges sequentially.
+ *
+ * ParallelDotLoader builds one directly from a dot file. Both it and copyOf
+ * can renumber the nodes into a NodeOrder, which also places neighbors'
+ * edges near each other in the arrays.
+ */
+public class CsrGraph extends FrozenGraph {
+
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+
+    /**
+     * Wraps CSR arrays, which the graph then owns. The edges of each node
+     * must be sorted by target, with no target repeated.
+     *
+     * @param names   the node names, interned in id order
+     * @param offsets the first edge of each node, plus the edge count at the end
+     * @param targets the target id of each edge
+     * @param weights the weight of each edge
+     */
+    CsrGraph(NodeDictionary<String> names, int[] offsets, int[] targets, double[] weights) {
+        super(names);
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * Copies a graph into CSR form. Nodes keep the order of their ids in
+     * graph, closing the gaps that removed nodes left; edge attributes and
+     * travel time profiles are not copied.
+     *
+     * @param graph the graph to copy
+     * @return a read-only copy of graph
+     */
+    public static <E extends Number> CsrGraph copyOf(BaseGraph<String, E> graph) {
+        NodeDictionary<String> names = new NodeDictionary<>();
+        int[] denseIds = new int[graph.nodesById.size()];
+        for (int id = 0; id < denseIds.length; id++)
+            if (graph.nodesById.get(id) != null)
+                denseIds[id] = names.intern(graph.nodesById.get(id).data);
+        int n = names.size();
+        int m = 0;
+        for (BaseGraph<String, E>.Node node : graph.nodesById)
+            if (node != null)
+                m += node.edgesLeaving.size();
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[m];
+        double[] weights = new double[m];
+        int edge = 0;
+        int dense = 0;
+        for (BaseGraph<String, E>.Node node : graph.nodesById) {
+            if (node == null)
+                continue;
+            for (BaseGraph<String, E>.Edge leaving : node.edgesLeaving) {
+                targets[edge] = denseIds[leaving.successor.id];
+                weights[edge] = leaving.data.doubleValue();
+                edge++;
+            }
+            offsets[++dense] = edge;
+            ParallelDotLoader.sortEdges(targets, weights, offsets[dense - 1], edge);
+        }
+        return new CsrGraph(names, offsets, targets, weights);
+    }
+
+    /**
+     * Copies a graph into CSR form, then renumbers its nodes into an order
+     * such as NodeOrder::reverseCuthillMcKee.
+     *
+     * @param graph the graph to copy
+     * @param order gives the new id of each node, indexed by its id in the
+     *              copy that copyOf(graph) makes
+     * @return a read-only, renumbered copy of graph
+     * @throws IllegalArgumentException if order does not return a permutation
+     */
+    public static <E extends Number> CsrGraph copyOf(BaseGraph<String, E> graph, Function<CsrGraph, int[]> order) {
+        CsrGraph copy = copyOf(graph);
+        return copy.renumber(order.apply(copy));
+    }
+
+    /**
+     * Returns a copy of this graph with its nodes renumbered, e.g. into an
+     * order from NodeOrder that gives neighbors nearby ids.
+     *
+     * @param newIds the new id of each node, indexed by its current id;
+     *               a permutation of 0 to getNodeCount() - 1
+     * @return the renumbered graph
+     * @throws IllegalArgumentException if newIds is not such a permutation
+     */
+    public CsrGraph renumber(int[] newIds) {
+        int n = getNodeCount();
+        if (newIds.length != n)
+            throw new IllegalArgumentException("New ids must be a permutation of the node ids.");
+        int[] oldIds = new int[n];
+        Arrays.fill(oldIds, -1);
+        for (int id = 0; id < n; id++) {
+            int to = newIds[id];
+            if (to < 0 || to >= n || oldIds[to] >= 0)
+                throw new IllegalArgumentException("New ids must be a permutation of the node ids.");
+            oldIds[to] = id;
+        }
+        NodeDictionary<String> renamed = new NodeDictionary<>();
+        int[] newOffsets = new int[n + 1];
+        int[] newTargets = new int[targets.length];
+        double[] newWeights = new double[weights.length];
+        for (int id = 0; id < n; id++) {
+            int old = oldIds[id];
+            renamed.intern(names.dataOf(old));
+            int edge = newOffsets[id];
+            for (int e = offsets[old]; e < offsets[old + 1]; e++, edge++) {
+                newTargets[edge] = newIds[targets[e]];
+                newWeights[edge] = weights[e];
+            }
+            newOffsets[id + 1] = edge;
+            ParallelDotLoader.sortEdges(newTargets, newWeights, newOffsets[id], edge);
+        }
+        return new CsrGraph(renamed, newOffsets, newTargets, newWeights);
+    }
+
+    /**
+     * @param id a node id
+     * @return the index of the node's first edge in the edge arrays
+     */
+    public int firstEdge(int id) {
+        return offsets[id];
+    }
+
+    /**
+     * @param id a node id
+     * @return one more than the index of the node's last edge
+     */
+    public int endEdge(int id) {
+        return offsets[id + 1];
+    }
+
+    /**
+     * @param edge an edge index
+     * @return the id of the node the edge leads to
+     */
+    public int edgeTarget(int edge) {
+        return targets[edge];
+    }
+
+    /**
+     * @param edge an edge index
+     * @return the weight of the edge
+     */
+    public double edgeWeight(int edge) {
+        return weights[edge];
+    }
+
+    /**
+     * Returns the index of the edge between two nodes.
+     *
+     * @param from the id of the edge's source node
+     * @param to   the id of the edge's target node
+     * @return the edge's index, or -1 if there is no such edge
+     */
+    public int findEdge(int from, int to) {
+        checkId(from);
+        int edge = Arrays.binarySearch(targets, offsets[from], offsets[from + 1], to);
+        return edge < 0 ? -1 : edge;
+    }
+
+    /**
+     * Returns the graph with every edge turned around, for searching toward
+     * a node rather than away from it. Node ids and names are unchanged.
+     *
+     * @return a graph with an edge from b to a for each edge from a to b
+     */
+    public CsrGraph reverse() {
+        int n = getNodeCount();
+        int m = getEdgeCount();
+        int[] reversedOffsets = new int[n + 1];
+        for (int edge = 0; edge < m; edge++)
+            reversedOffsets[targets[edge] + 1]++;
+        for (int id = 0; id < n; id++)
+            reversedOffsets[id + 1] += reversedOffsets[id];
+        int[] cursors = Arrays.copyOf(reversedOffsets, n);
+        int[] reversedTargets = new int[m];
+        double[] reversedWeights = new double[m];
+        // sources are visited in increasing order, so each node's reversed
+        // edges come out sorted
+        for (int id = 0; id < n; id++) {
+            for (int edge = offsets[id]; edge < offsets[id + 1]; edge++) {
+                int slot = cursors[targets[edge]]++;
+                reversedTargets[slot] = id;
+                reversedWeights[slot] = weights[edge];
+            }
+        }
+        return new CsrGraph(names, reversedOffsets, reversedTargets, reversedWeights);
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    @Override
+    public void forEachEdge(int id, EdgeVisitor visitor) {
+        for (int edge = offsets[id]; edge < offsets[id + 1]; edge++)
+            visitor.visit(targets[edge], weights[edge]);
+    }
+
+    @Override
+    protected int relaxEdges(SearchArena arena, int id, double cost) {
+        int end = offsets[id + 1];
+        for (int edge = offsets[id]; edge < end; edge++)
+            arena.relax(targets[edge], cost + weights[edge], id);
+        return end - offsets[id];
+    }
+
+    @Override
+    protected double edgeWeight(int from, int to) {
+        int edge = findEdge(from, to);
+        return edge < 0 ? Double.NaN : weights[edge];
+    }
+}
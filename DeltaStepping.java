@@ -0,0 +1,291 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Computes the cost of the shortest path from one node to every other node
+ * of a read-only graph with the delta-stepping algorithm of Meyer and
+ * Sanders, which relaxes many nodes' edges at once on a ForkJoinPool.
+ *
+ * Tentative costs are kept in buckets delta wide. The nodes in the lowest
+ * nonempty bucket are all relaxed in parallel, first along their light
+ * edges (weight at most delta), which can only add nodes to the same or
+ * later buckets, until that bucket stays empty; then their heavy edges,
+ * which only reach later buckets, are relaxed once. Costs are lowered with
+ * a compare-and-set, so threads never lock. A small delta does little
+ * wasted work but many rounds, like Dijkstra's algorithm; a large one
+ * does fewer, wider rounds with more re-relaxed edges, like Bellman-Ford.
+ * Only nonempty buckets are stored, in a map by bucket number with a heap
+ * of their numbers, so memory and time do not grow with the longest
+ * distance divided by delta, however small delta is.
+ *
+ * One instance runs one search at a time; the pool may be shared.
+ */
+public class DeltaStepping {
+
+    // frontiers smaller than this are relaxed without forking
+    private static final int GRAIN = 256;
+
+    private final FrozenGraph graph;
+    private final double delta;
+    private final ForkJoinPool pool;
+
+    // each node's tentative cost, as the bits of a non-negative double, which
+    // order the same way as the doubles themselves
+    private AtomicLongArray costs;
+    // the nodes filed in each nonempty bucket, by bucket number
+    private final LongObjectMap<NodeList> buckets = new LongObjectMap<>();
+    // a min-heap of bucket numbers, holding each nonempty bucket at least once
+    private long[] heap = new long[16];
+    private int heapSize = 0;
+    private int phases;
+
+    /**
+     * @param graph the graph to search
+     * @param delta the width of each bucket of costs
+     * @param pool  the pool to relax edges on
+     * @throws IllegalArgumentException if delta is not positive
+     */
+    public DeltaStepping(FrozenGraph graph, double delta, ForkJoinPool pool) {
+        if (!(delta > 0))
+            throw new IllegalArgumentException("Delta must be greater than 0.");
+        this.graph = graph;
+        this.delta = delta;
+        this.pool = pool;
+    }
+
+    /**
+     * Uses the graph's mean edge weight as delta, which suits graphs whose
+     * nodes have a few edges of similar weight, such as road networks.
+     *
+     * @param graph the graph to search
+     * @param pool  the pool to relax edges on
+     */
+    public DeltaStepping(FrozenGraph graph, ForkJoinPool pool) {
+        this(graph, meanWeight(graph), pool);
+    }
+
+    private static double meanWeight(FrozenGraph graph) {
+        double[] total = { 0 };
+        for (int id = 0; id < graph.getNodeCount(); id++)
+            graph.forEachEdge(id, (target, weight) -> total[0] += weight);
+        double mean = total[0] / Math.max(1, graph.getEdgeCount());
+        return mean > 0 ? mean : 1;
+    }
+
+    /**
+     * Returns the cost of the shortest path from source to every node.
+     *
+     * @param source the name of the start node
+     * @return the cost of reaching each node, indexed by node id; positive
+     *         infinity for nodes that cannot be reached
+     * @throws NoSuchElementException if source is not in the graph
+     */
+    public double[] costsFrom(String source) {
+        return costsFrom(graph.getNodeId(source));
+    }
+
+    /**
+     * Returns the cost of the shortest path from source to every node.
+     *
+     * @param sourceId the id of the start node
+     * @return the cost of reaching each node, indexed by node id; positive
+     *         infinity for nodes that cannot be reached
+     * @throws NoSuchElementException if there is no node with that id
+     */
+    public double[] costsFrom(int sourceId) {
+        graph.checkId(sourceId);
+        int n = graph.getNodeCount();
+        costs = new AtomicLongArray(n);
+        long infinity = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+        for (int id = 0; id < n; id++)
+            costs.set(id, infinity);
+        costs.set(sourceId, Double.doubleToRawLongBits(0));
+        buckets.clear();
+        heapSize = 0;
+        phases = 0;
+        add(0, sourceId);
+
+        // stamps mark each node once per frontier and once per bucket
+        int[] inFrontier = new int[n];
+        int[] inBucket = new int[n];
+        int stamp = 0;
+        int bucketStamp = 0;
+        int[] removed = new int[16];
+        while (heapSize > 0) {
+            long bucket = pollBucket();
+            if (!buckets.containsKey(bucket))
+                continue; // already emptied, when it was listed twice
+            bucketStamp++;
+            int removedCount = 0;
+            while (buckets.containsKey(bucket)) {
+                NodeList entries = buckets.remove(bucket);
+                phases++;
+                stamp++;
+                // take the bucket's nodes that still belong to it, once each
+                int frontierSize = 0;
+                for (int i = 0; i < entries.size; i++) {
+                    int node = entries.nodes[i];
+                    if (inFrontier[node] != stamp && bucketOf(cost(node)) == bucket) {
+                        inFrontier[node] = stamp;
+                        entries.nodes[frontierSize++] = node;
+                        if (inBucket[node] != bucketStamp) {
+                            inBucket[node] = bucketStamp;
+                            if (removedCount == removed.length)
+                                removed = Arrays.copyOf(removed, removedCount * 2);
+                            removed[removedCount++] = node;
+                        }
+                    }
+                }
+                relaxAll(entries.nodes, frontierSize, true);
+            }
+            relaxAll(removed, removedCount, false);
+        }
+        double[] result = new double[n];
+        for (int id = 0; id < n; id++)
+            result[id] = Double.longBitsToDouble(costs.get(id));
+        costs = null;
+        buckets.clear();
+        return result;
+    }
+
+    /**
+     * @return the number of light edge rounds the last search took
+     */
+    public int getPhaseCount() {
+        return phases;
+    }
+
+    // relaxes the light or heavy edges of nodes[0..count), in parallel when
+    // there are enough, and files every node whose cost dropped into its bucket
+    private void relaxAll(int[] nodes, int count, boolean light) {
+        if (count == 0)
+            return;
+        int leaves = (count + GRAIN - 1) / GRAIN;
+        NodeList[] lowered = new NodeList[leaves];
+        if (leaves == 1)
+            lowered[0] = relaxRange(nodes, 0, count, light);
+        else
+            pool.invoke(new Relax(nodes, count, light, lowered, 0, leaves));
+        for (NodeList list : lowered)
+            for (int i = 0; i < list.size; i++)
+                add(bucketOf(cost(list.nodes[i])), list.nodes[i]);
+    }
+
+    // relaxes the nodes in leaves [from, to) of GRAIN nodes each
+    private final class Relax extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] nodes;
+        private final int count;
+        private final boolean light;
+        private final NodeList[] lowered;
+        private final int from;
+        private final int to;
+
+        Relax(int[] nodes, int count, boolean light, NodeList[] lowered, int from, int to) {
+            this.nodes = nodes;
+            this.count = count;
+            this.light = light;
+            this.lowered = lowered;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                lowered[from] = relaxRange(nodes, from * GRAIN, Math.min(count, (from + 1) * GRAIN), light);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Relax(nodes, count, light, lowered, from, middle),
+                    new Relax(nodes, count, light, lowered, middle, to));
+        }
+    }
+
+    // the nodes whose cost one leaf lowered
+    private static final class NodeList {
+        int[] nodes = new int[16];
+        int size = 0;
+
+        void add(int node) {
+            if (size == nodes.length)
+                nodes = Arrays.copyOf(nodes, size * 2);
+            nodes[size++] = node;
+        }
+    }
+
+    private NodeList relaxRange(int[] nodes, int start, int end, boolean light) {
+        NodeList lowered = new NodeList();
+        for (int i = start; i < end; i++) {
+            int node = nodes[i];
+            double base = cost(node);
+            graph.forEachEdge(node, (target, weight) -> {
+                if ((weight <= delta) == light && lower(target, base + weight))
+                    lowered.add(target);
+            });
+        }
+        return lowered;
+    }
+
+    // lowers node's cost to candidate if that is lower, returning whether it was
+    private boolean lower(int node, double candidate) {
+        long bits = Double.doubleToRawLongBits(candidate);
+        long current = costs.get(node);
+        while (bits < current) {
+            if (costs.compareAndSet(node, current, bits))
+                return true;
+            current = costs.get(node);
+        }
+        return false;
+    }
+
+    private double cost(int node) {
+        return Double.longBitsToDouble(costs.get(node));
+    }
+
+    private long bucketOf(double cost) {
+        return (long) Math.min(cost / delta, Long.MAX_VALUE / 2);
+    }
+
+    private void add(long bucket, int node) {
+        NodeList list = buckets.getOrDefault(bucket, null);
+        if (list == null) {
+            list = new NodeList();
+            buckets.put(bucket, list);
+            pushBucket(bucket);
+        }
+        list.add(node);
+    }
+
+    private void pushBucket(long bucket) {
+        if (heapSize == heap.length)
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        int i = heapSize++;
+        while (i > 0 && heap[(i - 1) >>> 1] > bucket) {
+            heap[i] = heap[(i - 1) >>> 1];
+            i = (i - 1) >>> 1;
+        }
+        heap[i] = bucket;
+    }
+
+    private long pollBucket() {
+        long lowest = heap[0];
+        long last = heap[--heapSize];
+        int i = 0;
+        while (2 * i + 1 < heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child])
+                child++;
+            if (heap[child] >= last)
+                break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return lowest;
+    }
+}
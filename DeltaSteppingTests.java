@@ -0,0 +1,108 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Unit tests for the DeltaStepping class.
+ */
+public class DeltaSteppingTests {
+
+    // a size by size grid with random edge weights in both directions
+    private static CsrGraph grid(int size, Random random) {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        for (int r = 0; r < size; r++)
+            for (int c = 0; c < size; c++)
+                graph.insertNode(r + "," + c);
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                if (c + 1 < size) {
+                    graph.insertEdge(r + "," + c, r + "," + (c + 1), 10 + 90 * random.nextDouble());
+                    graph.insertEdge(r + "," + (c + 1), r + "," + c, 10 + 90 * random.nextDouble());
+                }
+                if (r + 1 < size) {
+                    graph.insertEdge(r + "," + c, (r + 1) + "," + c, 10 + 90 * random.nextDouble());
+                    graph.insertEdge((r + 1) + "," + c, r + "," + c, 10 + 90 * random.nextDouble());
+                }
+            }
+        }
+        return CsrGraph.copyOf(graph);
+    }
+
+    // checks every cost from source against Dijkstra's algorithm
+    private static void assertMatchesDijkstra(FrozenGraph graph, int source, double[] costs) {
+        Assertions.assertEquals(graph.getNodeCount(), costs.length);
+        for (int id = 0; id < graph.getNodeCount(); id++) {
+            double expected;
+            try {
+                expected = graph.shortestPathCostById(source, id);
+            } catch (NoSuchElementException e) {
+                expected = Double.POSITIVE_INFINITY;
+            }
+            Assertions.assertEquals(expected, costs[id], 1e-9);
+        }
+    }
+
+    /**
+     * Test matchesDijkstra: on campus and on a grid large enough to relax
+     * in parallel, costs from several sources equal those Dijkstra's
+     * algorithm finds, for deltas from below the smallest edge weight to
+     * above the largest, with one thread and with several.
+     */
+    @Test
+    public void matchesDijkstra() throws IOException {
+        CsrGraph campus = ParallelDotLoader.load("campus.dot", 1);
+        CsrGraph grid = grid(60, new Random(3));
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool several = new ForkJoinPool(4);
+        try {
+            for (CsrGraph graph : new CsrGraph[] { campus, grid }) {
+                for (double delta : new double[] { 1, 40, 1000 }) {
+                    for (ForkJoinPool pool : new ForkJoinPool[] { single, several }) {
+                        DeltaStepping search = new DeltaStepping(graph, delta, pool);
+                        for (int source = 0; source < graph.getNodeCount(); source += graph.getNodeCount() / 3)
+                            assertMatchesDijkstra(graph, source, search.costsFrom(source));
+                    }
+                }
+                DeltaStepping search = new DeltaStepping(graph, several);
+                assertMatchesDijkstra(graph, 1, search.costsFrom(graph.getNodeName(1)));
+                Assertions.assertTrue(search.getPhaseCount() > 0);
+            }
+        } finally {
+            single.shutdown();
+            several.shutdown();
+        }
+    }
+
+    /**
+     * Test tinyDelta: a delta far below every edge weight, which puts nearly
+     * every node in a bucket of its own among billions of empty ones, still
+     * gives Dijkstra's costs, quickly and in little memory.
+     */
+    @Test
+    public void tinyDelta() throws IOException {
+        CsrGraph campus = ParallelDotLoader.load("campus.dot", 1);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        long start = System.nanoTime();
+        DeltaStepping search = new DeltaStepping(campus, 1e-6, pool);
+        for (int source = 0; source < campus.getNodeCount(); source += 40)
+            assertMatchesDijkstra(campus, source, search.costsFrom(source));
+        Assertions.assertTrue(System.nanoTime() - start < 5_000_000_000L);
+    }
+
+    /**
+     * Test badArguments: delta must be positive and the source must exist.
+     */
+    @Test
+    public void badArguments() throws IOException {
+        CsrGraph graph = ParallelDotLoader.load("campus.dot", 1);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new DeltaStepping(graph, 0, pool));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new DeltaStepping(graph, Double.NaN, pool));
+        DeltaStepping search = new DeltaStepping(graph, 10, pool);
+        Assertions.assertThrows(NoSuchElementException.class, () -> search.costsFrom(-1));
+        Assertions.assertThrows(NoSuchElementException.class, () -> search.costsFrom("Nowhere"));
+    }
+}
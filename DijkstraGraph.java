@@ -7,7 +7,6 @@
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
-import java.util.PriorityQueue;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.NoSuchElementException;
@@ -77,52 +76,146 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      *                                correspond to a graph node
      */
     protected SearchNode computeShortestPath(NodeType start, NodeType end) {
+        return computeShortestPath(start, end, Double.NaN);
+    }
+
+    /**
+     * This helper method computes the shortest path from start to end like
+     * computeShortestPath(start, end), but when departureTime is a number it
+     * runs a time-dependent search: each edge with a TravelTimeProfile costs
+     * its travel time at the moment the search reaches it (departureTime
+     * plus the cost so far), while edges without profiles keep their static
+     * weight. Costs are then travel times since departure, which Dijkstra's
+     * algorithm still minimizes exactly because profiles are FIFO.
+     *
+     * @param start         the data item in the starting node for the path
+     * @param end           the data item in the destination node for the path
+     * @param departureTime seconds since midnight to depart at, or NaN for a
+     *                      search using only static weights
+     * @return SearchNode for the final end node within the shortest path
+     * @throws NoSuchElementException when no path from start to end is found
+     *                                or when either start or end data do not
+     *                                correspond to a graph node
+     */
+    protected SearchNode computeShortestPath(NodeType start, NodeType end, double departureTime) {
+        return computeShortestPath(start, end, departureTime, null);
+    }
+
+    /**
+     * This helper method computes the shortest path from start to end like
+     * computeShortestPath(start, end, departureTime), while never visiting a
+     * node or following an edge that filter avoids.
+     *
+     * @param start         the data item in the starting node for the path
+     * @param end           the data item in the destination node for the path
+     * @param departureTime seconds since midnight to depart at, or NaN for a
+     *                      search using only static weights
+     * @param filter        the nodes and edges to avoid, or null for none
+     * @return SearchNode for the final end node within the shortest path
+     * @throws NoSuchElementException when no path from start to end is found
+     *                                or when either start or end data do not
+     *                                correspond to a graph node
+     * @throws IllegalArgumentException if filter was created for another graph
+     */
+    protected SearchNode computeShortestPath(NodeType start, NodeType end, double departureTime,
+            RouteFilter<NodeType, EdgeType> filter) {
+        int endId = search(start, end, departureTime, filter);
+        SearchArena arena = SearchArena.forCurrentThread();
+        // link SearchNodes along the path found, from start to end
+        SearchNode path = null;
+        for (int id : pathIds(arena, endId))
+            path = new SearchNode(nodesById.get(id), arena.getCost(id), path);
+        return path;
+    }
+
+    // lists the ids along the path to endId found by the arena's last search
+    private static int[] pathIds(SearchArena arena, int endId) {
+        int length = 0;
+        for (int id = endId; id >= 0; id = arena.getPredecessor(id))
+            length++;
+        int[] path = new int[length];
+        for (int id = endId; id >= 0; id = arena.getPredecessor(id))
+            path[--length] = id;
+        return path;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from start until end is settled, keeping all
+     * search state in this thread's SearchArena: costs, predecessors and the
+     * queue live in primitive arrays indexed by node id that are reused from
+     * query to query, so the search allocates nothing per relaxation. The
+     * arena holds the result until the thread's next search.
+     *
+     * @param start         the data item in the starting node for the path
+     * @param end           the data item in the destination node for the path
+     * @param departureTime seconds since midnight to depart at, or NaN for a
+     *                      search using only static weights
+     * @param filter        the nodes and edges to avoid, or null for none
+     * @return the id of the end node, whose cost and predecessors are in the arena
+     * @throws NoSuchElementException when no path from start to end is found
+     *                                or when either start or end data do not
+     *                                correspond to a graph node
+     * @throws IllegalArgumentException if filter was created for another graph
+     */
+    private int search(NodeType start, NodeType end, double departureTime,
+            RouteFilter<NodeType, EdgeType> filter) {
+    if (filter != null && filter.getGraph() != this)
+        throw new IllegalArgumentException("Filter was created for a different graph.");
+
 	// Check if graph contains the start and end nodes
     if (!containsNode(start) || !containsNode(end)) {
         throw new NoSuchElementException("Start or end node not in graph.");
     }
+    return searchFrom(nodes.get(start), nodes.get(end).id, departureTime, filter);
+    }
 
-    // PriorityQueue for SearchNodes, please note this is ordered by cost for Dijkstra's algorithm
-    PriorityQueue<SearchNode> queue = new PriorityQueue<>();
-    
-    MapADT<NodeType, SearchNode> visitedNode = new HashtableMap<>();
+    // runs the search described above between nodes that are known to exist
+    private int searchFrom(Node startNode, int endId, double departureTime,
+            RouteFilter<NodeType, EdgeType> filter) {
+    boolean timeDependent = !Double.isNaN(departureTime);
+
+    // costs, predecessors and the queue (ordered by cost) for this search
+    SearchArena arena = SearchArena.forCurrentThread();
+    arena.begin(nodeIdBound);
+
+    // work counters, reported to Metrics once the search finishes
+    int settled = 0;
+    int relaxed = 0;
 
     // Initialize the start node with cost 0
-    Node startNode = nodes.get(start);
-    SearchNode firstSearchNode = new SearchNode(startNode, 0, null);
-    queue.add(firstSearchNode);
+    if (filter == null || filter.allows(startNode))
+        arena.relax(startNode.id, 0, -1);
 
     // Dijkstra's Algorithm
-    while (!queue.isEmpty()) {
-        // node with the lowest cost
-        SearchNode currentSearchNode = queue.poll();
-        Node currentNode = currentSearchNode.node;
-
-        // skip if already visited
-        if (visitedNode.containsKey(currentNode.data)) {
-            continue;
-        }
-
-        // Mark node as visited
-        visitedNode.put(currentNode.data, currentSearchNode);
+    while (!arena.isEmpty()) {
+        // node with the lowest cost, which is now settled
+        int currentId = arena.poll();
+        double currentCost = arena.getCost(currentId);
+        settled++;
 
         // Check if reached end node
-        if (currentNode.data.equals(end)) {
-            return currentSearchNode; // Return the SearchNode representing the end node
+        if (currentId == endId) {
+            if (Metrics.ENABLED)
+                Metrics.recordSearch(settled, relaxed, arena.getPushCount());
+            return endId;
         }
 
-       
-        for (Edge edge : currentNode.edgesLeaving) {
-            Node neighbor = edge.successor;
-            double newCost = currentSearchNode.cost + edge.data.doubleValue();
+        for (Edge edge : nodesById.get(currentId).edgesLeaving) {
+            if (filter != null && !filter.allows(edge))
+                continue;
+            double weight = timeDependent && edge.profile != null
+                    ? edge.profile.travelTime(departureTime + currentCost)
+                    : edge.data.doubleValue();
+            relaxed++;
 
-            // consider this neighbor if it hasn't been visited or if the new cost is lower
-            if (!visitedNode.containsKey(neighbor.data)) {
-                queue.add(new SearchNode(neighbor, newCost, currentSearchNode));
-            }
+            // queue the neighbor, or lower its cost, unless it is already settled
+            arena.relax(edge.successor.id, currentCost + weight, currentId);
         }
     }
 
+    if (Metrics.ENABLED)
+        Metrics.recordSearch(settled, relaxed, arena.getPushCount());
+
     // If the end node was not reached, there is no path
     throw new NoSuchElementException("error: there is no path from start to end node.");
     }
@@ -141,8 +234,11 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      * @return list of data item from node along this shortest path
      */
     public List<NodeType> shortestPathData(NodeType start, NodeType end) {
-	// Call computeShortestPath to find the end 
-    SearchNode endNode = computeShortestPath(start, end);
+        return pathTo(computeShortestPath(start, end));
+    }
+
+    // lists the node data along the path that ends with endNode
+    private List<NodeType> pathTo(SearchNode endNode) {
     
     // If computeShortestPath returned null, there's no valid path
     if (endNode == null) {
@@ -173,9 +269,151 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      */
     public double shortestPathCost(NodeType start, NodeType end) {
    
-	SearchNode endNode = computeShortestPath(start, end);
+	int endId = search(start, end, Double.NaN, null);
     
-	return endNode.cost;
+	return SearchArena.forCurrentThread().getCost(endId);
+    }
+
+    /**
+     * Returns the ids of the nodes along the shortest path between the nodes
+     * with ids startId and endId, for callers that work with node ids from
+     * getNodeId rather than node data.
+     *
+     * @param startId the id of the starting node for the path
+     * @param endId   the id of the destination node for the path
+     * @return the ids of the nodes along this shortest path, start to end
+     * @throws NoSuchElementException if either node is missing, or if there
+     *                                is no path from start to end
+     */
+    public int[] shortestPathIds(int startId, int endId) {
+        nodeById(endId);
+        return pathIds(SearchArena.forCurrentThread(),
+                searchFrom(nodeById(startId), endId, Double.NaN, null));
+    }
+
+    /**
+     * Returns the cost of the shortest path between the nodes with ids
+     * startId and endId.
+     *
+     * @param startId the id of the starting node for the path
+     * @param endId   the id of the destination node for the path
+     * @return the cost of the shortest path between these nodes
+     * @throws NoSuchElementException if either node is missing, or if there
+     *                                is no path from start to end
+     */
+    public double shortestPathCostById(int startId, int endId) {
+        nodeById(endId);
+        return SearchArena.forCurrentThread().getCost(
+                searchFrom(nodeById(startId), endId, Double.NaN, null));
+    }
+
+    /**
+     * Returns the list of data values along the quickest path from start to
+     * end when departing at departureTime, taking each edge's
+     * TravelTimeProfile into account.
+     *
+     * @param start         the data item in the starting node for the path
+     * @param end           the data item in the destination node for the path
+     * @param departureTime the departure time, in seconds since midnight
+     * @return list of data item from node along this quickest path
+     * @throws NoSuchElementException if either node is missing, or if there
+     *                                is no path from start to end
+     */
+    public List<NodeType> shortestPathData(NodeType start, NodeType end, double departureTime) {
+        return pathTo(computeShortestPath(start, end, departureTime));
+    }
+
+    /**
+     * Returns the travel time of the quickest path from start to end when
+     * departing at departureTime, taking each edge's TravelTimeProfile into
+     * account.
+     *
+     * @param start         the data item in the starting node for the path
+     * @param end           the data item in the destination node for the path
+     * @param departureTime the departure time, in seconds since midnight
+     * @return the travel time in seconds from departure to arrival at end
+     * @throws NoSuchElementException if either node is missing, or if there
+     *                                is no path from start to end
+     */
+    public double shortestPathCost(NodeType start, NodeType end, double departureTime) {
+        return SearchArena.forCurrentThread().getCost(search(start, end, departureTime, null));
+    }
+
+    /**
+     * Returns the list of data values along the shortest path from start to
+     * end that avoids every node and edge in filter.
+     *
+     * @param start  the data item in the starting node for the path
+     * @param end    the data item in the destination node for the path
+     * @param filter the nodes and edges the path must avoid
+     * @return list of data item from node along this shortest path
+     * @throws NoSuchElementException if either node is missing, or if every
+     *                                path from start to end is filtered out
+     */
+    public List<NodeType> shortestPathData(NodeType start, NodeType end,
+            RouteFilter<NodeType, EdgeType> filter) {
+        return pathTo(computeShortestPath(start, end, Double.NaN, filter));
+    }
+
+    /**
+     * Returns the cost of the shortest path from start to end that avoids
+     * every node and edge in filter.
+     *
+     * @param start  the data item in the starting node for the path
+     * @param end    the data item in the destination node for the path
+     * @param filter the nodes and edges the path must avoid
+     * @return the cost of the shortest path between these nodes
+     * @throws NoSuchElementException if either node is missing, or if every
+     *                                path from start to end is filtered out
+     */
+    public double shortestPathCost(NodeType start, NodeType end,
+            RouteFilter<NodeType, EdgeType> filter) {
+        return SearchArena.forCurrentThread().getCost(search(start, end, Double.NaN, filter));
+    }
+
+    /**
+     * Attaches a time-dependent travel time profile to an existing edge, or
+     * removes it when profile is null. Static queries keep using the edge's
+     * weight either way.
+     *
+     * @param pred    the data item contained in the source node for the edge
+     * @param succ    the data item contained in the target node for the edge
+     * @param profile the travel time profile for the edge, or null
+     * @return true if the edge was found, false otherwise
+     */
+    public boolean setEdgeProfile(NodeType pred, NodeType succ, TravelTimeProfile profile) {
+        try {
+            getEdgeHelper(pred, succ).profile = profile;
+            return true;
+        } catch (NoSuchElementException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the time-dependent travel time profile of an edge.
+     *
+     * @param pred the data item contained in the source node for the edge
+     * @param succ the data item contained in the target node for the edge
+     * @return the edge's profile, or null if it only has a static weight
+     * @throws NoSuchElementException if the edge is not found in this graph
+     */
+    public TravelTimeProfile getEdgeProfile(NodeType pred, NodeType succ) {
+        return getEdgeHelper(pred, succ).profile;
+    }
+
+    /**
+     * Returns the data of every node that an edge leaving node points to.
+     *
+     * @param node the data item contained in the source node
+     * @return the successors of node, in edge insertion order
+     * @throws NoSuchElementException if node is not found in this graph
+     */
+    public List<NodeType> getSuccessors(NodeType node) {
+        List<NodeType> successors = new LinkedList<>();
+        for (Edge edge : nodes.get(node).edgesLeaving)
+            successors.add(edge.successor.data);
+        return successors;
     }
 
   
@@ -285,4 +523,50 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
             graph.shortestPathCost("A", "C");
         });
     }
+
+    @Test
+    /**
+     * Test case for the allocation profile of a query. Once this thread's
+     * SearchArena has grown to fit the graph, a shortest path cost query
+     * across a 10,000 node grid should allocate (almost) nothing, whereas a
+     * SearchNode per relaxation would take over a megabyte.
+     */
+    public void testQueryAllocation() {
+        java.lang.management.ThreadMXBean threads =
+                java.lang.management.ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+            return; // allocation counters are not available on this JVM
+        com.sun.management.ThreadMXBean counters = (com.sun.management.ThreadMXBean) threads;
+        if (!counters.isThreadAllocatedMemorySupported())
+            return;
+        counters.setThreadAllocatedMemoryEnabled(true);
+
+        DijkstraGraph<Integer, Double> graph = new DijkstraGraph<>();
+        int side = 100;
+        for (int i = 0; i < side * side; i++)
+            graph.insertNode(i);
+        for (int i = 0; i < side * side; i++) {
+            if (i % side + 1 < side) {
+                graph.insertEdge(i, i + 1, 1.0 + i % 7);
+                graph.insertEdge(i + 1, i, 1.0 + i % 5);
+            }
+            if (i + side < side * side) {
+                graph.insertEdge(i, i + side, 1.0 + i % 3);
+                graph.insertEdge(i + side, i, 1.0 + i % 11);
+            }
+        }
+        Integer start = 0;
+        Integer end = side * side - 1;
+        double expected = graph.shortestPathCost(start, end);
+        for (int i = 0; i < 200; i++) // let the JIT settle
+            graph.shortestPathCost(start, end);
+
+        long thread = Thread.currentThread().getId();
+        int queries = 20;
+        long before = counters.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < queries; i++)
+            Assertions.assertEquals(expected, graph.shortestPathCost(start, end));
+        long perQuery = (counters.getThreadAllocatedBytes(thread) - before) / queries;
+        Assertions.assertTrue(perQuery < 1024, "allocated " + perQuery + " bytes per query");
+    }
 }
@@ -0,0 +1,130 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Numeric edge attributes (distance, elevation gain, an indoor flag, ...)
+ * stored column by column: one primitive double array per attribute name,
+ * indexed by the dense edge ids BaseGraph assigns. Searches that weigh
+ * several attributes look each column up once and then read plain arrays,
+ * rather than a map per edge.
+ *
+ * Edges without a value for an attribute read as 0. Each column also counts
+ * its negative values, so that routing can refuse an attribute that would
+ * break Dijkstra's search without scanning its column.
+ */
+public class EdgeAttributes {
+
+    private final Map<String, double[]> columns = new LinkedHashMap<>();
+    // the number of negative values in each column that has any
+    private final Map<String, Integer> negatives = new HashMap<>();
+
+    /**
+     * Stores the value of one attribute for one edge.
+     *
+     * @param edgeId the id of the edge
+     * @param name   the attribute name
+     * @param value  the attribute value
+     */
+    public void set(int edgeId, String name, double value) {
+        double[] column = columns.get(name);
+        if (column == null || column.length <= edgeId) {
+            int length = column == null ? 16 : column.length;
+            while (length <= edgeId)
+                length *= 2;
+            column = column == null ? new double[length] : Arrays.copyOf(column, length);
+            columns.put(name, column);
+        }
+        countNegative(name, column[edgeId], value);
+        column[edgeId] = value;
+    }
+
+    /**
+     * Drops every attribute value of one edge, e.g. when it is removed.
+     *
+     * @param edgeId the id of the edge
+     */
+    public void clear(int edgeId) {
+        for (Map.Entry<String, double[]> entry : columns.entrySet()) {
+            double[] column = entry.getValue();
+            if (edgeId < column.length) {
+                countNegative(entry.getKey(), column[edgeId], 0);
+                column[edgeId] = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns whether any edge has a negative value for an attribute.
+     *
+     * @param name the attribute name
+     * @return true if some edge's value is below 0
+     */
+    public boolean hasNegative(String name) {
+        return negatives.containsKey(name);
+    }
+
+    private void countNegative(String name, double oldValue, double newValue) {
+        int change = (newValue < 0 ? 1 : 0) - (oldValue < 0 ? 1 : 0);
+        if (change != 0)
+            negatives.merge(name, change, (count, delta) -> count + delta == 0 ? null : count + delta);
+    }
+
+    /**
+     * Returns the value of one attribute for one edge.
+     *
+     * @param edgeId the id of the edge
+     * @param name   the attribute name
+     * @return the value stored for that edge, or 0 if there is none
+     */
+    public double get(int edgeId, String name) {
+        double[] column = columns.get(name);
+        return column == null || column.length <= edgeId ? 0 : column[edgeId];
+    }
+
+    /**
+     * Returns the array holding every edge's value of an attribute, for
+     * reading many values in a tight loop. Edge ids past the end of the
+     * array have the value 0. The array may be replaced by later calls to
+     * set, so it should not be kept across changes to the graph.
+     *
+     * @param name the attribute name
+     * @return the attribute's column, or null if no edge has this attribute
+     */
+    public double[] getColumn(String name) {
+        return columns.get(name);
+    }
+
+    /**
+     * Returns the names of every attribute stored, in the order first seen.
+     *
+     * @return the attribute names
+     */
+    public List<String> getNames() {
+        return new ArrayList<>(columns.keySet());
+    }
+
+    /**
+     * Parses an attribute value from a dot file as a number. Besides plain
+     * numbers, true/yes and false/no are read as 1 and 0 so that flags such
+     * as indoor=true can be used as criteria.
+     *
+     * @param text the attribute value
+     * @return the numeric value, or NaN if text is not numeric
+     */
+    public static double parseValue(String text) {
+        String value = text.trim().toLowerCase();
+        if (value.equals("true") || value.equals("yes"))
+            return 1;
+        if (value.equals("false") || value.equals("no"))
+            return 0;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
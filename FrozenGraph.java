@@ -0,0 +1,274 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The shared half of the read-only graph representations (CsrGraph,
+ * TiledGraph): node names interned as dense ids by a frozen NodeDictionary,
+ * and the GraphADT queries and Dijkstra search written against ids. A
+ * subclass only decides how each node's edges are stored, by implementing
+ * forEachEdge, relaxEdges and edgeWeight. With HubLabels attached, path
+ * costs are looked up rather than searched for.
+ *
+ * The methods that would change the graph throw
+ * UnsupportedOperationException.
+ */
+public abstract class FrozenGraph implements GraphADT<String, Double> {
+
+    /**
+     * Receives the edges of a node from forEachEdge.
+     */
+    public interface EdgeVisitor {
+        void visit(int target, double weight);
+    }
+
+    protected final NodeDictionary<String> names;
+    // answers shortestPathCost without a search when set
+    private volatile HubLabels hubLabels;
+
+    /**
+     * @param names the node names, interned in id order
+     */
+    protected FrozenGraph(NodeDictionary<String> names) {
+        this.names = names;
+        names.freeze();
+    }
+
+    /**
+     * Passes the target and weight of each edge leaving a node to visitor.
+     *
+     * @param id      a node id
+     * @param visitor receives each edge
+     */
+    public abstract void forEachEdge(int id, EdgeVisitor visitor);
+
+    /**
+     * Relaxes every edge leaving a node that a search has just settled at
+     * cost. This is forEachEdge specialized for the search loop.
+     *
+     * @param arena the search's arena
+     * @param id    the settled node's id
+     * @param cost  the settled node's cost
+     * @return the number of edges relaxed
+     */
+    protected abstract int relaxEdges(SearchArena arena, int id, double cost);
+
+    /**
+     * @param from the id of the edge's source node
+     * @param to   the id of the edge's target node
+     * @return the weight of the edge between them, or NaN if there is none
+     */
+    protected abstract double edgeWeight(int from, int to);
+
+    /**
+     * Called when a search by the current thread ends, so that a subclass
+     * can release what it kept for that search's relaxEdges calls. Callers
+     * that run their own searches with relaxEdges, such as MeetingPoint,
+     * call it too.
+     */
+    protected void searchFinished() {
+    }
+
+    /**
+     * Returns the id of the node holding name.
+     *
+     * @param name the node's name
+     * @return the node's id
+     * @throws NoSuchElementException if there is no such node
+     */
+    public int getNodeId(String name) {
+        int id = names.idOf(name);
+        if (id < 0)
+            throw new NoSuchElementException("Node not in graph: " + name);
+        return id;
+    }
+
+    /**
+     * @param id a node id
+     * @return the name of the node with that id
+     * @throws NoSuchElementException if there is no such node
+     */
+    public String getNodeName(int id) {
+        checkId(id);
+        return names.dataOf(id);
+    }
+
+    @Override
+    public boolean containsNode(String data) {
+        return names.idOf(data) >= 0;
+    }
+
+    @Override
+    public List<String> getAllNodes() {
+        List<String> all = new ArrayList<>(getNodeCount());
+        for (int id = 0; id < getNodeCount(); id++)
+            all.add(names.dataOf(id));
+        return all;
+    }
+
+    @Override
+    public int getNodeCount() {
+        return names.size();
+    }
+
+    @Override
+    public boolean containsEdge(String pred, String succ) {
+        int from = names.idOf(pred);
+        int to = names.idOf(succ);
+        return from >= 0 && to >= 0 && !Double.isNaN(edgeWeight(from, to));
+    }
+
+    @Override
+    public Double getEdge(String pred, String succ) {
+        double weight = edgeWeight(getNodeId(pred), getNodeId(succ));
+        if (Double.isNaN(weight))
+            throw new NoSuchElementException("No edge from " + pred + " to " + succ);
+        return weight;
+    }
+
+    @Override
+    public List<String> shortestPathData(String start, String end) {
+        List<String> path = new ArrayList<>();
+        for (int id : shortestPathIds(getNodeId(start), getNodeId(end)))
+            path.add(names.dataOf(id));
+        return path;
+    }
+
+    @Override
+    public double shortestPathCost(String start, String end) {
+        return shortestPathCostById(getNodeId(start), getNodeId(end));
+    }
+
+    /**
+     * Attaches hub labels built for this graph, or for another graph with
+     * the same node ids, so that shortestPathCost merges two labels instead
+     * of searching. Paths themselves are still found by search.
+     *
+     * @param labels the labels to answer from, or null to search again
+     * @throws IllegalArgumentException if labels were built for other nodes
+     */
+    public void setHubLabels(HubLabels labels) {
+        if (labels != null && !labels.matches(this))
+            throw new IllegalArgumentException("Hub labels were built for a different graph.");
+        hubLabels = labels;
+    }
+
+    /**
+     * Returns the ids of the nodes along the shortest path between the nodes
+     * with ids startId and endId.
+     *
+     * @param startId the id of the starting node for the path
+     * @param endId   the id of the destination node for the path
+     * @return the ids of the nodes along this shortest path, start to end
+     * @throws NoSuchElementException if either node is missing, or if there
+     *                                is no path from start to end
+     */
+    public int[] shortestPathIds(int startId, int endId) {
+        search(startId, endId);
+        SearchArena arena = SearchArena.forCurrentThread();
+        int length = 0;
+        for (int id = endId; id >= 0; id = arena.getPredecessor(id))
+            length++;
+        int[] path = new int[length];
+        for (int id = endId; id >= 0; id = arena.getPredecessor(id))
+            path[--length] = id;
+        return path;
+    }
+
+    /**
+     * Returns the cost of the shortest path between the nodes with ids
+     * startId and endId.
+     *
+     * @param startId the id of the starting node for the path
+     * @param endId   the id of the destination node for the path
+     * @return the cost of the shortest path between these nodes
+     * @throws NoSuchElementException if either node is missing, or if there
+     *                                is no path from start to end
+     */
+    public double shortestPathCostById(int startId, int endId) {
+        HubLabels labels = hubLabels;
+        if (labels != null) {
+            checkId(startId);
+            checkId(endId);
+            double cost = labels.distance(startId, endId);
+            if (cost == Double.POSITIVE_INFINITY)
+                throw new NoSuchElementException("error: there is no path from start to end node.");
+            return cost;
+        }
+        search(startId, endId);
+        return SearchArena.forCurrentThread().getCost(endId);
+    }
+
+    // runs Dijkstra's algorithm in this thread's arena until endId is settled
+    private void search(int startId, int endId) {
+        checkId(startId);
+        checkId(endId);
+        SearchArena arena = SearchArena.forCurrentThread();
+        arena.begin(getNodeCount());
+        int settled = 0;
+        int relaxed = 0;
+        arena.relax(startId, 0, -1);
+        try {
+            while (!arena.isEmpty()) {
+                int current = arena.poll();
+                settled++;
+                if (current == endId) {
+                    if (Metrics.ENABLED)
+                        Metrics.recordSearch(settled, relaxed, arena.getPushCount());
+                    return;
+                }
+                relaxed += relaxEdges(arena, current, arena.getCost(current));
+            }
+        } finally {
+            searchFinished();
+        }
+        if (Metrics.ENABLED)
+            Metrics.recordSearch(settled, relaxed, arena.getPushCount());
+        throw new NoSuchElementException("error: there is no path from start to end node.");
+    }
+
+    protected void checkId(int id) {
+        if (id < 0 || id >= getNodeCount())
+            throw new NoSuchElementException("No node with id " + id);
+    }
+
+    /**
+     * Not supported: a FrozenGraph is read-only.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean insertNode(String data) {
+        throw new UnsupportedOperationException("This graph is read-only.");
+    }
+
+    /**
+     * Not supported: a FrozenGraph is read-only.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean removeNode(String data) {
+        throw new UnsupportedOperationException("This graph is read-only.");
+    }
+
+    /**
+     * Not supported: a FrozenGraph is read-only.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean insertEdge(String pred, String succ, Double weight) {
+        throw new UnsupportedOperationException("This graph is read-only.");
+    }
+
+    /**
+     * Not supported: a FrozenGraph is read-only.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean removeEdge(String pred, String succ) {
+        throw new UnsupportedOperationException("This graph is read-only.");
+    }
+}
@@ -6,8 +6,15 @@
 // Notes to Grader: <optional extra notes>
 
 import java.util.NoSuchElementException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Assertions;
@@ -17,6 +24,11 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
 	protected LinkedList<Pair>[] table = null;
 	private int size = 0;
 
+	// changes whenever keys are added or removed, so that key views can
+	// detect concurrent modification and the key snapshot can be rebuilt
+	private int modCount = 0;
+	private List<KeyType> keySnapshot = null;
+
 	protected class Pair {
 
 		public KeyType key;
@@ -75,6 +87,7 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
 
 		// Increment the size of the map
 		size++;
+		keysChanged();
 
 		// Check if the load factor exceeds 80% and rehash if needed
 		if ((double) size / table.length >= 0.8) {
@@ -201,6 +214,7 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
 				// Remove the Pair and decrement size
 				bucket.remove(i);
 				size--; // Update size
+				keysChanged();
 				return pair.value; // Return the associated value
 			}
 		}
@@ -220,6 +234,7 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
 
 		// Reset the size to 0
 		size = 0;
+		keysChanged();
 
 	}
 
@@ -291,19 +306,154 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
 	Assertions.assertFalse(map.containsKey("key2"), "Expected map not to contain key 'key2' after clear");
     }
 
+    // Test 6: Key snapshot is shared until the keys change
+    @Test
+    void testKeySnapshotCachedUntilChange() {
+	HashtableMap<String, Integer> map = new HashtableMap<>(10);
+	map.put("key1", 100);
+	map.put("key2", 200);
+	List<String> keys = map.getKeys();
+	Assertions.assertSame(keys, map.getKeys(), "Expected unchanged map to return the same snapshot");
+	Assertions.assertThrows(UnsupportedOperationException.class, () -> keys.add("key3"));
+	map.remove("key1");
+	Assertions.assertEquals(List.of("key1", "key2"), keys.stream().sorted().toList(),
+		"Expected an old snapshot to be unaffected by later changes");
+	Assertions.assertEquals(List.of("key2"), map.getKeys(), "Expected a new snapshot after remove");
+    }
+
+    // Test 7: Live key views split for parallel streams and fail fast
+    @Test
+    void testLiveKeyViews() {
+	HashtableMap<Integer, Integer> map = new HashtableMap<>(8);
+	for (int i = 0; i < 10000; i++)
+	    map.put(i, i);
+	long sum = java.util.stream.StreamSupport.stream(map.keySpliterator(), true)
+		.mapToLong(Integer::longValue).sum();
+	Assertions.assertEquals(10000L * 9999 / 2, sum, "Expected a parallel stream to see each key once");
+	Assertions.assertNotNull(map.keySpliterator().trySplit(), "Expected the key spliterator to split");
+
+	Iterator<Integer> keys = map.keyIterator();
+	Assertions.assertTrue(keys.hasNext());
+	keys.next();
+	Assertions.assertThrows(UnsupportedOperationException.class, keys::remove);
+	map.put(-1, -1);
+	Assertions.assertThrows(ConcurrentModificationException.class, keys::next,
+		"Expected the iterator to fail after the map changed");
+    }
+
+	/**
+	 * Retrieves this collection's keys. The list is a read-only snapshot that
+	 * is built once and then shared by every call until the keys change, so
+	 * repeated calls on an unchanged map cost nothing.
+	 *
+	 * @return an unmodifiable list of the keys in this collection
+	 */
 	@Override
 	public List<KeyType> getKeys() {
-		 List<KeyType> keysList = new LinkedList<>(); // Create a new list to store keys
-
-		    // Loop through each bucket in the table
-		    for (LinkedList<Pair> bucket : table) {
-		        if (bucket != null) { // If the bucket is not null
-		            for (Pair pair : bucket) {
-		                keysList.add(pair.key); // Add each key from the Pair to the keys list
-		            }
-		        }
-		    }
-
-		    return keysList; // Return the list of all keys
+		// read the field once, so a concurrent invalidation cannot make this
+		// return null after the check
+		List<KeyType> snapshot = keySnapshot;
+		if (snapshot == null) {
+			List<KeyType> keysList = new ArrayList<>(size); // Create a new list to store keys
+
+			// Loop through each bucket in the table
+			for (LinkedList<Pair> bucket : table) {
+				if (bucket != null) { // If the bucket is not null
+					for (Pair pair : bucket) {
+						keysList.add(pair.key); // Add each key from the Pair to the keys list
+					}
+				}
+			}
+			snapshot = Collections.unmodifiableList(keysList);
+			keySnapshot = snapshot;
+		}
+		return snapshot; // Return the list of all keys
+	}
+
+	/**
+	 * Returns a live, read-only iterator over this collection's keys that
+	 * walks the table in place instead of copying it. It throws
+	 * ConcurrentModificationException if keys are added or removed while it
+	 * is in use.
+	 *
+	 * @return an iterator over the keys in this collection
+	 */
+	@Override
+	public Iterator<KeyType> keyIterator() {
+		return Spliterators.iterator(keySpliterator());
+	}
+
+	/**
+	 * Returns a live, read-only spliterator over this collection's keys that
+	 * splits by ranges of buckets, so that parallel streams can share the
+	 * keys between threads without copying them. It throws
+	 * ConcurrentModificationException if keys are added or removed while it
+	 * is in use.
+	 *
+	 * @return a spliterator over the keys in this collection
+	 */
+	@Override
+	public Spliterator<KeyType> keySpliterator() {
+		return new KeySpliterator(0, table.length, size);
+	}
+
+	// forgets the key snapshot and invalidates live key views
+	private void keysChanged() {
+		modCount++;
+		keySnapshot = null;
+	}
+
+	// iterates the keys in buckets [index, end) of the current table
+	private class KeySpliterator implements Spliterator<KeyType> {
+		private final LinkedList<Pair>[] buckets = table;
+		private final int expectedModCount = modCount;
+		private int index;
+		private final int end;
+		private long estimate;
+		private Iterator<Pair> current = null;
+
+		KeySpliterator(int index, int end, long estimate) {
+			this.index = index;
+			this.end = end;
+			this.estimate = estimate;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super KeyType> action) {
+			while (true) {
+				if (modCount != expectedModCount)
+					throw new ConcurrentModificationException();
+				if (current != null && current.hasNext()) {
+					action.accept(current.next().key);
+					return true;
+				}
+				if (index >= end)
+					return false;
+				LinkedList<Pair> bucket = buckets[index++];
+				current = bucket == null ? null : bucket.iterator();
+			}
+		}
+
+		@Override
+		public Spliterator<KeyType> trySplit() {
+			int middle = (index + end) >>> 1;
+			if (current != null || middle <= index)
+				return null;
+			// hand the first half of the remaining buckets to a new spliterator
+			KeySpliterator prefix = new KeySpliterator(index, middle, estimate >>> 1);
+			index = middle;
+			estimate -= prefix.estimate;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return estimate;
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.DISTINCT | Spliterator.NONNULL;
+		}
 	}
 }
@@ -0,0 +1,453 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A hub labeling of a read-only graph, for distance queries that need no
+ * search. Every node has an out-label, the distances from it to a few hub
+ * nodes, and an in-label, the distances to it from a few hubs, chosen so
+ * that some shortest path between any two nodes passes through a hub in
+ * both the start's out-label and the end's in-label. A distance query is
+ * then a merge of two short sorted arrays.
+ *
+ * Labels are built by pruned landmark labeling: nodes are taken in order of
+ * how many sampled shortest paths cross them, and from each a forward and a
+ * backward Dijkstra search add it as a hub to the labels of the nodes they
+ * reach, except that a search stops at any node whose distance the labels
+ * built so far already give. Searches run in parallel in small batches,
+ * each pruned only by the labels of earlier batches, which can add a few
+ * labels but never loses a distance.
+ *
+ * Attach labels to a graph with FrozenGraph.setHubLabels, and its
+ * shortestPathCost then answers from them. Labels can be saved with write
+ * and loaded with read, and are only valid for the graph they were built
+ * from, with the same node ids.
+ */
+public class HubLabels {
+
+    private static final int MAGIC = 0x4855424C; // "HUBL"
+    // shortest path trees grown to rank the nodes
+    private static final int SAMPLE_ROOTS = 64;
+
+    private static final Metrics.Counter LABEL_QUERIES = Metrics.counter(
+            "campus_hub_label_queries_total", "",
+            "Shortest path costs answered from hub labels instead of a search.");
+
+    // the node names the labels were built for, in id order
+    private final NodeDictionary<String> names;
+    // the label of node id is entries offsets[id] through offsets[id + 1] - 1
+    // of hubs and distances; hubs are ranks, in increasing order
+    private final int[] outOffsets;
+    private final int[] outHubs;
+    private final double[] outDistances;
+    private final int[] inOffsets;
+    private final int[] inHubs;
+    private final double[] inDistances;
+
+    private HubLabels(NodeDictionary<String> names, int[] outOffsets, int[] outHubs, double[] outDistances,
+            int[] inOffsets, int[] inHubs, double[] inDistances) {
+        this.names = names;
+        this.outOffsets = outOffsets;
+        this.outHubs = outHubs;
+        this.outDistances = outDistances;
+        this.inOffsets = inOffsets;
+        this.inHubs = inHubs;
+        this.inDistances = inDistances;
+    }
+
+    // the labels of every node while they are being built
+    private static final class Labels {
+        final int[][] hubs;
+        final double[][] distances;
+        final int[] sizes;
+
+        Labels(int n) {
+            hubs = new int[n][];
+            distances = new double[n][];
+            sizes = new int[n];
+        }
+
+        void add(int id, int hub, double distance) {
+            if (hubs[id] == null) {
+                hubs[id] = new int[4];
+                distances[id] = new double[4];
+            } else if (sizes[id] == hubs[id].length) {
+                hubs[id] = Arrays.copyOf(hubs[id], sizes[id] * 2);
+                distances[id] = Arrays.copyOf(distances[id], sizes[id] * 2);
+            }
+            hubs[id][sizes[id]] = hub;
+            distances[id][sizes[id]] = distance;
+            sizes[id]++;
+        }
+    }
+
+    // the label entries one node's searches found, not yet added
+    private static final class Found {
+        int[] ids = new int[16];
+        double[] distances = new double[16];
+        int count = 0;
+
+        void add(int id, double distance) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                distances = Arrays.copyOf(distances, count * 2);
+            }
+            ids[count] = id;
+            distances[count] = distance;
+            count++;
+        }
+    }
+
+    /**
+     * Builds hub labels for graph using one thread per available processor.
+     *
+     * @param graph the graph to label
+     * @return the labels
+     */
+    public static HubLabels build(CsrGraph graph) {
+        return build(graph, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Builds hub labels for graph using the given number of threads. With
+     * one thread, the labels are exactly those of sequential pruned landmark
+     * labeling.
+     *
+     * @param graph   the graph to label
+     * @param threads the number of threads to search with
+     * @return the labels
+     * @throws IllegalArgumentException if threads is not positive
+     */
+    public static HubLabels build(CsrGraph graph, int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("Thread count must be greater than 0.");
+        int n = graph.getNodeCount();
+        CsrGraph reverse = graph.reverse();
+        int[] byRank = rank(graph, reverse);
+
+        Labels out = new Labels(n);
+        Labels in = new Labels(n);
+        ThreadLocal<double[]> scratch = ThreadLocal.withInitial(() -> {
+            double[] distances = new double[n];
+            Arrays.fill(distances, Double.POSITIVE_INFINITY);
+            return distances;
+        });
+        ExecutorService pool = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        try {
+            int rank = 0;
+            while (rank < n) {
+                // the first hubs prune the most, so start with small batches
+                int batch = threads == 1 ? 1 : Math.max(1, Math.min(threads * 4, rank / 64));
+                batch = Math.min(batch, n - rank);
+                Found[][] found = new Found[batch][];
+                if (pool == null) {
+                    found[0] = search(graph, reverse, byRank, rank, out, in, scratch.get());
+                } else {
+                    List<Future<Found[]>> futures = new ArrayList<>();
+                    for (int b = 0; b < batch; b++) {
+                        int hubRank = rank + b;
+                        futures.add(pool.submit(() -> search(graph, reverse, byRank, hubRank, out, in, scratch.get())));
+                    }
+                    for (int b = 0; b < batch; b++)
+                        found[b] = await(futures.get(b));
+                }
+                // add the batch's entries in rank order, keeping labels sorted
+                for (int b = 0; b < batch; b++) {
+                    Found forward = found[b][0];
+                    for (int i = 0; i < forward.count; i++)
+                        in.add(forward.ids[i], rank + b, forward.distances[i]);
+                    Found backward = found[b][1];
+                    for (int i = 0; i < backward.count; i++)
+                        out.add(backward.ids[i], rank + b, backward.distances[i]);
+                }
+                rank += batch;
+            }
+        } finally {
+            if (pool != null)
+                pool.shutdown();
+        }
+
+        int[] outOffsets = offsets(out);
+        int[] inOffsets = offsets(in);
+        int[] outHubs = new int[outOffsets[n]];
+        double[] outDistances = new double[outOffsets[n]];
+        int[] inHubs = new int[inOffsets[n]];
+        double[] inDistances = new double[inOffsets[n]];
+        for (int id = 0; id < n; id++) {
+            if (out.sizes[id] > 0) {
+                System.arraycopy(out.hubs[id], 0, outHubs, outOffsets[id], out.sizes[id]);
+                System.arraycopy(out.distances[id], 0, outDistances, outOffsets[id], out.sizes[id]);
+            }
+            if (in.sizes[id] > 0) {
+                System.arraycopy(in.hubs[id], 0, inHubs, inOffsets[id], in.sizes[id]);
+                System.arraycopy(in.distances[id], 0, inDistances, inOffsets[id], in.sizes[id]);
+            }
+        }
+        return new HubLabels(graph.names, outOffsets, outHubs, outDistances, inOffsets, inHubs, inDistances);
+    }
+
+    // orders nodes so that those on many shortest paths come first: each is
+    // scored by how many nodes it leads to in the shortest path trees grown
+    // forward and backward from a sample of roots, and ties go to higher
+    // degree. A node that many paths cross covers them all as one hub.
+    private static int[] rank(CsrGraph graph, CsrGraph reverse) {
+        int n = graph.getNodeCount();
+        long[] score = new long[n];
+        int[] settled = new int[n];
+        int[] descendants = new int[n];
+        Random random = new Random(n);
+        int roots = Math.min(n, SAMPLE_ROOTS);
+        for (int r = 0; r < roots; r++) {
+            int root = roots == n ? r : random.nextInt(n);
+            for (CsrGraph direction : new CsrGraph[] { graph, reverse }) {
+                SearchArena arena = SearchArena.forCurrentThread();
+                arena.begin(n);
+                arena.relax(root, 0, -1);
+                int count = 0;
+                while (!arena.isEmpty()) {
+                    int node = arena.poll();
+                    settled[count++] = node;
+                    descendants[node] = 1;
+                    direction.relaxEdges(arena, node, arena.getCost(node));
+                }
+                // leaves settle last, so pass counts up from the end
+                for (int i = count - 1; i >= 0; i--) {
+                    int node = settled[i];
+                    score[node] += descendants[node];
+                    int parent = arena.getPredecessor(node);
+                    if (parent >= 0)
+                        descendants[parent] += descendants[node];
+                }
+            }
+        }
+        Integer[] order = new Integer[n];
+        for (int id = 0; id < n; id++)
+            order[id] = id;
+        Arrays.sort(order, (a, b) -> score[a] != score[b] ? Long.compare(score[b], score[a])
+                : Integer.compare(degree(graph, reverse, b), degree(graph, reverse, a)));
+        int[] byRank = new int[n];
+        for (int rank = 0; rank < n; rank++)
+            byRank[rank] = order[rank];
+        return byRank;
+    }
+
+    private static int degree(CsrGraph graph, CsrGraph reverse, int id) {
+        return graph.endEdge(id) - graph.firstEdge(id) + reverse.endEdge(id) - reverse.firstEdge(id);
+    }
+
+    // runs the pruned forward and backward searches from the node with the
+    // given rank, returning the in-label and out-label entries they found
+    private static Found[] search(CsrGraph graph, CsrGraph reverse, int[] byRank, int rank,
+            Labels out, Labels in, double[] scratch) {
+        int hub = byRank[rank];
+        // forward: a node reached at distance d from hub gets (hub, d) in its
+        // in-label, unless hub's out-label and its in-label already give d
+        Found forward = prunedSearch(graph, hub, out, in, scratch);
+        // backward: likewise for the distance from each node to hub
+        Found backward = prunedSearch(reverse, hub, in, out, scratch);
+        return new Found[] { forward, backward };
+    }
+
+    private static Found prunedSearch(CsrGraph graph, int hub, Labels fromLabels, Labels toLabels,
+            double[] scratch) {
+        // spread hub's label out by hub rank, so that each node's check is
+        // one pass over its own label
+        int size = fromLabels.sizes[hub];
+        for (int i = 0; i < size; i++)
+            scratch[fromLabels.hubs[hub][i]] = fromLabels.distances[hub][i];
+        Found found = new Found();
+        SearchArena arena = SearchArena.forCurrentThread();
+        arena.begin(graph.getNodeCount());
+        arena.relax(hub, 0, -1);
+        while (!arena.isEmpty()) {
+            int node = arena.poll();
+            double distance = arena.getCost(node);
+            if (covered(scratch, toLabels, node, distance))
+                continue;
+            found.add(node, distance);
+            graph.relaxEdges(arena, node, distance);
+        }
+        for (int i = 0; i < size; i++)
+            scratch[fromLabels.hubs[hub][i]] = Double.POSITIVE_INFINITY;
+        return found;
+    }
+
+    // whether the labels built so far give a distance of at most distance
+    private static boolean covered(double[] scratch, Labels labels, int node, double distance) {
+        int[] hubs = labels.hubs[node];
+        double[] distances = labels.distances[node];
+        for (int i = 0; i < labels.sizes[node]; i++)
+            if (scratch[hubs[i]] + distances[i] <= distance)
+                return true;
+        return false;
+    }
+
+    private static int[] offsets(Labels labels) {
+        int[] offsets = new int[labels.sizes.length + 1];
+        for (int id = 0; id < labels.sizes.length; id++)
+            offsets[id + 1] = offsets[id] + labels.sizes[id];
+        return offsets;
+    }
+
+    private static Found[] await(Future<Found[]> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while building hub labels.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Returns the cost of the shortest path between two nodes.
+     *
+     * @param startId the id of the starting node for the path
+     * @param endId   the id of the destination node for the path
+     * @return the cost of the shortest path, or positive infinity if there
+     *         is no path from start to end
+     */
+    public double distance(int startId, int endId) {
+        if (Metrics.ENABLED)
+            LABEL_QUERIES.increment();
+        int i = outOffsets[startId];
+        int iEnd = outOffsets[startId + 1];
+        int j = inOffsets[endId];
+        int jEnd = inOffsets[endId + 1];
+        double best = Double.POSITIVE_INFINITY;
+        while (i < iEnd && j < jEnd) {
+            int hub = outHubs[i];
+            int other = inHubs[j];
+            if (hub < other) {
+                i++;
+            } else if (hub > other) {
+                j++;
+            } else {
+                best = Math.min(best, outDistances[i++] + inDistances[j++]);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the number of nodes labeled
+     */
+    public int getNodeCount() {
+        return names.size();
+    }
+
+    /**
+     * @return the average number of hubs in a node's out-label and in-label
+     *         together
+     */
+    public double getAverageLabelSize() {
+        return names.size() == 0 ? 0 : (double) (outHubs.length + inHubs.length) / names.size();
+    }
+
+    /**
+     * @param graph a graph
+     * @return whether graph has exactly the nodes, with the same ids, that
+     *         these labels were built for
+     */
+    public boolean matches(FrozenGraph graph) {
+        if (graph.names == names)
+            return true;
+        if (graph.getNodeCount() != names.size())
+            return false;
+        for (int id = 0; id < names.size(); id++)
+            if (!names.dataOf(id).equals(graph.names.dataOf(id)))
+                return false;
+        return true;
+    }
+
+    /**
+     * Writes these labels, with the node names they were built for, to a
+     * file that read can load.
+     *
+     * @param filename the path of the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void write(String filename) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(filename)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(names.size());
+            for (int id = 0; id < names.size(); id++)
+                out.writeUTF(names.dataOf(id));
+            writeLabels(out, outOffsets, outHubs, outDistances);
+            writeLabels(out, inOffsets, inHubs, inDistances);
+        } catch (FileNotFoundException e) {
+            throw new IOException("Cannot write file: " + filename);
+        }
+    }
+
+    private static void writeLabels(DataOutputStream out, int[] offsets, int[] hubs, double[] distances)
+            throws IOException {
+        out.writeInt(hubs.length);
+        for (int id = 0; id + 1 < offsets.length; id++)
+            out.writeInt(offsets[id + 1] - offsets[id]);
+        for (int i = 0; i < hubs.length; i++) {
+            out.writeInt(hubs[i]);
+            out.writeDouble(distances[i]);
+        }
+    }
+
+    /**
+     * Loads labels that write saved.
+     *
+     * @param filename the path of the file to read
+     * @return the labels
+     * @throws IOException if the file cannot be read or does not hold labels
+     */
+    public static HubLabels read(String filename) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(filename)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not a hub label file: " + filename);
+            int n = in.readInt();
+            NodeDictionary<String> names = new NodeDictionary<>();
+            for (int id = 0; id < n; id++)
+                names.intern(in.readUTF());
+            names.freeze();
+            int[] outOffsets = new int[n + 1];
+            int[] outHubs = new int[in.readInt()];
+            double[] outDistances = new double[outHubs.length];
+            readLabels(in, outOffsets, outHubs, outDistances);
+            int[] inOffsets = new int[n + 1];
+            int[] inHubs = new int[in.readInt()];
+            double[] inDistances = new double[inHubs.length];
+            readLabels(in, inOffsets, inHubs, inDistances);
+            return new HubLabels(names, outOffsets, outHubs, outDistances, inOffsets, inHubs, inDistances);
+        } catch (FileNotFoundException e) {
+            throw new IOException("File not found: " + filename);
+        }
+    }
+
+    private static void readLabels(DataInputStream in, int[] offsets, int[] hubs, double[] distances)
+            throws IOException {
+        for (int id = 0; id + 1 < offsets.length; id++)
+            offsets[id + 1] = offsets[id] + in.readInt();
+        if (offsets[offsets.length - 1] != hubs.length)
+            throw new IOException("Hub label sizes do not add up.");
+        for (int i = 0; i < hubs.length; i++) {
+            hubs[i] = in.readInt();
+            distances[i] = in.readDouble();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Unit tests for the HubLabels class.
+ */
+public class HubLabelsTests {
+
+    /**
+     * Test labelsMatchDijkstra: on campus, distances from labels built with
+     * one thread and with several equal the costs that Dijkstra's algorithm
+     * finds, including between nodes with no path, and labels are much
+     * smaller than the graph.
+     */
+    @Test
+    public void labelsMatchDijkstra() throws IOException {
+        CsrGraph graph = ParallelDotLoader.load("campus.dot", 1);
+        HubLabels sequential = HubLabels.build(graph, 1);
+        HubLabels parallel = HubLabels.build(graph, 4);
+        Assertions.assertEquals(graph.getNodeCount(), sequential.getNodeCount());
+        Assertions.assertTrue(sequential.getAverageLabelSize() < graph.getNodeCount() / 4.0);
+        int n = graph.getNodeCount();
+        for (int start = 0; start < n; start += 5) {
+            for (int end = 0; end < n; end += 3) {
+                double expected;
+                try {
+                    expected = graph.shortestPathCostById(start, end);
+                } catch (NoSuchElementException e) {
+                    expected = Double.POSITIVE_INFINITY;
+                }
+                Assertions.assertEquals(expected, sequential.distance(start, end), 1e-9);
+                Assertions.assertEquals(expected, parallel.distance(start, end), 1e-9);
+            }
+        }
+    }
+
+    /**
+     * Test attachedLabels: labels saved and read back answer
+     * shortestPathCost for the graph they were built for, detach with null,
+     * and are refused by a graph with different nodes.
+     */
+    @Test
+    public void attachedLabels() throws IOException {
+        DijkstraGraph<String, Double> one = new DijkstraGraph<>();
+        for (String node : List.of("A", "B", "C", "D", "E"))
+            one.insertNode(node);
+        one.insertEdge("A", "B", 2.0);
+        one.insertEdge("B", "C", 3.0);
+        one.insertEdge("A", "C", 7.0);
+        one.insertEdge("C", "D", 1.0);
+        one.insertEdge("D", "A", 4.0);
+        CsrGraph graph = CsrGraph.copyOf(one);
+        Path file = Files.createTempFile("campus", ".labels");
+        try {
+            HubLabels.build(graph, 2).write(file.toString());
+            HubLabels labels = HubLabels.read(file.toString());
+            graph.setHubLabels(labels);
+            Assertions.assertEquals(6.0, graph.shortestPathCost("A", "D"), 1e-9);
+            Assertions.assertEquals(8.0, graph.shortestPathCost("B", "A"), 1e-9);
+            Assertions.assertEquals(0.0, graph.shortestPathCost("C", "C"), 1e-9);
+            Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathCost("A", "E"));
+            Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathCost("A", "F"));
+            graph.setHubLabels(null);
+            Assertions.assertEquals(6.0, graph.shortestPathCost("A", "D"), 1e-9);
+
+            one.removeNode("E");
+            CsrGraph other = CsrGraph.copyOf(one);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> other.setHubLabels(labels));
+        } finally {
+            Files.delete(file);
+        }
+        Assertions.assertThrows(IOException.class, () -> HubLabels.read(file.toString()));
+    }
+}
@@ -0,0 +1,242 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Computes the k shortest loopless paths between two nodes of a
+ * DijkstraGraph using Yen's algorithm, to offer users alternatives to the
+ * single route returned by shortestPathData.
+ *
+ * Three things keep the many spur searches cheap:
+ * - a reverse shortest path tree from the end node gives every node's exact
+ *   distance to the end, which guides each spur search (A*) and prunes spur
+ *   nodes that cannot beat the candidates already found;
+ * - edges and nodes are hidden from a spur search by a RouteFilter mask
+ *   instead of calling removeEdge/removeNode on the shared graph;
+ * - the workspace (masks, tentative distances and queue) is reused by every
+ *   spur search of a query rather than allocated for each one.
+ */
+public class KShortestPaths<NodeType, EdgeType extends Number> {
+
+    /**
+     * One path found by computeShortestPaths, with its total cost.
+     */
+    public class Path {
+        private final List<BaseGraph<NodeType, EdgeType>.Node> nodes;
+        private final double cost;
+
+        private Path(List<BaseGraph<NodeType, EdgeType>.Node> nodes, double cost) {
+            this.nodes = nodes;
+            this.cost = cost;
+        }
+
+        /**
+         * @return the data of the nodes along this path, from start to end
+         */
+        public List<NodeType> getNodes() {
+            List<NodeType> data = new ArrayList<>(nodes.size());
+            for (BaseGraph<NodeType, EdgeType>.Node node : nodes)
+                data.add(node.data);
+            return data;
+        }
+
+        /**
+         * @return the sum of the weights of the edges along this path
+         */
+        public double getCost() {
+            return cost;
+        }
+    }
+
+    // a tentative distance within a spur search, ordered by estimated total
+    private class QueueEntry implements Comparable<QueueEntry> {
+        final BaseGraph<NodeType, EdgeType>.Node node;
+        final double cost;
+        final double estimate;
+
+        QueueEntry(BaseGraph<NodeType, EdgeType>.Node node, double cost, double estimate) {
+            this.node = node;
+            this.cost = cost;
+            this.estimate = estimate;
+        }
+
+        public int compareTo(QueueEntry other) {
+            return Double.compare(estimate, other.estimate);
+        }
+    }
+
+    // search state shared by all spur searches of one query
+    private class Workspace {
+        final RouteFilter<NodeType, EdgeType> mask = new RouteFilter<>(graph);
+        // tentative cost and parent id of each node reached, by node id
+        final LongDoubleMap cost = new LongDoubleMap();
+        final IntIntMap parent = new IntIntMap();
+        final PriorityQueue<QueueEntry> queue = new PriorityQueue<>();
+        // exact distance from each node to the end node, in the unmasked graph
+        final LongDoubleMap toEnd = new LongDoubleMap();
+
+        void resetSearch() {
+            cost.clear();
+            parent.clear();
+            queue.clear();
+        }
+
+        double remaining(BaseGraph<NodeType, EdgeType>.Node node) {
+            return toEnd.getOrDefault(node.id, Double.POSITIVE_INFINITY);
+        }
+    }
+
+    private final DijkstraGraph<NodeType, EdgeType> graph;
+
+    /**
+     * Constructor for computing k shortest paths within graph.
+     *
+     * @param graph the graph to search
+     */
+    public KShortestPaths(DijkstraGraph<NodeType, EdgeType> graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Returns up to k loopless paths from start to end, in order of
+     * increasing cost. Fewer than k paths are returned when the graph does
+     * not contain that many distinct loopless paths.
+     *
+     * @param start the data item in the starting node for the paths
+     * @param end   the data item in the destination node for the paths
+     * @param k     the maximum number of paths to return
+     * @return the k shortest loopless paths from start to end
+     * @throws NoSuchElementException if either node is not in the graph, or
+     *                                if there is no path from start to end
+     */
+    public List<Path> computeShortestPaths(NodeType start, NodeType end, int k) {
+        if (k <= 0)
+            throw new IllegalArgumentException("k must be greater than 0.");
+        if (!graph.containsNode(start) || !graph.containsNode(end))
+            throw new NoSuchElementException("Start or end node not in graph.");
+        BaseGraph<NodeType, EdgeType>.Node startNode = graph.nodes.get(start);
+        BaseGraph<NodeType, EdgeType>.Node endNode = graph.nodes.get(end);
+
+        Workspace workspace = new Workspace();
+        computeDistancesToEnd(workspace, endNode);
+        if (workspace.remaining(startNode) == Double.POSITIVE_INFINITY)
+            throw new NoSuchElementException("error: there is no path from start to end node.");
+
+        List<Path> found = new ArrayList<>();
+        found.add(spurSearch(workspace, startNode, endNode, Collections.emptyList(), 0,
+                Double.POSITIVE_INFINITY));
+        List<Path> candidates = new ArrayList<>(); // kept sorted by cost
+        Set<List<BaseGraph<NodeType, EdgeType>.Node>> seen = new HashSet<>();
+        seen.add(found.get(0).nodes);
+
+        while (found.size() < k) {
+            Path previous = found.get(found.size() - 1);
+            double rootCost = 0;
+            for (int i = 0; i + 1 < previous.nodes.size(); i++) {
+                BaseGraph<NodeType, EdgeType>.Node spur = previous.nodes.get(i);
+                List<BaseGraph<NodeType, EdgeType>.Node> root = previous.nodes.subList(0, i + 1);
+                if (i > 0)
+                    rootCost += graph.getEdgeHelper(previous.nodes.get(i - 1).data, spur.data)
+                            .data.doubleValue();
+
+                // a spur path can only matter if it beats the candidate that
+                // would otherwise become the last of the k paths
+                int needed = k - found.size();
+                double bound = candidates.size() >= needed ? candidates.get(needed - 1).cost
+                        : Double.POSITIVE_INFINITY;
+                if (rootCost + workspace.remaining(spur) >= bound)
+                    continue;
+
+                // mask the next edge of every found path sharing this root,
+                // and every root node before the spur node
+                workspace.mask.clear();
+                for (Path path : found)
+                    if (path.nodes.size() > i + 1 && path.nodes.subList(0, i + 1).equals(root))
+                        workspace.mask.avoidEdge(graph.getEdgeHelper(path.nodes.get(i).data,
+                                path.nodes.get(i + 1).data));
+                for (BaseGraph<NodeType, EdgeType>.Node node : previous.nodes.subList(0, i))
+                    workspace.mask.avoidNode(node);
+
+                Path spurPath = spurSearch(workspace, spur, endNode, root, rootCost, bound);
+                if (spurPath != null && seen.add(spurPath.nodes)) {
+                    int index = 0;
+                    while (index < candidates.size() && candidates.get(index).cost <= spurPath.cost)
+                        index++;
+                    candidates.add(index, spurPath);
+                }
+            }
+            if (candidates.isEmpty())
+                break;
+            found.add(candidates.remove(0));
+        }
+        return found;
+    }
+
+    // Dijkstra over entering edges from end, recording distances to end
+    private void computeDistancesToEnd(Workspace workspace, BaseGraph<NodeType, EdgeType>.Node end) {
+        PriorityQueue<QueueEntry> queue = new PriorityQueue<>();
+        workspace.toEnd.put(end.id, 0.0);
+        queue.add(new QueueEntry(end, 0, 0));
+        while (!queue.isEmpty()) {
+            QueueEntry entry = queue.poll();
+            if (entry.cost > workspace.remaining(entry.node))
+                continue;
+            for (BaseGraph<NodeType, EdgeType>.Edge edge : entry.node.edgesEntering) {
+                double cost = entry.cost + edge.data.doubleValue();
+                if (cost < workspace.remaining(edge.predecessor)) {
+                    workspace.toEnd.set(edge.predecessor.id, cost);
+                    queue.add(new QueueEntry(edge.predecessor, cost, cost));
+                }
+            }
+        }
+    }
+
+    // A* from spur to end avoiding masked edges and nodes, guided by the
+    // exact unmasked distances to end; returns root + spur path, or null if
+    // no such path costs less than bound
+    private Path spurSearch(Workspace workspace, BaseGraph<NodeType, EdgeType>.Node spur,
+            BaseGraph<NodeType, EdgeType>.Node end, List<BaseGraph<NodeType, EdgeType>.Node> root,
+            double rootCost, double bound) {
+        workspace.resetSearch();
+        workspace.cost.put(spur.id, rootCost);
+        workspace.queue.add(new QueueEntry(spur, rootCost, rootCost + workspace.remaining(spur)));
+        while (!workspace.queue.isEmpty()) {
+            QueueEntry entry = workspace.queue.poll();
+            if (entry.estimate >= bound)
+                return null;
+            if (entry.cost > workspace.cost.get(entry.node.id))
+                continue;
+            if (entry.node == end) {
+                // stitch the root path onto the spur path found
+                ArrayList<BaseGraph<NodeType, EdgeType>.Node> nodes = new ArrayList<>();
+                for (BaseGraph<NodeType, EdgeType>.Node node = end; node != spur;
+                        node = graph.nodesById.get(workspace.parent.get(node.id)))
+                    nodes.add(node);
+                nodes.add(spur);
+                for (int i = root.size() - 2; i >= 0; i--)
+                    nodes.add(root.get(i));
+                Collections.reverse(nodes);
+                return new Path(nodes, entry.cost);
+            }
+            for (BaseGraph<NodeType, EdgeType>.Edge edge : entry.node.edgesLeaving) {
+                BaseGraph<NodeType, EdgeType>.Node next = edge.successor;
+                if (!workspace.mask.allows(edge))
+                    continue;
+                double remaining = workspace.remaining(next);
+                if (remaining == Double.POSITIVE_INFINITY)
+                    continue; // end is unreachable from next even without masks
+                double cost = entry.cost + edge.data.doubleValue();
+                if (cost < workspace.cost.getOrDefault(next.id, Double.POSITIVE_INFINITY)) {
+                    workspace.cost.set(next.id, cost);
+                    workspace.parent.set(next.id, entry.node.id);
+                    workspace.queue.add(new QueueEntry(next, cost, cost + remaining));
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,108 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Unit tests for the KShortestPaths class.
+ * These tests check Yen's algorithm against an exhaustive enumeration of
+ * loopless paths, and check that searching never modifies the graph.
+ */
+public class KShortestPathsTests {
+
+    /**
+     * Test smallGraphAlternatives: the three cheapest routes through a small
+     * hand-built graph are returned in order, and the graph is unchanged.
+     */
+    @Test
+    public void smallGraphAlternatives() {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        for (String node : List.of("A", "B", "C", "D", "E"))
+            graph.insertNode(node);
+        graph.insertEdge("A", "B", 1.0);
+        graph.insertEdge("B", "E", 1.0);
+        graph.insertEdge("A", "C", 2.0);
+        graph.insertEdge("C", "E", 2.0);
+        graph.insertEdge("B", "C", 0.5);
+        graph.insertEdge("A", "D", 10.0);
+        graph.insertEdge("D", "E", 10.0);
+        int edges = graph.getEdgeCount();
+
+        KShortestPaths<String, Double> paths = new KShortestPaths<>(graph);
+        List<KShortestPaths<String, Double>.Path> result = paths.computeShortestPaths("A", "E", 10);
+        Assertions.assertEquals(4, result.size());
+        Assertions.assertEquals(List.of("A", "B", "E"), result.get(0).getNodes());
+        Assertions.assertEquals(2.0, result.get(0).getCost(), 1e-9);
+        Assertions.assertEquals(List.of("A", "B", "C", "E"), result.get(1).getNodes());
+        Assertions.assertEquals(3.5, result.get(1).getCost(), 1e-9);
+        Assertions.assertEquals(List.of("A", "C", "E"), result.get(2).getNodes());
+        Assertions.assertEquals(List.of("A", "D", "E"), result.get(3).getNodes());
+        Assertions.assertEquals(edges, graph.getEdgeCount());
+        Assertions.assertEquals(1.0, graph.getEdge("A", "B"), 1e-9);
+
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> paths.computeShortestPaths("E", "A", 3));
+    }
+
+    /**
+     * Test matchesExhaustiveSearch: on random graphs the costs of the k
+     * paths returned equal the k smallest costs among all loopless paths.
+     */
+    @Test
+    public void matchesExhaustiveSearch() {
+        Random random = new Random(31);
+        for (int trial = 0; trial < 30; trial++) {
+            DijkstraGraph<Integer, Double> graph = new DijkstraGraph<>();
+            int n = 8;
+            for (int i = 0; i < n; i++)
+                graph.insertNode(i);
+            for (int i = 0; i < 3 * n; i++) {
+                int from = random.nextInt(n);
+                int to = random.nextInt(n);
+                if (from != to)
+                    graph.insertEdge(from, to, 1.0 + random.nextInt(9));
+            }
+            List<Double> expected = new ArrayList<>();
+            Set<Integer> visited = new HashSet<>();
+            visited.add(0);
+            enumerate(graph, 0, n - 1, 0, visited, expected);
+            expected.sort(null);
+            if (expected.isEmpty())
+                continue;
+
+            for (int k : new int[] { 1, 3, 5, 10 }) {
+                List<KShortestPaths<Integer, Double>.Path> result =
+                        new KShortestPaths<>(graph).computeShortestPaths(0, n - 1, k);
+                Assertions.assertEquals(Math.min(k, expected.size()), result.size());
+                Set<List<Integer>> distinct = new HashSet<>();
+                for (int i = 0; i < result.size(); i++) {
+                    KShortestPaths<Integer, Double>.Path path = result.get(i);
+                    Assertions.assertEquals(expected.get(i), path.getCost(), 1e-9,
+                            "trial " + trial + " k=" + k + " path " + i);
+                    Assertions.assertTrue(distinct.add(path.getNodes()));
+                    Assertions.assertEquals(path.getNodes().size(),
+                            new HashSet<>(path.getNodes()).size());
+                }
+            }
+        }
+    }
+
+    // adds the cost of every loopless path from node to end into costs
+    private static void enumerate(DijkstraGraph<Integer, Double> graph, int node, int end,
+            double cost, Set<Integer> visited, List<Double> costs) {
+        if (node == end) {
+            costs.add(cost);
+            return;
+        }
+        for (int next : graph.getSuccessors(node)) {
+            if (visited.add(next)) {
+                enumerate(graph, next, end, cost + graph.getEdge(node, next), visited, costs);
+                visited.remove(next);
+            }
+        }
+    }
+}
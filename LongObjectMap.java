@@ -0,0 +1,241 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+
+/**
+ * A specialization of MapADT for primitive long keys, such as a pair of node
+ * ids packed by edgeKey, and object values. Like IntObjectMap it follows
+ * MapADT's contract (put rejects duplicate keys, get and remove throw for
+ * missing keys), but stores keys and values in parallel primitive arrays
+ * with open addressing and linear probing: nothing is boxed and lookups
+ * allocate nothing. Removals shift later entries back rather than leaving
+ * tombstones, so probe sequences stay short however many edges come and go.
+ *
+ * BaseGraph uses one to find the edge between two nodes by the key
+ * edgeKey(predId, succId), and DeltaStepping one to hold its sparse buckets.
+ */
+public class LongObjectMap<V> {
+
+    private long[] keys;
+    private Object[] values;
+    private boolean[] used;
+    private int size = 0;
+
+    /**
+     * Creates an empty map with room for about capacity keys before growing.
+     *
+     * @param capacity the initial capacity
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public LongObjectMap(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be greater than 0.");
+        int length = Integer.highestOneBit(Math.max(2, capacity * 4 / 3) * 2 - 1);
+        keys = new long[length];
+        values = new Object[length];
+        used = new boolean[length];
+    }
+
+    /**
+     * Creates an empty map with a default capacity.
+     */
+    public LongObjectMap() {
+        this(16);
+    }
+
+    /**
+     * Packs two non-negative ints into one long key, e.g. the ids of an
+     * edge's predecessor and successor.
+     *
+     * @param high the int for the upper half of the key
+     * @param low  the int for the lower half of the key
+     * @return the combined key
+     */
+    public static long edgeKey(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Adds a new key,value pair/mapping to this collection.
+     *
+     * @param key   the key of the key,value pair
+     * @param value the value that key maps to
+     * @throws IllegalArgumentException if key already maps to a value
+     */
+    public void put(long key, V value) {
+        int slot = find(key);
+        if (used[slot])
+            throw new IllegalArgumentException("Duplicate key. Key already exists.");
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 4 > keys.length * 3)
+            resize(keys.length * 2);
+    }
+
+    /**
+     * Maps key to value, replacing any value key already maps to.
+     *
+     * @param key   the key of the key,value pair
+     * @param value the value that key maps to
+     */
+    public void set(long key, V value) {
+        int slot = find(key);
+        if (used[slot]) {
+            values[slot] = value;
+            return;
+        }
+        put(key, value);
+    }
+
+    /**
+     * Checks whether a key maps to a value in this collection.
+     *
+     * @param key the key to check
+     * @return true if the key maps to a value, false otherwise
+     */
+    public boolean containsKey(long key) {
+        return used[find(key)];
+    }
+
+    /**
+     * Retrieves the specific value that a key maps to.
+     *
+     * @param key the key to look up
+     * @return the value that key maps to
+     * @throws NoSuchElementException when key is not stored in this collection
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int slot = find(key);
+        if (!used[slot])
+            throw new NoSuchElementException("Key not found in the map.");
+        return (V) values[slot];
+    }
+
+    /**
+     * Retrieves the value that a key maps to, without throwing.
+     *
+     * @param key          the key to look up
+     * @param defaultValue the value to return when key is not stored
+     * @return the value that key maps to, or defaultValue
+     */
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(long key, V defaultValue) {
+        int slot = find(key);
+        return used[slot] ? (V) values[slot] : defaultValue;
+    }
+
+    /**
+     * Remove the mapping for a key from this collection.
+     *
+     * @param key the key whose mapping to remove
+     * @return the value that the removed key mapped to
+     * @throws NoSuchElementException when key is not stored in this collection
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = find(key);
+        if (!used[slot])
+            throw new NoSuchElementException("Key not found in the map.");
+        V old = (V) values[slot];
+        size--;
+        // shift later entries of the probe run back into the gap
+        int mask = keys.length - 1;
+        int gap = slot;
+        for (int next = (gap + 1) & mask; used[next]; next = (next + 1) & mask) {
+            int home = slotOf(keys[next], mask);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        used[gap] = false;
+        values[gap] = null; // let the removed value be collected
+        return old;
+    }
+
+    /**
+     * Removes all key,value pairs from this collection.
+     */
+    public void clear() {
+        Arrays.fill(used, false);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * @return the number of keys stored in this collection
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the size of the underlying arrays for this collection
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Retrieves this collection's keys as a primitive array, in table order.
+     *
+     * @return an array holding each key once
+     */
+    public long[] getKeys() {
+        long[] result = new long[size];
+        int count = 0;
+        for (int slot = 0; slot < keys.length; slot++)
+            if (used[slot])
+                result[count++] = keys[slot];
+        return result;
+    }
+
+    /**
+     * Passes each key to action, in table order, without copying the keys.
+     * The map must not be changed while this runs.
+     *
+     * @param action the action to run for each key
+     */
+    public void forEachKey(LongConsumer action) {
+        for (int slot = 0; slot < keys.length; slot++)
+            if (used[slot])
+                action.accept(keys[slot]);
+    }
+
+    // the slot holding key, or the empty slot where it would go
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (used[slot] && keys[slot] != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        used = new boolean[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (!oldUsed[i])
+                continue;
+            int slot = slotOf(oldKeys[i], mask);
+            while (used[slot])
+                slot = (slot + 1) & mask;
+            used[slot] = true;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private static int slotOf(long key, int mask) {
+        long x = key * 0x9E3779B97F4A7C15L;
+        return (int) (x ^ (x >>> 32)) & mask;
+    }
+}
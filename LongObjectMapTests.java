@@ -0,0 +1,92 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Unit tests for the LongObjectMap class and the edge index BaseGraph builds
+ * with it.
+ */
+public class LongObjectMapTests {
+
+    /**
+     * Test matchesHashMap: a long random mix of puts, sets, gets and removes
+     * over a small key range (so probe runs collide and removals shift
+     * entries back) gives the same answers as java.util.HashMap, with put
+     * rejecting duplicate keys and get and remove throwing for missing ones.
+     */
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(36);
+        LongObjectMap<String> map = new LongObjectMap<>();
+        Map<Long, String> expected = new HashMap<>();
+        for (int step = 0; step < 200000; step++) {
+            long key = LongObjectMap.edgeKey(random.nextInt(40), random.nextInt(40));
+            int action = random.nextInt(3);
+            if (action == 0) {
+                if (expected.containsKey(key)) {
+                    Assertions.assertThrows(IllegalArgumentException.class, () -> map.put(key, "dup"));
+                    map.set(key, "v" + step);
+                } else {
+                    map.put(key, "v" + step);
+                }
+                expected.put(key, "v" + step);
+            } else if (action == 1) {
+                if (expected.containsKey(key))
+                    Assertions.assertEquals(expected.remove(key), map.remove(key));
+                else
+                    Assertions.assertThrows(NoSuchElementException.class, () -> map.remove(key));
+            } else {
+                Assertions.assertEquals(expected.containsKey(key), map.containsKey(key));
+                Assertions.assertEquals(expected.get(key), map.getOrDefault(key, null));
+            }
+            Assertions.assertEquals(expected.size(), map.getSize());
+        }
+        for (Map.Entry<Long, String> entry : expected.entrySet())
+            Assertions.assertEquals(entry.getValue(), map.get(entry.getKey()));
+        long[] keys = map.getKeys();
+        Assertions.assertEquals(expected.size(), keys.length);
+        for (long key : keys)
+            Assertions.assertTrue(expected.containsKey(key));
+        map.clear();
+        Assertions.assertEquals(0, map.getSize());
+        Assertions.assertThrows(NoSuchElementException.class, () -> map.get(LongObjectMap.edgeKey(1, 2)));
+    }
+
+    /**
+     * Test edgeIndexFollowsGraph: edges stay findable through the index as
+     * edges and nodes are inserted, updated and removed around a hub node.
+     */
+    @Test
+    public void edgeIndexFollowsGraph() {
+        DijkstraGraph<Integer, Double> graph = new DijkstraGraph<>();
+        int n = 2000;
+        for (int i = 0; i < n; i++)
+            graph.insertNode(i);
+        for (int i = 1; i < n; i++) {
+            graph.insertEdge(0, i, (double) i);
+            graph.insertEdge(i, 0, (double) -i);
+        }
+        graph.insertEdge(0, 5, 55.0);
+        Assertions.assertEquals(2 * (n - 1), graph.getEdgeCount());
+        Assertions.assertEquals(55.0, graph.getEdge(0, 5), 1e-9);
+        Assertions.assertEquals(-1999.0, graph.getEdge(1999, 0), 1e-9);
+
+        Assertions.assertTrue(graph.removeEdge(0, 7));
+        Assertions.assertFalse(graph.containsEdge(0, 7));
+        Assertions.assertTrue(graph.containsEdge(7, 0));
+        Assertions.assertTrue(graph.removeNode(9));
+        Assertions.assertFalse(graph.containsEdge(0, 9));
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.getEdge(9, 0));
+
+        // a node inserted again gets its old id back, but not its old edges
+        graph.insertNode(9);
+        Assertions.assertFalse(graph.containsEdge(0, 9));
+        Assertions.assertFalse(graph.containsEdge(9, 0));
+        graph.insertEdge(9, 0, 1.0);
+        Assertions.assertEquals(1.0, graph.getEdge(9, 0), 1e-9);
+        Assertions.assertFalse(graph.containsEdge(0, -1));
+    }
+}
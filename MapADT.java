@@ -1,5 +1,8 @@
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
 
 /**
  * This abstract data type represents a collection that maps keys to values,
@@ -65,6 +68,25 @@ public interface MapADT<KeyType, ValueType> {
      */
     public List<KeyType> getKeys();
 
+    /**
+     * Returns a read-only iterator over this collection's keys. Maps that
+     * can iterate their keys in place override this to avoid copying them.
+     * @return an iterator over the keys in this collection
+     */
+    public default Iterator<KeyType> keyIterator() {
+        return Collections.unmodifiableList(getKeys()).iterator();
+    }
+
+    /**
+     * Returns a spliterator over this collection's keys, for streams that
+     * may split the keys across threads. Maps that can split their keys in
+     * place override this to avoid copying them.
+     * @return a spliterator over the keys in this collection
+     */
+    public default Spliterator<KeyType> keySpliterator() {
+        return Collections.unmodifiableList(getKeys()).spliterator();
+    }
+
 }
 
 
@@ -0,0 +1,380 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds the destination that best serves several start nodes at once: the
+ * one with the least total travel time from all of them, the least travel
+ * time from the farthest of them, or the least weighted total. The search
+ * can be limited to a set of candidate destinations, such as the dining
+ * halls.
+ *
+ * Rather than one shortest path search per start and destination, this
+ * grows one Dijkstra search outward from each start, always advancing the
+ * search whose frontier is nearest, and stops as soon as no destination
+ * left can beat the best one found. A destination that some search has not
+ * yet settled is at least that search's frontier radius away from its
+ * start, which gives a lower bound on its objective; so once the best
+ * complete destination is below the bound of every other candidate, the
+ * rest of the graph is never settled. With few candidates near the starts,
+ * that is a small fraction of it.
+ *
+ * The per-node state of a find call (a search arena per start, and each
+ * node's candidate position and settle count) is kept per thread and reset
+ * by epoch for its next call, so a call allocates nothing proportional to
+ * the size of the graph, and one MeetingPoint can serve every thread. Over a
+ * FrozenGraph, threads may call find at once; over a BaseGraph, as with the
+ * graph's own queries, find must not run while the graph is being changed.
+ */
+public class MeetingPoint {
+
+    /**
+     * How the travel times from each start to a destination combine.
+     */
+    public enum Objective {
+        /** the sum of the weighted travel times */
+        SUM,
+        /** the largest weighted travel time, for the fairest meeting point */
+        MAX
+    }
+
+    /**
+     * The best destination found, and its objective value.
+     */
+    public static class Result {
+        private final String destination;
+        private final double cost;
+
+        Result(String destination, double cost) {
+            this.destination = destination;
+            this.cost = cost;
+        }
+
+        public String getDestination() {
+            return destination;
+        }
+
+        public double getCost() {
+            return cost;
+        }
+    }
+
+    // how the searches read the graph's edges
+    private interface Adjacency {
+        int nodeIdBound();
+
+        int nodeId(String name);
+
+        String nodeName(int id);
+
+        // relaxes every edge leaving a settled node, as FrozenGraph.relaxEdges
+        void relaxEdges(SearchArena arena, int id, double cost);
+
+        // releases what the graph kept for the relaxEdges calls of a search,
+        // as FrozenGraph.searchFinished
+        void searchFinished();
+    }
+
+    // the reusable state of one thread's find calls; positions and settle
+    // counts are valid only where stamped with the current call's epoch
+    private static final class Workspace {
+        final List<SearchArena> arenas = new ArrayList<>();
+        boolean allCandidates; // every node is a candidate, positioned by id
+        int[] position = new int[0];
+        int[] settledBy = new int[0];
+        int[] stamp = new int[0];
+        int epoch = 0;
+
+        void begin(int nodeIdBound, int searches, boolean allCandidates) {
+            while (arenas.size() < searches)
+                arenas.add(new SearchArena());
+            if (stamp.length < nodeIdBound) {
+                int length = Math.max(nodeIdBound, stamp.length * 2);
+                position = Arrays.copyOf(position, length);
+                settledBy = Arrays.copyOf(settledBy, length);
+                stamp = Arrays.copyOf(stamp, length);
+            }
+            if (++epoch == 0) {
+                Arrays.fill(stamp, 0);
+                epoch = 1;
+            }
+            this.allCandidates = allCandidates;
+        }
+
+        private void touch(int node) {
+            if (stamp[node] != epoch) {
+                stamp[node] = epoch;
+                position[node] = -1;
+                settledBy[node] = 0;
+            }
+        }
+
+        // node's position in the tie order, or -1 if it is not a candidate
+        int position(int node) {
+            if (allCandidates)
+                return node;
+            return stamp[node] == epoch ? position[node] : -1;
+        }
+
+        // makes node the next candidate, unless it already is one
+        boolean addCandidate(int node, int next) {
+            touch(node);
+            if (position[node] >= 0)
+                return false;
+            position[node] = next;
+            return true;
+        }
+
+        // counts one more search settling node, returning the new count
+        int settle(int node) {
+            touch(node);
+            return ++settledBy[node];
+        }
+
+        int settledBy(int node) {
+            return stamp[node] == epoch ? settledBy[node] : 0;
+        }
+    }
+
+    private static final ThreadLocal<Workspace> WORKSPACES = ThreadLocal.withInitial(Workspace::new);
+
+    private final Adjacency graph;
+    private final AtomicLong settledCount = new AtomicLong();
+
+    /**
+     * @param graph the read-only graph to search
+     */
+    public MeetingPoint(FrozenGraph graph) {
+        this.graph = new Adjacency() {
+            public int nodeIdBound() {
+                return graph.getNodeCount();
+            }
+
+            public int nodeId(String name) {
+                return graph.getNodeId(name);
+            }
+
+            public String nodeName(int id) {
+                return graph.getNodeName(id);
+            }
+
+            public void relaxEdges(SearchArena arena, int id, double cost) {
+                graph.relaxEdges(arena, id, cost);
+            }
+
+            public void searchFinished() {
+                graph.searchFinished();
+            }
+        };
+    }
+
+    /**
+     * Searches a mutable graph by its edge weights, ignoring travel time
+     * profiles, as its shortestPathCost does.
+     *
+     * @param graph the graph to search
+     */
+    public <E extends Number> MeetingPoint(BaseGraph<String, E> graph) {
+        this.graph = new Adjacency() {
+            public int nodeIdBound() {
+                return graph.nodesById.size();
+            }
+
+            public int nodeId(String name) {
+                return graph.getNodeId(name);
+            }
+
+            public String nodeName(int id) {
+                return graph.nodesById.get(id) == null ? null : graph.nodesById.get(id).data;
+            }
+
+            public void relaxEdges(SearchArena arena, int id, double cost) {
+                for (BaseGraph<String, E>.Edge edge : graph.nodesById.get(id).edgesLeaving)
+                    arena.relax(edge.successor.id, cost + edge.data.doubleValue(), id);
+            }
+
+            public void searchFinished() {
+            }
+        };
+    }
+
+    /**
+     * Finds the node with the least total travel time from all starts.
+     *
+     * @param starts the start nodes
+     * @return the best destination and its total travel time
+     * @throws NoSuchElementException if a start is not in the graph, or no
+     *                                node is reachable from every start
+     */
+    public Result find(List<String> starts) {
+        return find(starts, null, Objective.SUM, null);
+    }
+
+    /**
+     * Finds the destination that minimizes objective over the travel times
+     * from each start, each multiplied by that start's weight. Where
+     * destinations tie, the one listed first among the candidates (or with
+     * the lowest id, without candidates) wins.
+     *
+     * @param starts     the start nodes; a start listed twice counts twice
+     * @param weights    the weight of each start, or null to weigh each as 1
+     * @param objective  how the weighted travel times combine
+     * @param candidates the nodes that may be chosen, or null for every node
+     * @return the best destination and its objective value
+     * @throws NoSuchElementException if a start or candidate is not in the
+     *                                graph, or no candidate is reachable
+     *                                from every start
+     * @throws IllegalArgumentException if weights has the wrong length or a
+     *                                  weight is not positive
+     */
+    public Result find(List<String> starts, double[] weights, Objective objective,
+            Collection<String> candidates) {
+        int k = starts.size();
+        if (weights == null) {
+            weights = new double[k];
+            Arrays.fill(weights, 1);
+        }
+        if (weights.length != k)
+            throw new IllegalArgumentException("There must be one weight per start.");
+        for (double weight : weights)
+            if (!(weight > 0 && weight < Double.POSITIVE_INFINITY))
+                throw new IllegalArgumentException("Weights must be positive.");
+        int bound = graph.nodeIdBound();
+        Workspace workspace = WORKSPACES.get();
+        workspace.begin(bound, k, candidates == null);
+
+        // each candidate's position in the tie order: its place among the
+        // candidates, or its id when every node is one
+        int first = -1;
+        if (candidates == null) {
+            for (int id = 0; id < bound && first < 0; id++)
+                if (graph.nodeName(id) != null)
+                    first = id;
+        } else {
+            int candidateCount = 0;
+            for (String candidate : candidates) {
+                int id = graph.nodeId(candidate);
+                if (workspace.addCandidate(id, candidateCount))
+                    candidateCount++;
+                if (first < 0)
+                    first = id;
+            }
+        }
+        if (first < 0)
+            throw new NoSuchElementException("No common reachable destination found.");
+        if (k == 0) // every candidate is reached at no cost, so the first one wins
+            return new Result(graph.nodeName(first), 0);
+
+        int[] startIds = new int[k];
+        for (int i = 0; i < k; i++)
+            startIds[i] = graph.nodeId(starts.get(i));
+        List<SearchArena> arenas = workspace.arenas;
+        double[] radius = new double[k]; // the cost of each search's last settled node
+        for (int i = 0; i < k; i++) {
+            arenas.get(i).begin(bound);
+            arenas.get(i).relax(startIds[i], 0, -1);
+        }
+
+        long settled = 0;
+        // candidates some but not all searches have settled, which may beat
+        // the global bound, so are checked one by one
+        int[] open = new int[16];
+        int openCount = 0;
+        int pollsSinceCheck = 0;
+        int best = -1;
+        double bestCost = Double.POSITIVE_INFINITY;
+
+        try {
+            while (true) {
+                // advance the search with the nearest weighted frontier
+                int next = -1;
+                for (int i = 0; i < k; i++)
+                    if (radius[i] < Double.POSITIVE_INFINITY
+                            && (next < 0 || weights[i] * radius[i] < weights[next] * radius[next]))
+                        next = i;
+                if (next < 0)
+                    break; // every search has settled all it can reach
+                SearchArena arena = arenas.get(next);
+                if (arena.isEmpty()) {
+                    radius[next] = Double.POSITIVE_INFINITY;
+                } else {
+                    int node = arena.poll();
+                    double cost = arena.getCost(node);
+                    radius[next] = cost;
+                    settled++;
+                    graph.relaxEdges(arena, node, cost);
+                    int position = workspace.position(node);
+                    int settledBy = position >= 0 ? workspace.settle(node) : 0;
+                    if (position >= 0 && settledBy == k) {
+                        double value = lowerBound(arenas, node, weights, objective, radius);
+                        if (value < bestCost || value == bestCost && position < workspace.position(best)) {
+                            best = node;
+                            bestCost = value;
+                        }
+                    } else if (position >= 0 && settledBy == 1 && k > 1) {
+                        if (openCount == open.length)
+                            open = Arrays.copyOf(open, openCount * 2);
+                        open[openCount++] = node;
+                    }
+                }
+
+                // any candidate no search has settled is at least this far
+                double frontier = combine(objective, weights, radius);
+                if (best < 0 || frontier <= bestCost || ++pollsSinceCheck < openCount)
+                    continue;
+                pollsSinceCheck = 0;
+                int kept = 0;
+                for (int c = 0; c < openCount; c++) {
+                    int node = open[c];
+                    if (workspace.settledBy(node) == k)
+                        continue; // complete, and already compared
+                    double lower = lowerBound(arenas, node, weights, objective, radius);
+                    if (lower < bestCost || lower == bestCost && workspace.position(node) < workspace.position(best))
+                        open[kept++] = node;
+                }
+                openCount = kept;
+                if (openCount == 0)
+                    break;
+            }
+        } finally {
+            graph.searchFinished();
+            settledCount.addAndGet(settled);
+        }
+
+        if (best < 0)
+            throw new NoSuchElementException("No common reachable destination found.");
+        return new Result(graph.nodeName(best), bestCost);
+    }
+
+    // the objective for node with each search that has not settled it taken
+    // at its frontier radius; exact once every search has settled it
+    private static double lowerBound(List<SearchArena> arenas, int node, double[] weights,
+            Objective objective, double[] radius) {
+        double value = 0;
+        for (int i = 0; i < weights.length; i++) {
+            SearchArena arena = arenas.get(i);
+            double cost = arena.isSettled(node) ? arena.getCost(node) : radius[i];
+            value = objective == Objective.SUM ? value + weights[i] * cost : Math.max(value, weights[i] * cost);
+        }
+        return value;
+    }
+
+    private static double combine(Objective objective, double[] weights, double[] radius) {
+        double value = 0;
+        for (int i = 0; i < weights.length; i++)
+            value = objective == Objective.SUM ? value + weights[i] * radius[i]
+                    : Math.max(value, weights[i] * radius[i]);
+        return value;
+    }
+
+    /**
+     * @return the number of nodes settled by every search so far, over all
+     *         calls to find
+     */
+    public long getSettledCount() {
+        return settledCount.get();
+    }
+}
@@ -0,0 +1,179 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the MeetingPoint class.
+ */
+public class MeetingPointTests {
+
+    // the best candidate's objective value by one search per start and node
+    private static double bruteForce(CsrGraph graph, List<String> starts, double[] weights,
+            MeetingPoint.Objective objective, List<String> candidates) {
+        double best = Double.POSITIVE_INFINITY;
+        for (String candidate : candidates) {
+            double value = 0;
+            try {
+                for (int i = 0; i < starts.size(); i++) {
+                    double cost = weights[i] * graph.shortestPathCost(starts.get(i), candidate);
+                    value = objective == MeetingPoint.Objective.SUM ? value + cost : Math.max(value, cost);
+                }
+            } catch (NoSuchElementException e) {
+                continue;
+            }
+            best = Math.min(best, value);
+        }
+        return best;
+    }
+
+    /**
+     * Test matchesBruteForce: on campus, for random starts, weights and
+     * candidate sets, every objective finds a destination whose value is
+     * the least over the candidates, and fewer candidates settle fewer
+     * nodes.
+     */
+    @Test
+    public void matchesBruteForce() throws IOException {
+        CsrGraph graph = ParallelDotLoader.load("campus.dot", 1);
+        List<String> nodes = graph.getAllNodes();
+        MeetingPoint meetingPoint = new MeetingPoint(graph);
+        Random random = new Random(17);
+        for (int trial = 0; trial < 30; trial++) {
+            List<String> starts = new ArrayList<>();
+            double[] weights = new double[1 + random.nextInt(4)];
+            for (int i = 0; i < weights.length; i++) {
+                starts.add(nodes.get(random.nextInt(nodes.size())));
+                weights[i] = trial % 2 == 0 ? 1 : 0.5 + random.nextDouble();
+            }
+            List<String> candidates = nodes;
+            if (trial % 3 == 0) {
+                candidates = new ArrayList<>();
+                for (int i = 0; i < 5; i++)
+                    candidates.add(nodes.get(random.nextInt(nodes.size())));
+            }
+            for (MeetingPoint.Objective objective : MeetingPoint.Objective.values()) {
+                double expected = bruteForce(graph, starts, weights, objective, candidates);
+                if (expected == Double.POSITIVE_INFINITY) {
+                    List<String> unreachable = candidates;
+                    Assertions.assertThrows(NoSuchElementException.class,
+                            () -> meetingPoint.find(starts, weights, objective, unreachable));
+                    continue;
+                }
+                MeetingPoint.Result result = meetingPoint.find(starts, weights, objective, candidates);
+                Assertions.assertTrue(candidates.contains(result.getDestination()));
+                Assertions.assertEquals(expected, result.getCost(), 1e-9);
+                Assertions.assertEquals(expected, bruteForce(graph, starts, weights, objective,
+                        List.of(result.getDestination())), 1e-9);
+            }
+        }
+
+        List<String> starts = List.of(nodes.get(0), nodes.get(nodes.size() / 2));
+        long before = meetingPoint.getSettledCount();
+        meetingPoint.find(starts, null, MeetingPoint.Objective.SUM, null);
+        long everyNode = meetingPoint.getSettledCount() - before;
+        before = meetingPoint.getSettledCount();
+        meetingPoint.find(starts, null, MeetingPoint.Objective.SUM, List.of(nodes.get(0)));
+        Assertions.assertTrue(meetingPoint.getSettledCount() - before <= everyNode);
+    }
+
+    /**
+     * Test mutableGraph: a MeetingPoint over a DijkstraGraph, and Backend's
+     * getClosestDestinationFromAll, agree with the objectives worked out by
+     * hand, and bad weights and missing nodes are rejected.
+     */
+    @Test
+    public void mutableGraph() {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        for (String node : List.of("A", "B", "C", "D", "E"))
+            graph.insertNode(node);
+        // A and B each reach C cheaply from one side; D is halfway between
+        graph.insertEdge("A", "C", 1.0);
+        graph.insertEdge("B", "C", 9.0);
+        graph.insertEdge("A", "D", 5.0);
+        graph.insertEdge("B", "D", 5.0);
+        graph.insertEdge("C", "E", 1.0);
+        MeetingPoint meetingPoint = new MeetingPoint(graph);
+        List<String> starts = List.of("A", "B");
+
+        MeetingPoint.Result sum = meetingPoint.find(starts);
+        Assertions.assertEquals("C", sum.getDestination()); // 10, ties D and wins by id
+        Assertions.assertEquals(10.0, sum.getCost(), 1e-9);
+        MeetingPoint.Result fairest = meetingPoint.find(starts, null, MeetingPoint.Objective.MAX, null);
+        Assertions.assertEquals("D", fairest.getDestination());
+        Assertions.assertEquals(5.0, fairest.getCost(), 1e-9);
+        MeetingPoint.Result weighted = meetingPoint.find(starts, new double[] { 1, 0.5 },
+                MeetingPoint.Objective.SUM, List.of("E", "D"));
+        Assertions.assertEquals("E", weighted.getDestination()); // 2 + 5, against D's 5 + 2.5
+        Assertions.assertEquals(7.0, weighted.getCost(), 1e-9);
+
+        Backend backend = new Backend(graph);
+        Assertions.assertEquals("C", backend.getClosestDestinationFromAll(starts));
+        Assertions.assertEquals("D", backend.getClosestDestinationFromAll(starts, null,
+                MeetingPoint.Objective.MAX, null));
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> meetingPoint.find(starts, new double[] { 1 }, MeetingPoint.Objective.SUM, null));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> meetingPoint.find(starts, new double[] { 1, 0 }, MeetingPoint.Objective.SUM, null));
+        Assertions.assertThrows(NoSuchElementException.class, () -> meetingPoint.find(List.of("A", "Z")));
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> meetingPoint.find(List.of("C", "A"), null, MeetingPoint.Objective.SUM, List.of("A", "B")));
+    }
+
+    /**
+     * Test sharedAcrossThreads: one MeetingPoint over campus, called from
+     * several threads at once with different starts and candidates, gives
+     * each call the same answer as calling it alone.
+     */
+    @Test
+    public void sharedAcrossThreads() throws Exception {
+        CsrGraph graph = ParallelDotLoader.load("campus.dot", 1);
+        List<String> nodes = graph.getAllNodes();
+        MeetingPoint meetingPoint = new MeetingPoint(graph);
+        int queries = 60;
+        List<List<String>> starts = new ArrayList<>();
+        List<List<String>> candidates = new ArrayList<>();
+        String[] expected = new String[queries];
+        Random random = new Random(46);
+        for (int q = 0; q < queries; q++) {
+            starts.add(List.of(nodes.get(random.nextInt(nodes.size())), nodes.get(random.nextInt(nodes.size()))));
+            candidates.add(q % 2 == 0 ? null : nodes.subList(q, q + 20));
+            try {
+                expected[q] = meetingPoint.find(starts.get(q), null, MeetingPoint.Objective.MAX,
+                        candidates.get(q)).getDestination();
+            } catch (NoSuchElementException e) {
+                expected[q] = null;
+            }
+        }
+        AtomicInteger mismatches = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int offset = t;
+            threads[t] = new Thread(() -> {
+                for (int round = 0; round < 5; round++) {
+                    for (int q = offset; q < queries; q += threads.length) {
+                        String found;
+                        try {
+                            found = meetingPoint.find(starts.get(q), null, MeetingPoint.Objective.MAX,
+                                    candidates.get(q)).getDestination();
+                        } catch (NoSuchElementException e) {
+                            found = null;
+                        }
+                        if (!Objects.equals(expected[q], found))
+                            mismatches.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        Assertions.assertEquals(0, mismatches.get());
+    }
+}
@@ -0,0 +1,376 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Process wide instrumentation for the routing hot paths: request counts and
+ * latencies per WebApp endpoint, Dijkstra work counters, cache hit rates and
+ * graph load times. Everything recorded here can be rendered in the
+ * Prometheus text exposition format through toPrometheusText().
+ *
+ * Recording is lock-free (LongAdder and AtomicLongArray updates only). When
+ * the JVM is started with -Dcampus.metrics=false, ENABLED is a constant false
+ * and the JIT removes every guarded recording site.
+ */
+public class Metrics {
+
+    // read once so that callers can guard their recording with a constant
+    public static final boolean ENABLED =
+            !"false".equalsIgnoreCase(System.getProperty("campus.metrics"));
+
+    // metric families sorted by name, so the exposition output is stable
+    private static final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    // counters recorded once per shortest path search
+    public static final Counter SEARCHES = counter("campus_dijkstra_searches_total", "",
+            "Shortest path searches run by DijkstraGraph.");
+    public static final Counter SETTLED_NODES = counter("campus_dijkstra_settled_nodes_total", "",
+            "Nodes settled (removed from the queue for the first time) by Dijkstra searches.");
+    public static final Counter RELAXED_EDGES = counter("campus_dijkstra_relaxed_edges_total", "",
+            "Edges relaxed by Dijkstra searches.");
+    public static final Counter HEAP_PUSHES = counter("campus_dijkstra_heap_pushes_total", "",
+            "Entries pushed onto the Dijkstra priority queue.");
+
+    // graph loading
+    public static final Histogram GRAPH_LOAD = histogram("campus_graph_load_seconds", "",
+            "Time spent loading graph data from a dot file.");
+    public static final Gauge GRAPH_NODES = gauge("campus_graph_nodes", "",
+            "Number of nodes in the most recently loaded graph.");
+    public static final Gauge GRAPH_EDGES = gauge("campus_graph_edges", "",
+            "Number of edges in the most recently loaded graph.");
+
+    /**
+     * A monotonically increasing count.
+     */
+    public static class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * A value that may go up and down, such as the size of a structure.
+     */
+    public static class Gauge {
+        private final AtomicLong value = new AtomicLong();
+
+        public void set(long newValue) {
+            value.set(newValue);
+        }
+
+        public void add(long amount) {
+            value.addAndGet(amount);
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+
+    /**
+     * A log-linear (HDR style) histogram of non-negative long values, such as
+     * latencies in nanoseconds. Values below 2^SUB_BITS are counted exactly,
+     * larger values fall into one of 2^SUB_BITS linear sub-buckets per power of
+     * two, so every recorded value is kept within 1/2^SUB_BITS of its true
+     * magnitude. Recording is a single atomic increment and never blocks.
+     */
+    public static class Histogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder sum = new LongAdder();
+        private final LongAdder count = new LongAdder();
+
+        /**
+         * Records a single value.
+         *
+         * @param value the value to record, negative values are counted as 0
+         */
+        public void record(long value) {
+            if (value < 0)
+                value = 0;
+            counts.incrementAndGet(bucketIndex(value));
+            sum.add(value);
+            count.increment();
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getSum() {
+            return sum.sum();
+        }
+
+        /**
+         * Returns the number of recorded values that are at most limit.
+         * Values are compared by the upper bound of the bucket they landed
+         * in, so the result is exact up to the histogram's precision.
+         *
+         * @param limit the inclusive upper bound to count values below
+         * @return the number of recorded values less than or equal to limit
+         */
+        public long countAtOrBelow(long limit) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                if (bucketUpperBound(i) > limit)
+                    break;
+                total += counts.get(i);
+            }
+            return total;
+        }
+
+        /**
+         * Estimates the value at the given percentile of recorded values.
+         *
+         * @param percentile a percentile between 0 and 100
+         * @return the upper bound of the bucket containing that percentile, or
+         *         0 if nothing has been recorded
+         */
+        public long getValueAtPercentile(double percentile) {
+            long total = getCount();
+            if (total == 0)
+                return 0;
+            long rank = (long) Math.ceil(total * Math.min(100.0, percentile) / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= Math.max(1, rank))
+                    return bucketUpperBound(i);
+            }
+            return bucketUpperBound(BUCKETS - 1);
+        }
+
+        static int bucketIndex(long value) {
+            if (value < SUB_COUNT)
+                return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+            return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+        }
+
+        static long bucketUpperBound(int index) {
+            if (index < SUB_COUNT)
+                return index;
+            int exponent = index / SUB_COUNT + SUB_BITS - 1;
+            long sub = index % SUB_COUNT;
+            long lower = (1L << exponent) | (sub << (exponent - SUB_BITS));
+            long upper = lower + (1L << (exponent - SUB_BITS)) - 1;
+            return upper < 0 ? Long.MAX_VALUE : upper;
+        }
+    }
+
+    // all metrics sharing one name, type and help text, keyed by label set
+    private static class Family {
+        final String name;
+        final String type;
+        final String help;
+        final Map<String, Object> series = new ConcurrentSkipListMap<>();
+
+        Family(String name, String type, String help) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    /**
+     * Returns the counter with this name and label set, creating it the first
+     * time it is requested.
+     *
+     * @param name   the metric name, e.g. campus_http_requests_total
+     * @param labels the Prometheus label set without braces, e.g.
+     *               endpoint="route", or an empty string
+     * @param help   a one line description of the metric
+     * @return the counter registered for this name and label set
+     */
+    public static Counter counter(String name, String labels, String help) {
+        return (Counter) register(name, "counter", labels, help);
+    }
+
+    /**
+     * Returns the gauge with this name and label set, creating it the first
+     * time it is requested.
+     *
+     * @param name   the metric name
+     * @param labels the Prometheus label set without braces, or empty
+     * @param help   a one line description of the metric
+     * @return the gauge registered for this name and label set
+     */
+    public static Gauge gauge(String name, String labels, String help) {
+        return (Gauge) register(name, "gauge", labels, help);
+    }
+
+    /**
+     * Returns the histogram with this name and label set, creating it the
+     * first time it is requested. Histogram values are recorded in
+     * nanoseconds and exposed in seconds.
+     *
+     * @param name   the metric name, e.g. campus_http_request_seconds
+     * @param labels the Prometheus label set without braces, or empty
+     * @param help   a one line description of the metric
+     * @return the histogram registered for this name and label set
+     */
+    public static Histogram histogram(String name, String labels, String help) {
+        return (Histogram) register(name, "histogram", labels, help);
+    }
+
+    private static Object register(String name, String type, String labels, String help) {
+        Family family = families.computeIfAbsent(name, n -> new Family(n, type, help));
+        if (!family.type.equals(type))
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a "
+                    + family.type);
+        return family.series.computeIfAbsent(labels, l -> {
+            switch (type) {
+                case "counter":
+                    return new Counter();
+                case "gauge":
+                    return new Gauge();
+                default:
+                    return new Histogram();
+            }
+        });
+    }
+
+    // drops a metric family, so tests can register throwaway metrics in the
+    // process wide registry without leaving them in later exposition output
+    static void unregister(String name) {
+        families.remove(name);
+    }
+
+    /**
+     * Records the work done by one shortest path search.
+     *
+     * @param settled the number of nodes settled
+     * @param relaxed the number of edges relaxed
+     * @param pushes  the number of priority queue insertions
+     */
+    public static void recordSearch(long settled, long relaxed, long pushes) {
+        SEARCHES.increment();
+        SETTLED_NODES.add(settled);
+        RELAXED_EDGES.add(relaxed);
+        HEAP_PUSHES.add(pushes);
+    }
+
+    /**
+     * Records a lookup against a named cache.
+     *
+     * @param cache the name of the cache, used as the cache label
+     * @param hit   true when the lookup was answered from the cache
+     */
+    public static void recordCacheLookup(String cache, boolean hit) {
+        String labels = "cache=\"" + cache + "\"";
+        if (hit)
+            counter("campus_cache_hits_total", labels, "Lookups answered from a cache.").increment();
+        else
+            counter("campus_cache_misses_total", labels, "Lookups that missed a cache.").increment();
+    }
+
+    // bucket boundaries, in seconds, used when exposing histograms
+    private static final String[] EXPOSED_BOUNDS = { "0.0001", "0.00025", "0.0005", "0.001",
+            "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10" };
+
+    /**
+     * Renders every registered metric in the Prometheus text exposition
+     * format (version 0.0.4).
+     *
+     * @return the text to serve from a /metrics endpoint
+     */
+    public static String toPrometheusText() {
+        StringBuilder out = new StringBuilder();
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> entry : family.series.entrySet()) {
+                String labels = entry.getKey();
+                Object metric = entry.getValue();
+                if (metric instanceof Counter)
+                    appendSample(out, family.name, labels, ((Counter) metric).get());
+                else if (metric instanceof Gauge)
+                    appendSample(out, family.name, labels, ((Gauge) metric).get());
+                else
+                    appendHistogram(out, family.name, labels, (Histogram) metric);
+            }
+        }
+        return out.toString();
+    }
+
+    private static void appendHistogram(StringBuilder out, String name, String labels,
+            Histogram histogram) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        for (String bound : EXPOSED_BOUNDS) {
+            long count = histogram.countAtOrBelow((long) (Double.parseDouble(bound) * 1e9));
+            appendSample(out, name + "_bucket", prefix + "le=\"" + bound + "\"", count);
+        }
+        appendSample(out, name + "_bucket", prefix + "le=\"+Inf\"", histogram.getCount());
+        out.append(name).append("_sum");
+        if (!labels.isEmpty())
+            out.append('{').append(labels).append('}');
+        out.append(' ').append(histogram.getSum() / 1e9).append('\n');
+        appendSample(out, name + "_count", labels, histogram.getCount());
+    }
+
+    private static void appendSample(StringBuilder out, String name, String labels, long value) {
+        out.append(name);
+        if (!labels.isEmpty())
+            out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+
+    @Test
+    /**
+     * Checks that histogram buckets keep values within their precision, and
+     * that percentiles are read back from the recorded distribution.
+     */
+    public void testHistogramPrecision() {
+        Histogram histogram = new Histogram();
+        for (long v = 1; v <= 1000; v++)
+            histogram.record(v * 1000);
+        Assertions.assertEquals(1000, histogram.getCount());
+        long median = histogram.getValueAtPercentile(50);
+        Assertions.assertTrue(Math.abs(median - 500_000) <= 500_000 / 16,
+                "median " + median + " should be within 1/16 of 500000");
+        Assertions.assertEquals(1000, histogram.countAtOrBelow(Long.MAX_VALUE));
+        Assertions.assertEquals(0, histogram.countAtOrBelow(999));
+        for (int i = 0; i < 200; i++)
+            Assertions.assertTrue(Histogram.bucketUpperBound(i) < Histogram.bucketUpperBound(i + 1));
+    }
+
+    @Test
+    /**
+     * Checks the Prometheus rendering of a labelled counter and histogram.
+     */
+    public void testPrometheusText() {
+        try {
+            counter("campus_test_total", "endpoint=\"route\"", "Test counter.").add(3);
+            histogram("campus_test_seconds", "", "Test histogram.").record(2_000_000);
+            String text = toPrometheusText();
+            Assertions.assertTrue(text.contains("# TYPE campus_test_total counter"));
+            Assertions.assertTrue(text.contains("campus_test_total{endpoint=\"route\"} 3"));
+            Assertions.assertTrue(text.contains("campus_test_seconds_bucket{le=\"0.001\"} 0"));
+            Assertions.assertTrue(text.contains("campus_test_seconds_bucket{le=\"0.0025\"} 1"));
+            Assertions.assertTrue(text.contains("campus_test_seconds_count 1"));
+        } finally {
+            unregister("campus_test_total");
+            unregister("campus_test_seconds");
+        }
+        Assertions.assertFalse(toPrometheusText().contains("campus_test_"));
+    }
+}
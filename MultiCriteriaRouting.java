@@ -0,0 +1,297 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Routes over more than one edge criterion, such as travel time, walking
+ * distance and elevation gain, using the numeric edge attributes stored in a
+ * BaseGraph. A criterion is the name of an edge attribute, or WEIGHT for the
+ * edge weight itself (travel seconds in the campus graph).
+ *
+ * Two kinds of query are offered:
+ * - weightedPath minimizes a weighted sum of several criteria with a single
+ *   Dijkstra search;
+ * - paretoPaths finds every path that is not beaten on both of two criteria
+ *   at once, using a bicriteria label-setting search.
+ *
+ * Criteria must not be negative on any edge. Per-node search state lives in
+ * arrays kept per thread and reset by epoch, as in SearchArena, so a query
+ * allocates nothing proportional to the size of the graph.
+ */
+public class MultiCriteriaRouting<NodeType, EdgeType extends Number> {
+
+    /**
+     * The name of the criterion that reads each edge's weight.
+     */
+    public static final String WEIGHT = "weight";
+
+    /**
+     * One path found by a multi-criteria query, with its total for each of
+     * the query's criteria.
+     */
+    public class Route {
+        private final List<NodeType> nodes;
+        private final double[] costs;
+
+        private Route(List<NodeType> nodes, double[] costs) {
+            this.nodes = nodes;
+            this.costs = costs;
+        }
+
+        /**
+         * @return the data of the nodes along this route, from start to end
+         */
+        public List<NodeType> getNodes() {
+            return nodes;
+        }
+
+        /**
+         * @param criterion the index of a criterion in the query
+         * @return this route's total for that criterion
+         */
+        public double getCost(int criterion) {
+            return costs[criterion];
+        }
+    }
+
+    // a path to node with its totals over the query's criteria; labels are
+    // ordered by their first total, then their second
+    private class Label implements Comparable<Label> {
+        final BaseGraph<NodeType, EdgeType>.Node node;
+        final double first;
+        final double second;
+        final Label predecessor;
+
+        Label(BaseGraph<NodeType, EdgeType>.Node node, double first, double second, Label predecessor) {
+            this.node = node;
+            this.first = first;
+            this.second = second;
+            this.predecessor = predecessor;
+        }
+
+        public int compareTo(Label other) {
+            int order = Double.compare(first, other.first);
+            return order != 0 ? order : Double.compare(second, other.second);
+        }
+    }
+
+    // the per-node state of a Pareto search: the least second total and the
+    // number of labels settled at each node, valid only where stamped with
+    // the current epoch
+    private static final class ParetoState {
+        double[] leastSecond = new double[0];
+        int[] settled = new int[0];
+        int[] stamp = new int[0];
+        int epoch = 0;
+
+        void begin(int nodeIdBound) {
+            if (stamp.length < nodeIdBound) {
+                int length = Math.max(nodeIdBound, stamp.length * 2);
+                leastSecond = Arrays.copyOf(leastSecond, length);
+                settled = Arrays.copyOf(settled, length);
+                stamp = Arrays.copyOf(stamp, length);
+            }
+            if (++epoch == 0) {
+                Arrays.fill(stamp, 0);
+                epoch = 1;
+            }
+        }
+
+        double leastSecond(int node) {
+            return stamp[node] == epoch ? leastSecond[node] : Double.POSITIVE_INFINITY;
+        }
+
+        int settled(int node) {
+            return stamp[node] == epoch ? settled[node] : 0;
+        }
+
+        void settle(int node, double second) {
+            if (stamp[node] != epoch) {
+                stamp[node] = epoch;
+                settled[node] = 0;
+            }
+            leastSecond[node] = second;
+            settled[node]++;
+        }
+    }
+
+    private static final ThreadLocal<ParetoState> PARETO_STATES = ThreadLocal.withInitial(ParetoState::new);
+
+    private final BaseGraph<NodeType, EdgeType> graph;
+
+    /**
+     * Constructor for routing within graph.
+     *
+     * @param graph the graph to route in, with its edge attributes
+     */
+    public MultiCriteriaRouting(BaseGraph<NodeType, EdgeType> graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Returns the path from start to end that minimizes the weighted sum of
+     * the given criteria, e.g. seconds + 10 x elevation gain.
+     *
+     * @param start    the data item in the starting node for the path
+     * @param end      the data item in the destination node for the path
+     * @param criteria the names of the criteria to combine
+     * @param weights  the (non-negative) weight of each criterion
+     * @return the best path, with its total for each criterion
+     * @throws NoSuchElementException   if either node is missing, or if there
+     *                                  is no path from start to end
+     * @throws IllegalArgumentException if a criterion is negative on some edge
+     */
+    public Route weightedPath(NodeType start, NodeType end, String[] criteria, double[] weights) {
+        if (criteria.length != weights.length)
+            throw new IllegalArgumentException("Each criterion needs one weight.");
+        for (double weight : weights)
+            if (!(weight >= 0))
+                throw new IllegalArgumentException("Weights must not be negative.");
+        double[][] columns = columnsOf(criteria);
+
+        // a node's cost in the arena is the weighted sum of its criteria
+        BaseGraph<NodeType, EdgeType>.Node startNode = nodeOf(start);
+        BaseGraph<NodeType, EdgeType>.Node endNode = nodeOf(end);
+        SearchArena arena = SearchArena.forCurrentThread();
+        arena.begin(graph.nodeIdBound);
+        arena.relax(startNode.id, 0, -1);
+        while (!arena.isEmpty()) {
+            int id = arena.poll();
+            if (id == endNode.id) {
+                List<BaseGraph<NodeType, EdgeType>.Node> path = new ArrayList<>();
+                for (int node = id; node >= 0; node = arena.getPredecessor(node))
+                    path.add(graph.nodesById.get(node));
+                Collections.reverse(path);
+                return routeOf(path, criteria, columns);
+            }
+            for (BaseGraph<NodeType, EdgeType>.Edge edge : graph.nodesById.get(id).edgesLeaving) {
+                double cost = arena.getCost(id);
+                for (int i = 0; i < columns.length; i++)
+                    cost += weights[i] * valueOf(columns[i], edge);
+                arena.relax(edge.successor.id, cost, id);
+            }
+        }
+        throw new NoSuchElementException("error: there is no path from start to end node.");
+    }
+
+    /**
+     * Returns the Pareto set of paths from start to end for two criteria:
+     * every path for which no other path is at least as good on both
+     * criteria and better on one. Routes are ordered by increasing first
+     * criterion (and so decreasing second).
+     *
+     * The search keeps at most maxLabels paths per node, which bounds its
+     * work on graphs whose criteria trade off against each other a lot. When
+     * the bound is reached, further trade-offs through that node are dropped
+     * and the set returned may miss some Pareto-optimal paths; its first
+     * route always minimizes the first criterion.
+     *
+     * @param start     the data item in the starting node for the paths
+     * @param end       the data item in the destination node for the paths
+     * @param first     the name of the first criterion
+     * @param second    the name of the second criterion
+     * @param maxLabels the maximum number of paths kept for each node
+     * @return the Pareto-optimal routes, each with its two totals
+     * @throws NoSuchElementException   if either node is missing, or if there
+     *                                  is no path from start to end
+     * @throws IllegalArgumentException if a criterion is negative on some edge
+     */
+    public List<Route> paretoPaths(NodeType start, NodeType end, String first, String second,
+            int maxLabels) {
+        if (maxLabels <= 0)
+            throw new IllegalArgumentException("maxLabels must be greater than 0.");
+        String[] criteria = { first, second };
+        double[][] columns = columnsOf(criteria);
+        BaseGraph<NodeType, EdgeType>.Node startNode = nodeOf(start);
+        BaseGraph<NodeType, EdgeType>.Node endNode = nodeOf(end);
+
+        // Labels leave the queue in lexicographic order, so each label
+        // settled at a node has a first total no smaller than the ones
+        // settled before it: it is dominated exactly when its second total is
+        // no smaller than the least second total settled there so far.
+        ParetoState state = PARETO_STATES.get();
+        state.begin(graph.nodeIdBound);
+        PriorityQueue<Label> queue = new PriorityQueue<>();
+        queue.add(new Label(startNode, 0, 0, null));
+        List<Route> routes = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            Label label = queue.poll();
+            int id = label.node.id;
+            if (label.second >= state.leastSecond(id) || label.second >= state.leastSecond(endNode.id)
+                    || state.settled(id) >= maxLabels)
+                continue; // dominated here or at the end, or over the bound
+            state.settle(id, label.second);
+            if (label.node == endNode) {
+                List<BaseGraph<NodeType, EdgeType>.Node> path = new ArrayList<>();
+                for (Label current = label; current != null; current = current.predecessor)
+                    path.add(current.node);
+                Collections.reverse(path);
+                routes.add(routeOf(path, criteria, columns));
+                continue;
+            }
+            for (BaseGraph<NodeType, EdgeType>.Edge edge : label.node.edgesLeaving) {
+                double nextSecond = label.second + valueOf(columns[1], edge);
+                if (nextSecond < state.leastSecond(edge.successor.id)
+                        && nextSecond < state.leastSecond(endNode.id))
+                    queue.add(new Label(edge.successor, label.first + valueOf(columns[0], edge),
+                            nextSecond, label));
+            }
+        }
+        if (routes.isEmpty())
+            throw new NoSuchElementException("error: there is no path from start to end node.");
+        return routes;
+    }
+
+    private BaseGraph<NodeType, EdgeType>.Node nodeOf(NodeType data) {
+        if (!graph.containsNode(data))
+            throw new NoSuchElementException("Start or end node not in graph.");
+        return graph.nodes.get(data);
+    }
+
+    // looks up each criterion's column once; null stands for the edge weight
+    private double[][] columnsOf(String[] criteria) {
+        double[][] columns = new double[criteria.length][];
+        for (int i = 0; i < criteria.length; i++) {
+            if (criteria[i].equals(WEIGHT))
+                continue;
+            columns[i] = graph.edgeAttributes.getColumn(criteria[i]);
+            if (columns[i] == null)
+                throw new IllegalArgumentException("No edge has attribute " + criteria[i]);
+            // label-setting searches settle nodes for good, which a negative
+            // edge could later undercut
+            if (graph.edgeAttributes.hasNegative(criteria[i]))
+                throw new IllegalArgumentException("Attribute " + criteria[i]
+                        + " is negative on some edge, so it cannot be a criterion");
+        }
+        return columns;
+    }
+
+    private static double valueOf(double[] column, BaseGraph<?, ?>.Edge edge) {
+        if (column == null)
+            return edge.data.doubleValue();
+        return edge.id < column.length ? column[edge.id] : 0;
+    }
+
+    // totals each criterion along a path of nodes, from start to end
+    private Route routeOf(List<BaseGraph<NodeType, EdgeType>.Node> path, String[] criteria,
+            double[][] columns) {
+        List<NodeType> nodes = new ArrayList<>();
+        double[] costs = new double[criteria.length];
+        for (int k = 0; k < path.size(); k++) {
+            nodes.add(path.get(k).data);
+            if (k == 0)
+                continue;
+            for (BaseGraph<NodeType, EdgeType>.Edge edge : path.get(k - 1).edgesLeaving) {
+                if (edge.successor == path.get(k)) {
+                    for (int i = 0; i < criteria.length; i++)
+                        costs[i] += valueOf(columns[i], edge);
+                    break;
+                }
+            }
+        }
+        return new Route(nodes, costs);
+    }
+}
@@ -0,0 +1,163 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Unit tests for the MultiCriteriaRouting class and the edge attributes it
+ * reads. These tests check weighted and Pareto queries against exhaustive
+ * enumeration of paths, and that the loader keeps numeric dot attributes.
+ */
+public class MultiCriteriaRoutingTests {
+
+    /**
+     * Test paretoMatchesExhaustiveSearch: on random graphs with two random
+     * criteria, the Pareto set equals the non-dominated totals among all
+     * loopless paths, and weighted queries find the best weighted total.
+     */
+    @Test
+    public void paretoMatchesExhaustiveSearch() {
+        Random random = new Random(33);
+        for (int trial = 0; trial < 30; trial++) {
+            DijkstraGraph<Integer, Double> graph = new DijkstraGraph<>();
+            int n = 8;
+            for (int i = 0; i < n; i++)
+                graph.insertNode(i);
+            for (int i = 0; i < 3 * n; i++) {
+                int from = random.nextInt(n);
+                int to = random.nextInt(n);
+                if (from == to)
+                    continue;
+                graph.insertEdge(from, to, 1.0 + random.nextInt(9));
+                graph.setEdgeAttribute(from, to, "distance", random.nextInt(9));
+            }
+            List<double[]> totals = new ArrayList<>();
+            Set<Integer> visited = new HashSet<>();
+            visited.add(0);
+            enumerate(graph, 0, n - 1, 0, 0, visited, totals);
+            if (totals.isEmpty())
+                continue;
+
+            Set<String> expected = new HashSet<>();
+            for (double[] a : totals) {
+                boolean dominated = false;
+                for (double[] b : totals)
+                    if (b[0] <= a[0] && b[1] <= a[1] && (b[0] < a[0] || b[1] < a[1]))
+                        dominated = true;
+                if (!dominated)
+                    expected.add(a[0] + "/" + a[1]);
+            }
+            MultiCriteriaRouting<Integer, Double> routing = new MultiCriteriaRouting<>(graph);
+            Set<String> actual = new HashSet<>();
+            for (MultiCriteriaRouting<Integer, Double>.Route route :
+                    routing.paretoPaths(0, n - 1, MultiCriteriaRouting.WEIGHT, "distance", 1000))
+                Assertions.assertTrue(actual.add(route.getCost(0) + "/" + route.getCost(1)));
+            Assertions.assertEquals(expected, actual, "trial " + trial);
+
+            double best = Double.POSITIVE_INFINITY;
+            for (double[] total : totals)
+                best = Math.min(best, total[0] + 3 * total[1]);
+            MultiCriteriaRouting<Integer, Double>.Route route = routing.weightedPath(0, n - 1,
+                    new String[] { MultiCriteriaRouting.WEIGHT, "distance" }, new double[] { 1, 3 });
+            Assertions.assertEquals(best, route.getCost(0) + 3 * route.getCost(1), 1e-9);
+        }
+    }
+
+    // adds the (weight, distance) totals of every loopless path to totals
+    private static void enumerate(DijkstraGraph<Integer, Double> graph, int node, int end,
+            double weight, double distance, Set<Integer> visited, List<double[]> totals) {
+        if (node == end) {
+            totals.add(new double[] { weight, distance });
+            return;
+        }
+        for (int next : graph.getSuccessors(node)) {
+            if (visited.add(next)) {
+                enumerate(graph, next, end, weight + graph.getEdge(node, next),
+                        distance + graph.getEdgeAttribute(node, next, "distance"), visited, totals);
+                visited.remove(next);
+            }
+        }
+    }
+
+    /**
+     * Test loaderKeepsNumericAttributes: numeric and boolean dot attributes
+     * become edge attributes usable as criteria and in route filters.
+     */
+    @Test
+    public void loaderKeepsNumericAttributes() throws IOException {
+        File file = File.createTempFile("attributes", ".dot");
+        file.deleteOnExit();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("digraph campus {\n"
+                    + "\t\"A\" -> \"B\" [seconds=60, distance=80, stairs=true];\n"
+                    + "\t\"B\" -> \"C\" [seconds=60, distance=80, indoor=yes, note=\"ramp\"];\n"
+                    + "\t\"A\" -> \"C\" [seconds=200, distance=100];\n"
+                    + "}\n");
+        }
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        new Backend(graph).loadGraphData(file.getPath());
+        Assertions.assertEquals(80.0, graph.getEdgeAttribute("\"A\"", "\"B\"", "distance"), 1e-9);
+        Assertions.assertEquals(1.0, graph.getEdgeAttribute("\"A\"", "\"B\"", "stairs"), 1e-9);
+        Assertions.assertEquals(0.0, graph.getEdgeAttribute("\"A\"", "\"C\"", "stairs"), 1e-9);
+        Assertions.assertEquals(1.0, graph.getEdgeAttribute("\"B\"", "\"C\"", "indoor"), 1e-9);
+        Assertions.assertEquals(0.0, graph.getEdgeAttribute("\"B\"", "\"C\"", "note"), 1e-9);
+
+        MultiCriteriaRouting<String, Double> routing = new MultiCriteriaRouting<>(graph);
+        List<MultiCriteriaRouting<String, Double>.Route> routes =
+                routing.paretoPaths("\"A\"", "\"C\"", "seconds", "distance", 16);
+        Assertions.assertEquals(2, routes.size());
+        Assertions.assertEquals(List.of("\"A\"", "\"B\"", "\"C\""), routes.get(0).getNodes());
+        Assertions.assertEquals(List.of("\"A\"", "\"C\""), routes.get(1).getNodes());
+        Assertions.assertEquals(100.0, routes.get(1).getCost(1), 1e-9);
+
+        RouteFilter<String, Double> accessible = new RouteFilter<>(graph);
+        Assertions.assertEquals(1, accessible.avoidEdgesWhere("stairs", v -> v > 0));
+        Assertions.assertEquals(List.of("\"A\"", "\"C\""),
+                graph.shortestPathData("\"A\"", "\"C\"", accessible));
+    }
+
+    /**
+     * Test negativeAndRemovedAttributes: an attribute that is negative on
+     * any edge is refused as a criterion until that edge is removed, and a
+     * removed edge's attributes do not come back when it is inserted again.
+     */
+    @Test
+    public void negativeAndRemovedAttributes() {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        for (String node : List.of("A", "B", "C"))
+            graph.insertNode(node);
+        graph.insertEdge("A", "B", 1.0);
+        graph.insertEdge("B", "C", 1.0);
+        graph.insertEdge("A", "C", 5.0);
+        graph.setEdgeAttribute("A", "B", "climb", 4.0);
+        graph.setEdgeAttribute("B", "C", "climb", -10.0);
+        graph.setEdgeAttribute("A", "C", "climb", 2.0);
+        MultiCriteriaRouting<String, Double> routing = new MultiCriteriaRouting<>(graph);
+        String[] criteria = { MultiCriteriaRouting.WEIGHT, "climb" };
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> routing.weightedPath("A", "C", criteria, new double[] { 1, 1 }));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> routing.paretoPaths("A", "C", "weight", "climb", 4));
+
+        // overwriting the negative value makes the criterion usable again
+        graph.setEdgeAttribute("B", "C", "climb", 10.0);
+        Assertions.assertEquals(List.of("A", "C"),
+                routing.weightedPath("A", "C", criteria, new double[] { 1, 1 }).getNodes());
+        graph.setEdgeAttribute("B", "C", "climb", -1.0);
+        Assertions.assertTrue(graph.removeEdge("B", "C"));
+        MultiCriteriaRouting<String, Double>.Route direct =
+                routing.weightedPath("A", "C", criteria, new double[] { 1, 1 });
+        Assertions.assertEquals(5.0, direct.getCost(0), 1e-9);
+        Assertions.assertEquals(2.0, direct.getCost(1), 1e-9);
+        graph.insertEdge("B", "C", 1.0);
+        Assertions.assertEquals(0.0, graph.getEdgeAttribute("B", "C", "climb"), 1e-9);
+        Assertions.assertEquals(List.of("A", "B", "C"),
+                routing.weightedPath("A", "C", criteria, new double[] { 1, 1 }).getNodes());
+    }
+}
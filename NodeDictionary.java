@@ -0,0 +1,182 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns node data (such as building names) as dense int ids 0, 1, 2, ...
+ * so that code past the API boundary can work with ids held in arrays
+ * instead of hashing and comparing the data itself. Interning the same data
+ * again returns the same id, even after its node was removed from a graph.
+ *
+ * Once a graph is loaded, freeze builds a minimal perfect hash over the
+ * interned data (hash and displace: each small bucket of keys gets a seed
+ * that sends its keys to distinct free slots of a table with exactly one
+ * slot per key). A frozen lookup then costs two hash mixes, two array reads
+ * and a single equals against the only candidate. Interning new data after
+ * freezing simply unfreezes the dictionary until freeze is called again.
+ */
+public class NodeDictionary<K> {
+
+    private final Map<K, Integer> ids = new HashMap<>();
+    private final List<K> data = new ArrayList<>();
+
+    // minimal perfect hash, valid while frozen
+    private boolean frozen = false;
+    private int[] seeds;
+    private int[] slots;
+
+    /**
+     * Returns the id of data, giving it the next unused id if it has none.
+     *
+     * @param data the data to intern
+     * @return the id of data
+     * @throws NullPointerException if data is null
+     */
+    public int intern(K data) {
+        Integer id = ids.get(data);
+        if (id != null)
+            return id;
+        if (data == null)
+            throw new NullPointerException("Node data must not be null.");
+        int next = this.data.size();
+        ids.put(data, next);
+        this.data.add(data);
+        frozen = false;
+        return next;
+    }
+
+    /**
+     * Returns the id of data.
+     *
+     * @param data the data to look up
+     * @return the id of data, or -1 if it was never interned
+     */
+    public int idOf(K data) {
+        if (!frozen) {
+            Integer id = ids.get(data);
+            return id == null ? -1 : id;
+        }
+        if (slots.length == 0)
+            return -1;
+        int hash = data.hashCode();
+        int id = slots[slot(hash, seeds[bucket(hash, seeds.length)], slots.length)];
+        return this.data.get(id).equals(data) ? id : -1;
+    }
+
+    /**
+     * Returns the data interned with an id.
+     *
+     * @param id an id returned by intern
+     * @return the data with that id
+     * @throws IndexOutOfBoundsException if no data has that id
+     */
+    public K dataOf(int id) {
+        return data.get(id);
+    }
+
+    /**
+     * @return the number of ids handed out, one more than the largest id
+     */
+    public int size() {
+        return data.size();
+    }
+
+    /**
+     * @return true if lookups currently use the minimal perfect hash
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Builds a minimal perfect hash over the data interned so far, for
+     * faster idOf lookups. If some distinct keys have equal hash codes no
+     * perfect hash exists, and the dictionary stays unfrozen.
+     *
+     * @return true if the dictionary is now frozen
+     */
+    public boolean freeze() {
+        if (frozen)
+            return true;
+        int n = data.size();
+        int bucketCount = Math.max(1, n / 4);
+        int[] hashes = new int[n];
+        // group ids by bucket, then place the largest buckets first
+        List<List<Integer>> buckets = new ArrayList<>();
+        for (int b = 0; b < bucketCount; b++)
+            buckets.add(new ArrayList<>());
+        for (int id = 0; id < n; id++) {
+            hashes[id] = data.get(id).hashCode();
+            buckets.get(bucket(hashes[id], bucketCount)).add(id);
+        }
+        Integer[] order = new Integer[bucketCount];
+        for (int b = 0; b < bucketCount; b++)
+            order[b] = b;
+        Arrays.sort(order, (a, b) -> buckets.get(b).size() - buckets.get(a).size());
+
+        int[] newSeeds = new int[bucketCount];
+        int[] newSlots = new int[n];
+        Arrays.fill(newSlots, -1);
+        int[] placed = new int[0];
+        // the last keys placed may need about n tries to find a free slot
+        int maxSeed = Math.max(1 << 16, 64 * n);
+        for (int b : order) {
+            List<Integer> bucket = buckets.get(b);
+            if (bucket.isEmpty())
+                break;
+            for (int i = 0; i < bucket.size(); i++)
+                for (int j = 0; j < i; j++)
+                    if (hashes[bucket.get(i)] == hashes[bucket.get(j)])
+                        return false; // equal hash codes, keep using the hash map
+            if (placed.length < bucket.size())
+                placed = new int[bucket.size()];
+            int seed = 0;
+            while (!tryPlace(bucket, hashes, seed, newSlots, placed)) {
+                if (++seed == maxSeed)
+                    return false;
+            }
+            newSeeds[b] = seed;
+        }
+        seeds = newSeeds;
+        slots = newSlots;
+        frozen = true;
+        return true;
+    }
+
+    // claims a free, distinct slot for every id in bucket under seed, or
+    // leaves slots unchanged and returns false
+    private static boolean tryPlace(List<Integer> bucket, int[] hashes, int seed, int[] slots,
+            int[] placed) {
+        for (int i = 0; i < bucket.size(); i++) {
+            int id = bucket.get(i);
+            int slot = slot(hashes[id], seed, slots.length);
+            if (slots[slot] != -1) {
+                for (int j = 0; j < i; j++)
+                    slots[placed[j]] = -1;
+                return false;
+            }
+            slots[slot] = id;
+            placed[i] = slot;
+        }
+        return true;
+    }
+
+    private static int bucket(int hash, int bucketCount) {
+        return Math.floorMod(mix(hash, 0x3C6EF372), bucketCount);
+    }
+
+    private static int slot(int hash, int seed, int slotCount) {
+        return Math.floorMod(mix(hash, seed), slotCount);
+    }
+
+    private static int mix(int hash, int seed) {
+        int x = hash * 0x9E3779B9 + seed * 0x85EBCA6B;
+        x ^= x >>> 16;
+        x *= 0x7FEB352D;
+        x ^= x >>> 15;
+        x *= 0x846CA68B;
+        return x ^ (x >>> 16);
+    }
+}
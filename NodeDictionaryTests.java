@@ -0,0 +1,110 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Unit tests for the NodeDictionary class and the int node id operations of
+ * BaseGraph and DijkstraGraph that it backs.
+ */
+public class NodeDictionaryTests {
+
+    /**
+     * Test frozenLookups: after freezing, every interned name maps back to
+     * its own id through the perfect hash, unknown names map to -1, and
+     * interning a new name unfreezes the dictionary without losing ids.
+     */
+    @Test
+    public void frozenLookups() {
+        NodeDictionary<String> dictionary = new NodeDictionary<>();
+        int n = 5000;
+        for (int i = 0; i < n; i++)
+            Assertions.assertEquals(i, dictionary.intern("Building " + i + " Hall"));
+        Assertions.assertEquals(7, dictionary.intern("Building 7 Hall"));
+        Assertions.assertTrue(dictionary.freeze());
+        for (int i = 0; i < n; i++) {
+            Assertions.assertEquals(i, dictionary.idOf("Building " + i + " Hall"));
+            Assertions.assertEquals("Building " + i + " Hall", dictionary.dataOf(i));
+        }
+        for (int i = 0; i < 1000; i++)
+            Assertions.assertEquals(-1, dictionary.idOf("Parking lot " + i));
+
+        Assertions.assertEquals(n, dictionary.intern("Union South"));
+        Assertions.assertFalse(dictionary.isFrozen());
+        Assertions.assertEquals(n, dictionary.idOf("Union South"));
+        Assertions.assertTrue(dictionary.freeze());
+        Assertions.assertEquals(n, dictionary.idOf("Union South"));
+        Assertions.assertEquals(3, dictionary.idOf("Building 3 Hall"));
+    }
+
+    /**
+     * Test equalHashCodes: names with equal hash codes have no perfect hash,
+     * so the dictionary stays unfrozen and keeps answering correctly.
+     */
+    @Test
+    public void equalHashCodes() {
+        NodeDictionary<String> dictionary = new NodeDictionary<>();
+        Assertions.assertEquals("Aa".hashCode(), "BB".hashCode());
+        dictionary.intern("Aa");
+        dictionary.intern("BB");
+        Assertions.assertFalse(dictionary.freeze());
+        Assertions.assertEquals(0, dictionary.idOf("Aa"));
+        Assertions.assertEquals(1, dictionary.idOf("BB"));
+        Assertions.assertEquals(-1, dictionary.idOf("Ab"));
+    }
+
+    /**
+     * Test graphNodeIds: id based lookups and searches agree with the data
+     * based ones, and a node keeps its id when removed and inserted again.
+     */
+    @Test
+    public void graphNodeIds() {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        for (String node : List.of("Memorial Union", "Science Hall", "Brat Stand", "Radio Hall"))
+            graph.insertNode(node);
+        graph.insertEdge("Memorial Union", "Science Hall", 105.8);
+        graph.insertEdge("Science Hall", "Radio Hall", 60.0);
+        graph.insertEdge("Memorial Union", "Brat Stand", 156.5);
+        graph.insertEdge("Brat Stand", "Radio Hall", 90.0);
+        graph.freezeNodeIds();
+
+        int union = graph.getNodeId("Memorial Union");
+        int radio = graph.getNodeId("Radio Hall");
+        int science = graph.getNodeId("Science Hall");
+        Assertions.assertEquals("Radio Hall", graph.getNodeData(radio));
+        Assertions.assertEquals(105.8, graph.getEdgeById(union, science), 1e-9);
+        Assertions.assertFalse(graph.containsEdgeById(radio, union));
+        Assertions.assertArrayEquals(new int[] { union, science, radio },
+                graph.shortestPathIds(union, radio));
+        Assertions.assertEquals(graph.shortestPathCost("Memorial Union", "Radio Hall"),
+                graph.shortestPathCostById(union, radio), 1e-9);
+
+        graph.removeNode("Science Hall");
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.getNodeId("Science Hall"));
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.getNodeData(science));
+        Assertions.assertEquals(246.5, graph.shortestPathCostById(union, radio), 1e-9);
+        graph.insertNode("Science Hall");
+        Assertions.assertEquals(science, graph.getNodeId("Science Hall"));
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.getNodeId("Bascom Hall"));
+    }
+
+    /**
+     * Test backendTimesById: the Backend's id based walk along the shortest
+     * path reports the same edge times as looking each hop up by name.
+     */
+    @Test
+    public void backendTimesById() throws IOException {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        Backend backend = new Backend(graph);
+        backend.loadGraphData("campus.dot");
+        String start = "\"Memorial Union\"";
+        String end = "\"Union South\"";
+        List<String> path = backend.findLocationsOnShortestPath(start, end);
+        List<Double> times = backend.findTimesOnShortestPath(start, end);
+        Assertions.assertEquals(path.size() - 1, times.size());
+        for (int i = 0; i < times.size(); i++)
+            Assertions.assertEquals(graph.getEdge(path.get(i), path.get(i + 1)), times.get(i));
+        Assertions.assertTrue(backend.findTimesOnShortestPath(start, "Nowhere").isEmpty());
+    }
+}
@@ -0,0 +1,135 @@
+import java.util.Arrays;
+
+/**
+ * Node orderings that give neighboring nodes nearby ids, for
+ * CsrGraph.renumber. With such an order the edges a search scans next, and
+ * the costs it reads for their targets, tend to sit in memory already
+ * loaded, and neighbor ids differ by small amounts that compress well.
+ *
+ * Each method returns the new id of every node, indexed by its current id.
+ */
+public class NodeOrder {
+
+    /**
+     * Numbers nodes in breadth-first order over their edges, starting from
+     * node 0 and then from the lowest numbered node not yet reached.
+     *
+     * @param graph the graph to order
+     * @return the new id of each node
+     */
+    public static int[] breadthFirst(CsrGraph graph) {
+        int n = graph.getNodeCount();
+        int[] newIds = new int[n];
+        Arrays.fill(newIds, -1);
+        int[] queue = new int[n];
+        int next = 0;
+        for (int root = 0; root < n; root++) {
+            if (newIds[root] >= 0)
+                continue;
+            int head = next;
+            queue[next] = root;
+            newIds[root] = next++;
+            while (head < next) {
+                int node = queue[head++];
+                for (int edge = graph.firstEdge(node); edge < graph.endEdge(node); edge++) {
+                    int target = graph.edgeTarget(edge);
+                    if (newIds[target] < 0) {
+                        queue[next] = target;
+                        newIds[target] = next++;
+                    }
+                }
+            }
+        }
+        return newIds;
+    }
+
+    /**
+     * Numbers nodes in reverse Cuthill-McKee order, which keeps the ids of
+     * each node's neighbors within a narrow band of its own. Each group of
+     * connected nodes is searched breadth-first from a node far from the
+     * rest, reaching each node's unnumbered neighbors in order of increasing
+     * degree, and the whole order is then reversed. Neighbors are the nodes
+     * joined to a node by an edge in either direction, so one-way edges
+     * count the same as two-way ones.
+     *
+     * @param graph the graph to order
+     * @return the new id of each node
+     */
+    public static int[] reverseCuthillMcKee(CsrGraph graph) {
+        int n = graph.getNodeCount();
+        CsrGraph[] directions = { graph, graph.reverse() };
+        int[] degrees = new int[n];
+        int maxDegree = 0;
+        for (int id = 0; id < n; id++) {
+            for (CsrGraph edges : directions)
+                degrees[id] += edges.endEdge(id) - edges.firstEdge(id);
+            maxDegree = Math.max(maxDegree, degrees[id]);
+        }
+        // candidate roots, lowest degree first, by a counting sort
+        int[] byDegree = new int[n];
+        int[] starts = new int[maxDegree + 2];
+        for (int id = 0; id < n; id++)
+            starts[degrees[id] + 1]++;
+        for (int d = 0; d <= maxDegree; d++)
+            starts[d + 1] += starts[d];
+        for (int id = 0; id < n; id++)
+            byDegree[starts[degrees[id]]++] = id;
+
+        boolean[] placed = new boolean[n];
+        int[] seen = new int[n]; // the search that last reached each node
+        int search = 0;
+        int[] order = new int[n];
+        long[] neighbors = new long[maxDegree];
+        int next = 0;
+        for (int candidate : byDegree) {
+            if (placed[candidate])
+                continue;
+            // the last node a search from the candidate reaches is far from
+            // it, so start there, at one end of the group rather than inside
+            int last = candidate;
+            int head = next;
+            int tail = next;
+            order[tail++] = candidate;
+            seen[candidate] = ++search;
+            while (head < tail) {
+                int node = order[head++];
+                last = node;
+                for (CsrGraph edges : directions) {
+                    for (int edge = edges.firstEdge(node); edge < edges.endEdge(node); edge++) {
+                        int target = edges.edgeTarget(edge);
+                        if (!placed[target] && seen[target] != search) {
+                            seen[target] = search;
+                            order[tail++] = target;
+                        }
+                    }
+                }
+            }
+
+            // the search reached every node that this one will place, so
+            // none of the group is left behind for a later candidate
+            head = next;
+            order[next++] = last;
+            placed[last] = true;
+            while (head < next) {
+                int node = order[head++];
+                int count = 0;
+                for (CsrGraph edges : directions) {
+                    for (int edge = edges.firstEdge(node); edge < edges.endEdge(node); edge++) {
+                        int target = edges.edgeTarget(edge);
+                        if (!placed[target]) {
+                            placed[target] = true;
+                            neighbors[count++] = (long) degrees[target] << 32 | target;
+                        }
+                    }
+                }
+                Arrays.sort(neighbors, 0, count);
+                for (int k = 0; k < count; k++)
+                    order[next++] = (int) neighbors[k];
+            }
+        }
+        int[] newIds = new int[n];
+        for (int i = 0; i < n; i++)
+            newIds[order[i]] = n - 1 - i;
+        return newIds;
+    }
+}
@@ -0,0 +1,136 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * A read-only CSR graph whose edges live outside the Java heap, in direct
+ * buffers holding the edge offsets of each node, the target id of each edge
+ * and its weight (as a double, or as a float to halve that column). Only the
+ * node names stay on the heap, so a multi-million-edge graph adds almost
+ * nothing for the collector to trace or copy, and searches read the buffers
+ * directly.
+ *
+ * Each column must fit in one buffer, which limits a graph to about 268
+ * million edges with double weights.
+ */
+public class OffHeapGraph extends FrozenGraph {
+
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+    private final DoubleBuffer weights; // null when weights are floats
+    private final FloatBuffer floatWeights; // null when weights are doubles
+
+    private OffHeapGraph(CsrGraph graph, boolean singlePrecision) {
+        super(graph.names);
+        int n = graph.getNodeCount();
+        int m = graph.getEdgeCount();
+        if ((long) m * Double.BYTES > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many edges for one buffer: " + m);
+        offsets = allocate((n + 1) * Integer.BYTES).asIntBuffer();
+        targets = allocate(m * Integer.BYTES).asIntBuffer();
+        for (int id = 0; id < n; id++)
+            offsets.put(id, graph.firstEdge(id));
+        offsets.put(n, m);
+        for (int edge = 0; edge < m; edge++)
+            targets.put(edge, graph.edgeTarget(edge));
+        if (singlePrecision) {
+            weights = null;
+            floatWeights = allocate(m * Float.BYTES).asFloatBuffer();
+            for (int edge = 0; edge < m; edge++)
+                floatWeights.put(edge, (float) graph.edgeWeight(edge));
+        } else {
+            weights = allocate(m * Double.BYTES).asDoubleBuffer();
+            floatWeights = null;
+            for (int edge = 0; edge < m; edge++)
+                weights.put(edge, graph.edgeWeight(edge));
+        }
+    }
+
+    /**
+     * Copies a CsrGraph off the heap.
+     *
+     * @param graph           the graph to copy
+     * @param singlePrecision true to store weights as floats, which rounds
+     *                        them to about 7 significant digits
+     * @return the off-heap copy
+     * @throws IllegalArgumentException if the graph has too many edges
+     */
+    public static OffHeapGraph copyOf(CsrGraph graph, boolean singlePrecision) {
+        return new OffHeapGraph(graph, singlePrecision);
+    }
+
+    /**
+     * Copies a graph off the heap, with double weights. Edge attributes and
+     * travel time profiles are not copied.
+     *
+     * @param graph the graph to copy
+     * @return the off-heap copy
+     * @throws IllegalArgumentException if the graph has too many edges
+     */
+    public static <E extends Number> OffHeapGraph copyOf(BaseGraph<String, E> graph) {
+        return new OffHeapGraph(CsrGraph.copyOf(graph), false);
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @return the bytes of direct buffer memory this graph holds
+     */
+    public long getOffHeapBytes() {
+        long bytes = (long) offsets.capacity() * Integer.BYTES + (long) targets.capacity() * Integer.BYTES;
+        return bytes + (weights != null ? (long) weights.capacity() * Double.BYTES
+                : (long) floatWeights.capacity() * Float.BYTES);
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return targets.capacity();
+    }
+
+    @Override
+    public void forEachEdge(int id, EdgeVisitor visitor) {
+        for (int edge = offsets.get(id); edge < offsets.get(id + 1); edge++)
+            visitor.visit(targets.get(edge), weight(edge));
+    }
+
+    @Override
+    protected int relaxEdges(SearchArena arena, int id, double cost) {
+        int start = offsets.get(id);
+        int end = offsets.get(id + 1);
+        if (weights != null) {
+            for (int edge = start; edge < end; edge++)
+                arena.relax(targets.get(edge), cost + weights.get(edge), id);
+        } else {
+            for (int edge = start; edge < end; edge++)
+                arena.relax(targets.get(edge), cost + floatWeights.get(edge), id);
+        }
+        return end - start;
+    }
+
+    @Override
+    protected double edgeWeight(int from, int to) {
+        checkId(from);
+        // each node's targets are sorted, so binary search them
+        int low = offsets.get(from);
+        int high = offsets.get(from + 1) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int target = targets.get(middle);
+            if (target < to)
+                low = middle + 1;
+            else if (target > to)
+                high = middle - 1;
+            else
+                return weight(middle);
+        }
+        return Double.NaN;
+    }
+
+    private double weight(int edge) {
+        return weights != null ? weights.get(edge) : floatWeights.get(edge);
+    }
+}
@@ -0,0 +1,69 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Unit tests for the OffHeapGraph class and CsrGraph.copyOf.
+ */
+public class OffHeapGraphTests {
+
+    /**
+     * Test matchesDijkstraGraph: the campus graph copied off the heap, with
+     * double or float weights, answers edge and shortest path queries like
+     * the DijkstraGraph it was copied from.
+     */
+    @Test
+    public void matchesDijkstraGraph() throws IOException {
+        DijkstraGraph<String, Double> expected = new DijkstraGraph<>();
+        new Backend(expected).loadGraphData("campus.dot");
+        OffHeapGraph graph = OffHeapGraph.copyOf(expected);
+        OffHeapGraph floats = OffHeapGraph.copyOf(CsrGraph.copyOf(expected), true);
+        Assertions.assertEquals(expected.getEdgeCount(), graph.getEdgeCount());
+        Assertions.assertEquals((expected.getNodeCount() + 1 + expected.getEdgeCount()) * 4L
+                + expected.getEdgeCount() * 8L, graph.getOffHeapBytes());
+        Assertions.assertTrue(floats.getOffHeapBytes() < graph.getOffHeapBytes());
+
+        List<String> nodes = expected.getAllNodes();
+        for (String pred : nodes)
+            for (String succ : expected.getSuccessors(pred)) {
+                Assertions.assertEquals(expected.getEdge(pred, succ), graph.getEdge(pred, succ));
+                Assertions.assertEquals(expected.getEdge(pred, succ), floats.getEdge(pred, succ), 1e-4);
+            }
+        for (int i = 0; i < nodes.size(); i += 3) {
+            String start = nodes.get(i);
+            String end = nodes.get((i * 13 + 1) % nodes.size());
+            try {
+                double cost = expected.shortestPathCost(start, end);
+                Assertions.assertEquals(cost, graph.shortestPathCost(start, end), 1e-9);
+                Assertions.assertEquals(cost, floats.shortestPathCost(start, end), 1e-6 * cost + 1e-3);
+            } catch (NoSuchElementException e) {
+                Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathCost(start, end));
+            }
+        }
+    }
+
+    /**
+     * Test copyClosesIdGaps: copying a graph with removed nodes gives dense
+     * ids in the old id order, and keeps only the remaining edges.
+     */
+    @Test
+    public void copyClosesIdGaps() {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        for (String node : List.of("A", "B", "C", "D"))
+            graph.insertNode(node);
+        graph.insertEdge("A", "D", 4.0);
+        graph.insertEdge("A", "C", 1.0);
+        graph.insertEdge("C", "D", 2.0);
+        graph.insertEdge("B", "D", 1.0);
+        graph.removeNode("B");
+        OffHeapGraph copy = OffHeapGraph.copyOf(graph);
+        Assertions.assertEquals(List.of("A", "C", "D"), copy.getAllNodes());
+        Assertions.assertEquals(2, copy.getNodeId("D"));
+        Assertions.assertEquals(3, copy.getEdgeCount());
+        Assertions.assertEquals(List.of("A", "C", "D"), copy.shortestPathData("A", "D"));
+        Assertions.assertFalse(copy.containsNode("B"));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> copy.removeEdge("A", "C"));
+    }
+}
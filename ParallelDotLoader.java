@@ -0,0 +1,428 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Loads a dot file into a CsrGraph using every core, for files with tens of
+ * millions of edge lines that Backend.loadGraphData would read one line at
+ * a time. Edge lines are read the way Backend reads them: node names are
+ * the (quoted) text on either side of "->", and each edge's weight is its
+ * seconds attribute. Other attributes are not kept.
+ *
+ * Loading runs in phases, each split across a pool of threads:
+ * 1. the file is memory-mapped and cut into chunks that end at line breaks;
+ * 2. each chunk is parsed into its own edge buffer, numbering the names it
+ *    meets in a dictionary local to the chunk;
+ * 3. the local dictionaries are merged, in file order, into one global
+ *    dictionary, so node ids follow first appearance in the file;
+ * 4. edges are placed into CSR order by a two-level parallel counting sort
+ *    on their source: each chunk scatters its edges into blocks of source
+ *    ids, then each block is sorted by source over its own ids alone, so
+ *    no thread needs a count for every node;
+ * 5. each node's edges are sorted by target, and where an edge appears more
+ *    than once the last line wins, as with repeated insertEdge calls.
+ */
+public class ParallelDotLoader {
+
+    // chunks are never smaller than this, so small files use fewer threads
+    private static final long MIN_CHUNK_BYTES = 1 << 16;
+    // nor larger than what one MappedByteBuffer can hold
+    private static final long MAX_CHUNK_BYTES = 1 << 30;
+
+    // the edges parsed from one chunk, with sources and targets numbered by
+    // the chunk's own dictionary until they are remapped to global ids
+    private static final class EdgeBuffer {
+        final Map<String, Integer> localIds = new HashMap<>();
+        final List<String> localNames = new ArrayList<>();
+        int[] sources = new int[1024];
+        int[] targets = new int[1024];
+        double[] weights = new double[1024];
+        int count = 0;
+
+        int localId(String name) {
+            Integer id = localIds.get(name);
+            if (id == null) {
+                id = localNames.size();
+                localIds.put(name, id);
+                localNames.add(name);
+            }
+            return id;
+        }
+
+        void add(String pred, String succ, double weight) {
+            if (count == sources.length) {
+                sources = Arrays.copyOf(sources, count * 2);
+                targets = Arrays.copyOf(targets, count * 2);
+                weights = Arrays.copyOf(weights, count * 2);
+            }
+            sources[count] = localId(pred);
+            targets[count] = localId(succ);
+            weights[count] = weight;
+            count++;
+        }
+    }
+
+    private interface Task {
+        void run(int index) throws IOException;
+    }
+
+    /**
+     * Loads a dot file using one thread per available processor.
+     *
+     * @param filename the path to a dot file to read graph data from
+     * @return the graph described by the file
+     * @throws IOException if the file cannot be read or an edge line is malformed
+     */
+    public static CsrGraph load(String filename) throws IOException {
+        return load(filename, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Loads a dot file using the given number of threads.
+     *
+     * @param filename the path to a dot file to read graph data from
+     * @param threads  the number of threads to parse and sort with
+     * @return the graph described by the file
+     * @throws IOException if the file cannot be read or an edge line is malformed
+     * @throws IllegalArgumentException if threads is not positive
+     */
+    public static CsrGraph load(String filename, int threads) throws IOException {
+        return load(filename, threads, MIN_CHUNK_BYTES);
+    }
+
+    /**
+     * Loads a dot file using the given number of threads, then renumbers its
+     * nodes into an order such as NodeOrder::reverseCuthillMcKee, so that
+     * neighbors have nearby ids and searches touch less scattered memory.
+     *
+     * @param filename the path to a dot file to read graph data from
+     * @param threads  the number of threads to parse and sort with
+     * @param order    gives the new id of each node, indexed by its id in
+     *                 file order
+     * @return the graph described by the file, renumbered
+     * @throws IOException if the file cannot be read or an edge line is malformed
+     * @throws IllegalArgumentException if threads is not positive or order
+     *                                  does not return a permutation
+     */
+    public static CsrGraph load(String filename, int threads, Function<CsrGraph, int[]> order)
+            throws IOException {
+        CsrGraph graph = load(filename, threads);
+        return graph.renumber(order.apply(graph));
+    }
+
+    // load with a configurable minimum chunk size, so tests can cut even a
+    // small file into many chunks
+    static CsrGraph load(String filename, int threads, long minChunkBytes) throws IOException {
+        if (threads <= 0)
+            throw new IllegalArgumentException("Thread count must be greater than 0.");
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel, threads, minChunkBytes);
+            int chunks = bounds.length - 1;
+
+            // parse each chunk into its own buffer
+            EdgeBuffer[] buffers = new EdgeBuffer[chunks];
+            parallelFor(pool, chunks, c -> buffers[c] = parseChunk(
+                    channel.map(FileChannel.MapMode.READ_ONLY, bounds[c], bounds[c + 1] - bounds[c])));
+
+            // merge the local dictionaries in file order
+            NodeDictionary<String> names = new NodeDictionary<>();
+            int[][] remap = new int[chunks][];
+            for (int c = 0; c < chunks; c++) {
+                remap[c] = new int[buffers[c].localNames.size()];
+                for (int i = 0; i < remap[c].length; i++)
+                    remap[c][i] = names.intern(buffers[c].localNames.get(i));
+                buffers[c].localIds.clear();
+            }
+            int n = names.size();
+
+            // switch each chunk to global ids and count its edges from each
+            // block of source ids
+            int blocks = Math.min(n, threads * 4);
+            int[][] blockCounts = new int[chunks][blocks];
+            parallelFor(pool, chunks, c -> {
+                EdgeBuffer buffer = buffers[c];
+                for (int i = 0; i < buffer.count; i++) {
+                    buffer.sources[i] = remap[c][buffer.sources[i]];
+                    buffer.targets[i] = remap[c][buffer.targets[i]];
+                    blockCounts[c][blockOf(buffer.sources[i], blocks, n)]++;
+                }
+            });
+
+            // turn the counts into the position where each chunk's first edge
+            // from each block goes, blocks in id order and chunks in file order
+            int[] blockOffsets = new int[blocks + 1];
+            for (int b = 0; b < blocks; b++) {
+                int position = blockOffsets[b];
+                for (int c = 0; c < chunks; c++) {
+                    int count = blockCounts[c][b];
+                    blockCounts[c][b] = position;
+                    position += count;
+                }
+                blockOffsets[b + 1] = position;
+            }
+            int edges = blockOffsets[blocks];
+
+            // scatter every chunk's edges into their source's block
+            int[] blockSources = new int[edges];
+            int[] blockTargets = new int[edges];
+            double[] blockWeights = new double[edges];
+            parallelFor(pool, chunks, c -> {
+                EdgeBuffer buffer = buffers[c];
+                int[] cursor = blockCounts[c];
+                for (int i = 0; i < buffer.count; i++) {
+                    int position = cursor[blockOf(buffer.sources[i], blocks, n)]++;
+                    blockSources[position] = buffer.sources[i];
+                    blockTargets[position] = buffer.targets[i];
+                    blockWeights[position] = buffer.weights[i];
+                }
+                buffers[c] = null;
+            });
+
+            // then sort each block's edges by source, counting only over the
+            // block's own ids; both passes are stable, so each source's
+            // edges stay in file order
+            int[] offsets = new int[n + 1];
+            int[] targets = new int[edges];
+            double[] weights = new double[edges];
+            parallelFor(pool, blocks, b -> {
+                int first = blockStart(b, blocks, n);
+                int[] cursor = new int[blockStart(b + 1, blocks, n) - first];
+                for (int i = blockOffsets[b]; i < blockOffsets[b + 1]; i++)
+                    cursor[blockSources[i] - first]++;
+                int position = blockOffsets[b];
+                for (int s = 0; s < cursor.length; s++) {
+                    int count = cursor[s];
+                    offsets[first + s] = position;
+                    cursor[s] = position;
+                    position += count;
+                }
+                for (int i = blockOffsets[b]; i < blockOffsets[b + 1]; i++) {
+                    int to = cursor[blockSources[i] - first]++;
+                    targets[to] = blockTargets[i];
+                    weights[to] = blockWeights[i];
+                }
+            });
+            offsets[n] = edges;
+
+            // sort each node's edges by target and drop repeated edges
+            int[] kept = new int[n];
+            parallelFor(pool, blocks, b -> {
+                for (int s = blockStart(b, blocks, n); s < blockStart(b + 1, blocks, n); s++)
+                    kept[s] = sortEdges(targets, weights, offsets[s], offsets[s + 1]);
+            });
+            boolean repeats = false;
+            for (int s = 0; s < n && !repeats; s++)
+                repeats = kept[s] < offsets[s + 1] - offsets[s];
+            if (!repeats)
+                return new CsrGraph(names, offsets, targets, weights);
+
+            // close the gaps the repeated edges left
+            int[] keptOffsets = new int[n + 1];
+            for (int s = 0; s < n; s++)
+                keptOffsets[s + 1] = keptOffsets[s] + kept[s];
+            int[] keptTargets = new int[keptOffsets[n]];
+            double[] keptWeights = new double[keptOffsets[n]];
+            parallelFor(pool, blocks, b -> {
+                for (int s = blockStart(b, blocks, n); s < blockStart(b + 1, blocks, n); s++) {
+                    System.arraycopy(targets, offsets[s], keptTargets, keptOffsets[s], kept[s]);
+                    System.arraycopy(weights, offsets[s], keptWeights, keptOffsets[s], kept[s]);
+                }
+            });
+            return new CsrGraph(names, keptOffsets, keptTargets, keptWeights);
+        } catch (NoSuchFileException e) {
+            throw new IOException("File not found: " + filename);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // the start of each chunk, and the end of the file, with every chunk
+    // but the last ending just after a line break
+    private static long[] chunkBounds(FileChannel channel, int threads, long minChunkBytes)
+            throws IOException {
+        long size = channel.size();
+        long chunks = Math.max(Math.min(threads, size / minChunkBytes), (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+        chunks = Math.max(chunks, 1);
+        long[] bounds = new long[(int) chunks + 1];
+        bounds[(int) chunks] = size;
+        ByteBuffer window = ByteBuffer.allocate(4096);
+        for (int c = 1; c < chunks; c++) {
+            long position = Math.max(size / chunks * c, bounds[c - 1]);
+            // move forward to just past the next line break
+            search:
+            while (position < size) {
+                window.clear();
+                int read = channel.read(window, position);
+                for (int i = 0; i < read; i++) {
+                    if (window.get(i) == '\n') {
+                        position += i + 1;
+                        break search;
+                    }
+                }
+                position += Math.max(read, 0);
+            }
+            bounds[c] = Math.min(position, size);
+        }
+        return bounds;
+    }
+
+    // parses every edge line of a chunk
+    private static EdgeBuffer parseChunk(MappedByteBuffer chunk) throws IOException {
+        EdgeBuffer buffer = new EdgeBuffer();
+        byte[] line = new byte[256];
+        int limit = chunk.limit();
+        int start = 0;
+        while (start < limit) {
+            int end = start;
+            while (end < limit && chunk.get(end) != '\n')
+                end++;
+            int length = end - start;
+            if (length > line.length)
+                line = new byte[Math.max(length, line.length * 2)];
+            chunk.get(start, line, 0, length);
+            parseLine(line, length, buffer);
+            start = end + 1;
+        }
+        return buffer;
+    }
+
+    // adds the edge on one line, if the line holds an edge
+    private static void parseLine(byte[] line, int length, EdgeBuffer buffer) throws IOException {
+        int arrow = indexOf(line, 0, length, (byte) '-', (byte) '>');
+        if (arrow < 0)
+            return;
+        int open = indexOf(line, arrow + 2, length, (byte) '[', (byte) 0);
+        int close = open < 0 ? -1 : indexOf(line, open + 1, length, (byte) ']', (byte) 0);
+        if (close < 0)
+            throw new IOException("Malformed edge line: "
+                    + new String(line, 0, length, StandardCharsets.UTF_8).trim());
+        String pred = text(line, 0, arrow);
+        String succ = text(line, arrow + 2, open);
+        buffer.add(pred, succ, weight(line, open + 1, close));
+    }
+
+    // the weight in the attributes between from and to, read the way
+    // Backend.loadGraphData reads it
+    private static double weight(byte[] line, int from, int to) {
+        // fast path for the usual [seconds=105.8]
+        int start = skipSpaces(line, from, to);
+        byte[] key = { 's', 'e', 'c', 'o', 'n', 'd', 's', '=' };
+        if (to - start > key.length && Arrays.equals(line, start, start + key.length, key, 0, key.length)) {
+            int end = start + key.length;
+            while (end < to && (Character.isDigit(line[end]) || line[end] == '.' || line[end] == '-'
+                    || line[end] == 'e' || line[end] == 'E' || line[end] == '+'))
+                end++;
+            if (skipSpaces(line, end, to) == to)
+                return Double.parseDouble(new String(line, start + key.length, end - start - key.length,
+                        StandardCharsets.ISO_8859_1));
+        }
+        String text = new String(line, from, to - from, StandardCharsets.UTF_8);
+        Map<String, String> attributes = Backend.parseAttributes(text);
+        return attributes.containsKey("seconds")
+                ? Double.parseDouble(attributes.get("seconds"))
+                : Double.parseDouble(text.replaceAll("[^0-9.]", ""));
+    }
+
+    private static int skipSpaces(byte[] line, int from, int to) {
+        while (from < to && (line[from] == ' ' || line[from] == '\t' || line[from] == '\r'))
+            from++;
+        return from;
+    }
+
+    // the trimmed text between from and to
+    private static String text(byte[] line, int from, int to) {
+        while (from < to && line[from] <= ' ')
+            from++;
+        while (to > from && line[to - 1] <= ' ')
+            to--;
+        return new String(line, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    // the index of the byte first (followed by second, unless it is 0) at
+    // or after from, or -1
+    private static int indexOf(byte[] line, int from, int to, byte first, byte second) {
+        for (int i = from; i < to; i++)
+            if (line[i] == first && (second == 0 || (i + 1 < to && line[i + 1] == second)))
+                return i;
+        return -1;
+    }
+
+    // sorts the edges in [from, to) by target, keeping only the last (in
+    // file order) of any repeated target at the front of the range, and
+    // returns how many edges were kept
+    static int sortEdges(int[] targets, double[] weights, int from, int to) {
+        boolean sorted = true;
+        for (int i = from + 1; i < to && sorted; i++)
+            sorted = targets[i - 1] < targets[i];
+        if (sorted)
+            return to - from;
+        long[] order = new long[to - from];
+        for (int i = from; i < to; i++)
+            order[i - from] = (long) targets[i] << 32 | (i - from);
+        Arrays.sort(order);
+        int[] keptTargets = new int[order.length];
+        double[] keptWeights = new double[order.length];
+        int kept = 0;
+        for (int i = 0; i < order.length; i++) {
+            int target = (int) (order[i] >>> 32);
+            if (i + 1 < order.length && (int) (order[i + 1] >>> 32) == target)
+                continue; // a later line repeats this edge
+            keptTargets[kept] = target;
+            keptWeights[kept] = weights[from + (int) order[i]];
+            kept++;
+        }
+        System.arraycopy(keptTargets, 0, targets, from, kept);
+        System.arraycopy(keptWeights, 0, weights, from, kept);
+        return kept;
+    }
+
+    private static int blockStart(int block, int blocks, int n) {
+        return (int) ((long) n * block / blocks);
+    }
+
+    // the block whose range [blockStart(b), blockStart(b + 1)) holds id
+    private static int blockOf(int id, int blocks, int n) {
+        return (int) (((long) (id + 1) * blocks - 1) / n);
+    }
+
+    // runs task for each index in [0, count) on the pool, and waits for all
+    private static void parallelFor(ExecutorService pool, int count, Task task) throws IOException {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            futures.add(pool.submit(() -> {
+                task.run(index);
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading the graph.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Unit tests for the ParallelDotLoader and CsrGraph classes.
+ */
+public class ParallelDotLoaderTests {
+
+    /**
+     * Test matchesBackend: campus.dot cut into many small chunks loads into
+     * the same nodes (with the same ids), edges, weights and shortest paths
+     * as Backend.loadGraphData produces in a DijkstraGraph.
+     */
+    @Test
+    public void matchesBackend() throws IOException {
+        DijkstraGraph<String, Double> expected = new DijkstraGraph<>();
+        new Backend(expected).loadGraphData("campus.dot");
+        CsrGraph graph = ParallelDotLoader.load("campus.dot", 4, 512);
+
+        Assertions.assertEquals(expected.getNodeCount(), graph.getNodeCount());
+        Assertions.assertEquals(expected.getEdgeCount(), graph.getEdgeCount());
+        for (String pred : expected.getAllNodes()) {
+            int id = graph.getNodeId(pred);
+            Assertions.assertEquals(expected.getNodeId(pred), id);
+            Assertions.assertEquals(expected.getSuccessors(pred).size(), graph.endEdge(id) - graph.firstEdge(id));
+            for (String succ : expected.getSuccessors(pred))
+                Assertions.assertEquals(expected.getEdge(pred, succ), graph.getEdge(pred, succ));
+        }
+        List<String> nodes = expected.getAllNodes();
+        for (int i = 0; i < nodes.size(); i += 7) {
+            String start = nodes.get(i);
+            String end = nodes.get((i * 31 + 5) % nodes.size());
+            double cost;
+            try {
+                cost = expected.shortestPathCost(start, end);
+            } catch (NoSuchElementException e) {
+                Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathCost(start, end));
+                continue;
+            }
+            Assertions.assertEquals(cost, graph.shortestPathCost(start, end), 1e-9);
+            Assertions.assertEquals(expected.shortestPathData(start, end), graph.shortestPathData(start, end));
+        }
+    }
+
+    /**
+     * Test repeatsAndLineEnds: with chunks of a few lines each, CRLF line
+     * ends, a missing final line break and general attribute lists are read
+     * like Backend reads them, each node's edges end up sorted by target,
+     * and a repeated edge keeps the weight from its last line.
+     */
+    @Test
+    public void repeatsAndLineEnds() throws IOException {
+        Path file = Files.createTempFile("graph", ".dot");
+        try {
+            Files.writeString(file, "digraph test {\r\n"
+                    + "\t\"C\" -> \"A\" [seconds=3.0];\r\n"
+                    + "\t\"A\" -> \"C\" [seconds=1.5];\r\n"
+                    + "\t\"A\" -> \"B\" [seconds=9.0];\r\n"
+                    + "\t\"A\" -> \"B\" [distance=40, seconds=2.0];\r\n"
+                    + "\t\"B\" -> \"C\" [seconds=0.5, profile=\"0:0.5 3600:1\"];\r\n"
+                    + "\t\"A\" -> \"D\" [seconds=7.25];\r\n"
+                    + "}");
+            CsrGraph graph = ParallelDotLoader.load(file.toString(), 3, 16);
+            Assertions.assertEquals(List.of("\"C\"", "\"A\"", "\"B\"", "\"D\""), graph.getAllNodes());
+            Assertions.assertEquals(5, graph.getEdgeCount());
+            Assertions.assertEquals(2.0, graph.getEdge("\"A\"", "\"B\""), 1e-9);
+            Assertions.assertEquals(0.5, graph.getEdge("\"B\"", "\"C\""), 1e-9);
+            int a = graph.getNodeId("\"A\"");
+            for (int edge = graph.firstEdge(a) + 1; edge < graph.endEdge(a); edge++)
+                Assertions.assertTrue(graph.edgeTarget(edge - 1) < graph.edgeTarget(edge));
+            Assertions.assertEquals(1.5, graph.shortestPathCost("\"A\"", "\"C\""), 1e-9);
+            Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathCost("\"D\"", "\"A\""));
+            Assertions.assertThrows(UnsupportedOperationException.class, () -> graph.insertNode("\"E\""));
+
+            Files.writeString(file, "\"A\" -> \"B\" seconds=1\n");
+            Assertions.assertThrows(IOException.class, () -> ParallelDotLoader.load(file.toString(), 2));
+        } finally {
+            Files.delete(file);
+        }
+        Assertions.assertThrows(IOException.class, () -> ParallelDotLoader.load(file.toString(), 2));
+    }
+}
@@ -0,0 +1,103 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Unit tests for the primitive MapADT specializations IntIntMap,
+ * IntObjectMap and LongDoubleMap.
+ */
+public class PrimitiveMapsTests {
+
+    /**
+     * Test mapADTContract: each map rejects duplicate keys in put, throws for
+     * missing keys in get and remove, and reports size and keys like
+     * HashtableMap does.
+     */
+    @Test
+    public void mapADTContract() {
+        IntIntMap ints = new IntIntMap(4);
+        ints.put(-7, 70);
+        ints.put(3, 30);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ints.put(3, 31));
+        Assertions.assertThrows(NoSuchElementException.class, () -> ints.get(4));
+        Assertions.assertThrows(NoSuchElementException.class, () -> ints.remove(4));
+        Assertions.assertEquals(70, ints.get(-7));
+        Assertions.assertEquals(-1, ints.getOrDefault(4, -1));
+        ints.set(3, 33);
+        Assertions.assertEquals(33, ints.remove(3));
+        Assertions.assertEquals(1, ints.getSize());
+        Assertions.assertArrayEquals(new int[] { -7 }, ints.getKeys());
+
+        IntObjectMap<String> objects = new IntObjectMap<>();
+        objects.put(1, "one");
+        objects.put(2, null);
+        Assertions.assertTrue(objects.containsKey(2));
+        Assertions.assertNull(objects.get(2));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> objects.put(1, "uno"));
+        Assertions.assertEquals("one", objects.remove(1));
+        Assertions.assertFalse(objects.containsKey(1));
+        objects.clear();
+        Assertions.assertEquals(0, objects.getSize());
+
+        LongDoubleMap doubles = new LongDoubleMap();
+        doubles.put(1L << 40, 2.5);
+        Assertions.assertEquals(2.5, doubles.get(1L << 40), 1e-9);
+        Assertions.assertFalse(doubles.containsKey(0));
+        Assertions.assertThrows(NoSuchElementException.class, () -> doubles.get(0));
+        long[] sum = { 0 };
+        doubles.forEachKey(key -> sum[0] += key);
+        Assertions.assertEquals(1L << 40, sum[0]);
+    }
+
+    /**
+     * Test matchesHashMap: long random sequences of operations over a small
+     * key range give the same answers as java.util.HashMap, including after
+     * the removals that shift probe runs back and the resizes along the way.
+     */
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(37);
+        IntIntMap ints = new IntIntMap();
+        IntObjectMap<Integer> objects = new IntObjectMap<>();
+        LongDoubleMap doubles = new LongDoubleMap();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int step = 0; step < 100000; step++) {
+            int key = random.nextInt(300) - 100;
+            if (random.nextBoolean()) {
+                if (expected.containsKey(key)) {
+                    Assertions.assertThrows(IllegalArgumentException.class, () -> ints.put(key, 0));
+                    ints.set(key, step);
+                    objects.set(key, step);
+                    doubles.set(key, step);
+                } else {
+                    ints.put(key, step);
+                    objects.put(key, step);
+                    doubles.put(key, step);
+                }
+                expected.put(key, step);
+            } else if (expected.containsKey(key)) {
+                int value = expected.remove(key);
+                Assertions.assertEquals(value, ints.remove(key));
+                Assertions.assertEquals(value, (int) objects.remove(key));
+                Assertions.assertEquals(value, doubles.remove(key), 1e-9);
+            } else {
+                Assertions.assertFalse(ints.containsKey(key));
+                Assertions.assertFalse(objects.containsKey(key));
+                Assertions.assertFalse(doubles.containsKey(key));
+            }
+            Assertions.assertEquals(expected.size(), ints.getSize());
+        }
+        int[] keys = ints.getKeys();
+        Arrays.sort(keys);
+        Assertions.assertArrayEquals(expected.keySet().stream().mapToInt(k -> k).sorted().toArray(), keys);
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            Assertions.assertEquals((int) entry.getValue(), ints.get(entry.getKey()));
+            Assertions.assertEquals(entry.getValue(), objects.get(entry.getKey()));
+            Assertions.assertEquals(entry.getValue(), doubles.get(entry.getKey()), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A bounded cache of WebApp's complete response bodies, keyed by the graph
+ * version and normalized query that determine them. Each body is stored as
+ * is and precompressed with gzip and with deflate when it is added, so that
+ * answering a repeated request is a lookup and a write whatever encoding the
+ * client accepts.
+ *
+ * The cache holds at most maxBytes of bodies, counting all three forms, and
+ * evicts the least recently used entries beyond that. It also has the
+ * helpers for the HTTP side: choosing an encoding from Accept-Encoding,
+ * tagging each encoding with its own ETag, and matching If-None-Match.
+ *
+ * All methods are thread-safe.
+ */
+public class ResponseCache {
+
+    /**
+     * One cached response, in each encoding.
+     */
+    public static class Entry {
+        private final byte[] identity;
+        private final byte[] gzip;
+        private final byte[] deflate;
+        private final int pathLength;
+
+        Entry(byte[] identity, int pathLength) {
+            this.identity = identity;
+            this.gzip = compress(identity, true);
+            this.deflate = compress(identity, false);
+            this.pathLength = pathLength;
+        }
+
+        /**
+         * @param encoding "gzip", "deflate", or null for the body as is
+         * @return the body in that encoding
+         */
+        public byte[] body(String encoding) {
+            if ("gzip".equals(encoding))
+                return gzip;
+            if ("deflate".equals(encoding))
+                return deflate;
+            return identity;
+        }
+
+        /**
+         * @return the number of locations on the route in the response, for
+         *         the access log, or -1 if it is not a route
+         */
+        public int getPathLength() {
+            return pathLength;
+        }
+
+        long bytes() {
+            return (long) identity.length + gzip.length + deflate.length;
+        }
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+
+    /**
+     * @param maxBytes the most bytes of bodies to hold, in all encodings
+     * @throws IllegalArgumentException if maxBytes is negative
+     */
+    public ResponseCache(long maxBytes) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("Cache size must not be negative.");
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param key the response's graph version and normalized query
+     * @return the cached response, or null if there is none
+     */
+    public synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Compresses a response body and caches it, unless it alone is larger
+     * than the cache.
+     *
+     * @param key        the response's graph version and normalized query
+     * @param body       the response body, unencoded
+     * @param pathLength the number of locations on the route in the
+     *                   response, or -1 if it is not a route
+     * @return the entry, whether or not it was cached
+     */
+    public Entry put(String key, byte[] body, int pathLength) {
+        Entry entry = new Entry(body, pathLength); // compress outside the lock
+        if (entry.bytes() > maxBytes)
+            return entry;
+        synchronized (this) {
+            Entry old = entries.put(key, entry);
+            if (old != null)
+                bytes -= old.bytes();
+            bytes += entry.bytes();
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (bytes > maxBytes) {
+                bytes -= eldest.next().bytes();
+                eldest.remove();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * @return the number of cached responses
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * @return the bytes held by cached responses, in all encodings
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Chooses the encoding to send for an Accept-Encoding header, preferring
+     * gzip to deflate. Encodings given q=0 are refused, and * stands only for
+     * the encodings the header does not name, so "gzip;q=0, *" means deflate.
+     *
+     * @param acceptEncoding the header's value, or null if it was not sent
+     * @return "gzip", "deflate", or null to send the body as is
+     */
+    public static String chooseEncoding(String acceptEncoding) {
+        if (acceptEncoding == null)
+            return null;
+        // null while a coding is not named, then whether it was accepted
+        Boolean gzip = null;
+        Boolean deflate = null;
+        Boolean any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase();
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().toLowerCase();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(parameter.substring(2)) <= 0;
+                    } catch (NumberFormatException e) {
+                        refused = true;
+                    }
+                }
+            }
+            if (name.equals("gzip"))
+                gzip = !refused;
+            else if (name.equals("deflate"))
+                deflate = !refused;
+            else if (name.equals("*"))
+                any = !refused;
+        }
+        if (gzip == null ? Boolean.TRUE.equals(any) : gzip)
+            return "gzip";
+        if (deflate == null ? Boolean.TRUE.equals(any) : deflate)
+            return "deflate";
+        return null;
+    }
+
+    /**
+     * Returns the ETag for one encoding of a response: a compressed body is
+     * a different representation, so it gets a different strong tag.
+     *
+     * @param tag      the response's quoted tag
+     * @param encoding the encoding sent, or null
+     * @return the tag to send
+     */
+    public static String etag(String tag, String encoding) {
+        return encoding == null ? tag : tag.substring(0, tag.length() - 1) + "-" + encoding + "\"";
+    }
+
+    /**
+     * Tells whether an If-None-Match header names a response, in any of its
+     * encodings.
+     *
+     * @param ifNoneMatch the header's value, or null if it was not sent
+     * @param tag         the response's quoted tag, without an encoding
+     * @return true if the client already has the response
+     */
+    public static boolean matches(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null)
+            return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*"))
+                return true;
+            if (candidate.startsWith("W/"))
+                candidate = candidate.substring(2);
+            if (candidate.equals(tag) || candidate.equals(etag(tag, "gzip"))
+                    || candidate.equals(etag(tag, "deflate")))
+                return true;
+        }
+        return false;
+    }
+
+    private static byte[] compress(byte[] body, boolean gzip) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 3 + 64);
+        try (OutputStream out = gzip ? new GZIPOutputStream(bytes) : new DeflaterOutputStream(bytes)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not thrown by in-memory streams
+        }
+        return bytes.toByteArray();
+    }
+}
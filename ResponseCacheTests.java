@@ -0,0 +1,106 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Unit tests for the ResponseCache class.
+ */
+public class ResponseCacheTests {
+
+    private static byte[] page(String route) {
+        StringBuilder html = new StringBuilder("<html><body><ul>");
+        for (int i = 0; i < 200; i++)
+            html.append("<li>").append(route).append(' ').append(i).append("</li>");
+        return html.append("</ul></body></html>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Test precompressedBodies: each encoding of a cached body decodes back
+     * to the original, compressed forms are smaller, and entries are found
+     * again by key.
+     */
+    @Test
+    public void precompressedBodies() throws IOException {
+        ResponseCache cache = new ResponseCache(1 << 20);
+        byte[] body = page("Union South");
+        ResponseCache.Entry entry = cache.put("v1 end=B&start=A", body, 3);
+        Assertions.assertTrue(entry == cache.get("v1 end=B&start=A"));
+        Assertions.assertNull(cache.get("v2 end=B&start=A"));
+        Assertions.assertEquals(3, entry.getPathLength());
+        Assertions.assertArrayEquals(body, entry.body(null));
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(entry.body("gzip")))) {
+            Assertions.assertArrayEquals(body, in.readAllBytes());
+        }
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(entry.body("deflate")))) {
+            Assertions.assertArrayEquals(body, in.readAllBytes());
+        }
+        Assertions.assertTrue(entry.body("gzip").length < body.length / 4);
+        Assertions.assertTrue(entry.body("deflate").length < body.length / 4);
+    }
+
+    /**
+     * Test evictsByBytes: the cache keeps within its byte limit by evicting
+     * the least recently used entries, and does not keep a body larger than
+     * the whole cache.
+     */
+    @Test
+    public void evictsByBytes() {
+        ResponseCache probe = new ResponseCache(1 << 20);
+        probe.put("x", page("x"), -1);
+        long perEntry = probe.getBytes(); // the body in all three encodings
+        Assertions.assertTrue(perEntry > page("x").length);
+
+        ResponseCache cache = new ResponseCache(perEntry * 3 + perEntry / 2);
+        cache.put("a", page("x"), -1);
+        cache.put("b", page("x"), -1);
+        cache.put("c", page("x"), -1);
+        Assertions.assertNotNull(cache.get("a")); // now b is the eldest
+        cache.put("d", page("x"), -1);
+        Assertions.assertEquals(3, cache.getSize());
+        Assertions.assertNull(cache.get("b"));
+        Assertions.assertNotNull(cache.get("a"));
+        Assertions.assertTrue(cache.getBytes() <= perEntry * 3 + perEntry / 2);
+
+        ResponseCache tiny = new ResponseCache(10);
+        Assertions.assertArrayEquals(page("x"), tiny.put("a", page("x"), -1).body(null));
+        Assertions.assertEquals(0, tiny.getSize());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ResponseCache(-1));
+    }
+
+    /**
+     * Test headers: encodings are chosen from Accept-Encoding honoring q=0,
+     * which * does not override, each encoding gets its own ETag, and
+     * If-None-Match matches a response in any encoding, weak or strong, but
+     * not another response.
+     */
+    @Test
+    public void headers() {
+        Assertions.assertNull(ResponseCache.chooseEncoding(null));
+        Assertions.assertNull(ResponseCache.chooseEncoding("identity"));
+        Assertions.assertEquals("gzip", ResponseCache.chooseEncoding("gzip, deflate, br"));
+        Assertions.assertEquals("deflate", ResponseCache.chooseEncoding("deflate"));
+        Assertions.assertEquals("deflate", ResponseCache.chooseEncoding("gzip;q=0, deflate;q=0.5"));
+        Assertions.assertEquals("gzip", ResponseCache.chooseEncoding("*"));
+        Assertions.assertNull(ResponseCache.chooseEncoding("gzip;q=0"));
+        Assertions.assertEquals("deflate", ResponseCache.chooseEncoding("gzip;q=0, *"));
+        Assertions.assertEquals("deflate", ResponseCache.chooseEncoding("*, gzip;q=0"));
+        Assertions.assertNull(ResponseCache.chooseEncoding("gzip;q=0, deflate;q=0, *"));
+        Assertions.assertEquals("gzip", ResponseCache.chooseEncoding("*;q=0, gzip"));
+        Assertions.assertNull(ResponseCache.chooseEncoding("*;q=0"));
+
+        String tag = "\"1a2b-3c\"";
+        Assertions.assertEquals(tag, ResponseCache.etag(tag, null));
+        Assertions.assertEquals("\"1a2b-3c-gzip\"", ResponseCache.etag(tag, "gzip"));
+        Assertions.assertTrue(ResponseCache.matches(tag, tag));
+        Assertions.assertTrue(ResponseCache.matches("\"other\", W/\"1a2b-3c-deflate\"", tag));
+        Assertions.assertTrue(ResponseCache.matches("\"1a2b-3c-gzip\"", tag));
+        Assertions.assertTrue(ResponseCache.matches("*", tag));
+        Assertions.assertFalse(ResponseCache.matches("\"1a2b-3d\"", tag));
+        Assertions.assertFalse(ResponseCache.matches(null, tag));
+    }
+}
@@ -0,0 +1,134 @@
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.DoublePredicate;
+
+/**
+ * A set of nodes and edges that a shortest path search must not use, such as
+ * closed buildings or stairways on an accessible route. Searches honor a
+ * filter by testing one bit per node and edge they reach, so constrained
+ * queries leave the shared graph untouched and safe for concurrent readers,
+ * and cost no allocation proportional to the size of the graph.
+ *
+ * Filters are keyed by the dense ids BaseGraph assigns to nodes and edges,
+ * so a filter only applies to the graph it was created for. Once built, a
+ * filter can be reused (and shared between threads) by any number of
+ * queries, as long as it is no longer being modified.
+ */
+public class RouteFilter<NodeType, EdgeType extends Number> {
+
+    private final BaseGraph<NodeType, EdgeType> graph;
+    private final BitSet avoidedNodes = new BitSet();
+    private final BitSet avoidedEdges = new BitSet();
+
+    /**
+     * Creates a filter for graph that does not avoid anything yet.
+     *
+     * @param graph the graph whose nodes and edges this filter refers to
+     */
+    public RouteFilter(BaseGraph<NodeType, EdgeType> graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Makes searches avoid a node, and with it every edge into or out of it.
+     *
+     * @param data the data item contained in the node to avoid
+     * @return true if the node was found, false otherwise
+     */
+    public boolean avoidNode(NodeType data) {
+        if (!graph.containsNode(data))
+            return false;
+        avoidedNodes.set(graph.nodes.get(data).id);
+        return true;
+    }
+
+    /**
+     * Makes searches avoid the edge from pred to succ.
+     *
+     * @param pred the data item contained in the source node for the edge
+     * @param succ the data item contained in the target node for the edge
+     * @return true if the edge was found, false otherwise
+     */
+    public boolean avoidEdge(NodeType pred, NodeType succ) {
+        if (!graph.containsNode(pred) || !graph.containsNode(succ))
+            return false;
+        try {
+            avoidEdge(graph.getEdgeHelper(pred, succ));
+            return true;
+        } catch (NoSuchElementException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Makes searches avoid every edge whose value of a numeric edge
+     * attribute matches a predicate, e.g. avoidEdgesWhere("stairs", v -> v > 0)
+     * for an accessible route. The predicate is evaluated once for each edge
+     * now, not during searches, so edges inserted later are not affected.
+     *
+     * @param name  the edge attribute to test, edges without it read as 0
+     * @param avoid returns true for attribute values to avoid
+     * @return the number of edges newly avoided
+     */
+    public int avoidEdgesWhere(String name, DoublePredicate avoid) {
+        int count = 0;
+        for (Iterator<NodeType> nodes = graph.nodeIterator(); nodes.hasNext();) {
+            for (BaseGraph<NodeType, EdgeType>.Edge edge : graph.nodes.get(nodes.next()).edgesLeaving) {
+                if (!avoidedEdges.get(edge.id) && avoid.test(graph.edgeAttributes.get(edge.id, name))) {
+                    avoidedEdges.set(edge.id);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // avoids an edge already looked up by the caller
+    void avoidEdge(BaseGraph<NodeType, EdgeType>.Edge edge) {
+        avoidedEdges.set(edge.id);
+    }
+
+    // avoids a node already looked up by the caller
+    void avoidNode(BaseGraph<NodeType, EdgeType>.Node node) {
+        avoidedNodes.set(node.id);
+    }
+
+    /**
+     * Stops avoiding every node and edge, so the filter can be refilled.
+     */
+    public void clear() {
+        avoidedNodes.clear();
+        avoidedEdges.clear();
+    }
+
+    /**
+     * Returns whether searches may visit node.
+     *
+     * @param node the node to check
+     * @return false if node is avoided by this filter
+     */
+    boolean allows(BaseGraph<NodeType, EdgeType>.Node node) {
+        return !avoidedNodes.get(node.id);
+    }
+
+    /**
+     * Returns whether searches may follow edge: neither the edge nor the
+     * node it leads to is avoided.
+     *
+     * @param edge the edge to check
+     * @return false if edge or its successor is avoided by this filter
+     */
+    boolean allows(BaseGraph<NodeType, EdgeType>.Edge edge) {
+        return !avoidedEdges.get(edge.id) && !avoidedNodes.get(edge.successor.id);
+    }
+
+    /**
+     * Returns the graph this filter was created for.
+     *
+     * @return the filtered graph
+     */
+    BaseGraph<NodeType, EdgeType> getGraph() {
+        return graph;
+    }
+}
@@ -0,0 +1,79 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Unit tests for the RouteFilter class.
+ * These tests check that searches route around avoided nodes and edges
+ * without changing the graph that other queries see.
+ */
+public class RouteFilterTests {
+
+    // A -> B -> D is cheapest, A -> C -> D is the detour, B -> C links them
+    private static DijkstraGraph<String, Double> diamond() {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        for (String node : List.of("A", "B", "C", "D"))
+            graph.insertNode(node);
+        graph.insertEdge("A", "B", 1.0);
+        graph.insertEdge("B", "D", 1.0);
+        graph.insertEdge("A", "C", 4.0);
+        graph.insertEdge("C", "D", 4.0);
+        graph.insertEdge("B", "C", 1.0);
+        return graph;
+    }
+
+    /**
+     * Test avoidsNodesAndEdges: filtered searches detour around avoided
+     * nodes and edges, while unfiltered searches still see the whole graph.
+     */
+    @Test
+    public void avoidsNodesAndEdges() {
+        DijkstraGraph<String, Double> graph = diamond();
+        RouteFilter<String, Double> noStairs = new RouteFilter<>(graph);
+        Assertions.assertTrue(noStairs.avoidEdge("B", "D"));
+        Assertions.assertEquals(List.of("A", "B", "C", "D"), graph.shortestPathData("A", "D", noStairs));
+        Assertions.assertEquals(6.0, graph.shortestPathCost("A", "D", noStairs), 1e-9);
+
+        RouteFilter<String, Double> closed = new RouteFilter<>(graph);
+        Assertions.assertTrue(closed.avoidNode("B"));
+        Assertions.assertEquals(List.of("A", "C", "D"), graph.shortestPathData("A", "D", closed));
+
+        // the shared graph is unchanged
+        Assertions.assertEquals(List.of("A", "B", "D"), graph.shortestPathData("A", "D"));
+        Assertions.assertEquals(5, graph.getEdgeCount());
+
+        Assertions.assertFalse(closed.avoidNode("Z"));
+        Assertions.assertFalse(closed.avoidEdge("D", "A"));
+    }
+
+    /**
+     * Test filteredOutPaths: a search whose every path is filtered out, or
+     * whose start or end is avoided, finds no path; and a filter only applies
+     * to the graph it was created for.
+     */
+    @Test
+    public void filteredOutPaths() {
+        DijkstraGraph<String, Double> graph = diamond();
+        RouteFilter<String, Double> filter = new RouteFilter<>(graph);
+        filter.avoidEdge("A", "B");
+        filter.avoidEdge("A", "C");
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> graph.shortestPathCost("A", "D", filter));
+
+        filter.clear();
+        filter.avoidNode("D");
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> graph.shortestPathCost("A", "D", filter));
+        filter.clear();
+        filter.avoidNode("A");
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> graph.shortestPathCost("A", "D", filter));
+        filter.clear();
+        Assertions.assertEquals(2.0, graph.shortestPathCost("A", "D", filter), 1e-9);
+
+        RouteFilter<String, Double> foreign = new RouteFilter<>(diamond());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> graph.shortestPathCost("A", "D", foreign));
+    }
+}
@@ -0,0 +1,191 @@
+import java.util.Arrays;
+
+/**
+ * Reusable state for one shortest path search at a time, held in parallel
+ * primitive arrays indexed by dense node id: each node's tentative cost, its
+ * predecessor's id and whether it is queued or settled, plus an indexed
+ * binary heap of node ids keyed by cost that supports decreasing a queued
+ * node's cost in place.
+ *
+ * Arrays grow to the largest node id seen and are then reused by every
+ * following search, so a search allocates nothing per relaxation. Rather
+ * than clearing the arrays between searches, each search bumps an epoch and
+ * a node's entries count only when its stamp matches the current epoch.
+ *
+ * An arena is not thread-safe; forCurrentThread hands each thread its own.
+ */
+public class SearchArena {
+
+    private static final ThreadLocal<SearchArena> ARENAS = ThreadLocal.withInitial(SearchArena::new);
+
+    private static final byte QUEUED = 1;
+    private static final byte SETTLED = 2;
+
+    private double[] cost = new double[0];
+    private int[] predecessor = new int[0];
+    private byte[] state = new byte[0];
+    private int[] stamp = new int[0];
+    private int epoch = 0;
+
+    // binary min-heap of node ids, and each queued node's index within it
+    private int[] heap = new int[0];
+    private int[] heapIndex = new int[0];
+    private int heapSize = 0;
+
+    // number of inserts plus decrease-keys in the current search
+    private int pushes = 0;
+
+    /**
+     * Returns the arena of the calling thread, creating it on first use.
+     *
+     * @return this thread's arena
+     */
+    public static SearchArena forCurrentThread() {
+        return ARENAS.get();
+    }
+
+    /**
+     * Starts a new search over node ids below nodeIdBound, forgetting the
+     * state of the previous search.
+     *
+     * @param nodeIdBound one more than the largest node id the search can reach
+     */
+    public void begin(int nodeIdBound) {
+        if (cost.length < nodeIdBound) {
+            int length = Math.max(nodeIdBound, cost.length * 2);
+            cost = Arrays.copyOf(cost, length);
+            predecessor = Arrays.copyOf(predecessor, length);
+            state = Arrays.copyOf(state, length);
+            stamp = Arrays.copyOf(stamp, length);
+            heap = Arrays.copyOf(heap, length);
+            heapIndex = Arrays.copyOf(heapIndex, length);
+        }
+        if (++epoch == 0) {
+            // after 2^32 searches stamps would repeat, so start over
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+        heapSize = 0;
+        pushes = 0;
+    }
+
+    /**
+     * Lowers the tentative cost of node to newCost via predecessor, queueing
+     * it if it was not reached yet. Settled nodes and costs that are not
+     * lower are ignored.
+     *
+     * @param node        the id of the node reached
+     * @param newCost     the cost of reaching it
+     * @param predecessor the id of the node it was reached from, or -1
+     * @return true if the node's tentative cost was lowered
+     */
+    public boolean relax(int node, double newCost, int predecessor) {
+        if (stamp[node] != epoch) {
+            stamp[node] = epoch;
+            state[node] = QUEUED;
+            cost[node] = newCost;
+            this.predecessor[node] = predecessor;
+            heap[heapSize] = node;
+            heapIndex[node] = heapSize;
+            siftUp(heapSize++);
+            pushes++;
+            return true;
+        }
+        if (state[node] == SETTLED || newCost >= cost[node])
+            return false;
+        cost[node] = newCost;
+        this.predecessor[node] = predecessor;
+        siftUp(heapIndex[node]);
+        pushes++;
+        return true;
+    }
+
+    /**
+     * @return true if no node is queued
+     */
+    public boolean isEmpty() {
+        return heapSize == 0;
+    }
+
+    /**
+     * Removes the queued node with the least cost and marks it settled.
+     *
+     * @return the id of the settled node
+     */
+    public int poll() {
+        int node = heap[0];
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndex[heap[0]] = 0;
+            siftDown(0);
+        }
+        state[node] = SETTLED;
+        return node;
+    }
+
+    /**
+     * @param node a node id
+     * @return true if node has been settled by the current search
+     */
+    public boolean isSettled(int node) {
+        return stamp[node] == epoch && state[node] == SETTLED;
+    }
+
+    /**
+     * @param node a node id reached by the current search
+     * @return the node's (tentative, until settled) cost
+     */
+    public double getCost(int node) {
+        return cost[node];
+    }
+
+    /**
+     * @param node a node id reached by the current search
+     * @return the id of the node it was reached from, or -1 for the start
+     */
+    public int getPredecessor(int node) {
+        return predecessor[node];
+    }
+
+    /**
+     * @return the number of inserts and decrease-keys in the current search
+     */
+    public int getPushCount() {
+        return pushes;
+    }
+
+    private void siftUp(int index) {
+        int node = heap[index];
+        double key = cost[node];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (cost[heap[parent]] <= key)
+                break;
+            heap[index] = heap[parent];
+            heapIndex[heap[index]] = index;
+            index = parent;
+        }
+        heap[index] = node;
+        heapIndex[node] = index;
+    }
+
+    private void siftDown(int index) {
+        int node = heap[index];
+        double key = cost[node];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize)
+                break;
+            if (child + 1 < heapSize && cost[heap[child + 1]] < cost[heap[child]])
+                child++;
+            if (cost[heap[child]] >= key)
+                break;
+            heap[index] = heap[child];
+            heapIndex[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = node;
+        heapIndex[node] = index;
+    }
+}
@@ -0,0 +1,331 @@
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Caches complete shortest path trees for recently used start nodes of a
+ * BaseGraph, and keeps them correct as the graph's edges change. Rather than
+ * discarding a tree whenever an edge is inserted, removed or re-weighted, the
+ * cache listens to the graph and repairs only the part of each tree that the
+ * change can affect, in the style of Ramalingam and Reps' dynamic shortest
+ * path algorithm:
+ *
+ * - when an edge gets cheaper (or is inserted), distances are propagated
+ *   outward from its successor, touching only nodes whose distance improves;
+ * - when a tree edge gets more expensive (or is removed), only the subtree
+ *   hanging below it is invalidated, re-seeded from its unaffected incoming
+ *   neighbors and re-settled; changes to non-tree edges cost nothing.
+ *
+ * Like BaseGraph itself, this class is not thread-safe.
+ */
+public class ShortestPathTreeCache<NodeType, EdgeType extends Number>
+        implements BaseGraph.EdgeListener<NodeType, EdgeType> {
+
+    // a complete shortest path tree rooted at one start node, with each
+    // reached node's distance and parent kept by node id
+    private class Tree {
+        final BaseGraph<NodeType, EdgeType>.Node source;
+        final LongDoubleMap distance = new LongDoubleMap();
+        final IntIntMap parent = new IntIntMap();
+
+        Tree(BaseGraph<NodeType, EdgeType>.Node source) {
+            this.source = source;
+            distance.put(source.id, 0.0);
+            PriorityQueue<QueueEntry> queue = new PriorityQueue<>();
+            queue.add(new QueueEntry(source, 0.0));
+            settle(queue, null);
+        }
+
+        double distanceTo(BaseGraph<NodeType, EdgeType>.Node node) {
+            return distance.getOrDefault(node.id, Double.POSITIVE_INFINITY);
+        }
+
+        // whether node's tree parent is candidate
+        boolean isParent(BaseGraph<NodeType, EdgeType>.Node candidate,
+                BaseGraph<NodeType, EdgeType>.Node node) {
+            return parent.getOrDefault(node.id, -1) == candidate.id;
+        }
+
+        // runs Dijkstra from the queued entries, optionally only within region
+        void settle(PriorityQueue<QueueEntry> queue, Set<BaseGraph<NodeType, EdgeType>.Node> region) {
+            while (!queue.isEmpty()) {
+                QueueEntry entry = queue.poll();
+                if (entry.cost > distanceTo(entry.node))
+                    continue; // a cheaper entry for this node was already settled
+                repairedNodes++;
+                for (BaseGraph<NodeType, EdgeType>.Edge edge : entry.node.edgesLeaving) {
+                    BaseGraph<NodeType, EdgeType>.Node next = edge.successor;
+                    if (region != null && !region.contains(next))
+                        continue;
+                    double cost = entry.cost + edge.data.doubleValue();
+                    if (cost < distanceTo(next)) {
+                        distance.set(next.id, cost);
+                        parent.set(next.id, entry.node.id);
+                        queue.add(new QueueEntry(next, cost));
+                    }
+                }
+            }
+        }
+
+        // the edge pred->succ got cheaper or was inserted, returns whether
+        // the tree had to be repaired
+        boolean decrease(BaseGraph<NodeType, EdgeType>.Edge edge) {
+            double cost = distanceTo(edge.predecessor) + edge.data.doubleValue();
+            if (cost >= distanceTo(edge.successor))
+                return false;
+            distance.set(edge.successor.id, cost);
+            parent.set(edge.successor.id, edge.predecessor.id);
+            PriorityQueue<QueueEntry> queue = new PriorityQueue<>();
+            queue.add(new QueueEntry(edge.successor, cost));
+            settle(queue, null);
+            return true;
+        }
+
+        // the edge pred->succ got more expensive or was removed, returns
+        // whether the tree had to be repaired
+        boolean increase(BaseGraph<NodeType, EdgeType>.Edge edge) {
+            if (!isParent(edge.predecessor, edge.successor))
+                return false; // not a tree edge, so no distance can get worse
+            repairSubtree(edge.successor, null);
+            return true;
+        }
+
+        // recomputes every distance within the subtree rooted at root
+        void repairSubtree(BaseGraph<NodeType, EdgeType>.Node root,
+                BaseGraph<NodeType, EdgeType>.Node removed) {
+            // collect the subtree below root through its tree edges
+            Set<BaseGraph<NodeType, EdgeType>.Node> affected = new HashSet<>();
+            ArrayDeque<BaseGraph<NodeType, EdgeType>.Node> stack = new ArrayDeque<>();
+            affected.add(root);
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                BaseGraph<NodeType, EdgeType>.Node node = stack.pop();
+                for (BaseGraph<NodeType, EdgeType>.Edge edge : node.edgesLeaving)
+                    if (isParent(node, edge.successor) && affected.add(edge.successor))
+                        stack.push(edge.successor);
+            }
+            for (BaseGraph<NodeType, EdgeType>.Node node : affected) {
+                distance.remove(node.id);
+                if (parent.containsKey(node.id))
+                    parent.remove(node.id);
+            }
+            affected.remove(removed);
+
+            // seed each affected node from its best unaffected predecessor
+            PriorityQueue<QueueEntry> queue = new PriorityQueue<>();
+            for (BaseGraph<NodeType, EdgeType>.Node node : affected) {
+                double best = Double.POSITIVE_INFINITY;
+                BaseGraph<NodeType, EdgeType>.Node bestParent = null;
+                for (BaseGraph<NodeType, EdgeType>.Edge edge : node.edgesEntering) {
+                    if (affected.contains(edge.predecessor))
+                        continue;
+                    double cost = distanceTo(edge.predecessor) + edge.data.doubleValue();
+                    if (cost < best) {
+                        best = cost;
+                        bestParent = edge.predecessor;
+                    }
+                }
+                if (bestParent != null) {
+                    distance.put(node.id, best);
+                    parent.put(node.id, bestParent.id);
+                    queue.add(new QueueEntry(node, best));
+                }
+            }
+            // then settle the affected region; nodes left unreached are now
+            // unreachable from the source
+            settle(queue, affected);
+        }
+    }
+
+    // a tentative distance to a node, ordered by cost within a PriorityQueue
+    private class QueueEntry implements Comparable<QueueEntry> {
+        final BaseGraph<NodeType, EdgeType>.Node node;
+        final double cost;
+
+        QueueEntry(BaseGraph<NodeType, EdgeType>.Node node, double cost) {
+            this.node = node;
+            this.cost = cost;
+        }
+
+        public int compareTo(QueueEntry other) {
+            return Double.compare(cost, other.cost);
+        }
+    }
+
+    private final BaseGraph<NodeType, EdgeType> graph;
+    private final LinkedHashMap<NodeType, Tree> trees;
+    // nodes settled while building or repairing trees, for tests and metrics
+    private long repairedNodes = 0;
+    // trees that an edge or node change actually repaired
+    private long repairedTrees = 0;
+
+    private static final Metrics.Counter REPAIRS = Metrics.counter(
+            "campus_spt_repairs_total", "",
+            "Cached shortest path trees repaired after an edge change.");
+
+    /**
+     * Creates a cache of shortest path trees over graph, and starts listening
+     * to the graph's edge changes.
+     *
+     * @param graph    the graph to compute shortest path trees over
+     * @param capacity the maximum number of trees to keep, least recently
+     *                 used trees are evicted first
+     */
+    public ShortestPathTreeCache(BaseGraph<NodeType, EdgeType> graph, int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be greater than 0.");
+        this.graph = graph;
+        this.trees = new LinkedHashMap<NodeType, Tree>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<NodeType, Tree> eldest) {
+                return size() > capacity;
+            }
+        };
+        graph.addEdgeListener(this);
+    }
+
+    /**
+     * Stops listening to the graph and drops every cached tree.
+     */
+    public void close() {
+        graph.removeEdgeListener(this);
+        trees.clear();
+    }
+
+    // returns the cached tree for start, building it on a miss
+    private Tree treeFor(NodeType start) {
+        Tree tree = trees.get(start);
+        if (Metrics.ENABLED)
+            Metrics.recordCacheLookup("shortest_path_tree", tree != null);
+        if (tree == null) {
+            if (!graph.containsNode(start))
+                throw new NoSuchElementException("Start node not in graph.");
+            tree = new Tree(graph.nodes.get(start));
+            trees.put(start, tree);
+        }
+        return tree;
+    }
+
+    /**
+     * Returns the cost of the shortest path from start to end, answered from
+     * the cached tree for start.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return the cost of the shortest path between these nodes
+     * @throws NoSuchElementException if either node is missing, or if there
+     *                                is no path from start to end
+     */
+    public double shortestPathCost(NodeType start, NodeType end) {
+        Tree tree = treeFor(start);
+        if (!graph.containsNode(end))
+            throw new NoSuchElementException("End node not in graph.");
+        double cost = tree.distanceTo(graph.nodes.get(end));
+        if (cost == Double.POSITIVE_INFINITY)
+            throw new NoSuchElementException("error: there is no path from start to end node.");
+        return cost;
+    }
+
+    /**
+     * Returns the list of data values along the shortest path from start to
+     * end, answered from the cached tree for start.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return list of data item from node along this shortest path
+     * @throws NoSuchElementException if either node is missing, or if there
+     *                                is no path from start to end
+     */
+    public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+        shortestPathCost(start, end); // validates both nodes and reachability
+        Tree tree = trees.get(start);
+        LinkedList<NodeType> path = new LinkedList<>();
+        for (int id = graph.getNodeId(end); id >= 0; id = tree.parent.getOrDefault(id, -1))
+            path.addFirst(graph.getNodeData(id));
+        return path;
+    }
+
+    /**
+     * Returns the number of trees currently cached.
+     *
+     * @return the number of cached trees
+     */
+    public int getSize() {
+        return trees.size();
+    }
+
+    /**
+     * Returns the total number of nodes settled while building and repairing
+     * trees, which shows how much work repairs are saving over rebuilds.
+     *
+     * @return the number of nodes settled by this cache so far
+     */
+    public long getSettledCount() {
+        return repairedNodes;
+    }
+
+    /**
+     * Returns the number of times a cached tree was repaired because an edge
+     * or node it used changed. Changes that no tree depends on are not
+     * counted.
+     *
+     * @return the number of tree repairs made by this cache so far
+     */
+    public long getRepairCount() {
+        return repairedTrees;
+    }
+
+    @Override
+    public void edgeInserted(BaseGraph<NodeType, EdgeType>.Edge edge) {
+        int repaired = 0;
+        for (Tree tree : trees.values())
+            if (tree.decrease(edge))
+                repaired++;
+        recordRepairs(repaired);
+    }
+
+    @Override
+    public void edgeWeightChanged(BaseGraph<NodeType, EdgeType>.Edge edge, double oldWeight) {
+        double newWeight = edge.data.doubleValue();
+        int repaired = 0;
+        for (Tree tree : trees.values()) {
+            if (newWeight < oldWeight ? tree.decrease(edge) : newWeight > oldWeight && tree.increase(edge))
+                repaired++;
+        }
+        recordRepairs(repaired);
+    }
+
+    @Override
+    public void edgeRemoved(BaseGraph<NodeType, EdgeType>.Edge edge) {
+        int repaired = 0;
+        for (Tree tree : trees.values())
+            if (tree.increase(edge))
+                repaired++;
+        recordRepairs(repaired);
+    }
+
+    @Override
+    public void nodeRemoved(BaseGraph<NodeType, EdgeType>.Node node) {
+        trees.remove(node.data);
+        int repaired = 0;
+        for (Tree tree : trees.values()) {
+            if (tree.distance.containsKey(node.id)) {
+                tree.repairSubtree(node, node);
+                repaired++;
+            }
+        }
+        recordRepairs(repaired);
+    }
+
+    private void recordRepairs(int repaired) {
+        repairedTrees += repaired;
+        if (Metrics.ENABLED)
+            REPAIRS.add(repaired);
+    }
+}
@@ -0,0 +1,101 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Unit tests for the ShortestPathTreeCache class.
+ * These tests verify that cached shortest path trees stay identical to fresh
+ * Dijkstra searches while edges are inserted, re-weighted and removed.
+ */
+public class ShortestPathTreeCacheTests {
+
+    /**
+     * Test repairMatchesRecompute: applies a long random sequence of edge
+     * changes and node removals to a graph, and after each one compares every
+     * cached distance against a full recomputation.
+     */
+    @Test
+    public void repairMatchesRecompute() {
+        Random random = new Random(400);
+        DijkstraGraph<Integer, Double> graph = new DijkstraGraph<>();
+        int n = 60;
+        for (int i = 0; i < n; i++)
+            graph.insertNode(i);
+        for (int i = 0; i < 4 * n; i++)
+            graph.insertEdge(random.nextInt(n), random.nextInt(n), 1.0 + random.nextInt(20));
+        ShortestPathTreeCache<Integer, Double> cache = new ShortestPathTreeCache<>(graph, 4);
+        List<Integer> sources = List.of(0, 1, 2, 3);
+
+        for (int step = 0; step < 400; step++) {
+            int from = random.nextInt(n);
+            int to = random.nextInt(n);
+            int action = random.nextInt(10);
+            if (!graph.containsNode(from) || !graph.containsNode(to))
+                continue;
+            if (action < 4)
+                graph.insertEdge(from, to, 1.0 + random.nextInt(20));
+            else if (action < 9)
+                graph.removeEdge(from, to);
+            else if (from > 3)
+                graph.removeNode(from);
+
+            for (int source : sources) {
+                for (int target = 0; target < n; target++) {
+                    if (!graph.containsNode(target))
+                        continue;
+                    double expected;
+                    try {
+                        expected = graph.shortestPathCost(source, target);
+                    } catch (NoSuchElementException e) {
+                        expected = -1;
+                    }
+                    double actual;
+                    try {
+                        actual = cache.shortestPathCost(source, target);
+                    } catch (NoSuchElementException e) {
+                        actual = -1;
+                    }
+                    Assertions.assertEquals(expected, actual, 1e-9,
+                            "distance " + source + "->" + target + " after step " + step);
+                }
+            }
+        }
+        Assertions.assertEquals(4, cache.getSize());
+    }
+
+    /**
+     * Test nonTreeEdgeChangesAreFree: increasing or removing an edge that no
+     * cached tree uses must not settle any nodes or count as a repair, and the
+     * returned path must follow the repaired tree.
+     */
+    @Test
+    public void nonTreeEdgeChangesAreFree() {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        for (String node : List.of("A", "B", "C", "D"))
+            graph.insertNode(node);
+        graph.insertEdge("A", "B", 1.0);
+        graph.insertEdge("B", "D", 1.0);
+        graph.insertEdge("A", "C", 5.0);
+        graph.insertEdge("C", "D", 5.0);
+        ShortestPathTreeCache<String, Double> cache = new ShortestPathTreeCache<>(graph, 2);
+        Assertions.assertEquals(List.of("A", "B", "D"), cache.shortestPathData("A", "D"));
+
+        long settled = cache.getSettledCount();
+        graph.insertEdge("C", "D", 50.0);
+        Assertions.assertEquals(0, cache.getRepairCount());
+        graph.removeEdge("A", "C");
+        Assertions.assertEquals(settled, cache.getSettledCount());
+
+        // closing the tree edge B->D leaves D unreachable, reopening it repairs
+        long repairs = cache.getRepairCount();
+        graph.removeEdge("B", "D");
+        Assertions.assertEquals(repairs + 1, cache.getRepairCount());
+        Assertions.assertThrows(NoSuchElementException.class, () -> cache.shortestPathCost("A", "D"));
+        graph.insertEdge("B", "D", 3.0);
+        Assertions.assertEquals(4.0, cache.shortestPathCost("A", "D"), 1e-9);
+        Assertions.assertEquals(List.of("A", "B", "D"), cache.shortestPathData("A", "D"));
+        cache.close();
+    }
+}
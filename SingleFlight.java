@@ -0,0 +1,85 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent identical calls share one computation. The first caller
+ * for a key becomes its leader and computes the value; callers that arrive
+ * with the same key while the leader is still computing wait for and return
+ * the leader's value (or throw its exception) instead of computing again.
+ * Once the leader finishes, the key is forgotten, so this is not a cache: a
+ * later call computes afresh.
+ *
+ * Metrics count each operation's calls and how many of them were
+ * coalesced into another's computation.
+ *
+ * @param <K> the type of the keys that identify identical calls
+ * @param <V> the type of the computed values
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Metrics.Counter calls;
+    private final Metrics.Counter coalesced;
+
+    /**
+     * @param operation the name of the operation, used as the metrics'
+     *                  operation label
+     */
+    public SingleFlight(String operation) {
+        String labels = "operation=\"" + operation + "\"";
+        calls = Metrics.counter("campus_single_flight_calls_total", labels,
+                "Calls made through a single-flight layer.");
+        coalesced = Metrics.counter("campus_single_flight_coalesced_total", labels,
+                "Calls that waited for an identical call in flight instead of computing.");
+    }
+
+    /**
+     * Returns compute's value for key, computing it only if no identical
+     * call is in flight.
+     *
+     * @param key     identifies the call
+     * @param compute computes the value when this call leads
+     * @return the value computed by this call or by the leader it joined
+     * @throws RuntimeException whatever compute threw, in the leader and in
+     *                          every call that joined it
+     */
+    public V run(K key, Supplier<V> compute) {
+        if (Metrics.ENABLED)
+            calls.increment();
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> leader = inFlight.putIfAbsent(key, call);
+        if (leader != null) {
+            if (Metrics.ENABLED)
+                coalesced.increment();
+            try {
+                return leader.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                if (e.getCause() instanceof Error)
+                    throw (Error) e.getCause();
+                throw e;
+            }
+        }
+        try {
+            V value = compute.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * @return the number of calls in flight, each counted once however many
+     *         callers are waiting on it
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
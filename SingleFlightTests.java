@@ -0,0 +1,136 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the SingleFlight class.
+ */
+public class SingleFlightTests {
+
+    // waits until count calls are in flight or waiting on one, by the metric
+    private static void awaitCalls(Metrics.Counter calls, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (calls.get() < count && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+    }
+
+    /**
+     * Test followersShareLeader: while a leader computes, callers with the
+     * same key wait and return its value without computing, callers with
+     * another key compute their own, and once the leader is done a new call
+     * computes again.
+     */
+    @Test
+    public void followersShareLeader() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>("test_share");
+        Metrics.Counter calls = Metrics.counter("campus_single_flight_calls_total",
+                "operation=\"test_share\"", "");
+        Metrics.Counter coalesced = Metrics.counter("campus_single_flight_coalesced_total",
+                "operation=\"test_share\"", "");
+        AtomicInteger computed = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        try {
+            Future<Integer> leader = pool.submit(() -> flight.run("a", () -> {
+                computed.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return 42;
+            }));
+            while (flight.getInFlightCount() == 0)
+                Thread.sleep(1);
+            List<Future<Integer>> followers = new ArrayList<>();
+            for (int i = 0; i < 4; i++)
+                followers.add(pool.submit(() -> flight.run("a", () -> {
+                    computed.incrementAndGet();
+                    return -1;
+                })));
+            if (Metrics.ENABLED)
+                awaitCalls(calls, 5);
+            else
+                Thread.sleep(100);
+            Assertions.assertEquals(7, (int) flight.run("b", () -> 7));
+            release.countDown();
+            Assertions.assertEquals(42, (int) leader.get());
+            for (Future<Integer> follower : followers)
+                Assertions.assertEquals(42, (int) follower.get());
+            Assertions.assertEquals(1, computed.get());
+            Assertions.assertEquals(0, flight.getInFlightCount());
+            if (Metrics.ENABLED)
+                Assertions.assertEquals(4, coalesced.get());
+            Assertions.assertEquals(-1, (int) flight.run("a", () -> -1));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Test followersShareFailure: a leader's exception reaches every caller
+     * that joined it, and the key is free again afterwards.
+     */
+    @Test
+    public void followersShareFailure() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>("test_failure");
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> leader = pool.submit(() -> flight.run("a", () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                throw new IllegalArgumentException("no route");
+            }));
+            while (flight.getInFlightCount() == 0)
+                Thread.sleep(1);
+            Future<Integer> follower = pool.submit(() -> {
+                try {
+                    return flight.run("a", () -> 0);
+                } catch (IllegalArgumentException e) {
+                    return -1;
+                }
+            });
+            Thread.sleep(50);
+            release.countDown();
+            Assertions.assertTrue(Assertions.assertThrows(Exception.class, leader::get).getCause()
+                    instanceof IllegalArgumentException);
+            // the follower either joined and saw the failure, or came late and led
+            int result = follower.get();
+            Assertions.assertTrue(result == -1 || result == 0);
+            Assertions.assertEquals(5, (int) flight.run("a", () -> 5));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Test backendRoutes: routes through Backend's single-flight layer are
+     * correct, and each call gets its own list.
+     */
+    @Test
+    public void backendRoutes() {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        for (String node : List.of("A", "B", "C"))
+            graph.insertNode(node);
+        graph.insertEdge("A", "B", 1.0);
+        graph.insertEdge("B", "C", 1.0);
+        Backend backend = new Backend(graph);
+        List<String> first = backend.findLocationsOnShortestPath("A", "C");
+        List<String> second = backend.findLocationsOnShortestPath("A", "C");
+        Assertions.assertEquals(List.of("A", "B", "C"), first);
+        Assertions.assertEquals(first, second);
+        Assertions.assertTrue(first != second);
+        Assertions.assertEquals(List.of(), backend.findLocationsOnShortestPath("C", "A"));
+        Assertions.assertEquals(List.of(), backend.findLocationsOnShortestPath("A", "Z"));
+    }
+}
@@ -0,0 +1,430 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A read-only graph that stays on disk: the edges are stored in a tiled
+ * snapshot file, one CSR block per range of nodesPerTile consecutive node
+ * ids, and a tile is read in only when a query first needs the edges of one
+ * of its nodes. Only the node names are read onto the heap when the graph is
+ * opened.
+ *
+ * Resident tiles live off the heap, in at most maxResidentTiles direct
+ * buffers that are reused: a tile fault reads the tile into the buffer of
+ * the least recently used tile that no search is reading. Reusing buffers
+ * keeps the off-heap footprint fixed, where mapping each tile would leave
+ * one mapping behind per fault until the collector happened to release it.
+ *
+ * Any number of threads may search the graph at once. A tile is read from
+ * disk outside the graph's lock, so searches in resident tiles never wait
+ * for another search's fault; searches that fault on the same tile wait for
+ * one read of it. While a search settles nodes in one tile it keeps that
+ * tile pinned and reads it without locking, taking the lock only to move to
+ * another tile. Callers that run their own searches with relaxEdges, such
+ * as MeetingPoint, must call searchFinished when done, as shortestPath
+ * searches do, to release the last tile their thread kept pinned.
+ *
+ * Node ids are laid out the way the snapshot was written, so tiles follow
+ * locality only as far as the ids do: ParallelDotLoader numbers nodes in
+ * first-appearance order, which keeps the edges of a region of a dot file
+ * written region by region in few tiles.
+ *
+ * The snapshot file holds, in big-endian order:
+ *   int magic, int nodeCount, long edgeCount, int nodesPerTile, int tileCount
+ *   nodeCount names (DataOutput UTF)
+ *   tileCount tile entries: long file offset, int edge count
+ *   each tile: int[nodes + 1] edge offsets within the tile,
+ *              int[edges] target ids, double[edges] weights
+ */
+public class TiledGraph extends FrozenGraph implements AutoCloseable {
+
+    private static final int MAGIC = 0x54494C45; // "TILE"
+
+    private static final Metrics.Counter TILE_FAULTS = Metrics.counter(
+            "campus_tile_faults_total", "",
+            "Graph tiles read in because a query reached a node in them.");
+    private static final Metrics.Counter TILE_EVICTIONS = Metrics.counter(
+            "campus_tile_evictions_total", "",
+            "Graph tiles dropped to keep within the resident tile limit.");
+    private static final Metrics.Gauge RESIDENT_TILES = Metrics.gauge(
+            "campus_tiles_resident", "",
+            "Graph tiles currently resident, over every open TiledGraph.");
+
+    // a direct buffer holding the CSR block of one tile at a time, with
+    // views indexed by node id within the tile
+    private static final class Tile {
+        final ByteBuffer block;
+        int index = -1;
+        int pins = 0; // searches reading this tile, which must not be reused
+        long lastUsed = 0; // when it was last pinned, by the graph's useClock
+        // completes once the tile's contents have been read in
+        CompletableFuture<Void> loaded;
+        IntBuffer offsets;
+        IntBuffer targets;
+        DoubleBuffer weights;
+
+        Tile(int capacity) {
+            block = ByteBuffer.allocateDirect(capacity);
+        }
+
+        // reads tile index, of nodes nodes and edges edges, from offset
+        void read(FileChannel channel, int index, long offset, int nodes, int edges) throws IOException {
+            int offsetBytes = (nodes + 1) * Integer.BYTES;
+            int targetBytes = edges * Integer.BYTES;
+            int weightBytes = edges * Double.BYTES;
+            block.clear().limit(offsetBytes + targetBytes + weightBytes);
+            while (block.hasRemaining())
+                if (channel.read(block, offset + block.position()) < 0)
+                    throw new IOException("Graph snapshot ends inside tile " + index);
+            offsets = block.slice(0, offsetBytes).asIntBuffer();
+            targets = block.slice(offsetBytes, targetBytes).asIntBuffer();
+            weights = block.slice(offsetBytes + targetBytes, weightBytes).asDoubleBuffer();
+        }
+    }
+
+    private final FileChannel channel;
+    private final long edgeCount;
+    private final int nodesPerTile;
+    private final long[] tileOffsets;
+    private final int[] tileEdges;
+    private final int maxResidentTiles;
+    private final int maxTileBytes;
+    // resident tiles by index, without boxing the index on each pin
+    private final IntObjectMap<Tile> resident = new IntObjectMap<>();
+    // counts pins, so that a tile's lastUsed orders it for eviction
+    private long useClock = 0;
+    private long tileFaults = 0;
+    // the tile each thread's search is in, pinned until it moves on or ends
+    private final ThreadLocal<Tile> held = new ThreadLocal<>();
+
+    /**
+     * Opens a snapshot written by write, reading only its node names and
+     * tile directory.
+     *
+     * @param filename         the path of the snapshot file
+     * @param maxResidentTiles the most tiles to keep resident at once
+     * @throws IOException if the file cannot be read or is not a snapshot
+     * @throws IllegalArgumentException if maxResidentTiles is not positive
+     */
+    public TiledGraph(String filename, int maxResidentTiles) throws IOException {
+        this(openChannel(filename), filename, maxResidentTiles);
+    }
+
+    private TiledGraph(FileChannel channel, String filename, int maxResidentTiles) throws IOException {
+        super(new NodeDictionary<>());
+        this.channel = channel;
+        try {
+            if (maxResidentTiles <= 0)
+                throw new IllegalArgumentException("Resident tile limit must be greater than 0.");
+            // read the header through a stream that does not close the channel
+            InputStream stream = new BufferedInputStream(Channels.newInputStream(channel.position(0)));
+            DataInputStream in = new DataInputStream(stream);
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not a tiled graph snapshot: " + filename);
+            int nodeCount = in.readInt();
+            edgeCount = in.readLong();
+            nodesPerTile = in.readInt();
+            int tileCount = in.readInt();
+            for (int id = 0; id < nodeCount; id++)
+                names.intern(in.readUTF());
+            names.freeze();
+            tileOffsets = new long[tileCount];
+            tileEdges = new int[tileCount];
+            long largest = 0;
+            for (int t = 0; t < tileCount; t++) {
+                tileOffsets[t] = in.readLong();
+                tileEdges[t] = in.readInt();
+                largest = Math.max(largest, tileBytes(t));
+            }
+            maxTileBytes = (int) largest;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.maxResidentTiles = maxResidentTiles;
+    }
+
+    private static FileChannel openChannel(String filename) throws IOException {
+        try {
+            return FileChannel.open(Path.of(filename), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new IOException("File not found: " + filename);
+        }
+    }
+
+    /**
+     * Writes graph as a tiled snapshot, in tiles of nodesPerTile consecutive
+     * node ids.
+     *
+     * @param graph        the graph to write
+     * @param filename     the path of the snapshot file to write
+     * @param nodesPerTile the number of nodes in each tile
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if nodesPerTile is not positive, or a
+     *                                  tile would be too large to read in
+     */
+    public static void write(CsrGraph graph, String filename, int nodesPerTile) throws IOException {
+        if (nodesPerTile <= 0)
+            throw new IllegalArgumentException("Tile size must be greater than 0.");
+        int n = graph.getNodeCount();
+        int tileCount = (n + nodesPerTile - 1) / nodesPerTile;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(filename)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(n);
+            out.writeLong(graph.getEdgeCount());
+            out.writeInt(nodesPerTile);
+            out.writeInt(tileCount);
+            for (int id = 0; id < n; id++)
+                out.writeUTF(graph.getNodeName(id));
+
+            // the tiles start right after the directory
+            long offset = out.size() + (long) tileCount * (Long.BYTES + Integer.BYTES);
+            for (int t = 0; t < tileCount; t++) {
+                int first = t * nodesPerTile;
+                int nodes = Math.min(nodesPerTile, n - first);
+                long edges = graph.endEdge(first + nodes - 1) - graph.firstEdge(first);
+                long bytes = (nodes + 1L) * Integer.BYTES + edges * (Integer.BYTES + Double.BYTES);
+                if (bytes > Integer.MAX_VALUE)
+                    throw new IllegalArgumentException("Tile " + t + " is too large; use smaller tiles.");
+                out.writeLong(offset);
+                out.writeInt((int) edges);
+                offset += bytes;
+            }
+
+            for (int t = 0; t < tileCount; t++) {
+                int first = t * nodesPerTile;
+                int nodes = Math.min(nodesPerTile, n - first);
+                int base = graph.firstEdge(first);
+                int end = graph.endEdge(first + nodes - 1);
+                for (int id = first; id < first + nodes; id++)
+                    out.writeInt(graph.firstEdge(id) - base);
+                out.writeInt(end - base);
+                for (int edge = base; edge < end; edge++)
+                    out.writeInt(graph.edgeTarget(edge));
+                for (int edge = base; edge < end; edge++)
+                    out.writeDouble(graph.edgeWeight(edge));
+            }
+        } catch (FileNotFoundException e) {
+            throw new IOException("Cannot write file: " + filename);
+        }
+    }
+
+    /**
+     * @return the number of tiles read in so far, counting a tile again each
+     *         time it is read after being dropped
+     */
+    public synchronized long getTileFaults() {
+        return tileFaults;
+    }
+
+    /**
+     * @return the number of tiles currently resident
+     */
+    public synchronized int getResidentTileCount() {
+        return resident.getSize();
+    }
+
+    /**
+     * @return the number of tiles in the snapshot
+     */
+    public int getTileCount() {
+        return tileOffsets.length;
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return (int) edgeCount;
+    }
+
+    @Override
+    public void forEachEdge(int id, EdgeVisitor visitor) {
+        Tile tile = pin(id / nodesPerTile);
+        try {
+            int local = id % nodesPerTile;
+            for (int edge = tile.offsets.get(local); edge < tile.offsets.get(local + 1); edge++)
+                visitor.visit(tile.targets.get(edge), tile.weights.get(edge));
+        } finally {
+            unpin(tile);
+        }
+    }
+
+    @Override
+    protected int relaxEdges(SearchArena arena, int id, double cost) {
+        Tile tile = hold(id / nodesPerTile);
+        int local = id % nodesPerTile;
+        int end = tile.offsets.get(local + 1);
+        int start = tile.offsets.get(local);
+        for (int edge = start; edge < end; edge++)
+            arena.relax(tile.targets.get(edge), cost + tile.weights.get(edge), id);
+        return end - start;
+    }
+
+    @Override
+    protected void searchFinished() {
+        Tile tile = held.get();
+        if (tile != null) {
+            held.remove();
+            unpin(tile);
+        }
+    }
+
+    // the tile with this index, kept pinned for this thread's search; the
+    // tile it held before is unpinned, and a held tile cannot be reused, so
+    // checking its index needs no lock
+    private Tile hold(int index) {
+        Tile tile = held.get();
+        if (tile != null && tile.index == index)
+            return tile;
+        Tile next = pin(index);
+        held.set(next);
+        if (tile != null)
+            unpin(tile);
+        return next;
+    }
+
+    @Override
+    protected double edgeWeight(int from, int to) {
+        checkId(from);
+        Tile tile = pin(from / nodesPerTile);
+        try {
+            int local = from % nodesPerTile;
+            // each node's targets are sorted, so binary search them
+            int low = tile.offsets.get(local);
+            int high = tile.offsets.get(local + 1) - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int target = tile.targets.get(middle);
+                if (target < to)
+                    low = middle + 1;
+                else if (target > to)
+                    high = middle - 1;
+                else
+                    return tile.weights.get(middle);
+            }
+            return Double.NaN;
+        } finally {
+            unpin(tile);
+        }
+    }
+
+    // the resident tile with this index, reading it in if needed, pinned
+    // so that it is not reused until unpin; the read happens outside the
+    // lock, and other threads pinning the tile meanwhile wait for it
+    private Tile pin(int index) {
+        Tile tile;
+        boolean load = false;
+        synchronized (this) {
+            tile = resident.getOrDefault(index, null);
+            if (tile == null) {
+                tile = resident.getSize() < maxResidentTiles ? null : evictableTile();
+                if (tile == null) {
+                    // under the limit, or every resident tile is being read
+                    tile = new Tile(maxTileBytes);
+                    if (Metrics.ENABLED)
+                        RESIDENT_TILES.add(1);
+                }
+                tile.index = index;
+                tile.loaded = new CompletableFuture<>();
+                resident.set(index, tile);
+                tileFaults++;
+                if (Metrics.ENABLED)
+                    TILE_FAULTS.increment();
+                load = true;
+            }
+            tile.pins++;
+            tile.lastUsed = ++useClock;
+        }
+        if (load) {
+            int nodes = Math.min(nodesPerTile, getNodeCount() - index * nodesPerTile);
+            try {
+                tile.read(channel, index, tileOffsets[index], nodes, tileEdges[index]);
+                tile.loaded.complete(null);
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    // forget the tile, so that the next query reads it again
+                    if (resident.getOrDefault(index, null) == tile) {
+                        resident.remove(index);
+                        if (Metrics.ENABLED)
+                            RESIDENT_TILES.add(-1);
+                    }
+                    tile.index = -1;
+                    tile.pins--;
+                }
+                tile.loaded.completeExceptionally(e);
+                throw new IllegalStateException("Cannot read tile " + index + " of the graph snapshot.", e);
+            }
+        } else {
+            try {
+                tile.loaded.join();
+            } catch (CompletionException e) {
+                unpin(tile);
+                throw new IllegalStateException("Cannot read tile " + index + " of the graph snapshot.", e.getCause());
+            }
+        }
+        return tile;
+    }
+
+    private synchronized void unpin(Tile tile) {
+        tile.pins--;
+        // drop tiles that were read in over the limit while others were pinned
+        while (resident.getSize() > maxResidentTiles) {
+            Tile extra = evictableTile();
+            if (extra == null)
+                break;
+            if (Metrics.ENABLED)
+                RESIDENT_TILES.add(-1);
+        }
+    }
+
+    // removes and returns the least recently used tile that is not pinned,
+    // or returns null if every resident tile is pinned; there are only a
+    // few resident tiles, and this runs only when one is read in
+    private Tile evictableTile() {
+        Tile oldest = null;
+        for (int index : resident.getKeys()) {
+            Tile tile = resident.get(index);
+            if (tile.pins == 0 && (oldest == null || tile.lastUsed < oldest.lastUsed))
+                oldest = tile;
+        }
+        if (oldest == null)
+            return null;
+        resident.remove(oldest.index);
+        if (Metrics.ENABLED)
+            TILE_EVICTIONS.increment();
+        return oldest;
+    }
+
+    private long tileBytes(int index) {
+        int nodes = Math.min(nodesPerTile, getNodeCount() - index * nodesPerTile);
+        return (nodes + 1L) * Integer.BYTES + (long) tileEdges[index] * (Integer.BYTES + Double.BYTES);
+    }
+
+    /**
+     * Closes the snapshot file. The graph cannot be queried afterwards.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (Metrics.ENABLED)
+            RESIDENT_TILES.add(-resident.getSize());
+        resident.clear();
+        channel.close();
+    }
+}
@@ -0,0 +1,173 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the TiledGraph class.
+ */
+public class TiledGraphTests {
+
+    /**
+     * Test matchesCsrGraph: a tiled snapshot of the campus graph answers
+     * edge and shortest path queries like the graph it was written from,
+     * while reading tiles in only on demand and never keeping more than the
+     * resident limit.
+     */
+    @Test
+    public void matchesCsrGraph() throws IOException {
+        CsrGraph expected = ParallelDotLoader.load("campus.dot", 2);
+        Path file = Files.createTempFile("campus", ".tiles");
+        try {
+            TiledGraph.write(expected, file.toString(), 16);
+            try (TiledGraph graph = new TiledGraph(file.toString(), 3)) {
+                Assertions.assertEquals(expected.getAllNodes(), graph.getAllNodes());
+                Assertions.assertEquals(expected.getEdgeCount(), graph.getEdgeCount());
+                Assertions.assertEquals((expected.getNodeCount() + 15) / 16, graph.getTileCount());
+                Assertions.assertEquals(0, graph.getTileFaults());
+
+                List<String> nodes = expected.getAllNodes();
+                for (int i = 0; i < nodes.size(); i += 5) {
+                    String start = nodes.get(i);
+                    String end = nodes.get((i * 17 + 3) % nodes.size());
+                    try {
+                        double cost = expected.shortestPathCost(start, end);
+                        Assertions.assertEquals(cost, graph.shortestPathCost(start, end), 1e-9);
+                        Assertions.assertEquals(expected.shortestPathData(start, end),
+                                graph.shortestPathData(start, end));
+                    } catch (NoSuchElementException e) {
+                        Assertions.assertThrows(NoSuchElementException.class,
+                                () -> graph.shortestPathCost(start, end));
+                    }
+                    Assertions.assertTrue(graph.getResidentTileCount() <= 3);
+                }
+                for (String pred : nodes)
+                    for (String succ : nodes.subList(0, 20))
+                        Assertions.assertEquals(expected.containsEdge(pred, succ), graph.containsEdge(pred, succ));
+                Assertions.assertTrue(graph.getTileFaults() > graph.getTileCount());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test faultsOnlyReachedTiles: a query between two nodes of one tile
+     * whose search never leaves it reads in just that tile, and a file that is
+     * not a snapshot is rejected.
+     */
+    @Test
+    public void faultsOnlyReachedTiles() throws IOException {
+        Path dot = Files.createTempFile("chain", ".dot");
+        Path file = Files.createTempFile("chain", ".tiles");
+        try {
+            StringBuilder text = new StringBuilder("digraph chain {\n");
+            for (int i = 0; i < 99; i++)
+                text.append('"').append(i).append("\" -> \"").append(i + 1).append("\" [seconds=1];\n");
+            Files.writeString(dot, text.append("}\n"));
+            TiledGraph.write(ParallelDotLoader.load(dot.toString(), 1), file.toString(), 10);
+            try (TiledGraph graph = new TiledGraph(file.toString(), 2)) {
+                Assertions.assertEquals(10, graph.getTileCount());
+                Assertions.assertEquals(4.0, graph.shortestPathCost("\"42\"", "\"46\""), 1e-9);
+                Assertions.assertEquals(1, graph.getTileFaults());
+                Assertions.assertEquals(99.0, graph.shortestPathCost("\"0\"", "\"99\""), 1e-9);
+                Assertions.assertEquals(2, graph.getResidentTileCount());
+                Assertions.assertEquals(List.of("\"97\"", "\"98\"", "\"99\""),
+                        graph.shortestPathData("\"97\"", "\"99\""));
+            }
+            Assertions.assertThrows(IOException.class, () -> new TiledGraph(dot.toString(), 2));
+        } finally {
+            Files.delete(dot);
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test concurrentSearches: searches in several threads at once, faulting
+     * tiles in and out of a small resident set, find the same costs as a
+     * CsrGraph, and every tile is released when they end.
+     */
+    @Test
+    public void concurrentSearches() throws Exception {
+        CsrGraph expected = ParallelDotLoader.load("campus.dot", 1);
+        Path file = Files.createTempFile("campus", ".tiles");
+        try {
+            TiledGraph.write(expected, file.toString(), 8);
+            try (TiledGraph graph = new TiledGraph(file.toString(), 2)) {
+                List<String> nodes = expected.getAllNodes();
+                AtomicInteger mismatches = new AtomicInteger();
+                Thread[] threads = new Thread[4];
+                for (int t = 0; t < threads.length; t++) {
+                    int offset = t;
+                    threads[t] = new Thread(() -> {
+                        for (int i = offset; i < nodes.size() * 3; i += threads.length) {
+                            String start = nodes.get(i % nodes.size());
+                            String end = nodes.get((i * 31 + 7) % nodes.size());
+                            double cost;
+                            try {
+                                cost = expected.shortestPathCost(start, end);
+                            } catch (NoSuchElementException e) {
+                                cost = Double.POSITIVE_INFINITY;
+                            }
+                            double found;
+                            try {
+                                found = graph.shortestPathCost(start, end);
+                            } catch (NoSuchElementException e) {
+                                found = Double.POSITIVE_INFINITY;
+                            }
+                            if (Math.abs(cost - found) > 1e-9 && cost != found)
+                                mismatches.incrementAndGet();
+                        }
+                    });
+                    threads[t].start();
+                }
+                for (Thread thread : threads)
+                    thread.join();
+                Assertions.assertEquals(0, mismatches.get());
+                Assertions.assertTrue(graph.getResidentTileCount() <= 2);
+                Assertions.assertTrue(graph.getTileFaults() > graph.getTileCount());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test meetingPointReleasesTiles: a MeetingPoint search over a tiled
+     * graph leaves no tile pinned when it returns, so the one resident tile
+     * can be reused by searches in another thread, and a second search
+     * there finds its tile still resident.
+     */
+    @Test
+    public void meetingPointReleasesTiles() throws Exception {
+        Path dot = Files.createTempFile("chain", ".dot");
+        Path file = Files.createTempFile("chain", ".tiles");
+        try {
+            StringBuilder text = new StringBuilder("digraph chain {\n");
+            for (int i = 0; i < 99; i++)
+                text.append('"').append(i).append("\" -> \"").append(i + 1).append("\" [seconds=1];\n");
+            Files.writeString(dot, text.append("}\n"));
+            TiledGraph.write(ParallelDotLoader.load(dot.toString(), 1), file.toString(), 10);
+            try (TiledGraph graph = new TiledGraph(file.toString(), 1)) {
+                MeetingPoint meetingPoint = new MeetingPoint(graph);
+                Assertions.assertEquals("\"5\"", meetingPoint.find(List.of("\"0\"", "\"5\"")).getDestination());
+                long faults = graph.getTileFaults();
+                Thread other = new Thread(() -> {
+                    for (int i = 0; i < 2; i++)
+                        Assertions.assertEquals(4.0, graph.shortestPathCost("\"42\"", "\"46\""), 1e-9);
+                });
+                other.start();
+                other.join();
+                Assertions.assertEquals(faults + 1, graph.getTileFaults());
+                Assertions.assertEquals(1, graph.getResidentTileCount());
+            }
+        } finally {
+            Files.delete(dot);
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * Unit tests for time-dependent routing.
+ * These tests verify TravelTimeProfile interpolation, time-dependent
+ * Dijkstra searches, and loading profiles from dot and binary files.
+ */
+public class TimeDependentRoutingTests {
+
+    /**
+     * Test profileInterpolation: checks interpolation between breakpoints,
+     * across midnight, and that non-FIFO profiles are rejected.
+     */
+    @Test
+    public void profileInterpolation() {
+        TravelTimeProfile profile = TravelTimeProfile.parse("28800:100 30600:160 36000:100");
+        Assertions.assertEquals(100.0, profile.travelTime(28800), 1e-9);
+        Assertions.assertEquals(130.0, profile.travelTime(29700), 1e-9);
+        Assertions.assertEquals(160.0, profile.travelTime(30600 + TravelTimeProfile.DAY), 1e-9);
+        // constant overnight, from the last breakpoint around to the first
+        Assertions.assertEquals(100.0, profile.travelTime(3600), 1e-9);
+        Assertions.assertEquals(100.0, profile.travelTime(-3600), 1e-9);
+        // dropping 200 seconds of travel time within 100 seconds breaks FIFO
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> TravelTimeProfile.parse("0:300 100:100"));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> TravelTimeProfile.parse("100:5 50:5"));
+    }
+
+    /**
+     * Test congestionChangesRoute: a congested walkway is avoided between
+     * classes but used at other times, while static queries ignore profiles.
+     */
+    @Test
+    public void congestionChangesRoute() {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        for (String node : List.of("A", "B", "C", "D"))
+            graph.insertNode(node);
+        graph.insertEdge("A", "B", 60.0);
+        graph.insertEdge("B", "D", 60.0);
+        graph.insertEdge("A", "C", 90.0);
+        graph.insertEdge("C", "D", 90.0);
+        // B->D slows to 300 seconds around 9:50, between classes
+        graph.setEdgeProfile("B", "D", TravelTimeProfile.parse("35100:60 35400:300 36000:300 36300:60"));
+
+        Assertions.assertEquals(List.of("A", "B", "D"), graph.shortestPathData("A", "D"));
+        Assertions.assertEquals(120.0, graph.shortestPathCost("A", "D", 8 * 3600), 1e-9);
+        Assertions.assertEquals(List.of("A", "C", "D"), graph.shortestPathData("A", "D", 35500));
+        Assertions.assertEquals(180.0, graph.shortestPathCost("A", "D", 35500), 1e-9);
+        Assertions.assertEquals(120.0, graph.shortestPathCost("A", "D"), 1e-9);
+    }
+
+    /**
+     * Test loadProfiles: reads profiles from a dot file's profile attribute,
+     * then round trips them through the binary profile format.
+     */
+    @Test
+    public void loadProfiles() throws IOException {
+        File dot = File.createTempFile("profiles", ".dot");
+        File binary = File.createTempFile("profiles", ".bin");
+        try {
+            try (PrintWriter out = new PrintWriter(dot)) {
+                out.println("digraph campus {");
+                out.println("\t\"A\" -> \"B\" [seconds=60.0, profile=\"0:60 35400:300 36300:60\"];");
+                out.println("\t\"B\" -> \"C\" [seconds=45.5];");
+                out.println("}");
+            }
+            Backend backend = new Backend(new DijkstraGraph<>());
+            backend.loadGraphData(dot.getPath());
+            Assertions.assertEquals(List.of(60.0, 45.5),
+                    backend.findTimesOnShortestPath("\"A\"", "\"C\""));
+            Assertions.assertEquals(1, backend.saveTravelTimeProfiles(binary.getPath()));
+
+            DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+            Backend reloaded = new Backend(graph);
+            reloaded.loadGraphData(dot.getPath());
+            graph.setEdgeProfile("\"A\"", "\"B\"", null);
+            Assertions.assertEquals(1, reloaded.loadTravelTimeProfiles(binary.getPath()));
+            Assertions.assertEquals(345.5, graph.shortestPathCost("\"A\"", "\"C\"", 35400), 1e-9);
+        } finally {
+            dot.delete();
+            binary.delete();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A piecewise-linear travel time profile for one edge: how many seconds it
+ * takes to traverse the edge when departing at each time of day. The
+ * profile is defined by breakpoints (departure time, travel time), is
+ * interpolated linearly between them, and repeats every day, wrapping from
+ * the last breakpoint back around to the first.
+ *
+ * Breakpoints are stored interleaved in a single double array to keep each
+ * edge's profile compact. Profiles must satisfy the FIFO property (leaving
+ * later never gets you there earlier, so no segment may fall with a slope
+ * below -1), which keeps time-dependent Dijkstra searches exact.
+ */
+public class TravelTimeProfile {
+
+    // profiles repeat with this period, in seconds
+    public static final double DAY = 24 * 60 * 60;
+
+    // departure time and travel time of each breakpoint, interleaved
+    private final double[] points;
+
+    /**
+     * Constructor creates a profile from parallel arrays of breakpoints.
+     *
+     * @param departures  strictly increasing departure times within [0, DAY)
+     * @param travelTimes positive travel times for departures at those times
+     * @throws IllegalArgumentException if the breakpoints are empty, out of
+     *                                  order, not positive or break FIFO
+     */
+    public TravelTimeProfile(double[] departures, double[] travelTimes) {
+        if (departures.length == 0 || departures.length != travelTimes.length)
+            throw new IllegalArgumentException("A profile needs matching, non-empty breakpoints.");
+        points = new double[departures.length * 2];
+        for (int i = 0; i < departures.length; i++) {
+            if (departures[i] < 0 || departures[i] >= DAY
+                    || (i > 0 && departures[i] <= departures[i - 1]))
+                throw new IllegalArgumentException("Departure times must increase within a day.");
+            if (!(travelTimes[i] > 0))
+                throw new IllegalArgumentException("Travel times must be positive.");
+            points[2 * i] = departures[i];
+            points[2 * i + 1] = travelTimes[i];
+        }
+        for (int i = 0; i < departures.length; i++) {
+            int next = (i + 1) % departures.length;
+            double span = departures[next] - departures[i] + (next == 0 ? DAY : 0);
+            if (departures.length > 1 && travelTimes[next] - travelTimes[i] < -span)
+                throw new IllegalArgumentException("Profile violates FIFO between "
+                        + departures[i] + " and " + departures[next]);
+        }
+    }
+
+    /**
+     * Parses a profile written as space separated departure:travelTime
+     * breakpoints, e.g. "0:105.8 28800:140 30600:105.8".
+     *
+     * @param text the profile as written in a dot file's profile attribute
+     * @return the parsed profile
+     * @throws IllegalArgumentException if the text is not a valid profile
+     */
+    public static TravelTimeProfile parse(String text) {
+        String[] pairs = text.trim().split("\\s+");
+        double[] departures = new double[pairs.length];
+        double[] travelTimes = new double[pairs.length];
+        for (int i = 0; i < pairs.length; i++) {
+            String[] pair = pairs[i].split(":");
+            if (pair.length != 2)
+                throw new IllegalArgumentException("Unable to read breakpoint: " + pairs[i]);
+            departures[i] = Double.parseDouble(pair[0]);
+            travelTimes[i] = Double.parseDouble(pair[1]);
+        }
+        return new TravelTimeProfile(departures, travelTimes);
+    }
+
+    /**
+     * Returns the travel time for departing along this edge at time.
+     *
+     * @param time the departure time in seconds, taken modulo one day
+     * @return the interpolated travel time in seconds
+     */
+    public double travelTime(double time) {
+        int count = points.length / 2;
+        if (count == 1)
+            return points[1];
+        double t = time % DAY;
+        if (t < 0)
+            t += DAY;
+        // find the last breakpoint at or before t, wrapping before the first
+        int low = 0;
+        int high = count - 1;
+        if (t < points[0]) {
+            low = count - 1;
+            t += DAY;
+        } else {
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (points[2 * mid] <= t)
+                    low = mid;
+                else
+                    high = mid - 1;
+            }
+        }
+        int next = low + 1 == count ? 0 : low + 1;
+        double startTime = points[2 * low];
+        double endTime = points[2 * next] + (next == 0 ? DAY : 0);
+        double fraction = (t - startTime) / (endTime - startTime);
+        return points[2 * low + 1] + fraction * (points[2 * next + 1] - points[2 * low + 1]);
+    }
+
+    /**
+     * Returns the number of breakpoints in this profile.
+     *
+     * @return the number of breakpoints
+     */
+    public int getBreakpointCount() {
+        return points.length / 2;
+    }
+
+    /**
+     * Writes this profile in a compact binary form: the breakpoint count
+     * followed by each departure and travel time as doubles.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(points.length / 2);
+        for (double value : points)
+            out.writeDouble(value);
+    }
+
+    /**
+     * Reads a profile previously written by writeTo.
+     *
+     * @param in the input to read from
+     * @return the profile that was read
+     * @throws IOException if reading fails or the data is not a valid profile
+     */
+    public static TravelTimeProfile readFrom(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count <= 0)
+            throw new IOException("Invalid breakpoint count: " + count);
+        double[] departures = new double[count];
+        double[] travelTimes = new double[count];
+        for (int i = 0; i < count; i++) {
+            departures[i] = in.readDouble();
+            travelTimes[i] = in.readDouble();
+        }
+        try {
+            return new TravelTimeProfile(departures, travelTimes);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid profile: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < points.length; i += 2)
+            text.append(i == 0 ? "" : " ").append(points[i]).append(':').append(points[i + 1]);
+        return text.toString();
+    }
+}
@@ -1,16 +1,32 @@
 import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
 import java.net.URLDecoder;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.Headers;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.File;
 import java.util.Scanner;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 /**
@@ -26,8 +42,50 @@ import java.util.stream.Stream;
  *     compile WebApp in that location
  *     there is no need to run your sever, the provided index.cgi handles this 
  * Then visit through browser via https://cs400-web.cs.wisc.edu/CS_LOGIN/
+ *
+ * To keep the graph loaded between cgi requests, also start a daemon:
+ *     java -Dcampus.socket=/tmp/CS_LOGIN-campus.sock WebApp --daemon
+ * and pass the same -Dcampus.socket to java in index.cgi.  Each request then
+ * forwards its query to the daemon over that unix domain socket, and only
+ * loads the graph itself when no daemon answers.  The socket must be on a
+ * local file system such as /tmp, since AFS does not support them.
  */
 public class WebApp {
+
+    // asynchronous access log, opened when running as a server
+    private static AccessLog accessLog = null;
+
+    // complete responses, precompressed, keyed by graph version and query
+    private static final ResponseCache responseCache = new ResponseCache(
+				Long.parseLong(System.getProperty("campus.responsecache.bytes", "8388608")));
+    // browsers may reuse a response for a minute, then revalidate its ETag
+    private static final String CACHE_CONTROL = "public, max-age=60";
+
+    // where the daemon listens, and where cgi requests look for it
+    private static final Path DAEMON_SOCKET =
+				Path.of(System.getProperty("campus.socket", "campus.sock"));
+    // how long a cgi request waits on the daemon before answering itself,
+    // and how long the daemon waits on a client that stalls
+    private static final long DAEMON_TIMEOUT_MILLIS = 5000;
+    // the daemon drops requests with queries this long or longer
+    private static final int MAX_QUERY_BYTES = 65536;
+    // the frontend shared by every server and daemon request, and the version
+    // of the files it was built from; requests search it in parallel, each
+    // thread with its own SearchArena, and identical concurrent routes share
+    // one search through its Backend
+    private static volatile WarmFrontend shared = null;
+    private static final class WarmFrontend {
+				final String version;
+				final FrontendInterface frontend;
+				WarmFrontend(String version, FrontendInterface frontend) {
+						this.version = version;
+						this.frontend = frontend;
+				}
+    }
+    // how many requests the server handles at once
+    private static final int SERVER_THREADS =
+				Integer.parseInt(System.getProperty("campus.server.threads", "16"));
+
     public static void main(String[] args) throws IOException {
 				// expects the port number as a command line argument to this program
 				// or if a non-numeric argument is passed treat this like the query
@@ -35,7 +93,13 @@ public class WebApp {
 				if(args.length != 1) {
 						throw new IllegalArgumentException("You must pass a command line" +
 						    " argument representing the port that this servers should be" +
-								" bound to when running this program.  Or a Query string.");
+								" bound to when running this program.  Or a Query string." +
+								"  Or --daemon.");
+				}
+				if(args[0].equals("--daemon")) {
+						// serve cgi requests from a graph loaded once, until killed
+						runDaemon(DAEMON_SOCKET);
+						return;
 				}
 				int portNumber = -1;
 				try {
@@ -53,45 +117,166 @@ public class WebApp {
 				HttpServer server = HttpServer.create(address,8);
 				HttpContext context = server.createContext("/");
 				context.setHandler( WebApp::requestHandler );
+				// handle requests in parallel, so that identical ones can coalesce
+				server.setExecutor(Executors.newFixedThreadPool(SERVER_THREADS));
+				// expose hot path instrumentation in prometheus text format
+				HttpContext metricsContext = server.createContext("/metrics");
+				metricsContext.setHandler( WebApp::metricsHandler );
+				// log requests from a background thread rather than on request threads
+				accessLog = AccessLog.fromSystemProperties();
+				Runtime.getRuntime().addShutdownHook(new Thread(accessLog::close));
 				System.out.println("Starting Campus Navigator Server...");
 				server.start();
     }
 
     // http request handler handler for the context "/"
     public static void requestHandler(HttpExchange exchange) {
+				long requestStart = System.nanoTime();
+				String endpoint = "index";
+				// extract the query (part of URI after?) part of URI
+				String query = exchange.getRequestURI().getQuery();
 				try {
-						// extract the query (part of URI after?) part of URI
-						String query = exchange.getRequestURI().getQuery();	    
-						System.out.println("Received Request with query: " + query);
 						// extract argument key-value pairs from request query
-						Map<String,String> keyValuePairs = parseQuery(
-																					exchange.getRequestURI().getQuery());
-						System.out.println("Query includes args: "+keyValuePairs);
-	    
-						// create backend and frontend objects to respond to this request
-						FrontendInterface frontend = createWorkingFrontend("./campus.dot");
-						// compute answer to user's requested problem based on query args:
-						String response = generateResponseHTML(keyValuePairs,frontend);
-						// generate HTML prompts for user for make next requests
-						String prompts = generatePromptHTML(frontend);
-						// compose response and prompts into a complete html template
-						String html = composeHTML(response,prompts);
-		
+						Map<String,String> keyValuePairs = parseQuery(query);
+						endpoint = endpointOf(keyValuePairs);
+
+						// a response depends only on the graph and template files and
+						// the query, so tag it by the files' version and the query
+						String version = graphVersion();
+						String key = normalizeQuery(keyValuePairs);
+						String tag = "\"" + version + "-" + Integer.toHexString(key.hashCode()) + "\"";
+						String encoding = ResponseCache.chooseEncoding(
+												exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+						Headers headers = exchange.getResponseHeaders();
+						headers.set("ETag", ResponseCache.etag(tag, encoding));
+						headers.set("Cache-Control", CACHE_CONTROL);
+						headers.set("Vary", "Accept-Encoding");
+
+						// the client already has this response
+						if(ResponseCache.matches(exchange.getRequestHeaders().getFirst("If-None-Match"), tag)) {
+								exchange.sendResponseHeaders(304,-1);
+								exchange.close();
+								recordRequest(endpoint, 304, requestStart);
+								logRequest(endpoint, query, 304, requestStart, -1, null);
+								return;
+						}
+
+						ResponseCache.Entry entry = responseCache.get(version + " " + key);
+						if(Metrics.ENABLED) Metrics.recordCacheLookup("response", entry != null);
+						if(entry == null) {
+								// respond from the frontend built for this version of the files
+								FrontendInterface frontend = warmFrontend(version);
+								// compute answer to user's requested problem based on query args:
+								String response = generateResponseHTML(keyValuePairs,frontend);
+								// generate HTML prompts for user for make next requests
+								String prompts = generatePromptHTML(frontend);
+								// compose response and prompts into a complete html template
+								String html = composeHTML(response,prompts);
+								entry = responseCache.put(version + " " + key,
+												html.getBytes(StandardCharsets.UTF_8),
+												endpoint.equals("route") ? countPathLocations(response) : -1);
+						}
+
 						// complete exchange response to send this html back to requester
-						byte[] bytes = html.getBytes();
+						byte[] bytes = entry.body(encoding);
+						headers.set("Content-Type", "text/html; charset=utf-8");
+						if(encoding != null) headers.set("Content-Encoding", encoding);
 						exchange.sendResponseHeaders(200,bytes.length);
 						OutputStream out = exchange.getResponseBody();
 						out.write(bytes);
 						out.close();
+						recordRequest(endpoint, 200, requestStart);
+						logRequest(endpoint, query, 200, requestStart, entry.getPathLength(), null);
 	    
 				// unless something goes wrong, in which case report problem
 				} catch (Exception e) {
-						System.out.println("Exception Thrown: "+e.toString());
-						e.printStackTrace();
 						// attempt to send 500 Server Error Response to client
+						exchange.getResponseHeaders().remove("ETag");
+						exchange.getResponseHeaders().remove("Cache-Control");
 						try { exchange.sendResponseHeaders(500,-1); }
 						catch(IOException i){} // do nothing when this fails
+						recordRequest(endpoint, 500, requestStart);
+						logRequest(endpoint, query, 500, requestStart, -1, e.toString());
+				}
+    }
+
+    // identifies the version of the files every response is built from, by
+    // their sizes and modification times
+    private static String graphVersion() {
+				long version = 17;
+				for(String filename : new String[] {"./campus.dot", "template.html"}) {
+						File file = new File(filename);
+						version = version * 31 + file.lastModified();
+						version = version * 31 + file.length();
+				}
+				return Long.toHexString(version);
+    }
+
+    // the query's key value pairs in key order, so that equivalent queries
+    // written in a different order share a cache entry
+    private static String normalizeQuery(Map<String,String> keyValuePairs) {
+				StringBuilder normalized = new StringBuilder();
+				for(Map.Entry<String,String> pair : new TreeMap<>(keyValuePairs).entrySet()) {
+						if(normalized.length() > 0) normalized.append('&');
+						normalized.append(pair.getKey()).append('=').append(pair.getValue());
 				}
+				return normalized.toString();
+    }
+
+    // http request handler for the context "/metrics"
+    public static void metricsHandler(HttpExchange exchange) {
+				long requestStart = System.nanoTime();
+				try {
+						byte[] bytes = Metrics.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+						exchange.getResponseHeaders().set("Content-Type",
+												"text/plain; version=0.0.4; charset=utf-8");
+						exchange.sendResponseHeaders(200,bytes.length);
+						OutputStream out = exchange.getResponseBody();
+						out.write(bytes);
+						out.close();
+						recordRequest("metrics", 200, requestStart);
+				} catch (IOException e) {
+						try { exchange.sendResponseHeaders(500,-1); }
+						catch(IOException i){} // do nothing when this fails
+						recordRequest("metrics", 500, requestStart);
+				}
+    }
+
+    // names the kind of request being made, for labelling metrics
+    private static String endpointOf(Map<String,String> keyValuePairs) {
+				if(keyValuePairs.containsKey("start") && keyValuePairs.containsKey("end"))
+						return "route";
+				if(keyValuePairs.containsKey("from"))
+						return "closest";
+				return "index";
+    }
+
+    // records the count and latency of one request handled by this server
+    private static void recordRequest(String endpoint, int status, long requestStart) {
+				if(!Metrics.ENABLED) return;
+				Metrics.counter("campus_http_requests_total",
+										  "endpoint=\""+endpoint+"\",status=\""+status+"\"",
+										  "Requests handled by WebApp.").increment();
+				Metrics.histogram("campus_http_request_seconds",
+										  "endpoint=\""+endpoint+"\"",
+										  "Latency of requests handled by WebApp.")
+						.record(System.nanoTime() - requestStart);
+    }
+
+    // hands one request's structured fields to the access log, if enabled
+    private static void logRequest(String endpoint, String query, int status,
+																	 long requestStart, int pathLength, String error) {
+				if(accessLog == null) return;
+				accessLog.log(endpoint, query, status, System.nanoTime() - requestStart,
+											pathLength, error);
+    }
+
+    // counts the locations listed in a shortest path response (one <li> each)
+    private static int countPathLocations(String response) {
+				int count = 0;
+				for(int i = response.indexOf("<li>"); i >= 0; i = response.indexOf("<li>", i + 4))
+						count++;
+				return count;
     }
 
     // reads key value pairs from the query string of a URI into a map
@@ -165,12 +350,22 @@ public class WebApp {
 		// machines, we are using a cgi script to pass the query argument to
 		// the method below, and then displaying a response to standard out.
 		public static void handleSingleResponse(String query) {
+				// a running daemon answers from a graph it has already loaded
+				String text = forwardToDaemon(DAEMON_SOCKET, query, DAEMON_TIMEOUT_MILLIS);
+				if(text == null) text = singleResponseText(query, false);
+				System.out.print(text);
+    }
+
+    // the text handleSingleResponse prints for a query, using the shared
+    // warm frontend or a new one
+    private static String singleResponseText(String query, boolean warm) {
 				try {
 						query = URLDecoder.decode(query, StandardCharsets.UTF_8);
 						Map<String,String> keyValuePairs = parseQuery(query);
 	    
 						// create backend and frontend objects to respond to this request
-						FrontendInterface frontend = createWorkingFrontend("./campus.dot");
+						FrontendInterface frontend = warm ? warmFrontend(graphVersion())
+								: createWorkingFrontend("./campus.dot");
 						// compute answer to user's requested problem based on query args:
 						String response = generateResponseHTML(keyValuePairs,frontend);
 						// generate HTML prompts for user for make next requests
@@ -178,13 +373,190 @@ public class WebApp {
 						// compose response and prompts into a complete html template
 						String html = composeHTML(response,prompts);
 		
-						System.out.println(html);
+						return html + System.lineSeparator();
 						
 				// unless something goes wrong, in which case report problem
 				} catch (Exception e) {
-						System.out.println("Exception Thrown: "+e.toString());
 						e.printStackTrace();
+						return "Exception Thrown: "+e.toString() + System.lineSeparator();
 				}
     }
-}
 
+    // the shared frontend for this version of the files, rebuilt when the
+    // graph or template file changes; only a rebuild takes the lock
+    private static FrontendInterface warmFrontend(String version) throws IOException {
+				WarmFrontend current = shared;
+				if(current != null && current.version.equals(version)) return current.frontend;
+				synchronized(WebApp.class) {
+						current = shared;
+						if(current == null || !current.version.equals(version)) {
+								current = new WarmFrontend(version, createWorkingFrontend("./campus.dot"));
+								shared = current;
+						}
+						return current.frontend;
+				}
+    }
+
+    // a daemon connection: the query read so far, then the response left to
+    // write; it is dropped if it has not finished by its deadline
+    private static final class DaemonConnection {
+				final SocketChannel channel;
+				final long deadline;
+				ByteBuffer request = ByteBuffer.allocate(1024);
+				boolean answering = false; // the query is complete and being answered
+				ByteBuffer response = null; // set by the worker that answered it
+
+				DaemonConnection(SocketChannel channel, long timeoutMillis) {
+						this.channel = channel;
+						this.deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+				}
+    }
+
+    // listens on a unix domain socket for queries forwarded by cgi requests,
+    // and answers each with the text that request would have printed
+    static void runDaemon(Path socket) throws IOException {
+				UnixDomainSocketAddress address = UnixDomainSocketAddress.of(socket);
+				// a socket file nobody answers on was left by a daemon that died
+				boolean answered;
+				try {
+						SocketChannel.open(address).close();
+						answered = true;
+				} catch(IOException e) {
+						answered = false;
+				}
+				if(answered)
+						throw new IllegalStateException("A daemon is already listening on " + socket);
+				Files.deleteIfExists(socket);
+				ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+				server.bind(address);
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+						try { server.close(); Files.deleteIfExists(socket); }
+						catch(IOException e){} // do nothing when this fails
+				}));
+				warmFrontend(graphVersion()); // load the graph before the first request arrives
+				System.out.println("Campus Navigator daemon listening on " + socket);
+				serveDaemon(server, DAEMON_TIMEOUT_MILLIS, query -> singleResponseText(query, true));
+    }
+
+    // accepts connections on server until it is closed: one selector thread
+    // reads every query and writes every response without blocking, and only
+    // complete queries are handed to a small pool to answer, so peers that
+    // connect and then stall cost no worker; a connection that has not sent its
+    // query, or taken its response, within timeoutMillis is dropped
+    static void serveDaemon(ServerSocketChannel server, long timeoutMillis,
+						Function<String, String> answer) throws IOException {
+				ExecutorService workers = Executors.newFixedThreadPool(4);
+				ConcurrentLinkedQueue<SelectionKey> answered = new ConcurrentLinkedQueue<>();
+				try(Selector selector = Selector.open()) {
+						server.configureBlocking(false);
+						server.register(selector, SelectionKey.OP_ACCEPT);
+						while(server.isOpen()) {
+								selector.select(Math.max(1, Math.min(timeoutMillis, 250)));
+								// responses the workers finished are ready to write
+								SelectionKey done;
+								while((done = answered.poll()) != null) {
+										DaemonConnection connection = (DaemonConnection) done.attachment();
+										connection.answering = false;
+										if(connection.response == null) closeDaemonConnection(done);
+										else if(done.isValid()) done.interestOps(SelectionKey.OP_WRITE);
+								}
+								for(SelectionKey key : selector.selectedKeys()) {
+										try {
+												if(key.isAcceptable()) {
+														SocketChannel client = server.accept();
+														if(client == null) continue;
+														client.configureBlocking(false);
+														client.register(selector, SelectionKey.OP_READ,
+																		new DaemonConnection(client, timeoutMillis));
+												} else if(key.isReadable()) {
+														readDaemonQuery(key, workers, answer, answered);
+												} else if(key.isWritable()) {
+														DaemonConnection connection = (DaemonConnection) key.attachment();
+														connection.channel.write(connection.response);
+														if(!connection.response.hasRemaining()) closeDaemonConnection(key);
+												}
+										} catch(IOException e) {
+												closeDaemonConnection(key); // the client answers the request itself
+										}
+								}
+								selector.selectedKeys().clear();
+								// drop connections that stalled past their deadline
+								long now = System.nanoTime();
+								for(SelectionKey key : selector.keys()) {
+										DaemonConnection connection = (DaemonConnection) key.attachment();
+										if(connection != null && !connection.answering && now - connection.deadline > 0)
+												closeDaemonConnection(key);
+								}
+						}
+				} finally {
+						workers.shutdown();
+				}
+    }
+
+    // reads what a client has sent of its query, and once it has sent all of
+    // it, has a worker answer it
+    private static void readDaemonQuery(SelectionKey key, ExecutorService workers,
+						Function<String, String> answer, ConcurrentLinkedQueue<SelectionKey> answered) throws IOException {
+				DaemonConnection connection = (DaemonConnection) key.attachment();
+				if(!connection.request.hasRemaining()) {
+						if(connection.request.capacity() >= MAX_QUERY_BYTES) {
+								closeDaemonConnection(key); // too long, let the client answer it
+								return;
+						}
+						ByteBuffer larger = ByteBuffer.allocate(Math.min(connection.request.capacity() * 2, MAX_QUERY_BYTES));
+						connection.request = larger.put(connection.request.flip());
+				}
+				if(connection.channel.read(connection.request) >= 0) return;
+				key.interestOps(0);
+				connection.answering = true;
+				String query = new String(connection.request.array(), 0, connection.request.position(),
+								StandardCharsets.UTF_8);
+				workers.execute(() -> {
+						try {
+								connection.response = ByteBuffer.wrap(answer.apply(query).getBytes(StandardCharsets.UTF_8));
+						} catch(RuntimeException e) {
+								// leave the response unset, so the connection is dropped
+						}
+						answered.add(key);
+						key.selector().wakeup();
+				});
+    }
+
+    private static void closeDaemonConnection(SelectionKey key) {
+				key.cancel();
+				try { key.channel().close(); }
+				catch(IOException e){} // do nothing when this fails
+    }
+
+    // sends a query to the daemon listening on socket, and returns its whole
+    // response, or null if there is no daemon or it does not answer in time
+    static String forwardToDaemon(Path socket, String query, long timeoutMillis) {
+				if(!Files.exists(socket)) return null; // no daemon was ever started
+				try(SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+						Selector selector = Selector.open()) {
+						ByteBuffer request = ByteBuffer.wrap(query.getBytes(StandardCharsets.UTF_8));
+						while(request.hasRemaining()) channel.write(request);
+						channel.shutdownOutput();
+						// read until the daemon closes the connection, or time runs out
+						channel.configureBlocking(false);
+						channel.register(selector, SelectionKey.OP_READ);
+						ByteArrayOutputStream response = new ByteArrayOutputStream();
+						ByteBuffer buffer = ByteBuffer.allocate(65536);
+						long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+						while(true) {
+								long remaining = (deadline - System.nanoTime()) / 1_000_000;
+								if(remaining <= 0) return null;
+								selector.select(remaining);
+								selector.selectedKeys().clear();
+								int read = channel.read(buffer);
+								if(read < 0) break;
+								response.write(buffer.array(), 0, buffer.position());
+								buffer.clear();
+						}
+						// nothing at all means the daemon dropped the request
+						return response.size() == 0 ? null : response.toString(StandardCharsets.UTF_8);
+				} catch(IOException e) {
+						return null; // the daemon has exited, or refused the connection
+				}
+    }
+}
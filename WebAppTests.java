@@ -0,0 +1,159 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for how WebApp's cgi requests forward queries to its daemon,
+ * and how the daemon serves them.
+ */
+public class WebAppTests {
+
+    // a daemon stand-in that answers one connection with the query it read,
+    // reversed, or that never answers when reply is false
+    private static Thread fakeDaemon(ServerSocketChannel server, boolean reply) {
+        Thread thread = new Thread(() -> {
+            try (SocketChannel client = server.accept()) {
+                ByteBuffer request = ByteBuffer.allocate(1024);
+                while (client.read(request) >= 0);
+                String query = new String(request.array(), 0, request.position(), StandardCharsets.UTF_8);
+                if (!reply) {
+                    Thread.sleep(1000);
+                    return;
+                }
+                ByteBuffer response = ByteBuffer.wrap(
+                        new StringBuilder(query).reverse().toString().getBytes(StandardCharsets.UTF_8));
+                while (response.hasRemaining())
+                    client.write(response);
+            } catch (IOException | InterruptedException e) {
+                // the test fails on the client side
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static ServerSocketChannel listen(Path socket) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socket));
+        return server;
+    }
+
+    /**
+     * Test forwardWithoutDaemon: with no socket file, or a stale one nobody
+     * listens on, there is no response, so the request is answered in
+     * process.
+     */
+    @Test
+    public void forwardWithoutDaemon() throws IOException {
+        Path directory = Files.createTempDirectory("campus");
+        Path socket = directory.resolve("campus.sock");
+        try {
+            Assertions.assertNull(WebApp.forwardToDaemon(socket, "start=A&end=B", 1000));
+            listen(socket).close(); // leaves the socket file behind
+            Assertions.assertTrue(Files.exists(socket));
+            Assertions.assertNull(WebApp.forwardToDaemon(socket, "start=A&end=B", 1000));
+        } finally {
+            Files.deleteIfExists(socket);
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Test forwardRoundTrip: the daemon reads the whole query, and the
+     * client returns its whole response.
+     */
+    @Test
+    public void forwardRoundTrip() throws Exception {
+        Path directory = Files.createTempDirectory("campus");
+        Path socket = directory.resolve("campus.sock");
+        try (ServerSocketChannel server = listen(socket)) {
+            Thread daemon = fakeDaemon(server, true);
+            String query = "start=Union+South&end=Memorial+Union&note=caf\u00e9";
+            String response = WebApp.forwardToDaemon(socket, query, 5000);
+            daemon.join();
+            Assertions.assertEquals(new StringBuilder(query).reverse().toString(), response);
+        } finally {
+            Files.deleteIfExists(socket);
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Test forwardTimeout: a daemon that never answers is given up on after
+     * the timeout.
+     */
+    @Test
+    public void forwardTimeout() throws Exception {
+        Path directory = Files.createTempDirectory("campus");
+        Path socket = directory.resolve("campus.sock");
+        try (ServerSocketChannel server = listen(socket)) {
+            Thread daemon = fakeDaemon(server, false);
+            long start = System.nanoTime();
+            Assertions.assertNull(WebApp.forwardToDaemon(socket, "start=A&end=B", 300));
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            Assertions.assertTrue(elapsedMillis >= 250 && elapsedMillis < 900, "waited " + elapsedMillis + " ms");
+            daemon.join();
+        } finally {
+            Files.deleteIfExists(socket);
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Test daemonDropsStalledClients: clients that connect and send nothing
+     * do not keep the daemon from answering another request, and are
+     * disconnected once the daemon's timeout passes.
+     */
+    @Test
+    public void daemonDropsStalledClients() throws Exception {
+        Path directory = Files.createTempDirectory("campus");
+        Path socket = directory.resolve("campus.sock");
+        List<SocketChannel> idle = new ArrayList<>();
+        ServerSocketChannel server = listen(socket);
+        try {
+            Thread daemon = new Thread(() -> {
+                try {
+                    WebApp.serveDaemon(server, 400, query -> new StringBuilder(query).reverse().toString());
+                } catch (IOException e) {
+                    // the test fails on the client side
+                }
+            });
+            daemon.start();
+            for (int i = 0; i < 8; i++)
+                idle.add(SocketChannel.open(UnixDomainSocketAddress.of(socket)));
+            Assertions.assertEquals("B=dne&A=trats", WebApp.forwardToDaemon(socket, "start=A&end=B", 2000));
+
+            // the daemon closes a stalled connection, which reads as end of stream
+            SocketChannel stalled = idle.get(0);
+            try (Selector selector = Selector.open()) {
+                stalled.configureBlocking(false);
+                stalled.register(selector, SelectionKey.OP_READ);
+                Assertions.assertEquals(1, selector.select(3000));
+                Assertions.assertEquals(-1, stalled.read(ByteBuffer.allocate(16)));
+            }
+
+            // closing the server channel stops the daemon
+            server.close();
+            daemon.join(2000);
+            Assertions.assertFalse(daemon.isAlive());
+        } finally {
+            server.close();
+            for (SocketChannel channel : idle)
+                channel.close();
+            Files.deleteIfExists(socket);
+            Files.delete(directory);
+        }
+    }
+}